@@ -0,0 +1,33 @@
+package com.example.payment.bench;
+
+import com.example.payment.dto.PaymentRequests;
+
+import java.math.BigDecimal;
+
+/** Request payloads shared by the JMH benchmarks. */
+final class BenchFixtures {
+
+    static final String PURCHASE_JSON = "{\"amount\":12.34,\"currency\":\"USD\",\"card\":{\"number\":\"4111 1111 1111 1111\","
+            + "\"expMonth\":12,\"expYear\":2030,\"cvv\":\"123\"},\"orderId\":\"ext-100\"}";
+
+    private BenchFixtures() {
+    }
+
+    static PaymentRequests.Card card(String number, String cvv) {
+        PaymentRequests.Card card = new PaymentRequests.Card();
+        card.setNumber(number);
+        card.setExpMonth(12);
+        card.setExpYear(2030);
+        card.setCvv(cvv);
+        return card;
+    }
+
+    static PaymentRequests.PurchaseRequest purchaseRequest() {
+        PaymentRequests.PurchaseRequest req = new PaymentRequests.PurchaseRequest();
+        req.setAmount(new BigDecimal("12.34"));
+        req.setCurrency("USD");
+        req.setCard(card("4111 1111 1111 1111", "123"));
+        req.setOrderId("ext-100");
+        return req;
+    }
+}
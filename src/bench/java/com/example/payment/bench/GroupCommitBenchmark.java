@@ -0,0 +1,68 @@
+package com.example.payment.bench;
+
+import com.example.payment.PaymentProcessingApplication;
+import com.example.payment.gateway.GatewayResult;
+import com.example.payment.model.OrderStatus;
+import com.example.payment.model.Transaction;
+import com.example.payment.model.TransactionType;
+import com.example.payment.service.GroupCommitWriter;
+import com.example.payment.service.PaymentRecorder;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The database side of a purchase (pending insert, then the approved result) from 16 concurrent
+ * callers, with group commit off ({@code maxWrites=1}) and on, against in-memory and file-backed
+ * H2. Scores are purchases per millisecond; writes per commit is printed at the end of each trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+@State(Scope.Benchmark)
+public class GroupCommitBenchmark {
+
+    @Param({"1", "64"})
+    public int maxWrites;
+
+    /** In-memory commits are nearly free; the file database writes each commit out to disk. */
+    @Param({"mem", "file"})
+    public String database;
+
+    private ConfigurableApplicationContext context;
+    private PaymentRecorder recorder;
+    private GroupCommitWriter writer;
+    private final AtomicLong providerIds = new AtomicLong();
+
+    @Setup
+    public void setup() {
+        String url = database.equals("mem") ? "jdbc:h2:mem:group-commit-bench;DB_CLOSE_DELAY=-1"
+                : "jdbc:h2:file:./target/group-commit-bench-" + maxWrites + "-" + System.nanoTime();
+        context = new SpringApplicationBuilder(PaymentProcessingApplication.class)
+                .run("--server.port=0", "--logging.level.root=WARN", "--logging.level.com.example.payment=WARN",
+                        "--spring.datasource.url=" + url,
+                        "--spring.datasource.hikari.maximum-pool-size=20",
+                        "--payment.group-commit.max-writes=" + maxWrites);
+        recorder = context.getBean(PaymentRecorder.class);
+        writer = context.getBean(GroupCommitWriter.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%nwrites per commit: %.1f%n", writer.writes() / (double) Math.max(1, writer.commits()));
+        context.close();
+    }
+
+    @Benchmark
+    public Transaction purchase() {
+        Transaction tx = recorder.recordPending(TransactionType.PURCHASE, new BigDecimal("12.34"), "USD", null);
+        return recorder.applyResult(tx, GatewayResult.success("p-" + providerIds.incrementAndGet(), "{\"resultCode\":\"Ok\"}"), OrderStatus.CAPTURED);
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.payment.bench;
+
+import com.example.payment.PaymentProcessingApplication;
+import com.example.payment.model.TransactionType;
+import com.example.payment.service.PaymentRecorder;
+import com.example.payment.service.PaymentService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pending order + transaction inserts through {@code PaymentRecorder} against the application's
+ * JPA setup on in-memory H2: one payment per database transaction, and 50 per transaction as a
+ * batch purchase writes them. Scores are payments per millisecond; the database is local, so the
+ * gap to a networked one is larger, not smaller.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InsertThroughputBenchmark {
+
+    private static final int BATCH = 50;
+
+    private ConfigurableApplicationContext context;
+    private PaymentRecorder recorder;
+    private List<PaymentService.BatchItem> items;
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(PaymentProcessingApplication.class)
+                .run("--server.port=0", "--logging.level.root=WARN", "--logging.level.com.example.payment=WARN",
+                        "--spring.datasource.url=jdbc:h2:mem:insert-bench;DB_CLOSE_DELAY=-1");
+        recorder = context.getBean(PaymentRecorder.class);
+        items = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            items.add(new PaymentService.BatchItem("purchase", new BigDecimal("12.34"), "USD", Map.of(), null));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object single() {
+        return recorder.recordPending(TransactionType.PURCHASE, new BigDecimal("12.34"), "USD", null);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Object batchOf50() {
+        return recorder.recordPendingBatch(items);
+    }
+}
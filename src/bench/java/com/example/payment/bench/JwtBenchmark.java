@@ -0,0 +1,46 @@
+package com.example.payment.bench;
+
+import com.example.payment.auth.JwtTokenProvider;
+import com.example.payment.auth.VerifiedTokenCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/** Token issue, full validation, and the verified-token cache lookup {@code JwtFilter} does on repeat requests. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+
+    private JwtTokenProvider tokenProvider;
+    private VerifiedTokenCache verifiedTokens;
+    private String token;
+
+    @Setup
+    public void setup() {
+        tokenProvider = new JwtTokenProvider("benchmark-secret-benchmark-secret-0123456789", 3600);
+        token = tokenProvider.createToken("merchant-1");
+        verifiedTokens = new VerifiedTokenCache(10_000);
+        verifiedTokens.put(token, tokenProvider.verify(token));
+    }
+
+    @Benchmark
+    public String createToken() {
+        return tokenProvider.createToken("merchant-1");
+    }
+
+    @Benchmark
+    public String validateToken() {
+        tokenProvider.validateToken(token);
+        return token;
+    }
+
+    /** What {@code JwtFilter} does for a token it has already verified. */
+    @Benchmark
+    public boolean cachedToken() {
+        return verifiedTokens.isVerified(token);
+    }
+}
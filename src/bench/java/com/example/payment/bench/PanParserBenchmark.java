@@ -0,0 +1,46 @@
+package com.example.payment.bench;
+
+import com.example.payment.validation.PanParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PanParser} against the regex/substring validation it replaced (kept here as the
+ * baseline). Run with {@code -prof gc} to compare allocation per PAN.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PanParserBenchmark {
+
+    @Param({"4111 1111 1111 1111", "378282246310005", "2223003122003222"})
+    public String pan;
+
+    @Benchmark
+    public int parse() {
+        return PanParser.parse(pan);
+    }
+
+    @Benchmark
+    public boolean legacyValidate() {
+        String digits = pan.replaceAll("\\s+", "");
+        if (!digits.matches("\\d+")) return false;
+        int sum = 0;
+        boolean alternate = false;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            int n = Integer.parseInt(digits.substring(i, i + 1));
+            if (alternate) {
+                n *= 2;
+                if (n > 9) n = (n % 10) + 1;
+            }
+            sum += n;
+            alternate = !alternate;
+        }
+        boolean isAmex = digits.startsWith("34") || digits.startsWith("37");
+        return sum % 10 == 0 && isAmex == (digits.length() == 15);
+    }
+}
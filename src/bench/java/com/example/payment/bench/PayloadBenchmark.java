@@ -0,0 +1,34 @@
+package com.example.payment.bench;
+
+import com.example.payment.dto.PaymentRequests;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/** Jackson deserialization of a purchase body, from the bytes the servlet hands to the converter. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PayloadBenchmark {
+
+    private ObjectReader purchaseReader;
+    private byte[] purchaseBytes;
+
+    @Setup
+    public void setup() {
+        purchaseReader = new ObjectMapper().readerFor(PaymentRequests.PurchaseRequest.class);
+        purchaseBytes = BenchFixtures.PURCHASE_JSON.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public PaymentRequests.PurchaseRequest readPurchase() throws IOException {
+        return purchaseReader.readValue(purchaseBytes);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.payment.bench;
+
+import com.example.payment.config.GatewayGuardProperties;
+import com.example.payment.controller.PaymentController;
+import com.example.payment.dto.PaymentRequests;
+import com.example.payment.gateway.GatewayGuard;
+import com.example.payment.gateway.GatewayResult;
+import com.example.payment.journal.PaymentJournal;
+import com.example.payment.model.Order;
+import com.example.payment.model.Transaction;
+import com.example.payment.repository.IdempotencyRecordRepository;
+import com.example.payment.repository.OrderRepository;
+import com.example.payment.repository.TransactionRawResponseRepository;
+import com.example.payment.repository.TransactionRepository;
+import com.example.payment.service.AuthorizeNetClient;
+import com.example.payment.service.BatchGatewayExecutor;
+import com.example.payment.service.GroupCommitWriter;
+import com.example.payment.service.IdempotencyService;
+import com.example.payment.service.PaymentMetrics;
+import com.example.payment.service.PaymentRecorder;
+import com.example.payment.service.PaymentService;
+import com.example.payment.service.PurchasePipeline;
+import com.example.payment.service.RawResponseArchive;
+import com.example.payment.service.RawResponseStore;
+import com.example.payment.service.TransactionLookupCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code PaymentController.purchase} through {@code PaymentService} and {@code PaymentRecorder},
+ * with the gateway stubbed and repositories that only hand ids out. Measures the mapping and
+ * bookkeeping we add around a payment, not HTTP, the database or the provider.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PurchaseMappingBenchmark {
+
+    private PurchasePipeline pipeline;
+    private PaymentController controller;
+    private PaymentRequests.PurchaseRequest purchase;
+
+    @Setup
+    public void setup() {
+        AtomicLong ids = new AtomicLong();
+        OrderRepository orders = savingRepository(OrderRepository.class, ids);
+        TransactionRepository transactions = savingRepository(TransactionRepository.class, ids);
+        TransactionRawResponseRepository rawResponses = savingRepository(TransactionRawResponseRepository.class, ids);
+        GatewayResult approved = new GatewayResult(GatewayResult.SUCCESS, "60012345", "1", "ABC123", "I00001", "Successful.",
+                "{\"resultCode\":\"Ok\",\"transactionResponse\":{\"responseCode\":\"1\",\"authCode\":\"ABC123\",\"transId\":\"60012345\"}}");
+        AuthorizeNetClient gateway = new AuthorizeNetClient(null, null, new GatewayGuard(new GatewayGuardProperties())) {
+            @Override
+            public GatewayResult createTransaction(BigDecimal amount, String currency, Map<String, String> card, boolean capture) {
+                return approved;
+            }
+        };
+        pipeline = new PurchasePipeline(1, 1);
+        TransactionLookupCache lookupCache = new TransactionLookupCache(100_000);
+        PaymentService service = new PaymentService(gateway,
+                new PaymentRecorder(orders, transactions,
+                        new RawResponseStore(rawResponses, new RawResponseArchive("target/bench-raw-archive")), lookupCache,
+                        new GroupCommitWriter(noTransactions(), 1, 0)), transactions, pipeline,
+                new BatchGatewayExecutor(1), lookupCache, new PaymentMetrics(new SimpleMeterRegistry()), noTransactions(),
+                new PaymentJournal(false, "target/bench-journal", 1));
+        controller = new PaymentController(service,
+                new IdempotencyService(savingRepository(IdempotencyRecordRepository.class, ids), new ObjectMapper(), 1000, 100, 24));
+        purchase = BenchFixtures.purchaseRequest();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        pipeline.shutdown();
+    }
+
+    @Benchmark
+    public Object purchase() {
+        return controller.purchase(purchase, null);
+    }
+
+    private static PlatformTransactionManager noTransactions() {
+        return new PlatformTransactionManager() {
+            @Override
+            public TransactionStatus getTransaction(TransactionDefinition definition) {
+                return new SimpleTransactionStatus();
+            }
+
+            @Override
+            public void commit(TransactionStatus status) {
+            }
+
+            @Override
+            public void rollback(TransactionStatus status) {
+            }
+        };
+    }
+
+    /** A repository whose {@code save} assigns an id and returns the entity; anything else is unsupported. */
+    @SuppressWarnings("unchecked")
+    private static <R> R savingRepository(Class<R> type, AtomicLong ids) {
+        return (R) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getName().equals("save")) {
+                Object entity = args[0];
+                if (entity instanceof Order o && o.getId() == null) o.setId(ids.incrementAndGet());
+                if (entity instanceof Transaction t && t.getId() == null) t.setId(ids.incrementAndGet());
+                return entity;
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> type.getSimpleName() + "Stub";
+                };
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.payment.bench;
+
+import com.example.payment.export.ExportRange;
+import com.example.payment.reconcile.ReconciliationSummary;
+import com.example.payment.reconcile.Reconciler;
+import org.h2.jdbcx.JdbcDataSource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.io.BufferedWriter;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Reconciles a generated day of settlements against the same day of purchases in in-memory H2:
+ * {@code --rows} purchases, about 0.1% each missing from the report, missing locally and settled
+ * at a different amount. Prints the time to parse the report and the total, per thread count.
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Dbench.main=com.example.payment.bench.ReconcileBenchmark \
+ *     -Dbench.args="--rows 2000000 --threads 1,4"
+ * </pre>
+ */
+public class ReconcileBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int rows = 1_000_000;
+        int[] threads = {1, Runtime.getRuntime().availableProcessors()};
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--rows" -> rows = Integer.parseInt(args[i + 1]);
+                case "--threads" -> threads = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:reconcile-bench;DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table transactions (id bigint primary key, provider_tx_id varchar(255), type smallint, "
+                + "status smallint, amount numeric(38,2), created_at timestamp(6) with time zone)");
+        jdbc.execute("create index idx_transactions_created on transactions (created_at, id)");
+        jdbc.execute("create index idx_transactions_provider_tx on transactions (provider_tx_id)");
+
+        Path report = Files.createTempFile("settlement", ".csv");
+        Instant day = Instant.parse("2026-10-01T00:00:00Z");
+        SplittableRandom random = new SplittableRandom(42);
+        long started = System.nanoTime();
+        try (BufferedWriter out = Files.newBufferedWriter(report, StandardCharsets.US_ASCII)) {
+            out.write("Transaction ID,Transaction Status,Submit Date/Time,Settlement Amount,Customer Last Name\n");
+            List<Object[]> batch = new ArrayList<>();
+            for (int i = 0; i < rows; i++) {
+                String id = Long.toString(60_000_000_000L + i);
+                long cents = 100 + random.nextInt(50_000);
+                int fate = random.nextInt(1000);
+                if (fate != 0) {
+                    batch.add(new Object[]{i, id, 2, 1, BigDecimal.valueOf(cents, 2),
+                            Timestamp.from(day.plusMillis(i % 86_400_000L))});
+                }
+                if (fate != 1) {
+                    long settled = fate == 2 ? cents + 1 : cents;
+                    out.write(id + ",settledSuccessfully,01-Oct-2026 12:00:00 PDT," + BigDecimal.valueOf(settled, 2) + ",Doe\n");
+                }
+                if (batch.size() == 10_000 || i == rows - 1) {
+                    jdbc.batchUpdate("insert into transactions values (?, ?, ?, ?, ?, ?)", batch);
+                    batch.clear();
+                }
+            }
+        }
+        System.out.printf("generated %d rows (%.0f MB report) in %.1f s%n", rows, Files.size(report) / 1e6,
+                (System.nanoTime() - started) / 1e9);
+
+        Path outDir = Files.createTempDirectory("reconcile");
+        System.out.printf("%8s %10s %10s %10s %10s %10s %10s%n", "threads", "parse ms", "total ms", "matched", "mismatch",
+                "at prov.", "locally");
+        for (int t : threads) {
+            for (int run = 0; run < 3; run++) {
+                Reconciler reconciler = new Reconciler(dataSource, new DataSourceTransactionManager(dataSource), 1000,
+                        "Transaction ID", "Settlement Amount", t);
+                ReconciliationSummary s = reconciler.reconcile(report, ExportRange.parse("2026-10-01", null), outDir);
+                System.out.printf("%8d %10d %10d %10d %10d %10d %10d%n", t, s.parseMillis(), s.totalMillis(), s.matched(),
+                        s.amountMismatch(), s.missingAtProvider(), s.missingLocally());
+            }
+        }
+        Files.delete(report);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.payment.bench;
+
+import com.example.payment.PaymentProcessingApplication;
+import com.example.payment.gateway.GatewayUnavailableException;
+import com.example.payment.model.Transaction;
+import com.example.payment.service.PaymentService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Whole-stack purchases (pending insert, Authorize.Net call, result write) from 64 threads against
+ * the in-process gateway simulator at a fast and a production-like response time. Scores are
+ * purchases per second. The gateway limit is pinned at the thread count; purchases the guard
+ * turned away anyway are printed at the end of each trial.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@Threads(64)
+@State(Scope.Benchmark)
+public class SimulatedCheckoutBenchmark {
+
+    private static final Map<String, String> CARD = Map.of("number", "4111111111111111", "expMonth", "12", "expYear", "2030", "cvv", "123");
+
+    @Param({"20", "250"})
+    public int gatewayMedianMs;
+
+    private ConfigurableApplicationContext context;
+    private PaymentService paymentService;
+    private final LongAdder rejected = new LongAdder();
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(PaymentProcessingApplication.class)
+                .run("--server.port=0", "--logging.level.root=WARN", "--logging.level.com.example.payment=WARN",
+                        "--spring.datasource.url=jdbc:h2:mem:simulated-checkout-" + gatewayMedianMs + ";DB_CLOSE_DELAY=-1",
+                        "--authnet.simulator.enabled=true", "--authnet.simulator.timeout-percent=0",
+                        "--authnet.simulator.latency-median-ms=" + gatewayMedianMs,
+                        "--authnet.simulator.latency-p99-ms=" + gatewayMedianMs * 4,
+                        // room for every benchmark thread, so the score is completed purchases only
+                        "--authnet.guard.initial-limit=64", "--authnet.guard.min-limit=64", "--authnet.guard.max-limit=64");
+        paymentService = context.getBean(PaymentService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.printf("%nrejected by the gateway guard: %d%n", rejected.sum());
+        context.close();
+    }
+
+    @Benchmark
+    public Transaction purchase() {
+        try {
+            return paymentService.purchase(new BigDecimal("12.34"), "USD", CARD, null);
+        } catch (GatewayUnavailableException ex) {
+            rejected.increment();
+            return null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.payment.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the default platform-thread request model (Tomcat's 200 worker threads) with the
+ * {@code payment.threads.virtual=true} mode at 1k-10k concurrent simulated checkouts.
+ *
+ * <p>A checkout follows the shape of {@code PaymentService.purchase}: a short "record pending"
+ * transaction, a blocking gateway round trip with no connection held, and a short "apply result"
+ * transaction. JDBC connections come from a pool the size of Hikari's default.
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Dbench.main=com.example.payment.bench.ThreadModeBenchmark \
+ *     -Dbench.args="--checkouts 1000,2500,5000,10000 --gateway-ms 250"
+ * </pre>
+ */
+public class ThreadModeBenchmark {
+
+    private final int platformThreads;
+    private final Semaphore connectionPool;
+    private final long dbMicros;
+    private final long gatewayMicros;
+
+    ThreadModeBenchmark(int platformThreads, int poolSize, long dbMicros, long gatewayMicros) {
+        this.platformThreads = platformThreads;
+        this.connectionPool = new Semaphore(poolSize);
+        this.dbMicros = dbMicros;
+        this.gatewayMicros = gatewayMicros;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] levels = {1000, 2500, 5000, 10000};
+        int platformThreads = 200;
+        int pool = 10;
+        long dbMs = 2;
+        long gatewayMs = 250;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--checkouts" -> levels = Arrays.stream(args[i + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+                case "--platform-threads" -> platformThreads = Integer.parseInt(args[i + 1]);
+                case "--pool" -> pool = Integer.parseInt(args[i + 1]);
+                case "--db-ms" -> dbMs = Long.parseLong(args[i + 1]);
+                case "--gateway-ms" -> gatewayMs = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        ThreadModeBenchmark bench = new ThreadModeBenchmark(platformThreads, pool, dbMs * 1000, gatewayMs * 1000);
+        System.out.printf("platform threads=%d, connection pool=%d, db step=%dms, gateway=%dms (jittered)%n",
+                platformThreads, pool, dbMs, gatewayMs);
+        bench.run("platform", 500);
+        bench.run("virtual", 500);
+
+        System.out.printf("%-9s %10s %12s %10s %10s %10s%n", "mode", "checkouts", "checkouts/s", "p50 ms", "p99 ms", "max ms");
+        for (int n : levels) {
+            for (String mode : List.of("platform", "virtual")) {
+                Result r = bench.run(mode, n);
+                System.out.printf("%-9s %10d %12.0f %10.1f %10.1f %10.1f%n", mode, n, r.throughput, r.p50Ms, r.p99Ms, r.maxMs);
+            }
+        }
+    }
+
+    Result run(String mode, int checkouts) throws Exception {
+        ExecutorService executor = "virtual".equals(mode)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(platformThreads);
+        long[] latencies = new long[checkouts];
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>(checkouts);
+            for (int i = 0; i < checkouts; i++) {
+                final int slot = i;
+                final long submitted = System.nanoTime();
+                final long seed = i;
+                futures.add(executor.submit(() -> {
+                    checkout(new SplittableRandom(seed));
+                    latencies[slot] = System.nanoTime() - submitted;
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) f.get();
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        return new Result(checkouts / (elapsed / 1e9), percentileMs(latencies, 0.50), percentileMs(latencies, 0.99),
+                latencies[latencies.length - 1] / 1e6);
+    }
+
+    private void checkout(SplittableRandom random) throws InterruptedException {
+        dbStep();
+        // Gateway latency: +/-40% around the configured mean.
+        long gateway = (long) (gatewayMicros * (0.6 + 0.8 * random.nextDouble()));
+        TimeUnit.MICROSECONDS.sleep(gateway);
+        dbStep();
+    }
+
+    private void dbStep() throws InterruptedException {
+        connectionPool.acquire();
+        try {
+            TimeUnit.MICROSECONDS.sleep(dbMicros);
+        } finally {
+            connectionPool.release();
+        }
+    }
+
+    private static double percentileMs(long[] sorted, double p) {
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, idx)] / 1e6;
+    }
+
+    record Result(double throughput, double p50Ms, double p99Ms, double maxMs) {
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.payment.bench;
+
+import com.example.payment.dto.PaymentRequests;
+import com.example.payment.validation.CardExpiryValidator;
+import com.example.payment.validation.CardNumberValidator;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Card validators on their own and the full Bean Validation pass Spring runs for
+ * {@code @Valid PurchaseRequest}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+
+    private final CardNumberValidator numberValidator = new CardNumberValidator();
+    private final CardExpiryValidator expiryValidator = new CardExpiryValidator();
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+
+    private PaymentRequests.Card visa;
+    private PaymentRequests.Card amex;
+    private PaymentRequests.PurchaseRequest purchase;
+
+    @Setup
+    public void setup() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        visa = BenchFixtures.card("4111 1111 1111 1111", "123");
+        amex = BenchFixtures.card("378282246310005", "1234");
+        purchase = BenchFixtures.purchaseRequest();
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public boolean cardNumberValid() {
+        return numberValidator.isValid("4111 1111 1111 1111", null);
+    }
+
+    @Benchmark
+    public boolean cardNumberInvalid() {
+        return numberValidator.isValid("4111 1111 1111 1112", null);
+    }
+
+    @Benchmark
+    public boolean cardExpiryVisa() {
+        return expiryValidator.isValid(visa, null);
+    }
+
+    @Benchmark
+    public boolean cardExpiryAmex() {
+        return expiryValidator.isValid(amex, null);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PaymentRequests.PurchaseRequest>> purchaseRequest() {
+        return validator.validate(purchase);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.payment.bench.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram (microseconds, from the request's intended start) and outcome counts of one
+ * endpoint. Safe for concurrent recording.
+ */
+final class EndpointStats {
+
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    final String name;
+    private final Histogram latency = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+    private final LongAdder ok = new LongAdder();
+    // answered, but the payment did not go through (decline, provider error): not a load failure
+    private final LongAdder declined = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    void ok(long latencyNanos, boolean declined) {
+        record(latencyNanos);
+        (declined ? this.declined : ok).increment();
+    }
+
+    void error(long latencyNanos, String reason) {
+        record(latencyNanos);
+        errors.computeIfAbsent(reason, r -> new LongAdder()).increment();
+    }
+
+    private void record(long latencyNanos) {
+        latency.recordValue(Math.min(HIGHEST_MICROS, Math.max(0, TimeUnit.NANOSECONDS.toMicros(latencyNanos))));
+    }
+
+    long count() {
+        return latency.getTotalCount();
+    }
+
+    long errorCount() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    Map<String, Long> errors() {
+        Map<String, Long> out = new TreeMap<>();
+        errors.forEach((reason, n) -> out.put(reason, n.sum()));
+        return out;
+    }
+
+    void reset() {
+        latency.reset();
+        ok.reset();
+        declined.reset();
+        errors.clear();
+    }
+
+    static void printHeader(PrintStream out) {
+        out.printf("%-30s %9s %9s %8s %8s %9s %9s %9s %9s %9s%n",
+                "endpoint", "requests", "req/s", "declined", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+    }
+
+    void print(PrintStream out, double seconds) {
+        out.printf("%-30s %9d %9.1f %8d %8d %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                name, count(), count() / seconds, declined.sum(), errorCount(),
+                millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(90)),
+                millis(latency.getValueAtPercentile(99)), millis(latency.getValueAtPercentile(99.9)),
+                millis(latency.getMaxValue()));
+    }
+
+    /** HdrHistogram percentile distribution in milliseconds, for plotting (e.g. hdrhistogram.github.io/HdrHistogram/plotFiles.html). */
+    void printDistribution(PrintStream out) {
+        latency.outputPercentileDistribution(out, 1000.0);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
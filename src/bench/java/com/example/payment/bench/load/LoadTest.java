@@ -0,0 +1,296 @@
+package com.example.payment.bench.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for a running instance of the payment API. Payment flows start at a
+ * fixed arrival rate whether or not earlier ones have finished, and each flow's first request is
+ * timed from when it was scheduled to start, not from when it was sent, so a stalled server shows
+ * up in the percentiles instead of silently slowing the generator down (coordinated omission).
+ * Follow-up requests of a flow (capture, void, refund) are timed from when their predecessor
+ * returned.
+ *
+ * <p>The default mix, by share of flows started: {@code token} (issue a JWT through
+ * {@code /auth/token} and use it from then on), {@code purchase}, {@code authorize-capture},
+ * {@code authorize-void} and {@code purchase-refund} (a partial refund of half the amount). The
+ * target should run with the gateway simulated ({@code --authnet.simulator.enabled=true}).
+ *
+ * <pre>
+ * mvn -P benchmark test-compile exec:exec -Dbench.main=com.example.payment.bench.load.LoadTest \
+ *     -Dbench.args="--url http://localhost:8080 --rate 200 --warmup 10 --duration 60"
+ * </pre>
+ *
+ * Options: {@code --url}, {@code --rate} (flows per second), {@code --warmup} and {@code --duration}
+ * (seconds), {@code --arrivals uniform|poisson}, {@code --mix token=2,purchase=50,...},
+ * {@code --max-in-flight} (flows; beyond it new flows are counted as {@code client saturated}),
+ * {@code --timeout} (seconds per request), {@code --developer-key}, {@code --hgrm-dir} (write each
+ * endpoint's percentile distribution there).
+ */
+public class LoadTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String[][] CARDS = {
+            {"4111111111111111", "123"}, {"5555555555554444", "123"}, {"6011111111111117", "123"}, {"378282246310005", "1234"}};
+
+    private final URI base;
+    private final String developerKey;
+    private final Duration timeout;
+    private final HttpClient http;
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+    private volatile String token;
+
+    LoadTest(URI base, String developerKey, Duration timeout) {
+        this.base = base;
+        this.developerKey = developerKey;
+        this.timeout = timeout;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        for (String endpoint : List.of("/auth/token", "/payments/purchase", "/payments/authorize", "/payments/capture",
+                "/payments/cancel", "/payments/refund")) {
+            stats.put(endpoint, new EndpointStats("POST " + endpoint));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = "http://localhost:8080";
+        double rate = 100;
+        int warmupSeconds = 10;
+        int durationSeconds = 60;
+        boolean poisson = false;
+        Map<String, Integer> mix = parseMix("token=2,purchase=50,authorize-capture=25,authorize-void=8,purchase-refund=15");
+        int maxInFlight = 10_000;
+        int timeoutSeconds = 30;
+        String developerKey = "dev-local-key";
+        Path hgrmDir = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--url" -> url = args[i + 1];
+                case "--rate" -> rate = Double.parseDouble(args[i + 1]);
+                case "--warmup" -> warmupSeconds = Integer.parseInt(args[i + 1]);
+                case "--duration" -> durationSeconds = Integer.parseInt(args[i + 1]);
+                case "--arrivals" -> poisson = "poisson".equals(args[i + 1]);
+                case "--mix" -> mix = parseMix(args[i + 1]);
+                case "--max-in-flight" -> maxInFlight = Integer.parseInt(args[i + 1]);
+                case "--timeout" -> timeoutSeconds = Integer.parseInt(args[i + 1]);
+                case "--developer-key" -> developerKey = args[i + 1];
+                case "--hgrm-dir" -> hgrmDir = Path.of(args[i + 1]);
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        LoadTest test = new LoadTest(URI.create(url), developerKey, Duration.ofSeconds(timeoutSeconds));
+        if (!test.issueToken(System.nanoTime())) {
+            System.err.println("could not get a token from " + url + "/auth/token: " + test.stats.get("/auth/token").errors());
+            System.exit(1);
+        }
+        System.out.printf("target %s, %.0f flows/s (%s arrivals), mix %s%n", url, rate, poisson ? "poisson" : "uniform", mix);
+        if (warmupSeconds > 0) {
+            System.out.printf("warming up for %d s%n", warmupSeconds);
+            test.run(mix, rate, poisson, warmupSeconds, maxInFlight);
+            test.stats.values().forEach(EndpointStats::reset);
+        }
+        System.out.printf("measuring for %d s%n", durationSeconds);
+        long start = System.nanoTime();
+        int saturated = test.run(mix, rate, poisson, durationSeconds, maxInFlight);
+        test.report(System.out, (System.nanoTime() - start) / 1e9, saturated);
+        if (hgrmDir != null) test.writeDistributions(hgrmDir);
+        System.exit(0);
+    }
+
+    /** Starts flows at {@code rate} for {@code seconds} and waits for them; returns how many were not started for lack of room. */
+    int run(Map<String, Integer> mix, double rate, boolean poisson, int seconds, int maxInFlight) throws InterruptedException {
+        List<String> flows = new ArrayList<>(mix.keySet());
+        int[] cumulative = new int[flows.size()];
+        int total = 0;
+        for (int i = 0; i < flows.size(); i++) cumulative[i] = total += mix.get(flows.get(i));
+
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        int saturated = 0;
+        double meanGapNanos = 1e9 / rate;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            double next = start;
+            while (next < end) {
+                long intendedStart = (long) next;
+                long wait = intendedStart - System.nanoTime();
+                if (wait > 0) LockSupport.parkNanos(wait);
+                int pick = random.nextInt(total);
+                int f = 0;
+                while (cumulative[f] <= pick) f++;
+                String flow = flows.get(f);
+                if (inFlight.tryAcquire()) {
+                    executor.execute(() -> {
+                        try {
+                            runFlow(flow, intendedStart);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } else {
+                    saturated++;
+                }
+                next += poisson ? -Math.log(1 - random.nextDouble()) * meanGapNanos : meanGapNanos;
+            }
+        }
+        return saturated;
+    }
+
+    private void runFlow(String flow, long intendedStart) {
+        switch (flow) {
+            case "token" -> issueToken(intendedStart);
+            case "purchase" -> pay("/payments/purchase", intendedStart);
+            case "authorize-capture" -> {
+                Payment auth = pay("/payments/authorize", intendedStart);
+                if (auth != null) post("/payments/capture", Map.of("transactionId", auth.transactionId), System.nanoTime());
+            }
+            case "authorize-void" -> {
+                Payment auth = pay("/payments/authorize", intendedStart);
+                if (auth != null) post("/payments/cancel", Map.of("transactionId", auth.transactionId), System.nanoTime());
+            }
+            case "purchase-refund" -> {
+                Payment sale = pay("/payments/purchase", intendedStart);
+                if (sale != null) {
+                    BigDecimal half = sale.amount.divide(BigDecimal.valueOf(2), 2, RoundingMode.DOWN);
+                    post("/payments/refund", Map.of("transactionId", sale.transactionId, "amount", half, "last4", sale.last4),
+                            System.nanoTime());
+                }
+            }
+            default -> throw new IllegalArgumentException("unknown flow " + flow);
+        }
+    }
+
+    private record Payment(String transactionId, BigDecimal amount, String last4) {
+    }
+
+    /** A purchase or authorization with a random card and amount; null unless it went through. */
+    private Payment pay(String path, long intendedStart) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String[] card = CARDS[random.nextInt(CARDS.length)];
+        BigDecimal amount = BigDecimal.valueOf(random.nextLong(500, 50_000), 2);
+        Map<String, Object> body = Map.of("amount", amount, "currency", "USD",
+                "card", Map.of("number", card[0], "expMonth", 12, "expYear", 2030, "cvv", card[1]));
+        JsonNode response = post(path, body, intendedStart);
+        if (response == null || !"success".equals(response.path("status").asText())) return null;
+        return new Payment(response.path("transaction_id").asText(), amount, card[0].substring(card[0].length() - 4));
+    }
+
+    private boolean issueToken(long intendedStart) {
+        JsonNode response = post("/auth/token", Map.of("developer_key", developerKey), intendedStart);
+        if (response == null || !response.hasNonNull("access_token")) return false;
+        token = response.get("access_token").asText();
+        return true;
+    }
+
+    /** Sends one request and records it; returns the parsed body of a 2xx response, else null. */
+    private JsonNode post(String path, Map<String, Object> body, long intendedStart) {
+        EndpointStats endpoint = stats.get(path);
+        HttpResponse<byte[]> response;
+        try {
+            HttpRequest.Builder request = HttpRequest.newBuilder(base.resolve(path))
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(JSON.writeValueAsBytes(body)));
+            if (!path.startsWith("/auth/")) {
+                request.header("Authorization", "Bearer " + token).header("Idempotency-Key", UUID.randomUUID().toString());
+            }
+            response = http.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (HttpTimeoutException ex) {
+            endpoint.error(System.nanoTime() - intendedStart, "timeout");
+            return null;
+        } catch (ConnectException ex) {
+            endpoint.error(System.nanoTime() - intendedStart, "connect failed");
+            return null;
+        } catch (IOException ex) {
+            endpoint.error(System.nanoTime() - intendedStart, ex.getClass().getSimpleName());
+            return null;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        long latency = System.nanoTime() - intendedStart;
+        if (response.statusCode() / 100 != 2) {
+            endpoint.error(latency, "HTTP " + response.statusCode());
+            return null;
+        }
+        JsonNode json;
+        try {
+            json = JSON.readTree(response.body());
+        } catch (IOException ex) {
+            endpoint.error(latency, "unparseable body");
+            return null;
+        }
+        endpoint.ok(latency, json.has("status") && !"success".equals(json.get("status").asText()));
+        return json;
+    }
+
+    void report(PrintStream out, double seconds, int saturated) {
+        out.println();
+        EndpointStats.printHeader(out);
+        long requests = 0;
+        for (EndpointStats s : stats.values()) {
+            if (s.count() == 0) continue;
+            s.print(out, seconds);
+            requests += s.count();
+        }
+        out.printf("%ntotal %d requests in %.1f s (%.1f req/s)", requests, seconds, requests / seconds);
+        if (saturated > 0) out.printf(", %d flows not started: client saturated (raise --max-in-flight)", saturated);
+        out.println();
+        for (EndpointStats s : stats.values()) {
+            s.errors().forEach((reason, n) -> out.printf("  %-30s %-24s %d%n", s.name, reason, n));
+        }
+    }
+
+    void writeDistributions(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        for (Map.Entry<String, EndpointStats> e : stats.entrySet()) {
+            if (e.getValue().count() == 0) continue;
+            Path file = dir.resolve(e.getKey().substring(1).replace('/', '_') + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+                e.getValue().printDistribution(out);
+            }
+        }
+        System.out.println("percentile distributions written to " + dir);
+    }
+
+    private static Map<String, Integer> parseMix(String spec) {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String part : spec.split(",")) {
+            String[] kv = part.split("=");
+            int weight = Integer.parseInt(kv[1].trim());
+            if (weight > 0) mix.put(kv[0].trim(), weight);
+        }
+        if (mix.isEmpty()) throw new IllegalArgumentException("empty mix " + spec);
+        return mix;
+    }
+}
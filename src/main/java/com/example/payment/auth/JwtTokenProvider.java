@@ -1,6 +1,9 @@
 package com.example.payment.auth;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,6 +17,7 @@ public class JwtTokenProvider {
 
     private final Key key;
     private final long expirationMillis;
+    private final JwtParser parser;
 
     public JwtTokenProvider(@Value("${jwt.secret}") String secret, @Value("${jwt.expiration-seconds}") long expSeconds) {
         if (secret == null || secret.isBlank() || "change-me-please".equals(secret)) {
@@ -23,6 +27,7 @@ public class JwtTokenProvider {
             this.key = Keys.hmacShaKeyFor(secret.getBytes());
         }
         this.expirationMillis = expSeconds * 1000L;
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build();
     }
 
     public String createToken(String subject) {
@@ -37,7 +42,19 @@ public class JwtTokenProvider {
     }
 
     public void validateToken(String token) {
-        Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
+        verify(token);
+    }
+
+    /**
+     * Checks the signature and expiry like {@link #validateToken} and returns the token's subject
+     * and expiry time in epoch millis, or {@code Long.MAX_VALUE} if it has none. A token without a
+     * subject is refused: requests are authenticated as it.
+     */
+    public VerifiedToken verify(String token) {
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        if (claims.getSubject() == null || claims.getSubject().isBlank()) throw new MalformedJwtException("token has no subject");
+        Date expiration = claims.getExpiration();
+        return new VerifiedToken(claims.getSubject(), expiration == null ? Long.MAX_VALUE : expiration.getTime());
     }
 }
 
@@ -0,0 +1,5 @@
+package com.example.payment.auth;
+
+/** What a bearer token proved once its signature checked out: who it was issued to and until when. */
+public record VerifiedToken(String subject, long expiresAtMillis) {
+}
@@ -0,0 +1,119 @@
+package com.example.payment.auth;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Tokens whose signature has already been checked, keyed by their SHA-256 digest (the raw bearer
+ * token is never held) and mapped to the token's subject and expiry. An entry stops counting as verified the
+ * moment the token expires and is evicted by the next lookup or sweep. When the cache is full,
+ * new tokens are verified as usual but not added.
+ */
+@Component
+public class VerifiedTokenCache {
+
+    private final ConcurrentHashMap<Key, VerifiedToken> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public VerifiedTokenCache(@Value("${jwt.cache.max-entries:10000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Returns what {@code token} proved when it was verified before, if it has not expired;
+     * otherwise passes it to {@code verifier}, which throws if the token is not valid, and records
+     * the result. The token is hashed once for both the lookup and the insert.
+     */
+    public VerifiedToken verify(String token, Function<String, VerifiedToken> verifier) {
+        if (maxEntries <= 0) return verifier.apply(token);
+        Key key = Key.of(token);
+        VerifiedToken verified = lookup(key);
+        if (verified != null) return verified;
+        verified = verifier.apply(token);
+        put(key, verified);
+        return verified;
+    }
+
+    /** True if {@code token} was verified before and has not expired. */
+    public boolean isVerified(String token) {
+        return maxEntries > 0 && lookup(Key.of(token)) != null;
+    }
+
+    /** Records a token that passed signature verification. */
+    public void put(String token, VerifiedToken verified) {
+        if (maxEntries > 0) put(Key.of(token), verified);
+    }
+
+    private VerifiedToken lookup(Key key) {
+        VerifiedToken verified = entries.get(key);
+        if (verified != null) {
+            if (System.currentTimeMillis() < verified.expiresAtMillis()) {
+                hits.increment();
+                return verified;
+            }
+            entries.remove(key, verified);
+        }
+        misses.increment();
+        return null;
+    }
+
+    private void put(Key key, VerifiedToken verified) {
+        if (System.currentTimeMillis() >= verified.expiresAtMillis()) return;
+        if (entries.size() >= maxEntries) {
+            evictExpired();
+            if (entries.size() >= maxEntries) return;
+        }
+        entries.put(key, verified);
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.cache.sweep-interval-ms:60000}")
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(verified -> verified.expiresAtMillis() <= now);
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("size", entries.size());
+        out.put("max", maxEntries);
+        out.put("hits", hits.sum());
+        out.put("misses", misses.sum());
+        return out;
+    }
+
+    private record Key(long a, long b, long c, long d) {
+        static Key of(String token) {
+            try {
+                ByteBuffer digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+                return new Key(digest.getLong(), digest.getLong(), digest.getLong(), digest.getLong());
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalStateException("SHA-256 not available", ex);
+            }
+        }
+    }
+}
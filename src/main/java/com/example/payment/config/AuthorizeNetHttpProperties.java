@@ -0,0 +1,55 @@
+package com.example.payment.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "authnet.http")
+public class AuthorizeNetHttpProperties {
+    private int connectTimeoutMs = 2000;
+    private int readTimeoutMs = 15000;
+    // how long a caller waits for a free pooled connection before failing
+    private int poolWaitMs = 1000;
+    private int maxConnections = 50;
+    private int keepAliveSeconds = 30;
+
+    public int getConnectTimeoutMs() {
+        return connectTimeoutMs;
+    }
+
+    public void setConnectTimeoutMs(int connectTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+    }
+
+    public int getReadTimeoutMs() {
+        return readTimeoutMs;
+    }
+
+    public void setReadTimeoutMs(int readTimeoutMs) {
+        this.readTimeoutMs = readTimeoutMs;
+    }
+
+    public int getPoolWaitMs() {
+        return poolWaitMs;
+    }
+
+    public void setPoolWaitMs(int poolWaitMs) {
+        this.poolWaitMs = poolWaitMs;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public void setKeepAliveSeconds(int keepAliveSeconds) {
+        this.keepAliveSeconds = keepAliveSeconds;
+    }
+}
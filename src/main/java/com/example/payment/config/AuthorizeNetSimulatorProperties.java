@@ -0,0 +1,86 @@
+package com.example.payment.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "authnet.simulator")
+public class AuthorizeNetSimulatorProperties {
+    private boolean enabled = false;
+    // response times are log-normal with this median and 99th percentile
+    private long latencyMedianMs = 250;
+    private long latencyP99Ms = 1200;
+    private double declinePercent = 5;
+    // API-level processing errors (response code 3)
+    private double errorPercent = 0.5;
+    // requests answered with HTTP 503, i.e. transport failures
+    private double unavailablePercent = 0;
+    // requests that never get an answer and run into the read timeout
+    private double timeoutPercent = 0.1;
+    // whether the provider still carried out a request whose response timed out
+    private boolean appliedOnTimeout = true;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getLatencyMedianMs() {
+        return latencyMedianMs;
+    }
+
+    public void setLatencyMedianMs(long latencyMedianMs) {
+        this.latencyMedianMs = latencyMedianMs;
+    }
+
+    public long getLatencyP99Ms() {
+        return latencyP99Ms;
+    }
+
+    public void setLatencyP99Ms(long latencyP99Ms) {
+        this.latencyP99Ms = latencyP99Ms;
+    }
+
+    public double getDeclinePercent() {
+        return declinePercent;
+    }
+
+    public void setDeclinePercent(double declinePercent) {
+        this.declinePercent = declinePercent;
+    }
+
+    public double getErrorPercent() {
+        return errorPercent;
+    }
+
+    public void setErrorPercent(double errorPercent) {
+        this.errorPercent = errorPercent;
+    }
+
+    public double getUnavailablePercent() {
+        return unavailablePercent;
+    }
+
+    public void setUnavailablePercent(double unavailablePercent) {
+        this.unavailablePercent = unavailablePercent;
+    }
+
+    public double getTimeoutPercent() {
+        return timeoutPercent;
+    }
+
+    public void setTimeoutPercent(double timeoutPercent) {
+        this.timeoutPercent = timeoutPercent;
+    }
+
+    public boolean isAppliedOnTimeout() {
+        return appliedOnTimeout;
+    }
+
+    public void setAppliedOnTimeout(boolean appliedOnTimeout) {
+        this.appliedOnTimeout = appliedOnTimeout;
+    }
+}
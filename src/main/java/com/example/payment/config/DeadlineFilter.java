@@ -0,0 +1,61 @@
+package com.example.payment.config;
+
+import com.example.payment.deadline.Deadline;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Starts the clock on {@code /payments} requests. The budget is what the client sends in
+ * {@value #HEADER} (milliseconds it is prepared to wait, so client and server clocks need not
+ * agree), capped at the configured budget for the path.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class DeadlineFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Request-Timeout-Ms";
+
+    private final DeadlineProperties properties;
+
+    public DeadlineFilter(DeadlineProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith("/payments/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        long budget = budget(request.getHeader(HEADER), properties.budgetFor(request.getRequestURI()));
+        if (budget < 0) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        try (Deadline.Scope ignored = Deadline.after(budget).attach()) {
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    /** The client's budget capped at the configured one, or -1 for none; a malformed header is ignored. */
+    static long budget(String header, long configured) {
+        long requested = -1;
+        if (header != null) {
+            try {
+                requested = Long.parseLong(header.trim());
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        if (requested < 0) return configured > 0 ? configured : -1;
+        return configured > 0 ? Math.min(requested, configured) : requested;
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.payment.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "payment.deadline")
+public class DeadlineProperties {
+    // budget of a /payments request that does not send its own; 0 means unbounded
+    private long defaultMs = 20000;
+    // per-path budgets, e.g. payment.deadline.endpoints[/payments/batch]=120000
+    private Map<String, Long> endpoints = new HashMap<>();
+
+    public long getDefaultMs() {
+        return defaultMs;
+    }
+
+    public void setDefaultMs(long defaultMs) {
+        this.defaultMs = defaultMs;
+    }
+
+    public Map<String, Long> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(Map<String, Long> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    /** Configured budget for {@code path}, or 0 for none. */
+    public long budgetFor(String path) {
+        return endpoints.getOrDefault(path, defaultMs);
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.payment.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "authnet.guard")
+public class GatewayGuardProperties {
+    // circuit breaker: opens when this share of the last window-size calls (at least minimum-calls) failed
+    private int failureRatePercent = 50;
+    private int windowSize = 20;
+    private int minimumCalls = 10;
+    private int openMs = 30000;
+    // trial calls let through after open-ms; all must succeed to close again
+    private int halfOpenCalls = 3;
+
+    // AIMD concurrency limit: grows by one per limit's worth of fast calls, shrinks by backoff-ratio on a slow or failed one
+    private int initialLimit = 20;
+    private int minLimit = 2;
+    private int maxLimit = 50;
+    private int latencyThresholdMs = 2000;
+    private double backoffRatio = 0.9;
+
+    public int getFailureRatePercent() {
+        return failureRatePercent;
+    }
+
+    public void setFailureRatePercent(int failureRatePercent) {
+        this.failureRatePercent = failureRatePercent;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+    }
+
+    public int getOpenMs() {
+        return openMs;
+    }
+
+    public void setOpenMs(int openMs) {
+        this.openMs = openMs;
+    }
+
+    public int getHalfOpenCalls() {
+        return halfOpenCalls;
+    }
+
+    public void setHalfOpenCalls(int halfOpenCalls) {
+        this.halfOpenCalls = halfOpenCalls;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public int getLatencyThresholdMs() {
+        return latencyThresholdMs;
+    }
+
+    public void setLatencyThresholdMs(int latencyThresholdMs) {
+        this.latencyThresholdMs = latencyThresholdMs;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.payment.config;
 
 import com.example.payment.auth.JwtTokenProvider;
+import com.example.payment.auth.VerifiedToken;
+import com.example.payment.auth.VerifiedTokenCache;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -20,10 +22,12 @@ import java.util.List;
 @Component
 public class JwtFilter extends OncePerRequestFilter {
     private final JwtTokenProvider jwtTokenProvider;
+    private final VerifiedTokenCache verifiedTokens;
     private static final Logger log = LoggerFactory.getLogger(JwtFilter.class);
 
-    public JwtFilter(JwtTokenProvider jwtTokenProvider) {
+    public JwtFilter(JwtTokenProvider jwtTokenProvider, VerifiedTokenCache verifiedTokens) {
         this.jwtTokenProvider = jwtTokenProvider;
+        this.verifiedTokens = verifiedTokens;
     }
 
     @Override
@@ -33,10 +37,12 @@ public class JwtFilter extends OncePerRequestFilter {
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             String token = authHeader.substring(7);
             try {
-                log.debug("JwtFilter: validating token (first 16 chars): {}", token.length() > 16 ? token.substring(0,16) + "..." : token);
-                jwtTokenProvider.validateToken(token);
+                VerifiedToken verified = verifiedTokens.verify(token, t -> {
+                    log.debug("JwtFilter: validating token (first 16 chars): {}", t.length() > 16 ? t.substring(0,16) + "..." : t);
+                    return jwtTokenProvider.verify(t);
+                });
                 UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(
-                        "developer",
+                        verified.subject(),
                         null,
                         List.of(new SimpleGrantedAuthority("ROLE_USER"))
                 );
@@ -0,0 +1,109 @@
+package com.example.payment.config;
+
+import com.example.payment.auth.VerifiedTokenCache;
+import com.example.payment.gateway.AuthorizeNetTransport;
+import com.example.payment.gateway.CircuitBreaker;
+import com.example.payment.gateway.GatewayGuard;
+import com.example.payment.journal.PaymentJournal;
+import com.example.payment.service.BatchGatewayExecutor;
+import com.example.payment.service.GroupCommitWriter;
+import com.example.payment.service.PurchasePipeline;
+import com.example.payment.service.TransactionLookupCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Gauges for our own pools and caches. JDBC pool (hikaricp.*), repository (spring.data.repository.invocations)
+ * and HTTP server metrics come from Spring Boot's auto-configuration.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder authorizeNetPoolMetrics(AuthorizeNetTransport transport) {
+        return registry -> {
+            for (String state : new String[]{"leased", "available", "pending"}) {
+                Gauge.builder("authnet.http.connections", transport, t -> ((Number) t.poolStats().get(state)).doubleValue())
+                        .description("Authorize.Net HTTP connections by pool state")
+                        .tag("state", state)
+                        .register(registry);
+            }
+            Gauge.builder("authnet.http.connections.max", transport, t -> ((Number) t.poolStats().get("max")).doubleValue())
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder gatewayGuardMetrics(GatewayGuard guard) {
+        return registry -> {
+            for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+                Gauge.builder("authnet.circuit.state", guard, g -> g.circuitState() == state ? 1 : 0)
+                        .description("1 for the current Authorize.Net circuit breaker state")
+                        .tag("state", state.name().toLowerCase())
+                        .register(registry);
+            }
+            Gauge.builder("authnet.limiter.limit", guard, GatewayGuard::limit).register(registry);
+            Gauge.builder("authnet.limiter.inflight", guard, GatewayGuard::inFlight).register(registry);
+            FunctionCounter.builder("authnet.guard.rejections", guard, GatewayGuard::rejectedOpen).tag("reason", "circuit_open").register(registry);
+            FunctionCounter.builder("authnet.guard.rejections", guard, GatewayGuard::rejectedLimit).tag("reason", "limit").register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder tokenCacheMetrics(VerifiedTokenCache cache) {
+        return registry -> {
+            Gauge.builder("jwt.token.cache.size", cache, VerifiedTokenCache::size).register(registry);
+            FunctionCounter.builder("jwt.token.cache.requests", cache, VerifiedTokenCache::hits).tag("result", "hit").register(registry);
+            FunctionCounter.builder("jwt.token.cache.requests", cache, VerifiedTokenCache::misses).tag("result", "miss").register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder purchasePipelineMetrics(PurchasePipeline pipeline) {
+        return registry -> {
+            Gauge.builder("payment.async.queued", pipeline, PurchasePipeline::queued).register(registry);
+            Gauge.builder("payment.async.active", pipeline, PurchasePipeline::active).register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder batchGatewayMetrics(BatchGatewayExecutor executor) {
+        return registry -> {
+            Gauge.builder("payment.batch.queued", executor, BatchGatewayExecutor::queued).register(registry);
+            Gauge.builder("payment.batch.active", executor, BatchGatewayExecutor::active).register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder transactionLookupCacheMetrics(TransactionLookupCache cache) {
+        return registry -> {
+            Gauge.builder("payment.lookup.cache.size", cache, TransactionLookupCache::size).register(registry);
+            FunctionCounter.builder("payment.lookup.cache.requests", cache, TransactionLookupCache::hits).tag("result", "hit").register(registry);
+            FunctionCounter.builder("payment.lookup.cache.requests", cache, TransactionLookupCache::misses).tag("result", "miss").register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder groupCommitMetrics(GroupCommitWriter writer) {
+        return registry -> {
+            FunctionCounter.builder("payment.group.commits", writer, GroupCommitWriter::commits)
+                    .description("Database commits of payment state writes").register(registry);
+            FunctionCounter.builder("payment.group.writes", writer, GroupCommitWriter::writes)
+                    .description("Payment state writes committed").register(registry);
+            Gauge.builder("payment.group.queued", writer, GroupCommitWriter::queued).register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder paymentJournalMetrics(PaymentJournal journal) {
+        return registry -> {
+            FunctionCounter.builder("payment.journal.appends", journal, PaymentJournal::appends)
+                    .description("Events appended to the payment journal").register(registry);
+            FunctionCounter.builder("payment.journal.forces", journal, PaymentJournal::forces)
+                    .description("Times the payment journal was forced to disk").register(registry);
+        };
+    }
+}
@@ -1,15 +1,19 @@
 package com.example.payment.config;
 
 import com.example.payment.auth.JwtTokenProvider;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.boot.autoconfigure.security.servlet.PathRequest;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import static org.springframework.security.web.util.matcher.AntPathRequestMatcher.antMatcher;
+
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
@@ -26,10 +30,16 @@ public class SecurityConfig {
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http
-            .csrf(csrf -> csrf.ignoringRequestMatchers(PathRequest.toH2Console()))
+            // CSRF rides on credentials the browser adds by itself. A bearer token has to be set by the
+            // caller and /auth/token authenticates with its body, so neither can be forged cross-site;
+            // cookie and form requests are still checked
+            .csrf(csrf -> csrf.ignoringRequestMatchers(PathRequest.toH2Console(), antMatcher(HttpMethod.POST, "/auth/token"),
+                    SecurityConfig::hasBearerToken))
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers(PathRequest.toH2Console()).permitAll()
                 .requestMatchers("/auth/**", "/payments/health", "/payments/purchase").permitAll()
+                // probed without a JWT; it reports only up or down. Metrics need a token like the API
+                .requestMatchers("/actuator/health").permitAll()
                 .anyRequest().authenticated()
             )
             .addFilterBefore(jwtFilter, org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter.class)
@@ -37,4 +47,9 @@ public class SecurityConfig {
 
         return http.build();
     }
+
+    private static boolean hasBearerToken(HttpServletRequest request) {
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        return authorization != null && authorization.startsWith("Bearer ");
+    }
 }
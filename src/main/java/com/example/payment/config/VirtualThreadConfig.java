@@ -0,0 +1,41 @@
+package com.example.payment.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in virtual-thread mode ({@code payment.threads.virtual=true}). Tomcat hands every request to a
+ * new virtual thread instead of its bounded worker pool, so the JPA and Authorize.Net calls made by
+ * the payment handlers block a virtual thread rather than one of ~200 platform threads.
+ *
+ * <p>Code on the request path must not block while holding a monitor ({@code synchronized}), since
+ * that pins the carrier thread; use {@link java.util.concurrent.locks.ReentrantLock} instead. Run with
+ * {@code -Djdk.tracePinnedThreads=short} to check.
+ */
+@Configuration
+@ConditionalOnProperty(name = "payment.threads.virtual", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(newVirtualThreadExecutor("http-vt-"));
+    }
+
+    // Also used by Spring MVC for async request processing.
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(newVirtualThreadExecutor("task-vt-"));
+    }
+
+    static ExecutorService newVirtualThreadExecutor(String namePrefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix, 0).factory());
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.payment.controller;
+
+import com.example.payment.export.ExportFormat;
+import com.example.payment.export.ExportRange;
+import com.example.payment.export.TransactionExporter;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/payments/exports")
+public class ExportController {
+
+    private final TransactionExporter exporter;
+
+    public ExportController(TransactionExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    @GetMapping("/transactions")
+    @Operation(summary = "Stream the transactions created on UTC days from..to (inclusive) as NDJSON or CSV",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<?> transactions(@RequestParam("from") String from,
+                                          @RequestParam(name = "to", required = false) String to,
+                                          @RequestParam(name = "format", defaultValue = "ndjson") String format,
+                                          @RequestParam(name = "gzip", defaultValue = "false") boolean gzip,
+                                          HttpServletResponse response) throws IOException {
+        ExportRange range;
+        ExportFormat exportFormat;
+        try {
+            range = ExportRange.parse(from, to);
+            exportFormat = ExportFormat.of(format);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("detail", ex.getMessage()));
+        }
+        // written straight to the response as rows are read; a failure part way through aborts the
+        // connection, so a truncated export cannot pass for a complete one
+        response.setContentType(gzip ? "application/gzip" : exportFormat.contentType() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + range.fileName(exportFormat, gzip) + "\"");
+        exporter.export(range, exportFormat, gzip, response.getOutputStream());
+        return null;
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.payment.controller;
+
+import com.example.payment.gateway.AuthorizeNetTransport;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/payments/gateway")
+public class GatewayController {
+
+    private final AuthorizeNetTransport transport;
+
+    public GatewayController(AuthorizeNetTransport transport) {
+        this.transport = transport;
+    }
+
+    @GetMapping("/pool")
+    @Operation(summary = "Authorize.Net HTTP connection pool statistics", security = @SecurityRequirement(name = "bearerAuth"))
+    public Map<String, Object> pool() {
+        return transport.poolStats();
+    }
+}
@@ -1,5 +1,11 @@
 package com.example.payment.controller;
 
+import com.example.payment.deadline.DeadlineExceededException;
+import com.example.payment.gateway.GatewayOutcomeUnknownException;
+import com.example.payment.gateway.GatewayUnavailableException;
+import com.example.payment.service.AmountExceedsBalanceException;
+import com.example.payment.service.OrderStateConflictException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -23,5 +29,32 @@ public class GlobalExceptionHandler {
         });
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("errors", errors));
     }
-}
 
+    @ExceptionHandler(GatewayUnavailableException.class)
+    public ResponseEntity<?> handleGatewayUnavailable(GatewayUnavailableException ex) {
+        long retryAfterSeconds = Math.max(1, (ex.getRetryAfterMillis() + 999) / 1000);
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(Map.of("detail", ex.getMessage(), "retryable", true));
+    }
+
+    @ExceptionHandler(GatewayOutcomeUnknownException.class)
+    public ResponseEntity<?> handleGatewayOutcomeUnknown(GatewayOutcomeUnknownException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(Map.of("detail", ex.getMessage(), "retryable", false));
+    }
+
+    @ExceptionHandler(DeadlineExceededException.class)
+    public ResponseEntity<?> handleDeadlineExceeded(DeadlineExceededException ex) {
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).body(Map.of("detail", ex.getMessage(), "retryable", true));
+    }
+
+    @ExceptionHandler(OrderStateConflictException.class)
+    public ResponseEntity<?> handleOrderStateConflict(OrderStateConflictException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("detail", ex.getMessage(), "retryable", ex.isRetryable()));
+    }
+
+    @ExceptionHandler(AmountExceedsBalanceException.class)
+    public ResponseEntity<?> handleAmountExceedsBalance(AmountExceedsBalanceException ex) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(Map.of("detail", ex.getMessage(), "available", ex.getAvailable()));
+    }
+}
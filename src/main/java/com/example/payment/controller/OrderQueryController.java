@@ -0,0 +1,77 @@
+package com.example.payment.controller;
+
+import com.example.payment.dto.PageCursor;
+import com.example.payment.model.CodedEnum;
+import com.example.payment.model.OrderStatus;
+import com.example.payment.model.TransactionStatus;
+import com.example.payment.model.TransactionType;
+import com.example.payment.service.OrderQueryService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/payments/orders")
+public class OrderQueryController {
+
+    private final OrderQueryService orderQueryService;
+
+    public OrderQueryController(OrderQueryService orderQueryService) {
+        this.orderQueryService = orderQueryService;
+    }
+
+    @GetMapping
+    @Operation(summary = "List orders, newest first (pass next_cursor back as cursor for the next page)",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<?> orders(@RequestParam(name = "status", required = false) String status,
+                                    @RequestParam(name = "currency", required = false) String currency,
+                                    @RequestParam(name = "cursor", required = false) String cursor,
+                                    @RequestParam(name = "limit", defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(orderQueryService.orders(parse(OrderStatus.class, status), currency, parse(cursor), limit));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("detail", ex.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}/transactions")
+    @Operation(summary = "List an order's transactions, newest first", security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<?> transactions(@PathVariable("id") Long id,
+                                          @RequestParam(name = "status", required = false) String status,
+                                          @RequestParam(name = "type", required = false) String type,
+                                          @RequestParam(name = "cursor", required = false) String cursor,
+                                          @RequestParam(name = "limit", defaultValue = "50") int limit) {
+        try {
+            var page = orderQueryService.transactions(id, parse(TransactionStatus.class, status),
+                    parse(TransactionType.class, type), parse(cursor), limit);
+            if (page.isEmpty()) return ResponseEntity.status(404).body(Map.of("detail", "order not found"));
+            return ResponseEntity.ok(page.get());
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(Map.of("detail", ex.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}/raw-responses")
+    @Operation(summary = "Provider responses recorded for an order's transactions, oldest first",
+            security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<?> rawResponses(@PathVariable("id") Long id) {
+        var responses = orderQueryService.rawResponses(id);
+        if (responses.isEmpty()) return ResponseEntity.status(404).body(Map.of("detail", "order not found"));
+        return ResponseEntity.ok(Map.of("items", responses.get()));
+    }
+
+    private static <E extends Enum<E> & CodedEnum> E parse(Class<E> type, String value) {
+        return value == null ? null : CodedEnum.fromValue(type, value);
+    }
+
+    private static PageCursor parse(String cursor) {
+        return cursor == null ? null : PageCursor.decode(cursor);
+    }
+}
@@ -2,6 +2,8 @@ package com.example.payment.controller;
 
 import com.example.payment.dto.PaymentRequests;
 import com.example.payment.model.Transaction;
+import com.example.payment.model.TransactionStatus;
+import com.example.payment.service.IdempotencyService;
 import com.example.payment.service.PaymentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -10,12 +12,18 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
@@ -26,10 +34,12 @@ import org.slf4j.LoggerFactory;
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final IdempotencyService idempotencyService;
     private static final Logger log = LoggerFactory.getLogger(PaymentController.class);
 
-    public PaymentController(PaymentService paymentService) {
+    public PaymentController(PaymentService paymentService, IdempotencyService idempotencyService) {
         this.paymentService = paymentService;
+        this.idempotencyService = idempotencyService;
     }
 
     @GetMapping("/health")
@@ -46,13 +56,14 @@ public class PaymentController {
                             examples = @ExampleObject(value = "{\"order_id\":100,\"transaction_id\":\"prov-123\",\"status\":\"success\"}"))),
             @ApiResponse(responseCode = "400", description = "Validation error")
     })
-    public ResponseEntity<?> purchase(@Valid @RequestBody PaymentRequests.PurchaseRequest req) {
+    public ResponseEntity<?> purchase(@Valid @RequestBody PaymentRequests.PurchaseRequest req,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("purchase", idempotencyKey, req, () -> doPurchase(req));
+    }
+
+    private ResponseEntity<?> doPurchase(PaymentRequests.PurchaseRequest req) {
         log.debug("Purchase endpoint called, authentication={}", SecurityContextHolder.getContext().getAuthentication());
-        Map<String, String> card = new HashMap<>();
-        card.put("number", req.getCard().getNumber());
-        card.put("expMonth", String.valueOf(req.getCard().getExpMonth()));
-        card.put("expYear", String.valueOf(req.getCard().getExpYear()));
-        card.put("cvv", req.getCard().getCvv());
+        Map<String, String> card = cardDetails(req.getCard());
         Transaction tx = paymentService.purchase(req.getAmount(), req.getCurrency(), card, req.getOrderId());
         // Defensive: Map.of throws NPE if any value is null. Handle provider/persistence errors gracefully.
         if (tx == null) {
@@ -71,46 +82,160 @@ public class PaymentController {
         return ResponseEntity.status(201).body(resp);
     }
 
+    @PostMapping("/purchase/async")
+    @Operation(summary = "Purchase asynchronously; poll the order status for the outcome", security = @SecurityRequirement(name = "bearerAuth"))
+    @ApiResponses({
+            @ApiResponse(responseCode = "202", description = "Purchase accepted, order is processing",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = Map.class),
+                            examples = @ExampleObject(value = "{\"order_id\":100,\"status\":\"processing\"}"))),
+            @ApiResponse(responseCode = "400", description = "Validation error"),
+            @ApiResponse(responseCode = "503", description = "Async pipeline full, retry later")
+    })
+    public ResponseEntity<?> purchaseAsync(@Valid @RequestBody PaymentRequests.PurchaseRequest req,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("purchase_async", idempotencyKey, req, () -> doPurchaseAsync(req));
+    }
+
+    private ResponseEntity<?> doPurchaseAsync(PaymentRequests.PurchaseRequest req) {
+        var opt = paymentService.purchaseAsync(req.getAmount(), req.getCurrency(), cardDetails(req.getCard()), req.getOrderId());
+        if (opt.isEmpty()) {
+            return ResponseEntity.status(503).header(HttpHeaders.RETRY_AFTER, "1").body(Map.of("detail", "payment queue full, retry later"));
+        }
+        Long orderId = opt.get().getOrder().getId();
+        return ResponseEntity.accepted()
+                .location(URI.create("/payments/orders/" + orderId + "/status"))
+                .body(Map.of("order_id", orderId, "status", "processing"));
+    }
+
+    @PostMapping("/batch")
+    @Operation(summary = "Purchases and authorizations in bulk, with a status per item", security = @SecurityRequirement(name = "bearerAuth"))
+    @ApiResponses({
+            @ApiResponse(responseCode = "201", description = "Batch processed; check each item's status",
+                    content = @Content(mediaType = "application/json", schema = @Schema(implementation = Map.class),
+                            examples = @ExampleObject(value = "{\"items\":[{\"order_id\":100,\"type\":\"purchase\",\"transaction_id\":\"prov-123\",\"status\":\"success\"}],\"succeeded\":1,\"failed\":0}"))),
+            @ApiResponse(responseCode = "400", description = "Validation error in any item; nothing was charged")
+    })
+    public ResponseEntity<?> batch(@Valid @RequestBody PaymentRequests.BatchRequest req,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        // external order ids are unique, so a repeat inside the batch would fail every item at insert time
+        Set<String> orderIds = new HashSet<>();
+        for (int i = 0; i < req.getItems().size(); i++) {
+            String orderId = req.getItems().get(i).getOrderId();
+            if (orderId != null && !orderIds.add(orderId)) {
+                return ResponseEntity.badRequest().body(Map.of("errors", Map.of("items[" + i + "].orderId", "duplicate order id in batch")));
+            }
+        }
+        return idempotencyService.execute("batch", idempotencyKey, req, () -> doBatch(req));
+    }
+
+    private ResponseEntity<?> doBatch(PaymentRequests.BatchRequest req) {
+        List<PaymentService.BatchItem> items = new ArrayList<>(req.getItems().size());
+        for (PaymentRequests.BatchItem item : req.getItems()) {
+            items.add(new PaymentService.BatchItem(item.getType(), item.getAmount(), item.getCurrency(), cardDetails(item.getCard()), item.getOrderId()));
+        }
+        List<Map<String, Object>> results = new ArrayList<>(items.size());
+        int succeeded = 0;
+        for (Transaction tx : paymentService.batch(items)) {
+            Map<String, Object> result = new HashMap<>();
+            result.put("order_id", tx.getOrder().getId());
+            result.put("type", tx.getType());
+            result.put("transaction_id", tx.getProviderTxId());
+            result.put("status", tx.getStatus());
+            results.add(result);
+            if (tx.getStatus() == TransactionStatus.SUCCESS) succeeded++;
+        }
+        return ResponseEntity.status(201).body(Map.of("items", results, "succeeded", succeeded, "failed", results.size() - succeeded));
+    }
+
+    @GetMapping("/orders/{id}/status")
+    @Operation(summary = "Order status (for polling async purchases)", security = @SecurityRequirement(name = "bearerAuth"))
+    public ResponseEntity<?> orderStatus(@PathVariable("id") Long id) {
+        var opt = paymentService.latestTransaction(id);
+        if (opt.isEmpty()) return ResponseEntity.status(404).body(Map.of("detail", "order not found"));
+        Transaction tx = opt.get();
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("order_id", tx.getOrder().getId());
+        resp.put("status", tx.getOrder().getStatus());
+        resp.put("transaction_id", tx.getProviderTxId());
+        resp.put("transaction_status", tx.getStatus());
+        resp.put("authorized_amount", tx.getOrder().getAuthorizedAmount());
+        resp.put("captured_amount", tx.getOrder().getCapturedAmount());
+        resp.put("refunded_amount", tx.getOrder().getRefundedAmount());
+        resp.put("updated_at", tx.getOrder().getUpdatedAt());
+        return ResponseEntity.ok(resp);
+    }
+
     @PostMapping("/authorize")
     @Operation(summary = "Authorize only (two-step)", security = @SecurityRequirement(name = "bearerAuth"))
-    public ResponseEntity<?> authorize(@Valid @RequestBody PaymentRequests.AuthorizeRequest req) {
-        Map<String, String> card = new HashMap<>();
-        card.put("number", req.getCard().getNumber());
-        card.put("expMonth", String.valueOf(req.getCard().getExpMonth()));
-        card.put("expYear", String.valueOf(req.getCard().getExpYear()));
-        card.put("cvv", req.getCard().getCvv());
+    public ResponseEntity<?> authorize(@Valid @RequestBody PaymentRequests.AuthorizeRequest req,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("authorize", idempotencyKey, req, () -> doAuthorize(req));
+    }
+
+    private ResponseEntity<?> doAuthorize(PaymentRequests.AuthorizeRequest req) {
+        Map<String, String> card = cardDetails(req.getCard());
         Transaction tx = paymentService.authorizeOnly(req.getAmount(), req.getCurrency(), card, req.getOrderId());
-        return ResponseEntity.status(201).body(Map.of(
-                "order_id", tx.getOrder().getId(),
-                "transaction_id", tx.getProviderTxId(),
-                "status", tx.getStatus()
-        ));
+        Map<String, Object> resp = transactionBody("transaction_id", tx);
+        resp.put("order_id", tx.getOrder().getId());
+        return ResponseEntity.status(201).body(resp);
     }
 
     @PostMapping("/capture")
     @Operation(summary = "Capture an authorized transaction", security = @SecurityRequirement(name = "bearerAuth"))
-    public ResponseEntity<?> capture(@Valid @RequestBody PaymentRequests.CaptureRequest req) {
+    public ResponseEntity<?> capture(@Valid @RequestBody PaymentRequests.CaptureRequest req,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("capture", idempotencyKey, req, () -> doCapture(req));
+    }
+
+    private ResponseEntity<?> doCapture(PaymentRequests.CaptureRequest req) {
         var opt = paymentService.capture(req.getTransactionId(), req.getAmount());
         if (opt.isEmpty()) return ResponseEntity.status(404).body(Map.of("detail", "transaction not found"));
         Transaction tx = opt.get();
-        return ResponseEntity.ok(Map.of("transaction_id", tx.getProviderTxId(), "status", tx.getStatus()));
+        return ResponseEntity.ok(transactionBody("transaction_id", tx));
     }
 
     @PostMapping("/cancel")
     @Operation(summary = "Cancel (void) an authorized transaction", security = @SecurityRequirement(name = "bearerAuth"))
-    public ResponseEntity<?> cancel(@Valid @RequestBody PaymentRequests.CancelRequest req) {
+    public ResponseEntity<?> cancel(@Valid @RequestBody PaymentRequests.CancelRequest req,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("cancel", idempotencyKey, req, () -> doCancel(req));
+    }
+
+    private ResponseEntity<?> doCancel(PaymentRequests.CancelRequest req) {
         var opt = paymentService.voidTransaction(req.getTransactionId());
         if (opt.isEmpty()) return ResponseEntity.status(404).body(Map.of("detail", "transaction not found"));
         Transaction tx = opt.get();
-        return ResponseEntity.ok(Map.of("transaction_id", tx.getProviderTxId(), "status", tx.getStatus()));
+        return ResponseEntity.ok(transactionBody("transaction_id", tx));
     }
 
     @PostMapping("/refund")
     @Operation(summary = "Refund (full or partial)", security = @SecurityRequirement(name = "bearerAuth"))
-    public ResponseEntity<?> refund(@Valid @RequestBody PaymentRequests.RefundRequest req) {
+    public ResponseEntity<?> refund(@Valid @RequestBody PaymentRequests.RefundRequest req,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("refund", idempotencyKey, req, () -> doRefund(req));
+    }
+
+    private ResponseEntity<?> doRefund(PaymentRequests.RefundRequest req) {
         var opt = paymentService.refund(req.getTransactionId(), req.getAmount(), req.getLast4());
         if (opt.isEmpty()) return ResponseEntity.status(404).body(Map.of("detail", "original transaction not found"));
         Transaction tx = opt.get();
-        return ResponseEntity.ok(Map.of("refund_transaction_id", tx.getProviderTxId(), "status", tx.getStatus()));
+        return ResponseEntity.ok(transactionBody("refund_transaction_id", tx));
+    }
+
+    // a failed gateway call may leave no provider transaction id, which Map.of rejects
+    private static Map<String, Object> transactionBody(String idKey, Transaction tx) {
+        Map<String, Object> body = new HashMap<>();
+        body.put(idKey, tx.getProviderTxId());
+        body.put("status", tx.getStatus());
+        return body;
+    }
+
+    private static Map<String, String> cardDetails(PaymentRequests.Card c) {
+        Map<String, String> card = new HashMap<>();
+        card.put("number", c.getNumber());
+        card.put("expMonth", String.valueOf(c.getExpMonth()));
+        card.put("expYear", String.valueOf(c.getExpYear()));
+        card.put("cvv", c.getCvv());
+        return card;
     }
 }
@@ -0,0 +1,83 @@
+package com.example.payment.deadline;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Time budget of the request being served on the current thread. {@code DeadlineFilter} attaches
+ * one per API request; code about to start slow work (a query, a gateway call) caps its own
+ * timeout at what is left and gives up once nothing is, since the client has stopped waiting.
+ * Threads without a deadline (schedulers, the async pipeline) run unbounded as before.
+ */
+public final class Deadline {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final long expiresAtNanos;
+
+    private Deadline(long expiresAtNanos) {
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    public static Deadline after(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    /** The deadline attached to this thread, or null. */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /** Milliseconds left on this thread's deadline, at most {@code limit}; {@code limit} when there is none. */
+    public static long remainingMillis(long limit) {
+        Deadline deadline = CURRENT.get();
+        return deadline == null ? limit : Math.min(limit, deadline.remainingMillis());
+    }
+
+    /** Throws {@link DeadlineExceededException} if this thread's deadline has passed. */
+    public static void check(String stage) {
+        Deadline deadline = CURRENT.get();
+        if (deadline != null && deadline.isExpired()) throw new DeadlineExceededException(stage);
+    }
+
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAtNanos - System.nanoTime()));
+    }
+
+    /** What is left, rounded up to whole seconds (transaction timeouts have second granularity). */
+    public int remainingSeconds() {
+        return (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remainingMillis() + 999));
+    }
+
+    public boolean isExpired() {
+        return expiresAtNanos - System.nanoTime() <= 0;
+    }
+
+    /** Attaches this deadline to the current thread until the returned scope is closed. */
+    public Scope attach() {
+        Deadline previous = CURRENT.get();
+        CURRENT.set(this);
+        return new Scope(previous);
+    }
+
+    /** Runs {@code work} with this deadline attached, e.g. on a pool thread working for the request. */
+    public <T> T call(Supplier<T> work) {
+        try (Scope ignored = attach()) {
+            return work.get();
+        }
+    }
+
+    public static final class Scope implements AutoCloseable {
+        private final Deadline previous;
+
+        private Scope(Deadline previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) CURRENT.remove();
+            else CURRENT.set(previous);
+        }
+    }
+}
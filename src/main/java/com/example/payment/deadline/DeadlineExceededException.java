@@ -0,0 +1,9 @@
+package com.example.payment.deadline;
+
+/** The request's time budget ran out before {@code stage} could start; that work was not done. */
+public class DeadlineExceededException extends RuntimeException {
+
+    public DeadlineExceededException(String stage) {
+        super("request deadline exceeded before " + stage);
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.payment.dto;
+
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.util.List;
+
+/** A page of a listing, newest first; {@code nextCursor} is null on the last page. */
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+@Schema(description = "Page of results with the cursor of the next page")
+public record KeysetPage<T>(List<T> items, String nextCursor) {
+}
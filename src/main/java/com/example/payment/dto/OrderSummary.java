@@ -0,0 +1,17 @@
+package com.example.payment.dto;
+
+import com.example.payment.model.OrderStatus;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/** One row of {@code GET /payments/orders}, selected column by column rather than as an entity. */
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+@Schema(description = "Order summary")
+public record OrderSummary(Long orderId, String externalId, OrderStatus status, String currency, BigDecimal amount,
+                           BigDecimal authorizedAmount, BigDecimal capturedAmount, BigDecimal refundedAmount,
+                           Instant createdAt, Instant updatedAt) {
+}
@@ -0,0 +1,31 @@
+package com.example.payment.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position after the last row of a page, as {@code (created_at, id)} of that row. The next page
+ * seeks past it through the index instead of skipping rows with an offset, so page 10,000 costs the
+ * same as page one. Opaque to clients: base64url of {@code <instant>|<id>}.
+ */
+public record PageCursor(Instant createdAt, long id) {
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((createdAt + "|" + id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /** Parses {@link #encode()}'s output; {@link IllegalArgumentException} for anything else. */
+    public static PageCursor decode(String cursor) {
+        try {
+            String s = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int bar = s.indexOf('|');
+            if (bar < 0) throw new IllegalArgumentException("malformed cursor");
+            return new PageCursor(Instant.parse(s.substring(0, bar)), Long.parseLong(s.substring(bar + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException ex) {
+            throw new IllegalArgumentException("malformed cursor", ex);
+        }
+    }
+}
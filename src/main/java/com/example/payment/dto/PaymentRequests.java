@@ -5,6 +5,7 @@ import com.example.payment.validation.ValidCardNumber;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.*;
 import java.math.BigDecimal;
+import java.util.List;
 
 import io.swagger.v3.oas.annotations.media.Schema;
 
@@ -75,10 +76,34 @@ public class PaymentRequests {
 
     public static class AuthorizeRequest extends PurchaseRequest {}
 
+    @Schema(description = "One payment of a batch")
+    public static class BatchItem extends PurchaseRequest {
+        @NotNull
+        @Pattern(regexp = "purchase|authorize")
+        @Schema(description = "purchase (authorize + capture) or authorize", example = "purchase")
+        private String type = "purchase";
+
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+    }
+
+    @Schema(description = "Batch of purchases and authorizations, validated as a whole before any is sent")
+    public static class BatchRequest {
+        @NotEmpty
+        @Size(max = 100)
+        @Valid
+        private List<BatchItem> items;
+
+        public List<BatchItem> getItems() { return items; }
+        public void setItems(List<BatchItem> items) { this.items = items; }
+    }
+
     public static class CaptureRequest {
         @NotBlank
         private String transactionId;
 
+        // optional: the whole authorization when absent
+        @DecimalMin("0.01")
         private BigDecimal amount;
 
         public String getTransactionId() { return transactionId; }
@@ -91,6 +116,8 @@ public class PaymentRequests {
         @NotBlank
         private String transactionId;
 
+        // optional: the whole amount still refundable when absent
+        @DecimalMin("0.01")
         private BigDecimal amount;
 
         @Size(min = 4, max = 4)
@@ -0,0 +1,15 @@
+package com.example.payment.dto;
+
+import com.example.payment.model.TransactionType;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.time.Instant;
+
+/** One provider response of {@code GET /payments/orders/{id}/raw-responses}; {@code tier} is database or archive. */
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+@Schema(description = "Provider response as received")
+public record RawResponseView(String transactionId, TransactionType type, String operation, Instant createdAt, String tier,
+                              String response) {
+}
@@ -0,0 +1,21 @@
+package com.example.payment.dto;
+
+import com.example.payment.model.TransactionStatus;
+import com.example.payment.model.TransactionType;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import com.fasterxml.jackson.databind.annotation.JsonNaming;
+import io.swagger.v3.oas.annotations.media.Schema;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * One row of {@code GET /payments/orders/{id}/transactions}. {@code id} is the internal row id,
+ * needed for the page cursor only; clients see the provider's {@code transaction_id}.
+ */
+@JsonNaming(PropertyNamingStrategies.SnakeCaseStrategy.class)
+@Schema(description = "Transaction summary")
+public record TransactionSummary(@JsonIgnore Long id, String transactionId, TransactionType type, TransactionStatus status,
+                                 BigDecimal amount, Instant createdAt) {
+}
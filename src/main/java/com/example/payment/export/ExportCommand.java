@@ -0,0 +1,76 @@
+package com.example.payment.export;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Command-line export: started with {@code --export.transactions.output=<file>}, the application
+ * writes the export straight from the configured datasource and exits (status 1 on failure).
+ * Point it at the service's database ({@code spring.datasource.*}); {@code --server.port=0} keeps it
+ * off the service's port while it runs, e.g.
+ * <pre>
+ * java -jar payment-processing-system.jar --server.port=0 \
+ *     --export.transactions.output=transactions.csv.gz --export.transactions.from=2026-10-01
+ * </pre>
+ * The format follows the file name ({@code .csv} or {@code .ndjson}, gzipped when it ends in
+ * {@code .gz}) unless {@code export.transactions.format} is set; {@code to} defaults to {@code from}.
+ */
+@Component
+@ConditionalOnProperty(prefix = "export.transactions", name = "output")
+public class ExportCommand implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ExportCommand.class);
+
+    private final TransactionExporter exporter;
+    private final ConfigurableApplicationContext context;
+    private final String output;
+    private final String from;
+    private final String to;
+    private final String format;
+
+    public ExportCommand(TransactionExporter exporter, ConfigurableApplicationContext context,
+                         @Value("${export.transactions.output}") String output,
+                         @Value("${export.transactions.from}") String from,
+                         @Value("${export.transactions.to:}") String to,
+                         @Value("${export.transactions.format:}") String format) {
+        this.exporter = exporter;
+        this.context = context;
+        this.output = output;
+        this.from = from;
+        this.to = to;
+        this.format = format;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int status = 0;
+        try {
+            boolean gzip = output.endsWith(".gz");
+            String name = gzip ? output.substring(0, output.length() - 3) : output;
+            ExportFormat exportFormat = ExportFormat.of(!format.isBlank() ? format
+                    : name.substring(name.lastIndexOf('.') + 1));
+            Path file = Path.of(output);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                long rows = exporter.export(ExportRange.parse(from, to), exportFormat, gzip, out);
+                log.info("Wrote {} transactions to {}", rows, file.toAbsolutePath());
+            }
+        } catch (Exception ex) {
+            log.error("Transaction export failed", ex);
+            status = 1;
+        }
+        int code = status;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+}
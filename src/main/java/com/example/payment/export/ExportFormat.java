@@ -0,0 +1,30 @@
+package com.example.payment.export;
+
+import java.util.Locale;
+
+/** Output formats of the transaction export. */
+public enum ExportFormat {
+    NDJSON("application/x-ndjson"),
+    CSV("text/csv");
+
+    private final String contentType;
+
+    ExportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public String extension() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    public static ExportFormat of(String value) {
+        for (ExportFormat f : values()) {
+            if (f.extension().equalsIgnoreCase(value)) return f;
+        }
+        throw new IllegalArgumentException("unknown format '" + value + "' (ndjson or csv)");
+    }
+}
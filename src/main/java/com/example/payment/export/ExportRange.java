@@ -0,0 +1,37 @@
+package com.example.payment.export;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+/** Whole UTC days {@code from} through {@code to}, as the half-open instant range {@code [start, end)}. */
+public record ExportRange(LocalDate from, LocalDate to) {
+
+    public ExportRange {
+        if (to.isBefore(from)) throw new IllegalArgumentException("'to' (" + to + ") is before 'from' (" + from + ")");
+    }
+
+    /** Parses ISO dates ({@code 2026-10-01}); {@code to} defaults to {@code from}. */
+    public static ExportRange parse(String from, String to) {
+        try {
+            LocalDate start = LocalDate.parse(from);
+            return new ExportRange(start, to == null || to.isBlank() ? start : LocalDate.parse(to));
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("dates must be ISO dates such as 2026-10-01", ex);
+        }
+    }
+
+    public Instant start() {
+        return from.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    public Instant end() {
+        return to.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    /** e.g. {@code transactions-2026-10-01_2026-10-07.csv}. */
+    public String fileName(ExportFormat format, boolean gzip) {
+        return "transactions-" + from + (to.equals(from) ? "" : "_" + to) + "." + format.extension() + (gzip ? ".gz" : "");
+    }
+}
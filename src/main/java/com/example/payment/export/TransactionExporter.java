@@ -0,0 +1,208 @@
+package com.example.payment.export;
+
+import com.example.payment.model.TransactionStatus;
+import com.example.payment.model.TransactionType;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the transactions created in a date range to a stream as NDJSON or CSV, oldest first.
+ * Rows are read through a forward-only cursor {@code fetch-size} at a time and written as they
+ * arrive, so memory does not grow with the export: nothing is mapped to entities or collected.
+ */
+@Service
+public class TransactionExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionExporter.class);
+
+    // idx_transactions_created serves the range and the order
+    static final String SQL = "select t.id, t.provider_tx_id, t.order_id, o.external_id, t.type, t.status, t.amount, o.currency, "
+            + "t.created_at from transactions t join orders o on o.id = t.order_id "
+            + "where t.created_at >= ? and t.created_at < ? order by t.created_at, t.id";
+
+    static final String[] COLUMNS = {"id", "transaction_id", "order_id", "external_order_id", "type", "status", "amount",
+            "currency", "created_at"};
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final TransactionType.Converter TYPES = new TransactionType.Converter();
+    private static final TransactionStatus.Converter STATUSES = new TransactionStatus.Converter();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JsonFactory jsonFactory;
+
+    public TransactionExporter(DataSource dataSource, PlatformTransactionManager transactionManager, ObjectMapper objectMapper,
+                               @Value("${payment.export.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // some drivers (PostgreSQL) only stream results inside a transaction; otherwise they read them all first
+        this.transactionTemplate.setReadOnly(true);
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    /** Writes the export to {@code out} (left open) and returns the number of rows. */
+    public long export(ExportRange range, ExportFormat format, boolean gzip, OutputStream out) throws IOException {
+        long started = System.nanoTime();
+        GZIPOutputStream zip = gzip ? new GZIPOutputStream(nonClosing(out), BUFFER_BYTES) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(zip != null ? zip : nonClosing(out), StandardCharsets.UTF_8),
+                BUFFER_BYTES);
+        RowWriter rows = format == ExportFormat.CSV ? new CsvRows(writer) : new NdjsonRows(jsonFactory.createGenerator(writer));
+        long count;
+        try {
+            count = transactionTemplate.execute(status -> {
+                long[] n = {0};
+                jdbcTemplate.query(SQL, ps -> {
+                    ps.setObject(1, OffsetDateTime.ofInstant(range.start(), ZoneOffset.UTC));
+                    ps.setObject(2, OffsetDateTime.ofInstant(range.end(), ZoneOffset.UTC));
+                }, rs -> {
+                    try {
+                        rows.write(rs);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                    n[0]++;
+                });
+                return n[0];
+            });
+        } catch (UncheckedIOException ex) {
+            // typically the client went away
+            throw ex.getCause();
+        }
+        rows.finish();
+        writer.close();
+        log.info("Exported {} transactions for {} to {} as {}{} in {} ms", count, range.from(), range.to(), format.extension(),
+                gzip ? ".gz" : "", (System.nanoTime() - started) / 1_000_000);
+        return count;
+    }
+
+    // closing the writer chain finishes the gzip trailer but must not close the caller's stream
+    private static OutputStream nonClosing(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        default void finish() throws IOException {
+        }
+    }
+
+    private static final class NdjsonRows implements RowWriter {
+        private final JsonGenerator json;
+
+        NdjsonRows(JsonGenerator json) {
+            this.json = json;
+            json.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            json.writeStartObject();
+            json.writeNumberField(COLUMNS[0], rs.getLong(1));
+            json.writeStringField(COLUMNS[1], rs.getString(2));
+            json.writeNumberField(COLUMNS[2], rs.getLong(3));
+            json.writeStringField(COLUMNS[3], rs.getString(4));
+            json.writeStringField(COLUMNS[4], TYPES.convertToEntityAttribute(rs.getShort(5)).value());
+            json.writeStringField(COLUMNS[5], STATUSES.convertToEntityAttribute(rs.getShort(6)).value());
+            json.writeNumberField(COLUMNS[6], rs.getBigDecimal(7));
+            json.writeStringField(COLUMNS[7], rs.getString(8));
+            json.writeStringField(COLUMNS[8], createdAt(rs));
+            json.writeEndObject();
+            json.writeRaw('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            json.flush();
+        }
+    }
+
+    private static final class CsvRows implements RowWriter {
+        private final Writer out;
+
+        CsvRows(Writer out) throws IOException {
+            this.out = out;
+            out.write(String.join(",", COLUMNS));
+            out.write("\r\n");
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            out.write(Long.toString(rs.getLong(1)));
+            out.write(',');
+            field(rs.getString(2));
+            out.write(',');
+            out.write(Long.toString(rs.getLong(3)));
+            out.write(',');
+            field(rs.getString(4));
+            out.write(',');
+            out.write(TYPES.convertToEntityAttribute(rs.getShort(5)).value());
+            out.write(',');
+            out.write(STATUSES.convertToEntityAttribute(rs.getShort(6)).value());
+            out.write(',');
+            BigDecimal amount = rs.getBigDecimal(7);
+            out.write(amount.toPlainString());
+            out.write(',');
+            field(rs.getString(8));
+            out.write(',');
+            out.write(createdAt(rs));
+            out.write("\r\n");
+        }
+
+        // RFC 4180: quoted when it holds a separator, quote or line break; null is an empty field
+        private void field(String value) throws IOException {
+            if (value == null) return;
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+            }
+            if (!quote) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+
+    private static String createdAt(ResultSet rs) throws SQLException {
+        return rs.getObject(9, OffsetDateTime.class).toInstant().toString();
+    }
+}
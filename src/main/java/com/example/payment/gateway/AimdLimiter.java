@@ -0,0 +1,62 @@
+package com.example.payment.gateway;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive concurrency limit (additive increase, multiplicative decrease) on calls in flight.
+ * A call slower than the latency threshold, or one that failed in transport, multiplies the limit
+ * by the backoff ratio; fast calls made while at least half the limit is in use add
+ * {@code 1/limit}, about one slot per limit's worth of calls. The limit stays within
+ * {@code [min, max]}.
+ */
+public class AimdLimiter {
+
+    private final int min;
+    private final int max;
+    private final long thresholdNanos;
+    private final double backoffRatio;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    public AimdLimiter(int initial, int min, int max, long latencyThresholdMs, double backoffRatio) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.limit = Math.max(this.min, Math.min(this.max, initial));
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs);
+        this.backoffRatio = backoffRatio;
+    }
+
+    /** Takes a slot if one is free under the current limit; must be followed by {@link #onSample} or {@link #onNotCalled}. */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit()) return false;
+            if (inFlight.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    /** Releases the slot and adjusts the limit from the call's latency and outcome. */
+    public void onSample(long latencyNanos, boolean dropped) {
+        int inUse = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (dropped || latencyNanos > thresholdNanos) {
+                limit = Math.max(min, limit * backoffRatio);
+            } else if (inUse * 2 >= limit) {
+                limit = Math.min(max, limit + 1.0 / limit);
+            }
+        }
+    }
+
+    public void onNotCalled() {
+        inFlight.decrementAndGet();
+    }
+
+    public int limit() {
+        return (int) limit;
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.payment.gateway;
+
+import net.authorize.api.contract.v1.CreateTransactionResponse;
+import net.authorize.api.contract.v1.TransactionRequestType;
+import org.apache.hc.client5.http.ConnectTimeoutException;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
+
+import javax.net.ssl.SSLHandshakeException;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+
+/**
+ * The Authorize.Net createTransaction call: {@link AuthorizeNetTransport} over HTTP, or
+ * {@link SimulatedAuthorizeNet} in-process when {@code authnet.simulator.enabled} is set.
+ */
+public interface AuthorizeNetApi {
+
+    /** API-level errors come back as a response with result code {@code Error}; transport problems are thrown. */
+    CreateTransactionResponse createTransaction(TransactionRequestType transactionRequest) throws IOException;
+
+    /**
+     * Whether a transport failure leaves the request's fate open: it was written (or may have been)
+     * and no answer was read, so the provider may have applied it. False for failures that stop a
+     * request before it is written (pool wait, DNS, connect, TLS handshake) and for an HTTP error
+     * status, which the API only answers with for requests it did not process.
+     */
+    static boolean mayHaveBeenApplied(IOException ex) {
+        return !(ex instanceof ConnectionRequestTimeoutException || ex instanceof UnknownHostException || ex instanceof ConnectException
+                || ex instanceof ConnectTimeoutException || ex instanceof SSLHandshakeException || ex instanceof HttpResponseException);
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.payment.gateway;
+
+import com.example.payment.config.AuthorizeNetHttpProperties;
+import com.example.payment.deadline.Deadline;
+import com.example.payment.deadline.DeadlineExceededException;
+import net.authorize.Environment;
+import net.authorize.api.contract.v1.ANetApiResponse;
+import net.authorize.api.contract.v1.CreateTransactionRequest;
+import net.authorize.api.contract.v1.CreateTransactionResponse;
+import net.authorize.api.contract.v1.ErrorResponse;
+import net.authorize.api.contract.v1.MerchantAuthenticationType;
+import net.authorize.api.contract.v1.TransactionRequestType;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactoryBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.ByteArrayEntity;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.pool.PoolStats;
+import org.apache.hc.core5.ssl.SSLContexts;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.JAXBIntrospector;
+import javax.xml.bind.Marshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP transport for the Authorize.Net XML API. Replaces the SDK's {@code ApiOperationBase.execute()},
+ * which reads merchant credentials and environment from process-wide statics and opens a new HTTP
+ * client (and thread) per call.
+ *
+ * <p>The merchant context is built once and attached to each request, and calls share one pooled
+ * keep-alive client, so connections and TLS sessions are reused across payments. Safe for
+ * concurrent use.
+ *
+ * <p>When the request being served has a {@link Deadline}, the wait for a pooled connection is cut
+ * to what is left of it; once the request is on the wire the response is read with the full read
+ * timeout, because the provider may already have acted on it and a read abandoned early would
+ * record as failed a charge that was approved.
+ */
+@Component
+public class AuthorizeNetTransport implements AuthorizeNetApi, DisposableBean {
+
+    private static final String API_PATH = "/xml/v1/request.api";
+
+    private final MerchantAuthenticationType merchantAuthentication;
+    private final URI endpoint;
+    private final JAXBContext jaxbContext;
+    private final XMLInputFactory xmlInputFactory;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final RequestConfig defaultRequestConfig;
+    private final CloseableHttpClient httpClient;
+    private final long readTimeoutMs;
+    private final long poolWaitMs;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public AuthorizeNetTransport(@Value("${authnet.api.login.id:}") String apiLoginId,
+                                 @Value("${authnet.transaction.key:}") String transactionKey,
+                                 @Value("${authnet.environment:sandbox}") String environment,
+                                 @Value("${authnet.endpoint:}") String endpointOverride,
+                                 AuthorizeNetHttpProperties http) {
+        if (apiLoginId == null || apiLoginId.isBlank() || transactionKey == null || transactionKey.isBlank()) {
+            this.merchantAuthentication = null;
+        } else {
+            this.merchantAuthentication = new MerchantAuthenticationType();
+            this.merchantAuthentication.setName(apiLoginId);
+            this.merchantAuthentication.setTransactionKey(transactionKey);
+        }
+        if (endpointOverride != null && !endpointOverride.isBlank()) {
+            this.endpoint = URI.create(endpointOverride);
+        } else {
+            Environment env = "production".equalsIgnoreCase(environment) ? Environment.PRODUCTION : Environment.SANDBOX;
+            this.endpoint = URI.create(env.getXmlBaseUrl() + API_PATH);
+        }
+
+        try {
+            this.jaxbContext = JAXBContext.newInstance(CreateTransactionRequest.class, CreateTransactionResponse.class, ErrorResponse.class);
+        } catch (JAXBException ex) {
+            throw new IllegalStateException("Cannot initialise Authorize.Net JAXB context", ex);
+        }
+        this.xmlInputFactory = XMLInputFactory.newFactory();
+        this.xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(http.getMaxConnections())
+                // single host, so the per-route limit is the pool limit
+                .setMaxConnPerRoute(http.getMaxConnections())
+                .setSSLSocketFactory(SSLConnectionSocketFactoryBuilder.create()
+                        .setSslContext(SSLContexts.createSystemDefault())
+                        .build())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(http.getConnectTimeoutMs()))
+                        .setSocketTimeout(Timeout.ofMilliseconds(http.getReadTimeoutMs()))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        this.readTimeoutMs = http.getReadTimeoutMs();
+        this.poolWaitMs = http.getPoolWaitMs();
+        this.defaultRequestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolWaitMs))
+                .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .setConnectionKeepAlive(TimeValue.ofSeconds(http.getKeepAliveSeconds()))
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(defaultRequestConfig)
+                .evictIdleConnections(TimeValue.ofSeconds(http.getKeepAliveSeconds()))
+                .evictExpiredConnections()
+                .build();
+    }
+
+    public boolean isConfigured() {
+        return merchantAuthentication != null;
+    }
+
+    @Override
+    public CreateTransactionResponse createTransaction(TransactionRequestType transactionRequest) throws IOException {
+        if (!isConfigured()) {
+            throw new IllegalStateException("Authorize.Net credentials are not configured");
+        }
+        CreateTransactionRequest request = new CreateTransactionRequest();
+        request.setMerchantAuthentication(merchantAuthentication);
+        request.setTransactionRequest(transactionRequest);
+
+        long budget = Deadline.remainingMillis(readTimeoutMs);
+        if (budget <= 0) throw new DeadlineExceededException("the Authorize.Net call");
+        requests.increment();
+        try {
+            HttpPost post = new HttpPost(endpoint);
+            if (budget < poolWaitMs) {
+                post.setConfig(RequestConfig.copy(defaultRequestConfig)
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(budget))
+                        .build());
+            }
+            post.setEntity(new ByteArrayEntity(marshal(request), ContentType.APPLICATION_XML));
+            byte[] body = httpClient.execute(post, response -> {
+                if (response.getCode() / 100 != 2) {
+                    throw new HttpResponseException(response.getCode(), "Authorize.Net returned HTTP " + response.getCode());
+                }
+                return EntityUtils.toByteArray(response.getEntity());
+            });
+            return unmarshal(body);
+        } catch (IOException | RuntimeException ex) {
+            failures.increment();
+            throw ex;
+        }
+    }
+
+    private byte[] marshal(CreateTransactionRequest request) {
+        try {
+            Marshaller marshaller = jaxbContext.createMarshaller();
+            marshaller.setProperty(Marshaller.JAXB_ENCODING, StandardCharsets.UTF_8.name());
+            ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+            marshaller.marshal(request, out);
+            return out.toByteArray();
+        } catch (JAXBException ex) {
+            throw new IllegalStateException("Cannot serialise Authorize.Net request", ex);
+        }
+    }
+
+    private CreateTransactionResponse unmarshal(byte[] body) throws IOException {
+        // The API prefixes its XML with a UTF-8 byte order mark.
+        int offset = body.length >= 3 && (body[0] & 0xFF) == 0xEF && (body[1] & 0xFF) == 0xBB && (body[2] & 0xFF) == 0xBF ? 3 : 0;
+        Object parsed;
+        try {
+            parsed = JAXBIntrospector.getValue(jaxbContext.createUnmarshaller().unmarshal(
+                    xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(body, offset, body.length - offset))));
+        } catch (JAXBException | XMLStreamException ex) {
+            throw new IOException("Unparseable Authorize.Net response", ex);
+        }
+        if (parsed instanceof CreateTransactionResponse response) {
+            return response;
+        }
+        if (parsed instanceof ANetApiResponse error) {
+            // ErrorResponse: the request itself was rejected (e.g. bad credentials)
+            CreateTransactionResponse response = new CreateTransactionResponse();
+            response.setRefId(error.getRefId());
+            response.setMessages(error.getMessages());
+            return response;
+        }
+        throw new IOException("Unexpected Authorize.Net response type " + parsed.getClass().getName());
+    }
+
+    /** Connection pool and request counters. */
+    public Map<String, Object> poolStats() {
+        PoolStats stats = connectionManager.getTotalStats();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("leased", stats.getLeased());
+        out.put("available", stats.getAvailable());
+        out.put("pending", stats.getPending());
+        out.put("max", stats.getMax());
+        out.put("requests", requests.sum());
+        out.put("failures", failures.sum());
+        return out;
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        httpClient.close();
+    }
+}
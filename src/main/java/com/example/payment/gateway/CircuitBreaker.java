@@ -0,0 +1,116 @@
+package com.example.payment.gateway;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker. Closed, it records the outcome of the last {@code windowSize} calls
+ * and opens once at least {@code minimumCalls} were seen and the failure share reaches
+ * {@code failureRatePercent}. Open, it refuses calls for {@code openMs}, then lets
+ * {@code halfOpenCalls} trial calls through: if all succeed it closes, the first failure opens it
+ * again.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureRatePercent;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoClock;
+
+    private final boolean[] window;
+    private int next;
+    private int recorded;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    public CircuitBreaker(int failureRatePercent, int windowSize, int minimumCalls, long openMs, int halfOpenCalls, LongSupplier nanoClock) {
+        this.failureRatePercent = failureRatePercent;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.halfOpenCalls = Math.max(1, halfOpenCalls);
+        this.nanoClock = nanoClock;
+        this.window = new boolean[windowSize];
+    }
+
+    /** True if a call may go ahead; it must be followed by {@link #onSuccess}, {@link #onFailure} or {@link #onNotCalled}. */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAt < openNanos) return false;
+            state = State.HALF_OPEN;
+            trialsStarted = 0;
+            trialsSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= halfOpenCalls) return false;
+            trialsStarted++;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++trialsSucceeded >= halfOpenCalls) close();
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            open();
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && failures * 100 >= failureRatePercent * recorded) open();
+        }
+    }
+
+    /** Hands back a slot from {@link #tryAcquire} that was not used. */
+    public synchronized void onNotCalled() {
+        if (state == State.HALF_OPEN && trialsStarted > trialsSucceeded) trialsStarted--;
+    }
+
+    /** True while calls are being refused outright. */
+    public synchronized boolean isOpen() {
+        return state == State.OPEN && nanoClock.getAsLong() - openedAt < openNanos;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    /** How long until an open circuit lets a trial call through. */
+    public synchronized long retryAfterMillis() {
+        if (state != State.OPEN) return 0;
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(openNanos - (nanoClock.getAsLong() - openedAt)));
+    }
+
+    private void record(boolean failed) {
+        if (recorded == window.length) {
+            if (window[next]) failures--;
+        } else {
+            recorded++;
+        }
+        window[next] = failed;
+        if (failed) failures++;
+        next = (next + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+    }
+}
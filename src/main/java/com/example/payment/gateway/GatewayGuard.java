@@ -0,0 +1,109 @@
+package com.example.payment.gateway;
+
+import com.example.payment.config.GatewayGuardProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Circuit breaker and adaptive concurrency limit in front of Authorize.Net. Every gateway call
+ * takes a {@link Permit} first; when the circuit is open or the limit is used up the call is
+ * refused with {@link GatewayUnavailableException} instead of queueing another request thread
+ * behind a slow provider.
+ *
+ * <p>Only transport failures (timeouts, connection and HTTP errors) count against the circuit and
+ * the limit. Declines and API-level errors are answers, so they do not.
+ */
+@Component
+public class GatewayGuard {
+
+    private static final long LIMIT_RETRY_AFTER_MS = 1000;
+
+    private final CircuitBreaker breaker;
+    private final AimdLimiter limiter;
+    private final LongAdder rejectedOpen = new LongAdder();
+    private final LongAdder rejectedLimit = new LongAdder();
+
+    public GatewayGuard(GatewayGuardProperties props) {
+        this.breaker = new CircuitBreaker(props.getFailureRatePercent(), props.getWindowSize(), props.getMinimumCalls(),
+                props.getOpenMs(), props.getHalfOpenCalls(), System::nanoTime);
+        this.limiter = new AimdLimiter(props.getInitialLimit(), props.getMinLimit(), props.getMaxLimit(),
+                props.getLatencyThresholdMs(), props.getBackoffRatio());
+    }
+
+    public Permit acquire() {
+        if (!breaker.tryAcquire()) throw circuitOpen();
+        if (!limiter.tryAcquire()) {
+            breaker.onNotCalled();
+            throw limitReached();
+        }
+        return new Permit(System.nanoTime());
+    }
+
+    /**
+     * Refuses up front, without taking a slot, when a call would be refused right now. Lets a
+     * caller fail before it persists anything; {@link #acquire} still decides for the call itself.
+     */
+    public void checkAvailable() {
+        if (breaker.isOpen()) throw circuitOpen();
+        if (limiter.inFlight() >= limiter.limit()) throw limitReached();
+    }
+
+    private GatewayUnavailableException circuitOpen() {
+        rejectedOpen.increment();
+        return new GatewayUnavailableException("payment provider unavailable (circuit open)", Math.max(1000, breaker.retryAfterMillis()));
+    }
+
+    private GatewayUnavailableException limitReached() {
+        rejectedLimit.increment();
+        return new GatewayUnavailableException("payment provider at capacity (concurrency limit " + limiter.limit() + " reached)",
+                LIMIT_RETRY_AFTER_MS);
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return breaker.state();
+    }
+
+    public int limit() {
+        return limiter.limit();
+    }
+
+    public int inFlight() {
+        return limiter.inFlight();
+    }
+
+    public long rejectedOpen() {
+        return rejectedOpen.sum();
+    }
+
+    public long rejectedLimit() {
+        return rejectedLimit.sum();
+    }
+
+    /** One admitted call; report exactly one outcome. */
+    public final class Permit {
+        private final long startNanos;
+
+        private Permit(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        /** The provider answered, whatever the answer was. */
+        public void completed() {
+            limiter.onSample(System.nanoTime() - startNanos, false);
+            breaker.onSuccess();
+        }
+
+        /** No usable answer: timeout, connection or HTTP error. */
+        public void failed() {
+            limiter.onSample(System.nanoTime() - startNanos, true);
+            breaker.onFailure();
+        }
+
+        /** The call was not made after all. */
+        public void notCalled() {
+            limiter.onNotCalled();
+            breaker.onNotCalled();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.payment.gateway;
+
+/**
+ * The request went out to the provider (or may have) and no answer was read back, e.g. the read
+ * timed out or the connection was reset mid-response. The provider may have applied it, so the
+ * payment is left where it was for the sweeper and reconciliation instead of being recorded as
+ * failed, and a blind retry could charge twice.
+ */
+public class GatewayOutcomeUnknownException extends RuntimeException {
+
+    public GatewayOutcomeUnknownException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.payment.gateway;
+
+/**
+ * Outcome of one gateway operation. {@code rawResponse} is a compact JSON rendering of what the
+ * provider returned, kept for audit and support; callers should not need to parse it.
+ */
+public final class GatewayResult {
+
+    public static final String SUCCESS = "success";
+    public static final String FAILED = "failed";
+
+    private final String status;
+    private final String providerTxId;
+    private final String responseCode;
+    private final String authCode;
+    private final String messageCode;
+    private final String messageText;
+    private final String rawResponse;
+
+    public GatewayResult(String status, String providerTxId, String responseCode, String authCode,
+                         String messageCode, String messageText, String rawResponse) {
+        this.status = status;
+        this.providerTxId = providerTxId;
+        this.responseCode = responseCode;
+        this.authCode = authCode;
+        this.messageCode = messageCode;
+        this.messageText = messageText;
+        this.rawResponse = rawResponse;
+    }
+
+    public static GatewayResult success(String providerTxId, String rawResponse) {
+        return new GatewayResult(SUCCESS, providerTxId, null, null, null, null, rawResponse);
+    }
+
+    public static GatewayResult failed(String messageCode, String messageText, String rawResponse) {
+        return new GatewayResult(FAILED, null, null, null, messageCode, messageText, rawResponse);
+    }
+
+    public boolean isSuccess() {
+        return SUCCESS.equals(status);
+    }
+
+    /** {@code success} or {@code failed}. */
+    public String getStatus() {
+        return status;
+    }
+
+    public String getProviderTxId() {
+        return providerTxId;
+    }
+
+    /** Provider response code: 1 approved, 2 declined, 3 error, 4 held for review. */
+    public String getResponseCode() {
+        return responseCode;
+    }
+
+    public String getAuthCode() {
+        return authCode;
+    }
+
+    public String getMessageCode() {
+        return messageCode;
+    }
+
+    public String getMessageText() {
+        return messageText;
+    }
+
+    public String getRawResponse() {
+        return rawResponse;
+    }
+
+    @Override
+    public String toString() {
+        return "GatewayResult{status=" + status + ", providerTxId=" + providerTxId + ", responseCode=" + responseCode
+                + ", messageCode=" + messageCode + ", messageText=" + messageText + "}";
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.payment.gateway;
+
+/**
+ * The gateway call was refused before anything was sent (circuit open or concurrency limit
+ * reached). Nothing was charged, so the request can be retried after {@link #getRetryAfterMillis()}.
+ */
+public class GatewayUnavailableException extends RuntimeException {
+
+    private final long retryAfterMillis;
+
+    public GatewayUnavailableException(String message, long retryAfterMillis) {
+        super(message);
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.payment.gateway;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Card payment operations as {@code PaymentService} uses them. Declines and provider errors come
+ * back as failed {@link GatewayResult}s; an implementation throws only when it refuses to make the
+ * call at all (e.g. {@link GatewayUnavailableException}).
+ */
+public interface PaymentGateway {
+
+    /** Authorization, captured straight away when {@code capture} is set. */
+    GatewayResult createTransaction(BigDecimal amount, String currency, Map<String, String> card, boolean capture);
+
+    GatewayResult captureTransaction(String authTransactionId, BigDecimal amount);
+
+    GatewayResult voidTransaction(String providerTxId);
+
+    GatewayResult refundTransaction(String providerTxId, BigDecimal amount, String last4);
+
+    /** Throws if a call would be refused right now, so callers can stop before recording anything. */
+    default void checkAvailable() {
+    }
+}
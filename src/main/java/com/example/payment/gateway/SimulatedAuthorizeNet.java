@@ -0,0 +1,251 @@
+package com.example.payment.gateway;
+
+import com.example.payment.config.AuthorizeNetHttpProperties;
+import com.example.payment.config.AuthorizeNetSimulatorProperties;
+import net.authorize.api.contract.v1.CreateTransactionResponse;
+import net.authorize.api.contract.v1.MessageTypeEnum;
+import net.authorize.api.contract.v1.MessagesType;
+import net.authorize.api.contract.v1.TransactionRequestType;
+import net.authorize.api.contract.v1.TransactionResponse;
+import net.authorize.api.contract.v1.TransactionTypeEnum;
+import org.apache.hc.client5.http.HttpResponseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.SocketTimeoutException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the Authorize.Net API, for running and load-testing the whole service
+ * offline. It answers the same request and response types as {@link AuthorizeNetTransport}, so
+ * {@code AuthorizeNetClient} (mapping, circuit breaker, concurrency limit, metrics) runs as in
+ * production; only the network hop is replaced.
+ *
+ * <p>Each call blocks the caller for a log-normal response time and may fail with a processing
+ * error, fail in transport (HTTP 503) or time out, and authorizations may be declined, at the
+ * configured rates. A timeout waits out the full read timeout, as {@link AuthorizeNetTransport}
+ * does whatever is left of the request's deadline, and, unless {@code applied-on-timeout} is off,
+ * the transaction still went through, as it can in production.
+ *
+ * <p>Transactions are kept in memory with their state: a capture needs an open authorization and
+ * at most its amount, a void needs a transaction that is not voided, and refunds need a capture
+ * and may not add up to more than it. There is no settlement cut-off, so a capture can be voided
+ * or refunded straight away.
+ */
+@Component
+@Primary
+@ConditionalOnProperty(prefix = "authnet.simulator", name = "enabled", havingValue = "true")
+public class SimulatedAuthorizeNet implements AuthorizeNetApi {
+
+    private static final Logger log = LoggerFactory.getLogger(SimulatedAuthorizeNet.class);
+    // standard normal quantile of the 99th percentile
+    private static final double Z_99 = 2.326;
+
+    enum State { AUTHORIZED, CAPTURED, VOIDED }
+
+    static final class SimTransaction {
+        final BigDecimal authorized;
+        final String last4;
+        State state;
+        BigDecimal captured = BigDecimal.ZERO;
+        BigDecimal refunded = BigDecimal.ZERO;
+
+        SimTransaction(BigDecimal authorized, String last4, State state) {
+            this.authorized = authorized;
+            this.last4 = last4;
+            this.state = state;
+        }
+    }
+
+    private final AuthorizeNetSimulatorProperties props;
+    private final long readTimeoutMs;
+    private final double sigma;
+    private final ConcurrentHashMap<String, SimTransaction> transactions = new ConcurrentHashMap<>();
+    private final AtomicLong transIds = new AtomicLong(80_000_000_000L);
+
+    public SimulatedAuthorizeNet(AuthorizeNetSimulatorProperties props, AuthorizeNetHttpProperties http) {
+        this.props = props;
+        this.readTimeoutMs = http.getReadTimeoutMs();
+        double spread = (double) Math.max(props.getLatencyP99Ms(), props.getLatencyMedianMs()) / Math.max(1, props.getLatencyMedianMs());
+        this.sigma = spread > 1 ? Math.log(spread) / Z_99 : 0;
+        log.warn("Authorize.Net simulator enabled: no payment leaves this process (median {} ms, p99 {} ms)",
+                props.getLatencyMedianMs(), props.getLatencyP99Ms());
+    }
+
+    @Override
+    public CreateTransactionResponse createTransaction(TransactionRequestType request) throws IOException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (chance(props.getUnavailablePercent())) {
+            sleep(5);
+            throw new HttpResponseException(503, "Authorize.Net returned HTTP 503");
+        }
+        long latency = Math.round(props.getLatencyMedianMs() * Math.exp(sigma * random.nextGaussian()));
+        if (chance(props.getTimeoutPercent()) || latency > readTimeoutMs) {
+            if (props.isAppliedOnTimeout()) process(request);
+            sleep(readTimeoutMs);
+            throw new SocketTimeoutException("Read timed out");
+        }
+        sleep(latency);
+        return process(request);
+    }
+
+    CreateTransactionResponse process(TransactionRequestType request) {
+        if (chance(props.getErrorPercent())) return error(null, "57", "An error occurred in processing. Please try again.");
+        String type = request.getTransactionType();
+        if (TransactionTypeEnum.AUTH_CAPTURE_TRANSACTION.value().equals(type)) return authorize(request, true);
+        if (TransactionTypeEnum.AUTH_ONLY_TRANSACTION.value().equals(type)) return authorize(request, false);
+        if (TransactionTypeEnum.PRIOR_AUTH_CAPTURE_TRANSACTION.value().equals(type)) return capture(request);
+        if (TransactionTypeEnum.VOID_TRANSACTION.value().equals(type)) return voidTransaction(request);
+        if (TransactionTypeEnum.REFUND_TRANSACTION.value().equals(type)) return refund(request);
+        return error(null, "3", "Invalid transaction type " + type);
+    }
+
+    private CreateTransactionResponse authorize(TransactionRequestType request, boolean capture) {
+        BigDecimal amount = request.getAmount();
+        if (amount == null || amount.signum() <= 0) return error(null, "5", "A valid amount is required.");
+        String cardNumber = request.getPayment() != null && request.getPayment().getCreditCard() != null
+                ? request.getPayment().getCreditCard().getCardNumber() : null;
+        if (cardNumber == null || cardNumber.length() < 13) return error(null, "6", "The credit card number is invalid.");
+        String transId = String.valueOf(transIds.incrementAndGet());
+        if (chance(props.getDeclinePercent())) return declined(transId);
+
+        String last4 = cardNumber.substring(cardNumber.length() - 4);
+        SimTransaction tx = new SimTransaction(amount, last4, capture ? State.CAPTURED : State.AUTHORIZED);
+        if (capture) tx.captured = amount;
+        transactions.put(transId, tx);
+        return approved(transId, null, "XXXX" + last4);
+    }
+
+    private CreateTransactionResponse capture(TransactionRequestType request) {
+        String ref = request.getRefTransId();
+        SimTransaction tx = ref == null ? null : transactions.get(ref);
+        if (tx == null) return error(null, "16", "The transaction cannot be found.");
+        synchronized (tx) {
+            if (tx.state != State.AUTHORIZED) return error(null, "311", "This transaction has already been captured or voided.");
+            BigDecimal amount = request.getAmount() != null ? request.getAmount() : tx.authorized;
+            if (amount.compareTo(tx.authorized) > 0) {
+                return error(null, "47", "The amount requested for settlement cannot be greater than the original amount authorized.");
+            }
+            tx.state = State.CAPTURED;
+            tx.captured = amount;
+        }
+        // a prior-auth capture keeps the authorization's transaction id
+        return approved(ref, ref, "XXXX" + tx.last4);
+    }
+
+    private CreateTransactionResponse voidTransaction(TransactionRequestType request) {
+        String ref = request.getRefTransId();
+        SimTransaction tx = ref == null ? null : transactions.get(ref);
+        if (tx == null) return error(null, "16", "The transaction cannot be found.");
+        synchronized (tx) {
+            if (tx.state == State.VOIDED) return error(null, "310", "This transaction has already been voided.");
+            tx.state = State.VOIDED;
+        }
+        return approved(ref, ref, "XXXX" + tx.last4);
+    }
+
+    private CreateTransactionResponse refund(TransactionRequestType request) {
+        String ref = request.getRefTransId();
+        SimTransaction tx = ref == null ? null : transactions.get(ref);
+        if (tx == null) return error(null, "16", "The transaction cannot be found.");
+        String last4 = request.getPayment() != null && request.getPayment().getCreditCard() != null
+                ? request.getPayment().getCreditCard().getCardNumber() : null;
+        if (last4 == null || !last4.endsWith(tx.last4)) return error(null, "6", "The credit card number is invalid.");
+        BigDecimal amount = request.getAmount();
+        if (amount == null || amount.signum() <= 0) return error(null, "5", "A valid amount is required.");
+        synchronized (tx) {
+            if (tx.state != State.CAPTURED) {
+                return error(null, "54", "The referenced transaction does not meet the criteria for issuing a credit.");
+            }
+            if (tx.refunded.add(amount).compareTo(tx.captured) > 0) {
+                return error(null, "55", "The sum of credits against the referenced transaction would exceed original debit amount.");
+            }
+            tx.refunded = tx.refunded.add(amount);
+        }
+        return approved(String.valueOf(transIds.incrementAndGet()), ref, "XXXX" + tx.last4);
+    }
+
+    /** State of a simulated transaction, for tests; null if unknown. */
+    SimTransaction transaction(String transId) {
+        return transactions.get(transId);
+    }
+
+    private static CreateTransactionResponse approved(String transId, String refTransId, String accountNumber) {
+        TransactionResponse tx = new TransactionResponse();
+        tx.setResponseCode("1");
+        tx.setAuthCode(authCode());
+        tx.setTransId(transId);
+        tx.setRefTransID(refTransId);
+        tx.setAccountNumber(accountNumber);
+        TransactionResponse.Messages messages = new TransactionResponse.Messages();
+        TransactionResponse.Messages.Message message = new TransactionResponse.Messages.Message();
+        message.setCode("1");
+        message.setDescription("This transaction has been approved.");
+        messages.getMessage().add(message);
+        tx.setMessages(messages);
+        return response(MessageTypeEnum.OK, "I00001", "Successful.", tx);
+    }
+
+    private static CreateTransactionResponse declined(String transId) {
+        return response(MessageTypeEnum.ERROR, "E00027", "The transaction was unsuccessful.",
+                failedTransaction(transId, "2", "2", "This transaction has been declined."));
+    }
+
+    private static CreateTransactionResponse error(String transId, String errorCode, String errorText) {
+        return response(MessageTypeEnum.ERROR, "E00027", "The transaction was unsuccessful.",
+                failedTransaction(transId, "3", errorCode, errorText));
+    }
+
+    private static TransactionResponse failedTransaction(String transId, String responseCode, String errorCode, String errorText) {
+        TransactionResponse tx = new TransactionResponse();
+        tx.setResponseCode(responseCode);
+        tx.setTransId(transId != null ? transId : "0");
+        TransactionResponse.Errors errors = new TransactionResponse.Errors();
+        TransactionResponse.Errors.Error error = new TransactionResponse.Errors.Error();
+        error.setErrorCode(errorCode);
+        error.setErrorText(errorText);
+        errors.getError().add(error);
+        tx.setErrors(errors);
+        return tx;
+    }
+
+    private static CreateTransactionResponse response(MessageTypeEnum resultCode, String code, String text, TransactionResponse tx) {
+        MessagesType messages = new MessagesType();
+        messages.setResultCode(resultCode);
+        MessagesType.Message message = new MessagesType.Message();
+        message.setCode(code);
+        message.setText(text);
+        messages.getMessage().add(message);
+        CreateTransactionResponse response = new CreateTransactionResponse();
+        response.setMessages(messages);
+        response.setTransactionResponse(tx);
+        return response;
+    }
+
+    private static String authCode() {
+        return Long.toString(ThreadLocalRandom.current().nextLong(36L * 36 * 36 * 36 * 36, 36L * 36 * 36 * 36 * 36 * 36), 36)
+                .toUpperCase(Locale.ROOT);
+    }
+
+    private static boolean chance(double percent) {
+        return percent > 0 && ThreadLocalRandom.current().nextDouble(100) < percent;
+    }
+
+    private static void sleep(long millis) throws IOException {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for Authorize.Net", ex);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.payment.journal;
+
+import com.example.payment.model.CodedEnum;
+
+import java.time.Instant;
+import java.util.Locale;
+
+/**
+ * One entry of the {@link PaymentJournal}. {@code operation} is a transaction type value
+ * ({@code purchase}, {@code capture}, ...), {@code status} an order status value for
+ * {@link Kind#CREATED} and {@link Kind#APPLIED} and the gateway outcome for {@link Kind#RESPONDED};
+ * {@code providerTxId} is the id the provider returned, or for a follow-up's request the id it
+ * was sent against. Fields that do not apply are null.
+ */
+public record JournalEvent(long sequence, Instant at, Kind kind, long orderId, String operation, String amount, String status,
+                           String providerTxId) {
+
+    public enum Kind implements CodedEnum {
+        /** The journal was opened by a starting process; order 0. */
+        OPENED(0),
+        /** The order was inserted as {@code processing}. */
+        CREATED(1),
+        /** The gateway call is about to start; on disk before it does. */
+        REQUESTED(2),
+        /** The gateway answered, or the call failed ({@code status} {@code error}). */
+        RESPONDED(3),
+        /** The order's new status has committed. */
+        APPLIED(4);
+
+        private final short code;
+
+        Kind(int code) {
+            this.code = (short) code;
+        }
+
+        @Override
+        public short code() {
+            return code;
+        }
+
+        @Override
+        public String value() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        static Kind of(int code) {
+            for (Kind kind : values()) {
+                if (kind.code == code) return kind;
+            }
+            throw new IllegalArgumentException("unknown journal event kind " + code);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.payment.journal;
+
+import com.example.payment.model.CodedEnum;
+import com.example.payment.model.OrderStatus;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rebuilds from the journal how far each order's latest operation got, without the database.
+ * An order is in flight when its last event is not an {@link JournalEvent.Kind#APPLIED applied}
+ * status, or is one of the transient ones ({@code processing}, {@code capturing}, ...). After a
+ * crash these are the orders to look at: {@code created} never reached the gateway,
+ * {@code requested} may or may not have been charged (ask the provider), and {@code responded}
+ * has the provider's answer but not its outcome in the database.
+ *
+ * <p>Events of an order id that is created again (the in-memory database starts its ids over on
+ * every start) begin a new order; the earlier one is still reported if it was left in flight.
+ */
+public final class JournalReplay {
+
+    /** {@code interrupted} when the journal was opened again after the order's last event, i.e. the process handling it stopped. */
+    public record InFlight(long orderId, String stage, String operation, String amount, String orderStatus, String gatewayStatus,
+                           String providerTxId, Instant lastEventAt, boolean interrupted) {
+    }
+
+    private final Map<Long, Trail> orders = new HashMap<>();
+    private final List<Trail> replaced = new ArrayList<>();
+    private long events;
+    private int orderCount;
+    private int files;
+    private int starts;
+
+    private JournalReplay() {
+    }
+
+    public static JournalReplay read(Path dir) throws IOException {
+        JournalReplay replay = new JournalReplay();
+        for (Path file : JournalSegment.list(dir)) {
+            JournalSegment.read(file, replay::apply);
+            replay.files++;
+        }
+        return replay;
+    }
+
+    private void apply(JournalEvent e) {
+        events++;
+        if (e.kind() == JournalEvent.Kind.OPENED) {
+            starts++;
+            return;
+        }
+        Trail trail = orders.get(e.orderId());
+        if (trail == null || e.kind() == JournalEvent.Kind.CREATED) {
+            if (trail != null && trail.inFlight()) replaced.add(trail);
+            trail = new Trail(e.orderId());
+            orders.put(e.orderId(), trail);
+            orderCount++;
+        }
+        trail.last = e.kind();
+        trail.at = e.at();
+        trail.start = starts;
+        switch (e.kind()) {
+            case CREATED, APPLIED -> {
+                // the sweeper's recoveries name no operation
+                if (e.operation() != null) {
+                    trail.operation = e.operation();
+                    trail.amount = e.amount();
+                }
+                trail.orderStatus = e.status();
+                if (e.providerTxId() != null) trail.providerTxId = e.providerTxId();
+            }
+            case REQUESTED -> {
+                trail.operation = e.operation();
+                trail.amount = e.amount();
+                trail.gatewayStatus = null;
+                trail.providerTxId = e.providerTxId();
+            }
+            case RESPONDED -> {
+                trail.gatewayStatus = e.status();
+                if (e.providerTxId() != null) trail.providerTxId = e.providerTxId();
+            }
+            default -> {
+            }
+        }
+    }
+
+    /** Orders in flight, oldest last event first. */
+    public List<InFlight> inFlight() {
+        List<InFlight> out = new ArrayList<>();
+        for (Trail trail : replaced) out.add(trail.toInFlight(starts));
+        for (Trail trail : orders.values()) {
+            if (trail.inFlight()) out.add(trail.toInFlight(starts));
+        }
+        out.sort(Comparator.comparing(InFlight::lastEventAt).thenComparingLong(InFlight::orderId));
+        return out;
+    }
+
+    public long events() {
+        return events;
+    }
+
+    public int files() {
+        return files;
+    }
+
+    /** Times a process opened the journal. */
+    public int starts() {
+        return starts;
+    }
+
+    public int orders() {
+        return orderCount;
+    }
+
+    private static final class Trail {
+        final long orderId;
+        JournalEvent.Kind last;
+        Instant at;
+        int start;
+        String operation;
+        String amount;
+        String orderStatus;
+        String gatewayStatus;
+        String providerTxId;
+
+        Trail(long orderId) {
+            this.orderId = orderId;
+        }
+
+        boolean inFlight() {
+            if (last != JournalEvent.Kind.APPLIED) return true;
+            OrderStatus status = CodedEnum.fromValue(OrderStatus.class, orderStatus);
+            return status == OrderStatus.PROCESSING || status.isClaimed();
+        }
+
+        InFlight toInFlight(int starts) {
+            return new InFlight(orderId, last.value(), operation, amount, orderStatus, gatewayStatus, providerTxId, at, start < starts);
+        }
+    }
+}
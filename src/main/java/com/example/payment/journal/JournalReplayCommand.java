@@ -0,0 +1,79 @@
+package com.example.payment.journal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Command-line journal replay: started with {@code --journal.replay.output=<file>}, the application
+ * replays the journal in {@code payment.journal.dir} and writes the orders left in flight as CSV,
+ * then exits: 0 when there are none, 2 when there are, 1 when the run failed. It reads the files
+ * only, so it works after a crash that took the database with it, and next to a running service.
+ * See {@code ExportCommand} for how to start it.
+ */
+@Component
+@ConditionalOnProperty(prefix = "journal.replay", name = "output")
+public class JournalReplayCommand implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalReplayCommand.class);
+
+    private final ConfigurableApplicationContext context;
+    private final String dir;
+    private final String output;
+
+    public JournalReplayCommand(ConfigurableApplicationContext context,
+                                @Value("${payment.journal.dir:data/journal}") String dir,
+                                @Value("${journal.replay.output}") String output) {
+        this.context = context;
+        this.dir = dir;
+        this.output = output;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int status;
+        try {
+            JournalReplay replay = JournalReplay.read(Path.of(dir));
+            List<JournalReplay.InFlight> inFlight = replay.inFlight();
+            write(inFlight, Path.of(output));
+            log.info("Replayed {} events from {} files ({} starts): {} orders, {} in flight, written to {}", replay.events(),
+                    replay.files(), replay.starts(), replay.orders(), inFlight.size(), Path.of(output).toAbsolutePath());
+            status = inFlight.isEmpty() ? 0 : 2;
+        } catch (Exception ex) {
+            log.error("Journal replay failed", ex);
+            status = 1;
+        }
+        int code = status;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+
+    private static void write(List<JournalReplay.InFlight> inFlight, Path output) throws IOException {
+        try (Writer out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            out.write("order_id,stage,operation,amount,order_status,gateway_status,provider_tx_id,last_event_at,interrupted\n");
+            for (JournalReplay.InFlight o : inFlight) {
+                out.write(String.join(",", Long.toString(o.orderId()), o.stage(), field(o.operation()), field(o.amount()),
+                        field(o.orderStatus()), field(o.gatewayStatus()), field(o.providerTxId()), o.lastEventAt().toString(),
+                        Boolean.toString(o.interrupted())));
+                out.write('\n');
+            }
+        }
+    }
+
+    private static String field(String value) {
+        return Objects.toString(value, "");
+    }
+}
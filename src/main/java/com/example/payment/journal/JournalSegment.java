@@ -0,0 +1,168 @@
+package com.example.payment.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * One journal file, {@code journal-<first sequence>.log}, preallocated and memory-mapped. After a
+ * 16-byte header, records follow back to back: body length (4), CRC-32 of the body (4), body. A
+ * body starts with its sequence number, so the records of a file count up by one from the sequence
+ * in its name, and the first record that is not the next one (zeroes, or a write torn by a crash)
+ * ends the file. A file is only ever appended to by the process that created it.
+ */
+final class JournalSegment {
+
+    static final int MAGIC = 0x504a4e4c; // "PJNL"
+    static final byte VERSION = 1;
+    static final int HEADER = 16;
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    final Path file;
+    final long firstSequence;
+    final MappedByteBuffer buffer;
+    int position;
+    int forcedTo;
+
+    private JournalSegment(Path file, long firstSequence, MappedByteBuffer buffer, int position) {
+        this.file = file;
+        this.firstSequence = firstSequence;
+        this.buffer = buffer;
+        this.position = position;
+    }
+
+    static JournalSegment create(Path dir, long firstSequence, int size) throws IOException {
+        Path file = dir.resolve(String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC).put(4, VERSION).putLong(8, firstSequence);
+            return new JournalSegment(file, firstSequence, buffer, HEADER);
+        }
+    }
+
+    /** Reads the valid records of a file; returns where they end. */
+    static int read(Path file, Consumer<JournalEvent> each) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return scan(buffer, checkHeader(file, buffer), each);
+        }
+    }
+
+    /** Journal files of {@code dir} in sequence order. */
+    static List<Path> list(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(dir)) return files;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) files.add(file);
+        }
+        files.sort(null); // the sequence is zero-padded
+        return files;
+    }
+
+    /** The sequence number a file's name says its first record has. */
+    static long firstSequence(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    boolean fits(int recordSize) {
+        return position + recordSize <= buffer.capacity();
+    }
+
+    /** Writes a record encoded by {@link #encode} with its sequence number; returns the record's size. */
+    int append(byte[] body, long sequence, CRC32 crc) {
+        ByteBuffer.wrap(body).putLong(0, sequence);
+        crc.reset();
+        crc.update(body);
+        buffer.put(position + 8, body);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, body.length);
+        position += 8 + body.length;
+        return 8 + body.length;
+    }
+
+    /** A record body without its sequence number, so it can be built before the journal's lock is taken. */
+    static byte[] encode(Instant at, JournalEvent.Kind kind, long orderId, String operation, String amount, String status,
+                         String providerTxId) {
+        byte[][] strings = {bytes(operation), bytes(amount), bytes(status), bytes(providerTxId)};
+        int size = 8 + 8 + 1 + 8;
+        for (byte[] s : strings) size += 2 + (s == null ? 0 : s.length);
+        ByteBuffer body = ByteBuffer.allocate(size);
+        body.putLong(0L).putLong(ChronoUnit.MICROS.between(Instant.EPOCH, at)).put((byte) kind.code()).putLong(orderId);
+        for (byte[] s : strings) {
+            if (s == null) {
+                body.putShort((short) -1);
+            } else {
+                body.putShort((short) s.length).put(s);
+            }
+        }
+        return body.array();
+    }
+
+    private static byte[] bytes(String value) {
+        if (value == null) return null;
+        byte[] b = value.getBytes(StandardCharsets.UTF_8);
+        return b.length > Short.MAX_VALUE ? null : b;
+    }
+
+    private static long checkHeader(Path file, ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER || buffer.getInt(0) != MAGIC || buffer.get(4) != VERSION) {
+            throw new IOException("not a payment journal file: " + file);
+        }
+        return buffer.getLong(8);
+    }
+
+    private static int scan(ByteBuffer buffer, long firstSequence, Consumer<JournalEvent> each) {
+        CRC32 crc = new CRC32();
+        int position = HEADER;
+        long expected = firstSequence;
+        while (position + 8 <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length < 8 || position + 8 + length > buffer.capacity()) break;
+            ByteBuffer body = buffer.slice(position + 8, length);
+            crc.reset();
+            crc.update(body.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(position + 4) || body.getLong(0) != expected) break;
+            JournalEvent event;
+            try {
+                event = decode(body);
+            } catch (RuntimeException ex) {
+                break;
+            }
+            each.accept(event);
+            expected++;
+            position += 8 + length;
+        }
+        return position;
+    }
+
+    private static JournalEvent decode(ByteBuffer body) {
+        long sequence = body.getLong();
+        Instant at = Instant.EPOCH.plus(body.getLong(), ChronoUnit.MICROS);
+        JournalEvent.Kind kind = JournalEvent.Kind.of(body.get());
+        long orderId = body.getLong();
+        return new JournalEvent(sequence, at, kind, orderId, string(body), string(body), string(body), string(body));
+    }
+
+    private static String string(ByteBuffer body) {
+        short length = body.getShort();
+        if (length < 0) return null;
+        byte[] b = new byte[length];
+        body.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.payment.journal;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only local journal of payment state transitions, for forensics after a crash (see
+ * {@link JournalReplay}). Events are copied into a memory-mapped {@link JournalSegment} under a
+ * short lock; a flusher thread forces what has been appended since its last pass to disk, so one
+ * {@code msync} covers every writer that appended meanwhile. {@link #append} does not wait for it;
+ * {@link #awaitDurable} does, and is used before a gateway call so that the journal knows about
+ * every request the provider may have seen.
+ *
+ * <p>The journal is a record, not the source of truth: the database is. It opens on the first
+ * append, with a new file whose sequence follows the last one on disk. If it cannot be written
+ * (disk full, say) it logs the failure, stops, and payments go on without it.
+ */
+@Component
+public class PaymentJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentJournal.class);
+
+    private final boolean enabled;
+    private final Path dir;
+    private final int segmentBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition forced = lock.newCondition();
+    private final CRC32 crc = new CRC32();
+    private final LongAdder appends = new LongAdder();
+    private final LongAdder forces = new LongAdder();
+    // guarded by lock
+    private JournalSegment current;
+    private long written;
+    private long durable;
+    private boolean opened;
+    private boolean failed;
+    private boolean closed;
+    private Thread flusher;
+
+    public PaymentJournal(@Value("${payment.journal.enabled:true}") boolean enabled,
+                          @Value("${payment.journal.dir:data/journal}") String dir,
+                          @Value("${payment.journal.segment-mb:64}") int segmentMb) {
+        this.enabled = enabled;
+        this.dir = Path.of(dir);
+        this.segmentBytes = segmentMb * 1024 * 1024;
+    }
+
+    /**
+     * Appends an event; returns its sequence number for {@link #awaitDurable}, or 0 when the
+     * journal is off or has failed.
+     */
+    public long append(JournalEvent.Kind kind, Long orderId, String operation, BigDecimal amount, String status, String providerTxId) {
+        if (!enabled) return 0;
+        byte[] body = JournalSegment.encode(Instant.now(), kind, orderId == null ? 0 : orderId, operation, amount == null ? null : amount.toPlainString(),
+                status, providerTxId);
+        lock.lock();
+        try {
+            if (failed || closed) return 0;
+            if (!opened) open();
+            return put(body);
+        } catch (IOException | RuntimeException ex) {
+            fail(ex);
+            return 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Returns once the event {@code sequence} and all before it are on disk (or the journal has stopped). */
+    public void awaitDurable(long sequence) {
+        if (sequence <= 0) return;
+        lock.lock();
+        try {
+            while (durable < sequence && !failed && !closed) forced.awaitUninterruptibly();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Events appended since start. */
+    public long appends() {
+        return appends.sum();
+    }
+
+    /** Times the flusher forced the journal to disk; against {@link #appends()}, how well syncs are shared. */
+    public long forces() {
+        return forces.sum();
+    }
+
+    private void open() throws IOException {
+        opened = true;
+        Files.createDirectories(dir);
+        long last = 0;
+        List<Path> files = JournalSegment.list(dir);
+        if (!files.isEmpty()) {
+            Path newest = files.get(files.size() - 1);
+            long first = JournalSegment.firstSequence(newest);
+            long[] lastSequence = {first - 1};
+            try {
+                JournalSegment.read(newest, e -> lastSequence[0] = e.sequence());
+            } catch (IOException ex) {
+                log.warn("Payment journal file {} has no valid header", newest, ex);
+            }
+            last = lastSequence[0];
+            // its process died before anything of it reached the disk; its name is taken again below
+            if (last < first) Files.delete(newest);
+        }
+        written = last;
+        durable = last;
+        current = JournalSegment.create(dir, last + 1, segmentBytes);
+        flusher = new Thread(this::flush, "payment-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        put(JournalSegment.encode(Instant.now(), JournalEvent.Kind.OPENED, 0, null, null, null, null));
+        log.info("Payment journal {} opened at sequence {}", current.file.toAbsolutePath(), last + 1);
+    }
+
+    private long put(byte[] body) throws IOException {
+        if (!current.fits(8 + body.length)) roll();
+        long sequence = written + 1;
+        current.append(body, sequence, crc);
+        written = sequence;
+        appends.increment();
+        appended.signal();
+        return sequence;
+    }
+
+    // a full file is forced as a whole before the next one is started, so the flusher only ever deals with the current one
+    private void roll() throws IOException {
+        current.buffer.force();
+        durable = written;
+        forced.signalAll();
+        current = JournalSegment.create(dir, written + 1, segmentBytes);
+    }
+
+    private void flush() {
+        while (true) {
+            JournalSegment segment;
+            int from;
+            int to;
+            long target;
+            lock.lock();
+            try {
+                while (durable == written && !closed && !failed) {
+                    try {
+                        appended.await(1, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        return;
+                    }
+                }
+                if (failed || durable == written) return;
+                segment = current;
+                from = segment.forcedTo;
+                to = segment.position;
+                target = written;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                // outside the lock: appends carry on while this one is on its way to disk
+                segment.buffer.force(from, to - from);
+            } catch (UncheckedIOException ex) {
+                lock.lock();
+                try {
+                    fail(ex);
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+            forces.increment();
+            lock.lock();
+            try {
+                segment.forcedTo = Math.max(segment.forcedTo, to);
+                durable = Math.max(durable, target);
+                forced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void fail(Exception ex) {
+        if (!failed) log.error("Payment journal in {} failed; payments carry on without it", dir.toAbsolutePath(), ex);
+        failed = true;
+        forced.signalAll();
+        appended.signalAll();
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        Thread thread;
+        lock.lock();
+        try {
+            closed = true;
+            appended.signalAll();
+            thread = flusher;
+        } finally {
+            lock.unlock();
+        }
+        if (thread == null) return;
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+        lock.lock();
+        try {
+            if (!failed) {
+                current.buffer.force();
+                durable = written;
+            }
+            forced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
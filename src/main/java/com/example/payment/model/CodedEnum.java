@@ -0,0 +1,58 @@
+package com.example.payment.model;
+
+import jakarta.persistence.AttributeConverter;
+
+import java.lang.reflect.Array;
+
+/**
+ * An enum stored as a fixed smallint code rather than its name or ordinal, so columns stay two
+ * bytes and constants can be renamed or reordered. Codes must never be reused. {@link #value()} is
+ * the lowercase name used in the API and in metric tags.
+ */
+public interface CodedEnum {
+
+    short code();
+
+    String value();
+
+    /** The constant of {@code type} whose {@link #value()} is {@code value}, e.g. from a query parameter. */
+    static <E extends Enum<E> & CodedEnum> E fromValue(Class<E> type, String value) {
+        for (E e : type.getEnumConstants()) {
+            if (e.value().equals(value)) return e;
+        }
+        throw new IllegalArgumentException("unknown " + type.getSimpleName() + " '" + value + "'");
+    }
+
+    /** Base for the per-enum JPA converters. */
+    abstract class Converter<E extends Enum<E> & CodedEnum> implements AttributeConverter<E, Short> {
+
+        private final E[] byCode;
+
+        protected Converter(Class<E> type) {
+            E[] constants = type.getEnumConstants();
+            int max = 0;
+            for (E e : constants) max = Math.max(max, e.code());
+            @SuppressWarnings("unchecked")
+            E[] table = (E[]) Array.newInstance(type, max + 1);
+            for (E e : constants) {
+                if (table[e.code()] != null) throw new IllegalStateException(type.getSimpleName() + " reuses code " + e.code());
+                table[e.code()] = e;
+            }
+            this.byCode = table;
+        }
+
+        @Override
+        public Short convertToDatabaseColumn(E value) {
+            return value == null ? null : value.code();
+        }
+
+        @Override
+        public E convertToEntityAttribute(Short code) {
+            if (code == null) return null;
+            if (code < 0 || code >= byCode.length || byCode[code] == null) {
+                throw new IllegalArgumentException("unknown code " + code + " in " + byCode.getClass().getComponentType().getSimpleName());
+            }
+            return byCode[code];
+        }
+    }
+}
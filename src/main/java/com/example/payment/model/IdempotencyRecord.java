@@ -0,0 +1,142 @@
+package com.example.payment.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * One {@code Idempotency-Key} per client and operation. The row is inserted (status
+ * {@code in_progress}) before the request runs, which is what makes a key single-use across nodes,
+ * and completed with the response to replay.
+ */
+@Entity
+@Table(name = "idempotency_keys", uniqueConstraints = @UniqueConstraint(name = "uk_idempotency_principal_operation_key",
+        columnNames = {"principal", "operation", "idempotency_key"}))
+public class IdempotencyRecord {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // authenticated client name: keys chosen by different clients never meet
+    @Column(nullable = false)
+    private String principal;
+
+    @Column(nullable = false)
+    private String operation; // purchase, authorize, capture, cancel, refund
+
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+
+    // SHA-256 of the request body, to reject a key reused for a different request
+    @Column(name = "request_hash", nullable = false, length = 64)
+    private String requestHash;
+
+    @Column(nullable = false)
+    private String status; // in_progress, completed, unknown
+
+    @Column(name = "response_status")
+    private Integer responseStatus;
+
+    // room for a full batch response (up to 100 items)
+    @Column(name = "response_body", length = 32000)
+    private String responseBody;
+
+    @Column(name = "response_location")
+    private String responseLocation;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt = Instant.now();
+
+    @Column(name = "completed_at")
+    private Instant completedAt;
+
+    // getters and setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getPrincipal() {
+        return principal;
+    }
+
+    public void setPrincipal(String principal) {
+        this.principal = principal;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public void setRequestHash(String requestHash) {
+        this.requestHash = requestHash;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Integer getResponseStatus() {
+        return responseStatus;
+    }
+
+    public void setResponseStatus(Integer responseStatus) {
+        this.responseStatus = responseStatus;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    public void setResponseBody(String responseBody) {
+        this.responseBody = responseBody;
+    }
+
+    public String getResponseLocation() {
+        return responseLocation;
+    }
+
+    public void setResponseLocation(String responseLocation) {
+        this.responseLocation = responseLocation;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(Instant completedAt) {
+        this.completedAt = completedAt;
+    }
+}
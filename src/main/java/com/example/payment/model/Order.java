@@ -5,10 +5,17 @@ import java.math.BigDecimal;
 import java.time.Instant;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_status_updated", columnList = "status, updated_at"),
+        // keyset listing (OrderQueryRepository), unfiltered and per filter
+        @Index(name = "idx_orders_created", columnList = "created_at, id"),
+        @Index(name = "idx_orders_status_created", columnList = "status, created_at, id"),
+        @Index(name = "idx_orders_currency_created", columnList = "currency, created_at, id")})
 public class Order {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // pooled sequence: each node reserves 50 ids per round trip, and inserts can be JDBC-batched
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "external_id", unique = true)
@@ -20,8 +27,28 @@ public class Order {
     @Column(nullable = false)
     private BigDecimal amount;
 
+    // running totals, moved together with the status by each successful operation, so capture and
+    // refund limits are checked without summing the order's transactions
+    @Column(name = "authorized_amount", nullable = false)
+    private BigDecimal authorizedAmount = BigDecimal.ZERO;
+
+    @Column(name = "captured_amount", nullable = false)
+    private BigDecimal capturedAmount = BigDecimal.ZERO;
+
+    @Column(name = "refunded_amount", nullable = false)
+    private BigDecimal refundedAmount = BigDecimal.ZERO;
+
+    @Column(name = "voided_amount", nullable = false)
+    private BigDecimal voidedAmount = BigDecimal.ZERO;
+
+    @Convert(converter = OrderStatus.Converter.class)
     @Column(nullable = false)
-    private String status; // processing, authorized, captured, refunded, cancelled, failed
+    private OrderStatus status;
+
+    // bumped by every status transition, so a stale copy of the order cannot be written back
+    @Version
+    @Column(nullable = false)
+    private long version;
 
     @Column(name = "created_at", nullable = false)
     private Instant createdAt = Instant.now();
@@ -63,14 +90,64 @@ public class Order {
         this.amount = amount;
     }
 
-    public String getStatus() {
+    public BigDecimal getAuthorizedAmount() {
+        return authorizedAmount;
+    }
+
+    public void setAuthorizedAmount(BigDecimal authorizedAmount) {
+        this.authorizedAmount = authorizedAmount;
+    }
+
+    public BigDecimal getCapturedAmount() {
+        return capturedAmount;
+    }
+
+    public void setCapturedAmount(BigDecimal capturedAmount) {
+        this.capturedAmount = capturedAmount;
+    }
+
+    public BigDecimal getRefundedAmount() {
+        return refundedAmount;
+    }
+
+    public void setRefundedAmount(BigDecimal refundedAmount) {
+        this.refundedAmount = refundedAmount;
+    }
+
+    public BigDecimal getVoidedAmount() {
+        return voidedAmount;
+    }
+
+    public void setVoidedAmount(BigDecimal voidedAmount) {
+        this.voidedAmount = voidedAmount;
+    }
+
+    /** Authorized but neither captured nor voided yet. */
+    public BigDecimal capturableAmount() {
+        return authorizedAmount.subtract(capturedAmount).subtract(voidedAmount).max(BigDecimal.ZERO);
+    }
+
+    /** Captured and not refunded yet. */
+    public BigDecimal refundableAmount() {
+        return capturedAmount.subtract(refundedAmount).max(BigDecimal.ZERO);
+    }
+
+    public OrderStatus getStatus() {
         return status;
     }
 
-    public void setStatus(String status) {
+    public void setStatus(OrderStatus status) {
         this.status = status;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public Instant getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,80 @@
+package com.example.payment.model;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Order lifecycle and its legal transitions. {@code CAPTURING}, {@code VOIDING} and
+ * {@code REFUNDING} are held while a follow-up operation's gateway call is in flight: the operation
+ * claims the order with a conditional update before calling the provider, so a second capture,
+ * void or refund of the same order finds it taken and is refused instead of reaching the provider
+ * too. The claim is released to the outcome (or back to where it came from) when the call returns.
+ */
+public enum OrderStatus implements CodedEnum {
+    PROCESSING(0),
+    AUTHORIZED(1),
+    CAPTURED(2),
+    REFUNDED(3),
+    CANCELLED(4),
+    FAILED(5),
+    CAPTURING(6),
+    VOIDING(7),
+    REFUNDING(8),
+    PARTIALLY_REFUNDED(9);
+
+    private static final Map<OrderStatus, Set<OrderStatus>> TRANSITIONS = new EnumMap<>(OrderStatus.class);
+
+    static {
+        for (OrderStatus s : values()) TRANSITIONS.put(s, EnumSet.noneOf(OrderStatus.class));
+        allow(PROCESSING, AUTHORIZED, CAPTURED, FAILED);
+        allow(AUTHORIZED, CAPTURING, VOIDING);
+        allow(CAPTURING, CAPTURED, AUTHORIZED);
+        // a capture can be voided until it settles
+        allow(CAPTURED, REFUNDING, VOIDING);
+        allow(VOIDING, CANCELLED, AUTHORIZED, CAPTURED);
+        allow(REFUNDING, REFUNDED, PARTIALLY_REFUNDED, CAPTURED);
+        allow(PARTIALLY_REFUNDED, REFUNDING);
+    }
+
+    private static void allow(OrderStatus from, OrderStatus... to) {
+        TRANSITIONS.get(from).addAll(Set.of(to));
+    }
+
+    private final short code;
+
+    OrderStatus(int code) {
+        this.code = (short) code;
+    }
+
+    public boolean canMoveTo(OrderStatus next) {
+        return TRANSITIONS.get(this).contains(next);
+    }
+
+    /** A follow-up operation holds the order; it is released within the gateway timeout. */
+    public boolean isClaimed() {
+        return this == CAPTURING || this == VOIDING || this == REFUNDING;
+    }
+
+    @Override
+    public short code() {
+        return code;
+    }
+
+    @Override
+    @JsonValue
+    public String value() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    @jakarta.persistence.Converter
+    public static class Converter extends CodedEnum.Converter<OrderStatus> {
+        public Converter() {
+            super(OrderStatus.class);
+        }
+    }
+}
@@ -6,18 +6,24 @@ import java.math.BigDecimal;
 import java.time.Instant;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+        @Index(name = "idx_transactions_provider_tx", columnList = "provider_tx_id"),
+        @Index(name = "idx_transactions_order_status", columnList = "order_id, status"),
+        @Index(name = "idx_transactions_order_created", columnList = "order_id, created_at, id"),
+        @Index(name = "idx_transactions_created", columnList = "created_at, id")})
 public class Transaction {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "order_id", nullable = false)
     private Order order;
 
+    @Convert(converter = TransactionType.Converter.class)
     @Column(nullable = false)
-    private String type; // authorize, capture, purchase, refund, void
+    private TransactionType type;
 
     @Column(name = "provider_tx_id")
     private String providerTxId;
@@ -25,12 +31,13 @@ public class Transaction {
     @Column(nullable = false)
     private BigDecimal amount;
 
+    @Convert(converter = TransactionStatus.Converter.class)
     @Column(nullable = false)
-    private String status; // pending, success, failed, voided, refunded
+    private TransactionStatus status;
 
-    @Lob
-    @Column(name = "raw_response")
-    private String rawResponse;
+    @Version
+    @Column(nullable = false)
+    private long version;
 
     @Column(name = "created_at", nullable = false)
     private Instant createdAt = Instant.now();
@@ -53,11 +60,11 @@ public class Transaction {
         this.order = order;
     }
 
-    public String getType() {
+    public TransactionType getType() {
         return type;
     }
 
-    public void setType(String type) {
+    public void setType(TransactionType type) {
         this.type = type;
     }
 
@@ -77,20 +84,20 @@ public class Transaction {
         this.amount = amount;
     }
 
-    public String getStatus() {
+    public TransactionStatus getStatus() {
         return status;
     }
 
-    public void setStatus(String status) {
+    public void setStatus(TransactionStatus status) {
         this.status = status;
     }
 
-    public String getRawResponse() {
-        return rawResponse;
+    public long getVersion() {
+        return version;
     }
 
-    public void setRawResponse(String rawResponse) {
-        this.rawResponse = rawResponse;
+    public void setVersion(long version) {
+        this.version = version;
     }
 
     public Instant getCreatedAt() {
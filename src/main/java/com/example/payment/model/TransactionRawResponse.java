@@ -0,0 +1,86 @@
+package com.example.payment.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+
+/**
+ * Provider response for one gateway call, kept apart from {@link Transaction} so that loading a
+ * transaction never reads the payload. A transaction can have several rows (e.g. its original
+ * response and a later void).
+ */
+@Entity
+@Table(name = "transaction_raw_responses", indexes = @Index(name = "idx_raw_responses_transaction", columnList = "transaction_id"))
+public class TransactionRawResponse {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transaction_raw_responses_seq")
+    @SequenceGenerator(name = "transaction_raw_responses_seq", sequenceName = "transaction_raw_responses_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "transaction_id", nullable = false)
+    private Long transactionId;
+
+    @Column(nullable = false)
+    private String operation; // purchase, authorize, capture, refund, void
+
+    @Column(nullable = false)
+    private String encoding; // deflate
+
+    @Lob
+    @Basic(fetch = FetchType.LAZY)
+    @Column(nullable = false)
+    private byte[] payload;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt = Instant.now();
+
+    // getters and setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getTransactionId() {
+        return transactionId;
+    }
+
+    public void setTransactionId(Long transactionId) {
+        this.transactionId = transactionId;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.payment.model;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Locale;
+
+/** Outcome of one gateway operation as recorded; {@code PENDING} until the provider has answered. */
+public enum TransactionStatus implements CodedEnum {
+    PENDING(0),
+    SUCCESS(1),
+    FAILED(2);
+
+    private final short code;
+
+    TransactionStatus(int code) {
+        this.code = (short) code;
+    }
+
+    @Override
+    public short code() {
+        return code;
+    }
+
+    @Override
+    @JsonValue
+    public String value() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    @jakarta.persistence.Converter
+    public static class Converter extends CodedEnum.Converter<TransactionStatus> {
+        public Converter() {
+            super(TransactionStatus.class);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.payment.model;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.util.Locale;
+
+/** The gateway operation a transaction row records. */
+public enum TransactionType implements CodedEnum {
+    AUTHORIZE(0),
+    CAPTURE(1),
+    PURCHASE(2),
+    REFUND(3),
+    VOID(4);
+
+    private final short code;
+
+    TransactionType(int code) {
+        this.code = (short) code;
+    }
+
+    @Override
+    public short code() {
+        return code;
+    }
+
+    @Override
+    @JsonValue
+    public String value() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    @jakarta.persistence.Converter
+    public static class Converter extends CodedEnum.Converter<TransactionType> {
+        public Converter() {
+            super(TransactionType.class);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.payment.reconcile;
+
+import com.example.payment.export.ExportRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Command-line reconciliation: started with {@code --reconcile.settlement-file=<report>} (and
+ * {@code reconcile.from}, optionally {@code reconcile.to} and {@code reconcile.output-dir}), the
+ * application reconciles the report against the configured datasource and exits: 0 when everything
+ * matched, 2 when the reports list differences, 1 when the run failed. See {@code ExportCommand}
+ * for how to start it next to a running service.
+ */
+@Component
+@ConditionalOnProperty(prefix = "reconcile", name = "settlement-file")
+public class ReconcileCommand implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ReconcileCommand.class);
+
+    private final Reconciler reconciler;
+    private final ConfigurableApplicationContext context;
+    private final String settlementFile;
+    private final String from;
+    private final String to;
+    private final String outputDir;
+
+    public ReconcileCommand(Reconciler reconciler, ConfigurableApplicationContext context,
+                            @Value("${reconcile.settlement-file}") String settlementFile,
+                            @Value("${reconcile.from}") String from,
+                            @Value("${reconcile.to:}") String to,
+                            @Value("${reconcile.output-dir:reconciliation}") String outputDir) {
+        this.reconciler = reconciler;
+        this.context = context;
+        this.settlementFile = settlementFile;
+        this.from = from;
+        this.to = to;
+        this.outputDir = outputDir;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int status;
+        try {
+            ReconciliationSummary summary = reconciler.reconcile(Path.of(settlementFile), ExportRange.parse(from, to), Path.of(outputDir));
+            log.info("Reports written to {}", Path.of(outputDir).toAbsolutePath());
+            status = summary.clean() ? 0 : 2;
+        } catch (Exception ex) {
+            log.error("Reconciliation failed", ex);
+            status = 1;
+        }
+        int code = status;
+        System.exit(SpringApplication.exit(context, () -> code));
+    }
+}
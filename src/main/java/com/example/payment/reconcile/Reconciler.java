@@ -0,0 +1,156 @@
+package com.example.payment.reconcile;
+
+import com.example.payment.export.ExportRange;
+import com.example.payment.model.TransactionStatus;
+import com.example.payment.model.TransactionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Matches an Authorize.Net settlement report against our successful purchases, captures and
+ * refunds: a hash join with the report as the build side ({@link SettlementFile}, parsed in
+ * parallel) and our transactions streamed through a JDBC cursor as the probe side, each probe an
+ * O(1) removal from the report's map. What is left in the map afterwards was settled without a
+ * transaction of ours, or for one we voided. Amounts are compared by value, ignoring sign (reports list refunds either
+ * way); a local amount with fractions of a cent never equals a settled one and is reported as a mismatch.
+ *
+ * <p>Writes {@code matched.csv}, {@code amount_mismatch.csv}, {@code missing_at_provider.csv}
+ * and {@code missing_locally.csv} to the output directory.
+ */
+@Service
+public class Reconciler {
+
+    private static final Logger log = LoggerFactory.getLogger(Reconciler.class);
+
+    private static final String SUCCESS = Short.toString(TransactionStatus.SUCCESS.code());
+
+    static final String SQL = "select t.provider_tx_id, t.type, t.amount from transactions t "
+            + "where t.status = " + SUCCESS + " and t.type in (" + TransactionType.PURCHASE.code() + ", " + TransactionType.CAPTURE.code()
+            + ", " + TransactionType.REFUND.code() + ") and t.provider_tx_id is not null and t.created_at >= ? and t.created_at < ?";
+
+    // voided transactions never settle, whatever was captured before the void; a void comes after
+    // what it voids, so the voids that matter were all made since the start of the range
+    static final String VOIDED_SQL = "select provider_tx_id from transactions where type = " + TransactionType.VOID.code()
+            + " and status = " + SUCCESS + " and provider_tx_id is not null and created_at >= ?";
+
+    private static final TransactionType.Converter TYPES = new TransactionType.Converter();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String idColumn;
+    private final String amountColumn;
+    private final int parallelism;
+
+    public Reconciler(DataSource dataSource, PlatformTransactionManager transactionManager,
+                      @Value("${payment.export.fetch-size:1000}") int fetchSize,
+                      @Value("${payment.reconcile.id-column:Transaction ID}") String idColumn,
+                      @Value("${payment.reconcile.amount-column:Settlement Amount}") String amountColumn,
+                      @Value("${payment.reconcile.parallelism:0}") int parallelism) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.idColumn = idColumn;
+        this.amountColumn = amountColumn;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /** Reconciles {@code settlementFile} against our transactions created in {@code range}. */
+    public ReconciliationSummary reconcile(Path settlementFile, ExportRange range, Path outputDir) throws IOException {
+        long started = System.nanoTime();
+        SettlementFile settlement;
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            settlement = SettlementFile.load(settlementFile, idColumn, amountColumn, pool);
+        } finally {
+            pool.shutdown();
+        }
+        long parsed = System.nanoTime();
+        Map<String, Long> settled = settlement.settledCents;
+
+        // few enough to hold: an anti-join in memory rather than a correlated subquery per probe row
+        Set<String> voided = new HashSet<>(transactionTemplate.execute(status -> jdbcTemplate.queryForList(VOIDED_SQL,
+                String.class, OffsetDateTime.ofInstant(range.start(), ZoneOffset.UTC))));
+
+        Files.createDirectories(outputDir);
+        long[] counts = new long[4]; // local rows, matched, mismatched, missing at provider
+        try (Writer matched = report(outputDir, "matched.csv", "transaction_id,type,amount");
+             Writer mismatched = report(outputDir, "amount_mismatch.csv", "transaction_id,type,local_amount,settled_amount");
+             Writer missingAtProvider = report(outputDir, "missing_at_provider.csv", "transaction_id,type,amount")) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(SQL, ps -> {
+                    ps.setObject(1, OffsetDateTime.ofInstant(range.start(), ZoneOffset.UTC));
+                    ps.setObject(2, OffsetDateTime.ofInstant(range.end(), ZoneOffset.UTC));
+                }, rs -> {
+                    String id = rs.getString(1);
+                    if (voided.contains(id)) return;
+                    counts[0]++;
+                    String type = TYPES.convertToEntityAttribute(rs.getShort(2)).value();
+                    BigDecimal amount = rs.getBigDecimal(3);
+                    Long cents = settled.remove(id);
+                    try {
+                        if (cents == null) {
+                            counts[3]++;
+                            line(missingAtProvider, id, type, amount.toPlainString());
+                        } else if (BigDecimal.valueOf(Math.abs(cents), 2).compareTo(amount.abs()) == 0) {
+                            counts[1]++;
+                            line(matched, id, type, amount.toPlainString());
+                        } else {
+                            counts[2]++;
+                            line(mismatched, id, type, amount.toPlainString(), BigDecimal.valueOf(cents, 2).toPlainString());
+                        }
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }));
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        }
+        long missingLocally = settled.size();
+        try (Writer out = report(outputDir, "missing_locally.csv", "transaction_id,settled_amount")) {
+            for (Map.Entry<String, Long> e : settled.entrySet()) {
+                line(out, e.getKey(), BigDecimal.valueOf(e.getValue(), 2).toPlainString());
+            }
+        }
+
+        ReconciliationSummary summary = new ReconciliationSummary(settlement.rows, settlement.duplicateRows,
+                settlement.malformedRows, counts[0], counts[1], counts[2], counts[3], missingLocally,
+                (parsed - started) / 1_000_000, (System.nanoTime() - started) / 1_000_000);
+        log.info("Reconciled {} against {} to {}: {}", settlementFile.getFileName(), range.from(), range.to(), summary);
+        return summary;
+    }
+
+    private static Writer report(Path dir, String name, String header) throws IOException {
+        Writer out = Files.newBufferedWriter(dir.resolve(name), StandardCharsets.UTF_8);
+        out.write(header);
+        out.write('\n');
+        return out;
+    }
+
+    // provider ids and amounts never contain separators or quotes
+    private static void line(Writer out, String... fields) throws IOException {
+        out.write(String.join(",", fields));
+        out.write('\n');
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.payment.reconcile;
+
+/**
+ * Counts of one reconciliation run. {@code settlementRows} excludes malformed lines;
+ * {@code duplicateSettlementRows} are rows whose transaction id an earlier row already had.
+ */
+public record ReconciliationSummary(long settlementRows, long duplicateSettlementRows, long malformedSettlementRows,
+                                    long localRows, long matched, long amountMismatch, long missingAtProvider,
+                                    long missingLocally, long parseMillis, long totalMillis) {
+
+    public boolean clean() {
+        return amountMismatch == 0 && missingAtProvider == 0 && missingLocally == 0 && malformedSettlementRows == 0;
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.payment.reconcile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * An Authorize.Net settlement report (CSV, or tab-delimited as the Merchant Interface downloads
+ * it) loaded as the build side of the reconciliation join: settled amount in cents by transaction
+ * id. The file is memory-mapped and cut into segments at line breaks; the segments are parsed in
+ * parallel straight from the mapped bytes into one concurrent map. Quoted fields are understood,
+ * but not line breaks inside them, which settlement reports do not contain.
+ */
+final class SettlementFile {
+
+    // a mapped segment must stay below 2 GB
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    final ConcurrentHashMap<String, Long> settledCents;
+    final long rows;
+    final long duplicateRows;
+    final long malformedRows;
+
+    private SettlementFile(ConcurrentHashMap<String, Long> settledCents, long rows, long duplicateRows, long malformedRows) {
+        this.settledCents = settledCents;
+        this.rows = rows;
+        this.duplicateRows = duplicateRows;
+        this.malformedRows = malformedRows;
+    }
+
+    /**
+     * Loads {@code file}, taking the id and amount from the columns whose header names are
+     * {@code idColumn} and {@code amountColumn} (case-insensitive). A transaction id listed twice
+     * has its amounts added up and is counted in {@link #duplicateRows}.
+     */
+    static SettlementFile load(Path file, String idColumn, String amountColumn, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            Header header = Header.read(channel, idColumn, amountColumn);
+            int segments = (int) Math.max(pool.getParallelism() * 4L, (size + MAX_SEGMENT_BYTES - 1) / MAX_SEGMENT_BYTES);
+            long[] bounds = bounds(channel, header.length, size, segments);
+
+            // ~40 bytes per line in the smallest reports; resizing a map this size concurrently is the expensive part
+            ConcurrentHashMap<String, Long> settled = new ConcurrentHashMap<>((int) Math.min(Integer.MAX_VALUE, size / 40));
+            LongAdder rows = new LongAdder();
+            LongAdder duplicates = new LongAdder();
+            LongAdder malformed = new LongAdder();
+            try {
+                pool.submit(() -> IntStream.range(0, bounds.length - 1).parallel().forEach(i -> {
+                    if (bounds[i] == bounds[i + 1]) return;
+                    try {
+                        MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, bounds[i], bounds[i + 1] - bounds[i]);
+                        new SegmentParser(segment, header, settled, rows, duplicates, malformed).run();
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                })).get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted while reading " + file, ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof UncheckedIOException io) throw io.getCause();
+                throw new IOException("could not read " + file, ex.getCause());
+            }
+            return new SettlementFile(settled, rows.sum(), duplicates.sum(), malformed.sum());
+        }
+    }
+
+    // segment starts after the header, each moved forward to the start of a line
+    private static long[] bounds(FileChannel channel, long start, long size, int segments) throws IOException {
+        long[] bounds = new long[segments + 1];
+        bounds[0] = start;
+        bounds[segments] = size;
+        long step = Math.max(1, (size - start) / segments);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        for (int i = 1; i < segments; i++) {
+            long pos = Math.max(bounds[i - 1], start + step * i);
+            bounds[i] = pos >= size ? size : nextLine(channel, pos, size, probe);
+        }
+        return bounds;
+    }
+
+    private static long nextLine(FileChannel channel, long pos, long size, ByteBuffer probe) throws IOException {
+        while (pos < size) {
+            probe.clear();
+            int n = channel.read(probe, pos);
+            if (n <= 0) break;
+            for (int j = 0; j < n; j++) {
+                if (probe.get(j) == '\n') return pos + j + 1;
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    /** Positions of the wanted columns, the delimiter, and the header line's length in bytes. */
+    private record Header(int idIndex, int amountIndex, byte delimiter, long length) {
+
+        static Header read(FileChannel channel, String idColumn, String amountColumn) throws IOException {
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            int n = channel.read(buf, 0);
+            int end = 0;
+            while (end < n && buf.get(end) != '\n') end++;
+            if (end == n && n == buf.capacity()) throw new IOException("no header line in the first 64 KB");
+            String line = new String(buf.array(), 0, end, StandardCharsets.UTF_8).replace("\uFEFF", "").strip();
+            byte delimiter = (byte) (line.indexOf('\t') >= 0 ? '\t' : ',');
+            String[] names = line.split(delimiter == '\t' ? "\t" : ",", -1);
+            int id = -1;
+            int amount = -1;
+            for (int i = 0; i < names.length; i++) {
+                String name = names[i].strip().replace("\"", "").toLowerCase(Locale.ROOT);
+                if (name.equals(idColumn.toLowerCase(Locale.ROOT))) id = i;
+                if (name.equals(amountColumn.toLowerCase(Locale.ROOT))) amount = i;
+            }
+            if (id < 0 || amount < 0) {
+                throw new IOException("header has no '" + (id < 0 ? idColumn : amountColumn) + "' column: " + line);
+            }
+            return new Header(id, amount, delimiter, Math.max(0, Math.min(n, end + 1)));
+        }
+    }
+
+    private static final class SegmentParser {
+        private final ByteBuffer buf;
+        private final Header header;
+        private final ConcurrentHashMap<String, Long> settled;
+        private final LongAdder rows;
+        private final LongAdder duplicates;
+        private final LongAdder malformed;
+        private final byte[] id = new byte[256];
+        private int idLength;
+        private long cents;
+        private boolean amountOk;
+
+        SegmentParser(ByteBuffer buf, Header header, ConcurrentHashMap<String, Long> settled, LongAdder rows,
+                      LongAdder duplicates, LongAdder malformed) {
+            this.buf = buf;
+            this.header = header;
+            this.settled = settled;
+            this.rows = rows;
+            this.duplicates = duplicates;
+            this.malformed = malformed;
+        }
+
+        void run() {
+            int limit = buf.limit();
+            int pos = 0;
+            long localRows = 0;
+            while (pos < limit) {
+                int lineEnd = pos;
+                while (lineEnd < limit && buf.get(lineEnd) != '\n') lineEnd++;
+                int end = lineEnd > pos && buf.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+                if (end > pos) {
+                    if (parseLine(pos, end)) {
+                        localRows++;
+                        String key = new String(id, 0, idLength, StandardCharsets.US_ASCII);
+                        if (settled.putIfAbsent(key, cents) != null) {
+                            settled.merge(key, cents, Long::sum);
+                            duplicates.increment();
+                        }
+                    } else {
+                        malformed.increment();
+                    }
+                }
+                pos = lineEnd + 1;
+            }
+            rows.add(localRows);
+        }
+
+        // reads the id and amount fields of bytes [from, to); false when either is missing or unreadable
+        private boolean parseLine(int from, int to) {
+            idLength = -1;
+            amountOk = false;
+            int field = 0;
+            int pos = from;
+            while (pos <= to && field <= Math.max(header.idIndex(), header.amountIndex())) {
+                boolean quoted = pos < to && buf.get(pos) == '"';
+                int start = quoted ? pos + 1 : pos;
+                int end = start;
+                if (quoted) {
+                    while (end < to && buf.get(end) != '"') end++;
+                    pos = end + 1;
+                    while (pos < to && buf.get(pos) != header.delimiter()) pos++;
+                } else {
+                    while (end < to && buf.get(end) != header.delimiter()) end++;
+                    pos = end;
+                }
+                if (field == header.idIndex()) readId(start, end);
+                if (field == header.amountIndex()) amountOk = readCents(start, end);
+                field++;
+                pos++;
+            }
+            return idLength > 0 && amountOk;
+        }
+
+        private void readId(int start, int end) {
+            while (start < end && buf.get(start) == ' ') start++;
+            while (end > start && buf.get(end - 1) == ' ') end--;
+            if (end - start > id.length) return;
+            for (int i = start; i < end; i++) id[i - start] = buf.get(i);
+            idLength = end - start;
+        }
+
+        // "1,234.56", "-5.5", "$30.00" -> cents; more than two decimals is not an amount
+        private boolean readCents(int start, int end) {
+            long value = 0;
+            boolean negative = false;
+            boolean digits = false;
+            int decimals = -1;
+            for (int i = start; i < end; i++) {
+                byte b = buf.get(i);
+                if (b >= '0' && b <= '9') {
+                    if (decimals >= 0 && ++decimals > 2) return false;
+                    value = value * 10 + (b - '0');
+                    digits = true;
+                } else if (b == '.' && decimals < 0) {
+                    decimals = 0;
+                } else if (b == '-' && !digits) {
+                    negative = true;
+                } else if (b != ',' && b != '$' && b != ' ') {
+                    return false;
+                }
+            }
+            if (!digits) return false;
+            for (int d = Math.max(decimals, 0); d < 2; d++) value *= 10;
+            cents = negative ? -value : value;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.payment.repository;
+
+import com.example.payment.dto.OrderSummary;
+import com.example.payment.dto.PageCursor;
+import com.example.payment.dto.TransactionSummary;
+import com.example.payment.model.OrderStatus;
+import com.example.payment.model.TransactionStatus;
+import com.example.payment.model.TransactionType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.stereotype.Repository;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Listings for support staff, read as constructor projections (no entities, no lazy associations,
+ * no raw responses) and paged by seeking past {@code (created_at, id)}, newest first. Only the
+ * filters given are put into the query, so each shape has a plain index to use:
+ * {@code idx_orders_created}, {@code idx_orders_status_created}, {@code idx_orders_currency_created}
+ * and {@code idx_transactions_order_created}.
+ */
+@Repository
+public class OrderQueryRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public List<OrderSummary> findOrders(OrderStatus status, String currency, PageCursor after, int limit) {
+        StringBuilder jpql = new StringBuilder("select new com.example.payment.dto.OrderSummary(o.id, o.externalId, o.status, "
+                + "o.currency, o.amount, o.authorizedAmount, o.capturedAmount, o.refundedAmount, o.createdAt, o.updatedAt) "
+                + "from Order o where 1 = 1");
+        Map<String, Object> params = new LinkedHashMap<>();
+        if (status != null) {
+            jpql.append(" and o.status = :status");
+            params.put("status", status);
+        }
+        if (currency != null) {
+            jpql.append(" and o.currency = :currency");
+            params.put("currency", currency);
+        }
+        return page(jpql, "o", params, after, limit, OrderSummary.class);
+    }
+
+    public List<TransactionSummary> findTransactions(Long orderId, TransactionStatus status, TransactionType type,
+                                                     PageCursor after, int limit) {
+        StringBuilder jpql = new StringBuilder("select new com.example.payment.dto.TransactionSummary(t.id, t.providerTxId, "
+                + "t.type, t.status, t.amount, t.createdAt) from Transaction t where t.order.id = :orderId");
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("orderId", orderId);
+        if (status != null) {
+            jpql.append(" and t.status = :status");
+            params.put("status", status);
+        }
+        if (type != null) {
+            jpql.append(" and t.type = :type");
+            params.put("type", type);
+        }
+        return page(jpql, "t", params, after, limit, TransactionSummary.class);
+    }
+
+    private <T> List<T> page(StringBuilder jpql, String alias, Map<String, Object> params, PageCursor after, int limit,
+                             Class<T> row) {
+        if (after != null) {
+            // the first condition alone bounds the index range; the second skips rows of the cursor's own instant already returned
+            jpql.append(" and ").append(alias).append(".createdAt <= :afterCreatedAt and (")
+                    .append(alias).append(".createdAt < :afterCreatedAt or ").append(alias).append(".id < :afterId)");
+            params.put("afterCreatedAt", after.createdAt());
+            params.put("afterId", after.id());
+        }
+        jpql.append(" order by ").append(alias).append(".createdAt desc, ").append(alias).append(".id desc");
+        TypedQuery<T> query = entityManager.createQuery(jpql.toString(), row);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+}
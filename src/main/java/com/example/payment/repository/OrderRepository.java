@@ -1,13 +1,56 @@
 package com.example.payment.repository;
 
 import com.example.payment.model.Order;
+import com.example.payment.model.OrderStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     Optional<Order> findByExternalId(String externalId);
-}
 
+    List<Order> findTop100ByStatusInAndUpdatedAtBeforeOrderByUpdatedAtAsc(Collection<OrderStatus> statuses, Instant cutoff);
+
+    @Query("select new com.example.payment.repository.OrderState(o.status, o.version, o.capturedAmount, o.refundedAmount, o.voidedAmount) "
+            + "from Order o where o.id = :id")
+    Optional<OrderState> findStateById(@Param("id") Long id);
+
+    /**
+     * Moves the order to {@code to} only if it is still in {@code from}, bumping its version.
+     * Returns the number of rows changed: 0 means another request moved it first.
+     */
+    @Modifying
+    @Query("update Order o set o.status = :to, o.version = o.version + 1, o.updatedAt = :now where o.id = :id and o.status = :from")
+    int transition(@Param("id") Long id, @Param("from") OrderStatus from, @Param("to") OrderStatus to, @Param("now") Instant now);
+
+    /**
+     * {@link #transition} that also requires the order to be at {@code version}, i.e. unchanged
+     * since it was read; a follow-up's limits were checked against that read.
+     */
+    @Modifying
+    @Query("update Order o set o.status = :to, o.version = o.version + 1, o.updatedAt = :now "
+            + "where o.id = :id and o.status = :from and o.version = :version")
+    int claim(@Param("id") Long id, @Param("from") OrderStatus from, @Param("version") long version, @Param("to") OrderStatus to,
+              @Param("now") Instant now);
+
+    /**
+     * Ends a claim with the new running totals in the same statement. The totals are absolute: the
+     * claim is held exclusively, and {@code version} rejects a claim the sweeper took back meanwhile.
+     */
+    @Modifying
+    @Query("update Order o set o.status = :to, o.capturedAmount = :captured, o.refundedAmount = :refunded, "
+            + "o.voidedAmount = :voided, o.version = o.version + 1, o.updatedAt = :now "
+            + "where o.id = :id and o.status = :from and o.version = :version")
+    int settle(@Param("id") Long id, @Param("from") OrderStatus from, @Param("version") long version, @Param("to") OrderStatus to,
+               @Param("captured") BigDecimal captured, @Param("refunded") BigDecimal refunded, @Param("voided") BigDecimal voided,
+               @Param("now") Instant now);
+}
@@ -0,0 +1,9 @@
+package com.example.payment.repository;
+
+import com.example.payment.model.OrderStatus;
+
+import java.math.BigDecimal;
+
+/** An order's status, version and running totals as a constructor projection, read past any entity already loaded. */
+public record OrderState(OrderStatus status, long version, BigDecimal capturedAmount, BigDecimal refundedAmount, BigDecimal voidedAmount) {
+}
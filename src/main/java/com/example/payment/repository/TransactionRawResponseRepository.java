@@ -0,0 +1,17 @@
+package com.example.payment.repository;
+
+import com.example.payment.model.TransactionRawResponse;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface TransactionRawResponseRepository extends JpaRepository<TransactionRawResponse, Long> {
+    List<TransactionRawResponse> findByTransactionIdOrderByIdAsc(Long transactionId);
+
+    /** Oldest rows first, for rolling into {@code RawResponseArchive}. */
+    List<TransactionRawResponse> findByCreatedAtBeforeOrderByIdAsc(Instant cutoff, Pageable page);
+}
@@ -1,13 +1,30 @@
 package com.example.payment.repository;
 
 import com.example.payment.model.Transaction;
+import com.example.payment.model.TransactionStatus;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
-    Optional<Transaction> findByProviderTxId(String providerTxId);
-}
+    // The order is fetched eagerly here because follow-up operations update it after the lookup's
+    // persistence context has already closed. A prior-auth capture carries its authorization's
+    // provider id, so the first row is the original transaction.
+    @EntityGraph(attributePaths = "order")
+    Optional<Transaction> findFirstByProviderTxIdOrderByIdAsc(String providerTxId);
+
+    /** Primary-key lookup with the order, for provider ids resolved through {@code TransactionLookupCache}. */
+    @EntityGraph(attributePaths = "order")
+    Optional<Transaction> findWithOrderById(Long id);
+
+    @EntityGraph(attributePaths = "order")
+    Optional<Transaction> findFirstByOrderIdOrderByIdDesc(Long orderId);
 
+    List<Transaction> findByOrderIdAndStatus(Long orderId, TransactionStatus status);
+
+    List<Transaction> findByOrderIdOrderByIdAsc(Long orderId);
+}
@@ -0,0 +1,21 @@
+package com.example.payment.service;
+
+import java.math.BigDecimal;
+
+/**
+ * A capture or refund asked for more than the order has left to capture or refund, going by its
+ * running totals. Refused before anything was sent to the provider.
+ */
+public class AmountExceedsBalanceException extends RuntimeException {
+
+    private final BigDecimal available;
+
+    public AmountExceedsBalanceException(String message, BigDecimal available) {
+        super(message);
+        this.available = available;
+    }
+
+    public BigDecimal getAvailable() {
+        return available;
+    }
+}
@@ -1,205 +1,256 @@
 package com.example.payment.service;
 
-import net.authorize.Environment;
+import com.example.payment.deadline.Deadline;
+import com.example.payment.deadline.DeadlineExceededException;
+import com.example.payment.gateway.AuthorizeNetApi;
+import com.example.payment.gateway.GatewayGuard;
+import com.example.payment.gateway.GatewayOutcomeUnknownException;
+import com.example.payment.gateway.GatewayResult;
+import com.example.payment.gateway.GatewayUnavailableException;
+import com.example.payment.gateway.PaymentGateway;
+import com.example.payment.validation.PanParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import net.authorize.api.contract.v1.*;
-import net.authorize.api.controller.CreateTransactionController;
-import net.authorize.api.controller.base.ApiOperationBase;
-import org.springframework.beans.factory.annotation.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 @Component
-public class AuthorizeNetClient {
+public class AuthorizeNetClient implements PaymentGateway {
 
-    @Value("${authnet.api.login.id:}")
-    private String apiLoginId;
+    private static final Logger log = LoggerFactory.getLogger(AuthorizeNetClient.class);
+    private static final ObjectMapper JSON = new ObjectMapper();
 
-    @Value("${authnet.transaction.key:}")
-    private String transactionKey;
+    private final AuthorizeNetApi api;
+    private final PaymentMetrics metrics;
+    private final GatewayGuard guard;
 
-    @Value("${authnet.environment:sandbox}")
-    private String environment;
+    public AuthorizeNetClient(AuthorizeNetApi api, PaymentMetrics metrics, GatewayGuard guard) {
+        this.api = api;
+        this.metrics = metrics;
+        this.guard = guard;
+    }
 
-    private void initMerchant() {
-        // set environment
-        if ("production".equalsIgnoreCase(environment)) {
-            ApiOperationBase.setEnvironment(Environment.PRODUCTION);
-        } else {
-            ApiOperationBase.setEnvironment(Environment.SANDBOX);
-        }
-        // merchant auth
-        MerchantAuthenticationType merchantAuthentication = new MerchantAuthenticationType();
-        merchantAuthentication.setName(apiLoginId);
-        merchantAuthentication.setTransactionKey(transactionKey);
-        ApiOperationBase.setMerchantAuthentication(merchantAuthentication);
+    /**
+     * Throws {@link GatewayUnavailableException} if a call would be refused right now, so callers
+     * can turn the request away before recording anything.
+     */
+    @Override
+    public void checkAvailable() {
+        guard.checkAvailable();
     }
 
-    public Map<String, Object> createTransaction(BigDecimal amount, String currency, Map<String, String> card, boolean capture) {
-        Map<String, Object> resp = new HashMap<>();
+    @Override
+    public GatewayResult createTransaction(BigDecimal amount, String currency, Map<String, String> card, boolean capture) {
+        TransactionRequestType txnRequest;
         try {
-            initMerchant();
-
-            // Build payment data if card provided
-            PaymentType paymentType = null;
-            if (card != null) {
-                CreditCardType creditCard = new CreditCardType();
-                creditCard.setCardNumber(card.getOrDefault("number", ""));
-                // expiration in format YYYY-MM
-                String expYear = card.getOrDefault("expYear", "");
-                String expMonth = card.getOrDefault("expMonth", "");
-                if (!expYear.isBlank() && !expMonth.isBlank()) {
-                    try {
-                        int y = Integer.parseInt(expYear);
-                        int m = Integer.parseInt(expMonth);
-                        creditCard.setExpirationDate(String.format("%04d-%02d", y, m));
-                    } catch (NumberFormatException ignored) {
-                    }
-                }
-                if (card.get("cvv") != null) creditCard.setCardCode(card.get("cvv"));
-                paymentType = new PaymentType();
-                paymentType.setCreditCard(creditCard);
-            }
+            txnRequest = createRequest(amount, card, capture);
+        } catch (RuntimeException ex) {
+            return errorResult(ex);
+        }
+        return send("createTransaction", txnRequest, null);
+    }
+
+    @Override
+    public GatewayResult captureTransaction(String authTransactionId, BigDecimal amount) {
+        TransactionRequestType txnRequest = new TransactionRequestType();
+        txnRequest.setTransactionType(TransactionTypeEnum.PRIOR_AUTH_CAPTURE_TRANSACTION.value());
+        txnRequest.setRefTransId(authTransactionId);
+        if (amount != null) txnRequest.setAmount(amount);
+        return send("captureTransaction", txnRequest, null);
+    }
 
-            // transaction request
-            TransactionRequestType txnRequest = new TransactionRequestType();
-            txnRequest.setTransactionType(capture ? TransactionTypeEnum.AUTH_CAPTURE_TRANSACTION.value() : TransactionTypeEnum.AUTH_ONLY_TRANSACTION.value());
-            txnRequest.setAmount(amount);
-            if (paymentType != null) txnRequest.setPayment(paymentType);
-
-            CreateTransactionRequest request = new CreateTransactionRequest();
-            request.setTransactionRequest(txnRequest);
-
-            CreateTransactionController controller = new CreateTransactionController(request);
-            controller.execute();
-            CreateTransactionResponse response = controller.getApiResponse();
-
-            if (response != null && response.getMessages().getResultCode() == MessageTypeEnum.OK) {
-                TransactionResponse result = response.getTransactionResponse();
-                resp.put("status", "success");
-                if (result != null) {
-                    resp.put("provider_tx_id", result.getTransId());
-                    resp.put("raw", result);
-                } else {
-                    resp.put("raw", response);
+    @Override
+    public GatewayResult voidTransaction(String providerTxId) {
+        TransactionRequestType txnRequest = new TransactionRequestType();
+        txnRequest.setTransactionType(TransactionTypeEnum.VOID_TRANSACTION.value());
+        txnRequest.setRefTransId(providerTxId);
+        return send("voidTransaction", txnRequest, providerTxId);
+    }
+
+    @Override
+    public GatewayResult refundTransaction(String providerTxId, BigDecimal amount, String last4) {
+        // For refund, Authorize.Net requires payment info (card's last four)
+        CreditCardType creditCard = new CreditCardType();
+        creditCard.setCardNumber(last4);
+        // some flows require expiration date; set a dummy if not provided
+        creditCard.setExpirationDate("2030-12");
+        PaymentType paymentType = new PaymentType();
+        paymentType.setCreditCard(creditCard);
+
+        TransactionRequestType txnRequest = new TransactionRequestType();
+        txnRequest.setTransactionType(TransactionTypeEnum.REFUND_TRANSACTION.value());
+        txnRequest.setRefTransId(providerTxId);
+        txnRequest.setAmount(amount);
+        txnRequest.setPayment(paymentType);
+        return send("refundTransaction", txnRequest, null);
+    }
+
+    private static TransactionRequestType createRequest(BigDecimal amount, Map<String, String> card, boolean capture) {
+        // Build payment data if card provided
+        PaymentType paymentType = null;
+        if (card != null) {
+            CreditCardType creditCard = new CreditCardType();
+            // the API rejects the spaces customers type between digit groups
+            creditCard.setCardNumber(PanParser.digits(card.getOrDefault("number", "")));
+            // expiration in format YYYY-MM
+            String expYear = card.getOrDefault("expYear", "");
+            String expMonth = card.getOrDefault("expMonth", "");
+            if (!expYear.isBlank() && !expMonth.isBlank()) {
+                try {
+                    int y = Integer.parseInt(expYear);
+                    int m = Integer.parseInt(expMonth);
+                    creditCard.setExpirationDate(String.format("%04d-%02d", y, m));
+                } catch (NumberFormatException ignored) {
                 }
-            } else {
-                resp.put("status", "failed");
-                resp.put("raw", response);
             }
-        } catch (Exception ex) {
-            resp.put("status", "failed");
-            resp.put("raw", Map.of("error", ex.getMessage()));
+            if (card.get("cvv") != null) creditCard.setCardCode(card.get("cvv"));
+            paymentType = new PaymentType();
+            paymentType.setCreditCard(creditCard);
         }
 
-        return resp;
+        // transaction request
+        TransactionRequestType txnRequest = new TransactionRequestType();
+        txnRequest.setTransactionType(capture ? TransactionTypeEnum.AUTH_CAPTURE_TRANSACTION.value() : TransactionTypeEnum.AUTH_ONLY_TRANSACTION.value());
+        txnRequest.setAmount(amount);
+        if (paymentType != null) txnRequest.setPayment(paymentType);
+        return txnRequest;
     }
 
-    public Map<String, Object> captureTransaction(String authTransactionId, BigDecimal amount) {
-        Map<String, Object> resp = new HashMap<>();
-        try {
-            initMerchant();
-
-            TransactionRequestType txnRequest = new TransactionRequestType();
-            txnRequest.setTransactionType(TransactionTypeEnum.PRIOR_AUTH_CAPTURE_TRANSACTION.value());
-            txnRequest.setRefTransId(authTransactionId);
-            if (amount != null) txnRequest.setAmount(amount);
-
-            CreateTransactionRequest request = new CreateTransactionRequest();
-            request.setTransactionRequest(txnRequest);
-
-            CreateTransactionController controller = new CreateTransactionController(request);
-            controller.execute();
-            CreateTransactionResponse response = controller.getApiResponse();
-
-            if (response != null && response.getMessages().getResultCode() == MessageTypeEnum.OK) {
-                TransactionResponse result = response.getTransactionResponse();
-                resp.put("status", "success");
-                if (result != null) resp.put("provider_tx_id", result.getTransId());
-                resp.put("raw", result != null ? result : response);
-            } else {
-                resp.put("status", "failed");
-                resp.put("raw", response);
+    /**
+     * Sends one request through the guard. Refusals throw {@link GatewayUnavailableException}, and
+     * {@link DeadlineExceededException} when the request's deadline has already passed. A request
+     * that went out without an answer coming back throws {@link GatewayOutcomeUnknownException}:
+     * the provider may have applied it. Anything else that goes wrong once the call is admitted,
+     * before the request is written or with an HTTP error status, comes back as a failed result.
+     */
+    private GatewayResult send(String method, TransactionRequestType txnRequest, String fallbackTxId) {
+        Deadline.check("the Authorize.Net call");
+        GatewayGuard.Permit permit = guard.acquire();
+        return metrics.gateway(method, () -> {
+            CreateTransactionResponse response;
+            try {
+                response = api.createTransaction(txnRequest);
+            } catch (IOException ex) {
+                if (AuthorizeNetApi.mayHaveBeenApplied(ex)) {
+                    permit.failed();
+                    log.warn("Authorize.Net {} sent without an answer: {}", method, ex.toString());
+                    throw new GatewayOutcomeUnknownException("Authorize.Net " + method + " was sent but not answered ("
+                            + ex.getMessage() + "); it may have been applied", ex);
+                }
+                Deadline deadline = Deadline.current();
+                // a pool wait cut short by our own deadline says nothing about the provider
+                if (deadline != null && deadline.isExpired()) permit.notCalled();
+                else permit.failed();
+                log.warn("Authorize.Net {} failed: {}", method, ex.toString());
+                return errorResult(ex);
+            } catch (DeadlineExceededException ex) {
+                permit.notCalled();
+                throw ex;
+            } catch (RuntimeException ex) {
+                // not the provider's fault (e.g. credentials not configured), so no sample for the guard
+                permit.notCalled();
+                log.warn("Authorize.Net {} not sent: {}", method, ex.toString());
+                return errorResult(ex);
             }
-        } catch (Exception ex) {
-            resp.put("status", "failed");
-            resp.put("raw", Map.of("error", ex.getMessage()));
+            permit.completed();
+            return toResult(response, fallbackTxId);
+        });
+    }
+
+    private static GatewayResult toResult(CreateTransactionResponse response, String fallbackTxId) {
+        if (response == null) return GatewayResult.failed(null, "empty provider response", "{}");
+        TransactionResponse result = response.getTransactionResponse();
+        String messageCode = null;
+        String messageText = null;
+        MessagesType messages = response.getMessages();
+        if (messages != null && !messages.getMessage().isEmpty()) {
+            messageCode = messages.getMessage().get(0).getCode();
+            messageText = messages.getMessage().get(0).getText();
         }
-        return resp;
+        String responseCode = result != null ? result.getResponseCode() : null;
+        if (result != null && result.getErrors() != null && !result.getErrors().getError().isEmpty()) {
+            // the transaction-level error says more than the generic E00027 "unsuccessful"
+            messageCode = result.getErrors().getError().get(0).getErrorCode();
+            messageText = result.getErrors().getError().get(0).getErrorText();
+        }
+        // 2 = declined, 3 = error; the API-level result code alone does not always reflect a decline
+        boolean success = messages != null && messages.getResultCode() == MessageTypeEnum.OK
+                && !"2".equals(responseCode) && !"3".equals(responseCode);
+
+        String txId = result != null && result.getTransId() != null && !"0".equals(result.getTransId()) ? result.getTransId() : null;
+        return new GatewayResult(success ? GatewayResult.SUCCESS : GatewayResult.FAILED,
+                success && txId == null ? fallbackTxId : txId,
+                responseCode,
+                result != null ? result.getAuthCode() : null,
+                messageCode, messageText, toJson(compact(response)));
     }
 
-    public Map<String, Object> voidTransaction(String providerTxId) {
-        Map<String, Object> resp = new HashMap<>();
-        try {
-            initMerchant();
-
-            TransactionRequestType txnRequest = new TransactionRequestType();
-            txnRequest.setTransactionType(TransactionTypeEnum.VOID_TRANSACTION.value());
-            txnRequest.setRefTransId(providerTxId);
-
-            CreateTransactionRequest request = new CreateTransactionRequest();
-            request.setTransactionRequest(txnRequest);
-
-            CreateTransactionController controller = new CreateTransactionController(request);
-            controller.execute();
-            CreateTransactionResponse response = controller.getApiResponse();
-
-            if (response != null && response.getMessages().getResultCode() == MessageTypeEnum.OK) {
-                resp.put("status", "success");
-                resp.put("provider_tx_id", providerTxId);
-                resp.put("raw", response.getTransactionResponse());
-            } else {
-                resp.put("status", "failed");
-                resp.put("raw", response);
+    private static GatewayResult errorResult(Exception ex) {
+        String message = ex.getMessage() != null ? ex.getMessage() : ex.getClass().getSimpleName();
+        return GatewayResult.failed(null, message, toJson(Map.of("error", message)));
+    }
+
+    /** The fields of a createTransaction response worth keeping, without nulls or empty lists. */
+    private static Map<String, Object> compact(CreateTransactionResponse response) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        MessagesType messages = response.getMessages();
+        if (messages != null) {
+            putIfPresent(out, "resultCode", messages.getResultCode() != null ? messages.getResultCode().value() : null);
+            List<Map<String, Object>> list = new ArrayList<>();
+            for (MessagesType.Message m : messages.getMessage()) list.add(entry("code", m.getCode(), "text", m.getText()));
+            if (!list.isEmpty()) out.put("messages", list);
+        }
+        TransactionResponse result = response.getTransactionResponse();
+        if (result != null) {
+            Map<String, Object> tx = new LinkedHashMap<>();
+            putIfPresent(tx, "responseCode", result.getResponseCode());
+            putIfPresent(tx, "authCode", result.getAuthCode());
+            putIfPresent(tx, "avsResultCode", result.getAvsResultCode());
+            putIfPresent(tx, "cvvResultCode", result.getCvvResultCode());
+            putIfPresent(tx, "transId", result.getTransId());
+            putIfPresent(tx, "refTransID", result.getRefTransID());
+            putIfPresent(tx, "accountNumber", result.getAccountNumber());
+            putIfPresent(tx, "accountType", result.getAccountType());
+            if (result.getMessages() != null) {
+                List<Map<String, Object>> list = new ArrayList<>();
+                for (TransactionResponse.Messages.Message m : result.getMessages().getMessage()) list.add(entry("code", m.getCode(), "text", m.getDescription()));
+                if (!list.isEmpty()) tx.put("messages", list);
             }
-        } catch (Exception ex) {
-            resp.put("status", "failed");
-            resp.put("raw", Map.of("error", ex.getMessage()));
+            if (result.getErrors() != null) {
+                List<Map<String, Object>> list = new ArrayList<>();
+                for (TransactionResponse.Errors.Error e : result.getErrors().getError()) list.add(entry("code", e.getErrorCode(), "text", e.getErrorText()));
+                if (!list.isEmpty()) tx.put("errors", list);
+            }
+            out.put("transactionResponse", tx);
         }
-        return resp;
+        return out;
     }
 
-    public Map<String, Object> refundTransaction(String providerTxId, BigDecimal amount, String last4) {
-        Map<String, Object> resp = new HashMap<>();
-        try {
-            initMerchant();
+    private static Map<String, Object> entry(String k1, Object v1, String k2, Object v2) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        putIfPresent(m, k1, v1);
+        putIfPresent(m, k2, v2);
+        return m;
+    }
 
-            // For refund, Authorize.Net requires payment info (card's last four)
-            CreditCardType creditCard = new CreditCardType();
-            creditCard.setCardNumber(last4);
-            // some flows require expiration date; set a dummy if not provided
-            creditCard.setExpirationDate("2030-12");
-            PaymentType paymentType = new PaymentType();
-            paymentType.setCreditCard(creditCard);
+    private static void putIfPresent(Map<String, Object> m, String key, Object value) {
+        if (value != null) m.put(key, value);
+    }
 
-            TransactionRequestType txnRequest = new TransactionRequestType();
-            txnRequest.setTransactionType(TransactionTypeEnum.REFUND_TRANSACTION.value());
-            txnRequest.setRefTransId(providerTxId);
-            txnRequest.setAmount(amount);
-            txnRequest.setPayment(paymentType);
-
-            CreateTransactionRequest request = new CreateTransactionRequest();
-            request.setTransactionRequest(txnRequest);
-
-            CreateTransactionController controller = new CreateTransactionController(request);
-            controller.execute();
-            CreateTransactionResponse response = controller.getApiResponse();
-
-            if (response != null && response.getMessages().getResultCode() == MessageTypeEnum.OK) {
-                TransactionResponse result = response.getTransactionResponse();
-                resp.put("status", "success");
-                if (result != null) resp.put("provider_tx_id", result.getTransId());
-                resp.put("raw", result != null ? result : response);
-            } else {
-                resp.put("status", "failed");
-                resp.put("raw", response);
-            }
-        } catch (Exception ex) {
-            resp.put("status", "failed");
-            resp.put("raw", Map.of("error", ex.getMessage()));
+    private static String toJson(Map<String, Object> value) {
+        try {
+            return JSON.writeValueAsString(value);
+        } catch (JsonProcessingException ex) {
+            return "{}";
         }
-        return resp;
     }
 }
@@ -0,0 +1,83 @@
+package com.example.payment.service;
+
+import com.example.payment.deadline.Deadline;
+import com.example.payment.deadline.DeadlineExceededException;
+import com.example.payment.gateway.GatewayOutcomeUnknownException;
+import com.example.payment.gateway.GatewayResult;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Worker pool for the gateway calls of batch payments. Its size caps how many batch items talk to
+ * Authorize.Net at once across all batches, so one large cart cannot take every pooled connection.
+ */
+@Component
+public class BatchGatewayExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchGatewayExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+
+    public BatchGatewayExecutor(@Value("${payment.batch.concurrency:8}") int concurrency) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "batch-gateway-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    /**
+     * Runs the calls on the pool and waits for all of them. Results are in call order; a call that
+     * throws yields a failed result rather than failing the batch, or null when it went out without
+     * an answer ({@link GatewayOutcomeUnknownException}) and may have been applied. The caller's
+     * {@link Deadline} carries over to the pool threads, so calls still queued when it runs out are
+     * not made.
+     */
+    public List<GatewayResult> invokeAll(List<Supplier<GatewayResult>> calls) {
+        Deadline deadline = Deadline.current();
+        List<CompletableFuture<GatewayResult>> futures = new ArrayList<>(calls.size());
+        for (Supplier<GatewayResult> call : calls) {
+            Supplier<GatewayResult> task = deadline == null ? call : () -> deadline.call(call);
+            futures.add(CompletableFuture.supplyAsync(task, executor).exceptionally(ex -> {
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                if (cause instanceof GatewayOutcomeUnknownException) return null;
+                if (!(cause instanceof DeadlineExceededException)) log.error("Batch gateway call failed", cause);
+                String message = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+                return GatewayResult.failed(null, message, "{}");
+            }));
+        }
+        List<GatewayResult> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<GatewayResult> future : futures) results.add(future.join());
+        return results;
+    }
+
+    public int queued() {
+        return executor.getQueue().size();
+    }
+
+    public int active() {
+        return executor.getActiveCount();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Shutting down with {} batch gateway calls still queued", executor.shutdownNow().size());
+        }
+    }
+}
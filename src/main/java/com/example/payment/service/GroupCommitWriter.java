@@ -0,0 +1,181 @@
+package com.example.payment.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Group commit for payment state writes. Writes submitted by concurrent requests are queued and a
+ * single writer thread runs up to {@code payment.group-commit.max-writes} of them, or whatever
+ * arrives within {@code payment.group-commit.window-ms} of the first, in one database transaction,
+ * so their statements are flushed as JDBC batches and share one commit. {@link #write} returns only
+ * after that commit, so a caller never reports a state that is not durable. The window is only
+ * waited out while writes are arriving concurrently (the previous group had more than one); when
+ * the writer is idle a lone write commits straight away.
+ *
+ * <p>If a group fails, each of its writes is retried in a transaction of its own and its caller
+ * gets that write's own outcome. With {@code max-writes} of 1 writes commit on the caller's thread.
+ */
+@Component
+public class GroupCommitWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitWriter.class);
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxWrites;
+    private final long windowNanos;
+    private final LinkedBlockingQueue<Write<?>> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private volatile boolean running = true;
+
+    public GroupCommitWriter(PlatformTransactionManager transactionManager,
+                             @Value("${payment.group-commit.max-writes:64}") int maxWrites,
+                             @Value("${payment.group-commit.window-ms:2}") long windowMillis) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxWrites = maxWrites;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        if (maxWrites > 1) {
+            writer = new Thread(this::run, "group-commit-writer");
+            writer.setDaemon(true);
+            writer.start();
+        } else {
+            writer = null;
+        }
+    }
+
+    /** Runs {@code work} in a database transaction shared with other queued writes; returns after it commits. */
+    public <T> T write(Supplier<T> work) {
+        if (writer == null || !running) return commitAlone(work);
+        Write<T> w = new Write<>(work);
+        queue.add(w);
+        // shutdown() may have run since the check above, leaving nobody to drain the queue
+        if (!running && queue.remove(w)) return commitAlone(work);
+        try {
+            return w.done.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException re) throw re;
+            if (ex.getCause() instanceof Error err) throw err;
+            throw ex;
+        }
+    }
+
+    private void run() {
+        List<Write<?>> group = new ArrayList<>(maxWrites);
+        int lastGroupSize = 0;
+        while (running || !queue.isEmpty()) {
+            try {
+                Write<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                group.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while (group.size() < maxWrites) {
+                    if (queue.drainTo(group, maxWrites - group.size()) > 0) continue;
+                    if (lastGroupSize <= 1) break;
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    Write<?> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    group.add(next);
+                }
+                lastGroupSize = group.size();
+                commit(group);
+            } catch (InterruptedException ex) {
+                running = false;
+                log.warn("Group commit writer interrupted; committing {} pending writes one at a time", group.size() + queue.size());
+                for (Write<?> w : group) w.retryAlone();
+                for (Write<?> w; (w = queue.poll()) != null; ) w.retryAlone();
+                return;
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void commit(List<Write<?>> group) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Write<?> w : group) w.run();
+            });
+            commits.increment();
+            writes.add(group.size());
+            for (Write<?> w : group) w.complete();
+        } catch (Throwable groupFailure) {
+            if (group.size() > 1) {
+                log.warn("Group commit of {} writes failed, committing them one at a time", group.size(), groupFailure);
+            }
+            for (Write<?> w : group) {
+                if (group.size() == 1) w.done.completeExceptionally(groupFailure);
+                else w.retryAlone();
+            }
+        }
+    }
+
+    private <T> T commitAlone(Supplier<T> work) {
+        T result = transactionTemplate.execute(status -> work.get());
+        commits.increment();
+        writes.increment();
+        return result;
+    }
+
+    public long commits() {
+        return commits.sum();
+    }
+
+    public long writes() {
+        return writes.sum();
+    }
+
+    public int queued() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (writer == null) return;
+        // not interrupted: an interrupt in the middle of a JDBC call can break the connection
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        if (writer.isAlive()) log.warn("Group commit writer still busy at shutdown with {} writes queued", queue.size());
+    }
+
+    private final class Write<T> {
+        final Supplier<T> work;
+        final CompletableFuture<T> done = new CompletableFuture<>();
+        T result;
+
+        Write(Supplier<T> work) {
+            this.work = work;
+        }
+
+        void run() {
+            result = work.get();
+        }
+
+        void complete() {
+            done.complete(result);
+        }
+
+        void retryAlone() {
+            try {
+                done.complete(commitAlone(work));
+            } catch (Throwable ex) {
+                done.completeExceptionally(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.payment.service;
+
+import com.example.payment.deadline.Deadline;
+import com.example.payment.deadline.DeadlineExceededException;
+import com.example.payment.gateway.GatewayUnavailableException;
+import com.example.payment.model.IdempotencyRecord;
+import com.example.payment.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * {@code Idempotency-Key} handling for payment mutations. The first request with a key claims it
+ * by inserting an {@code idempotency_keys} row, runs, and stores its response; later requests with
+ * the same key and body get that response replayed without reaching the gateway or the payment
+ * tables. Keys belong to the subject of the bearer token that sent them; requests without a token
+ * (a purchase needs none) all share one scope.
+ *
+ * <p>A request that fails without a response frees its key for the retry only when the failure is
+ * known to come before the gateway call and before anything was persisted (a refusal by the breaker
+ * or limiter, a deadline that ran out, an order in the wrong state or without the balance).
+ * Anything else may have come after the provider charged, so the key is kept with an
+ * {@code unknown} outcome that is replayed instead of running the payment again.
+ *
+ * <p>A near cache of futures sits in front of the table: duplicates on this node wait on the
+ * first request's future and completed keys are answered from memory. Duplicates that find
+ * another node's claim poll the row until it completes.
+ */
+@Component
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    static final String IN_PROGRESS = "in_progress";
+    static final String COMPLETED = "completed";
+    static final String UNKNOWN = "unknown";
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+    private static final long POLL_MS = 100;
+    private static final Replay OUTCOME_UNKNOWN = new Replay(500,
+            "{\"detail\":\"the first request with this " + HEADER + " failed after it may have reached the payment provider;"
+                    + " check the order before paying again\",\"retryable\":false}", null);
+
+    private final IdempotencyRecordRepository repository;
+    private final ObjectMapper objectMapper;
+    private final long waitMillis;
+    private final int nearCacheSize;
+    private final Duration retention;
+    private final ConcurrentHashMap<String, Entry> nearCache = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyRecordRepository repository, ObjectMapper objectMapper,
+                              @Value("${payment.idempotency.wait-ms:30000}") long waitMillis,
+                              @Value("${payment.idempotency.near-cache-size:10000}") int nearCacheSize,
+                              @Value("${payment.idempotency.retention-hours:24}") long retentionHours) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.waitMillis = waitMillis;
+        this.nearCacheSize = nearCacheSize;
+        this.retention = Duration.ofHours(retentionHours);
+    }
+
+    /**
+     * Runs {@code action} once per {@code (client, operation, key)}. Without a key the action simply runs.
+     * A key reused with a different request body gets 422; a duplicate still waiting after
+     * {@code payment.idempotency.wait-ms} gets 409.
+     */
+    public ResponseEntity<?> execute(String operation, String key, Object request, Supplier<ResponseEntity<?>> action) {
+        if (key == null) return action.get();
+        if (key.isBlank() || key.length() > 255) {
+            return ResponseEntity.badRequest().body(Map.of("detail", HEADER + " must be 1-255 characters"));
+        }
+        String principal = principal();
+        // NUL cannot appear in a header value, so the parts cannot run into each other
+        String cacheKey = principal + '\0' + operation + '\0' + key;
+        String fingerprint = fingerprint(operation, request);
+        // a duplicate waits no longer than its own client does
+        long deadline = System.currentTimeMillis() + Deadline.remainingMillis(waitMillis);
+        while (true) {
+            Entry mine = new Entry(fingerprint, new CompletableFuture<>());
+            Entry existing = nearCache.putIfAbsent(cacheKey, mine);
+            if (existing != null) {
+                if (!existing.fingerprint.equals(fingerprint)) return keyReused();
+                try {
+                    return existing.result.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS).toResponse();
+                } catch (TimeoutException ex) {
+                    return stillInProgress();
+                } catch (ExecutionException ex) {
+                    // the first request failed without a response and released the key; try to claim it
+                    continue;
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return stillInProgress();
+                }
+            }
+            ResponseEntity<?> response = runOrJoin(principal, operation, key, cacheKey, mine, deadline, action);
+            if (response != null) return response;
+        }
+    }
+
+    /** Runs the action under a fresh claim or joins an existing one; null means the key was released, start over. */
+    private ResponseEntity<?> runOrJoin(String principal, String operation, String key, String cacheKey, Entry mine, long deadline,
+                                        Supplier<ResponseEntity<?>> action) {
+        IdempotencyRecord record;
+        try {
+            record = claim(principal, operation, key, mine.fingerprint);
+        } catch (RuntimeException ex) {
+            release(cacheKey, mine, ex);
+            throw ex;
+        }
+        if (record == null) {
+            // already claimed, by another node or before this entry left the near cache
+            return joinPersisted(principal, operation, key, cacheKey, mine, deadline);
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException ex) {
+            if (refusedBeforeGateway(ex)) {
+                // nothing was charged, so free the key for the client's retry
+                try {
+                    repository.delete(record);
+                } catch (RuntimeException deleteFailure) {
+                    ex.addSuppressed(deleteFailure);
+                }
+                release(cacheKey, mine, ex);
+            } else {
+                complete(record, mine, UNKNOWN, OUTCOME_UNKNOWN, operation, key);
+            }
+            throw ex;
+        }
+        if (response.getStatusCode().value() == 503) {
+            // refused before doing anything (e.g. async queue full): the retry should run for real
+            repository.delete(record);
+            release(cacheKey, mine, new IllegalStateException("not executed"));
+            return response;
+        }
+        Replay replay = new Replay(response.getStatusCode().value(), toJson(response.getBody()),
+                response.getHeaders().getLocation() == null ? null : response.getHeaders().getLocation().toString());
+        complete(record, mine, COMPLETED, replay, operation, key);
+        return response;
+    }
+
+    private void complete(IdempotencyRecord record, Entry mine, String status, Replay replay, String operation, String key) {
+        try {
+            record.setStatus(status);
+            record.setResponseStatus(replay.status);
+            record.setResponseBody(replay.body);
+            record.setResponseLocation(replay.location);
+            record.setCompletedAt(Instant.now());
+            repository.save(record);
+        } catch (RuntimeException ex) {
+            // the payment may have gone through; duplicates on this node still get the replay from memory
+            log.error("Could not store response for {} {}={}", operation, HEADER, key, ex);
+        }
+        mine.complete(replay);
+        trimNearCache();
+    }
+
+    /**
+     * Failures that are thrown before the provider is called and before anything is persisted, so
+     * the request can run again under the same key. A purchase or authorization refused once its
+     * order is recorded does not throw: it answers with the order failed, which is kept and replayed.
+     */
+    private static boolean refusedBeforeGateway(RuntimeException ex) {
+        return ex instanceof GatewayUnavailableException || ex instanceof DeadlineExceededException
+                || ex instanceof OrderStateConflictException || ex instanceof AmountExceedsBalanceException;
+    }
+
+    private ResponseEntity<?> joinPersisted(String principal, String operation, String key, String cacheKey, Entry mine, long deadline) {
+        while (true) {
+            Optional<IdempotencyRecord> found = repository.findByPrincipalAndOperationAndIdempotencyKey(principal, operation, key);
+            if (found.isEmpty()) {
+                // the claimant failed and released the key before we could read it
+                release(cacheKey, mine, new IllegalStateException("released"));
+                return null;
+            }
+            IdempotencyRecord record = found.get();
+            if (!record.getRequestHash().equals(mine.fingerprint)) {
+                nearCache.remove(cacheKey, mine);
+                mine.result.cancel(false);
+                return keyReused();
+            }
+            if (!IN_PROGRESS.equals(record.getStatus())) {
+                Replay replay = new Replay(record.getResponseStatus(), record.getResponseBody(), record.getResponseLocation());
+                mine.complete(replay);
+                trimNearCache();
+                return replay.toResponse();
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                // leave the in-flight state to the next duplicate, which will poll again
+                nearCache.remove(cacheKey, mine);
+                mine.result.completeExceptionally(new TimeoutException());
+                return stillInProgress();
+            }
+            try {
+                Thread.sleep(Math.min(POLL_MS, remaining));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                nearCache.remove(cacheKey, mine);
+                mine.result.completeExceptionally(ex);
+                return stillInProgress();
+            }
+        }
+    }
+
+    /** Inserts the in-progress row; returns null if the key is already taken. */
+    private IdempotencyRecord claim(String principal, String operation, String key, String fingerprint) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setPrincipal(principal);
+        record.setOperation(operation);
+        record.setIdempotencyKey(key);
+        record.setRequestHash(fingerprint);
+        record.setStatus(IN_PROGRESS);
+        try {
+            return repository.saveAndFlush(record);
+        } catch (DataIntegrityViolationException ex) {
+            return null;
+        }
+    }
+
+    private void release(String cacheKey, Entry mine, Exception cause) {
+        nearCache.remove(cacheKey, mine);
+        mine.result.completeExceptionally(cause);
+    }
+
+    /** Drops completed entries once the near cache is over its size; in-flight ones always stay. */
+    private void trimNearCache() {
+        if (nearCache.size() <= nearCacheSize) return;
+        for (var it = nearCache.entrySet().iterator(); it.hasNext() && nearCache.size() > nearCacheSize; ) {
+            if (it.next().getValue().result.isDone()) it.remove();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${payment.idempotency.sweep-interval-ms:3600000}", initialDelayString = "${payment.idempotency.sweep-interval-ms:3600000}")
+    public int purgeExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        nearCache.values().removeIf(e -> e.result.isDone() && e.createdAt.isBefore(cutoff));
+        return repository.deleteCreatedBefore(cutoff);
+    }
+
+    private static String principal() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? "" : authentication.getName();
+    }
+
+    String fingerprint(String operation, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(operation.getBytes());
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot fingerprint request", ex);
+        }
+    }
+
+    private String toJson(Object body) {
+        try {
+            return body == null ? null : objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialise response for replay", ex);
+        }
+    }
+
+    private static ResponseEntity<?> keyReused() {
+        return ResponseEntity.unprocessableEntity().body(Map.of("detail", HEADER + " was already used for a different request"));
+    }
+
+    private static ResponseEntity<?> stillInProgress() {
+        return ResponseEntity.status(409).header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("detail", "a request with this " + HEADER + " is still in progress"));
+    }
+
+    private static final class Entry {
+        final String fingerprint;
+        final CompletableFuture<Replay> result;
+        final Instant createdAt = Instant.now();
+
+        Entry(String fingerprint, CompletableFuture<Replay> result) {
+            this.fingerprint = fingerprint;
+            this.result = result;
+        }
+
+        void complete(Replay replay) {
+            result.complete(replay);
+        }
+    }
+
+    private record Replay(int status, String body, String location) {
+        ResponseEntity<?> toResponse() {
+            ResponseEntity.BodyBuilder builder = ResponseEntity.status(status).header(REPLAYED_HEADER, "true");
+            if (location != null) builder.location(URI.create(location));
+            if (body == null) return builder.build();
+            return builder.contentType(MediaType.APPLICATION_JSON).body(body);
+        }
+    }
+}
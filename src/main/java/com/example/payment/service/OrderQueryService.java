@@ -0,0 +1,112 @@
+package com.example.payment.service;
+
+import com.example.payment.deadline.Deadline;
+import com.example.payment.deadline.DeadlineExceededException;
+import com.example.payment.dto.KeysetPage;
+import com.example.payment.dto.OrderSummary;
+import com.example.payment.dto.PageCursor;
+import com.example.payment.dto.RawResponseView;
+import com.example.payment.dto.TransactionSummary;
+import com.example.payment.model.OrderStatus;
+import com.example.payment.model.Transaction;
+import com.example.payment.model.TransactionStatus;
+import com.example.payment.model.TransactionType;
+import com.example.payment.repository.OrderQueryRepository;
+import com.example.payment.repository.OrderRepository;
+import com.example.payment.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/** Read-only listings of orders and their transactions, one keyset page at a time, and their provider responses. */
+@Service
+public class OrderQueryService {
+
+    private final OrderQueryRepository queryRepository;
+    private final OrderRepository orderRepository;
+    private final TransactionRepository transactionRepository;
+    private final RawResponseStore rawResponseStore;
+    private final PlatformTransactionManager transactionManager;
+    private final int maxPageSize;
+
+    public OrderQueryService(OrderQueryRepository queryRepository, OrderRepository orderRepository,
+                             TransactionRepository transactionRepository, RawResponseStore rawResponseStore,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${payment.query.max-page-size:200}") int maxPageSize) {
+        this.queryRepository = queryRepository;
+        this.orderRepository = orderRepository;
+        this.transactionRepository = transactionRepository;
+        this.rawResponseStore = rawResponseStore;
+        this.transactionManager = transactionManager;
+        this.maxPageSize = maxPageSize;
+    }
+
+    public KeysetPage<OrderSummary> orders(OrderStatus status, String currency, PageCursor after, int limit) {
+        int size = pageSize(limit);
+        List<OrderSummary> rows = read("the order listing", () -> queryRepository.findOrders(status, currency, after, size + 1));
+        return page(rows, size, o -> new PageCursor(o.createdAt(), o.orderId()));
+    }
+
+    /** Empty when the order does not exist. */
+    public Optional<KeysetPage<TransactionSummary>> transactions(Long orderId, TransactionStatus status, TransactionType type,
+                                                                 PageCursor after, int limit) {
+        int size = pageSize(limit);
+        return read("the transaction listing", () -> {
+            List<TransactionSummary> rows = queryRepository.findTransactions(orderId, status, type, after, size + 1);
+            // an empty first page is the only one that cannot tell a missing order from an order without matches
+            if (rows.isEmpty() && after == null && !orderRepository.existsById(orderId)) return Optional.empty();
+            return Optional.of(page(rows, size, t -> new PageCursor(t.createdAt(), t.id())));
+        });
+    }
+
+    /** Every provider response recorded for the order, from the database or the archive; empty when the order does not exist. */
+    public Optional<List<RawResponseView>> rawResponses(Long orderId) {
+        return read("the raw response lookup", () -> {
+            List<Transaction> transactions = transactionRepository.findByOrderIdOrderByIdAsc(orderId);
+            if (transactions.isEmpty() && !orderRepository.existsById(orderId)) return Optional.empty();
+            List<RawResponseView> out = new ArrayList<>();
+            for (Transaction tx : transactions) {
+                for (RawResponseStore.Entry e : rawResponseStore.load(tx.getId())) {
+                    out.add(new RawResponseView(tx.getProviderTxId(), tx.getType(), e.operation(), e.createdAt(),
+                            e.archived() ? "archive" : "database", e.json()));
+                }
+            }
+            return Optional.of(out);
+        });
+    }
+
+    private int pageSize(int limit) {
+        return Math.max(1, Math.min(limit, maxPageSize));
+    }
+
+    // one row past the page is read to learn whether another page follows
+    private static <T> KeysetPage<T> page(List<T> rows, int size, Function<T, PageCursor> cursorOf) {
+        if (rows.size() <= size) return new KeysetPage<>(rows, null);
+        List<T> items = rows.subList(0, size);
+        return new KeysetPage<>(items, cursorOf.apply(items.get(size - 1)).encode());
+    }
+
+    private <T> T read(String stage, Supplier<T> read) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            Deadline.check(stage);
+            template.setTimeout(deadline.remainingSeconds());
+        }
+        try {
+            return template.execute(status -> read.get());
+        } catch (TransactionTimedOutException | QueryTimeoutException ex) {
+            throw new DeadlineExceededException(stage);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.payment.service;
+
+/**
+ * A capture, void or refund was refused because of the order's status: the operation is not
+ * allowed from it, or another operation on the same order got there first. Nothing was sent to
+ * the provider. {@link #isRetryable()} when the order was only held by an operation in flight.
+ */
+public class OrderStateConflictException extends RuntimeException {
+
+    private final boolean retryable;
+
+    public OrderStateConflictException(String message, boolean retryable) {
+        super(message);
+        this.retryable = retryable;
+    }
+
+    public boolean isRetryable() {
+        return retryable;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.payment.service;
+
+import com.example.payment.gateway.GatewayResult;
+import com.example.payment.model.TransactionStatus;
+import com.example.payment.model.TransactionType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Payment lifecycle metrics:
+ * <ul>
+ *   <li>{@code payment.operation} - time of each {@link PaymentService} operation, by operation and outcome</li>
+ *   <li>{@code payment.gateway.requests} - Authorize.Net round trips, by client method and outcome</li>
+ *   <li>{@code payment.transactions} - recorded transactions, by type and status</li>
+ * </ul>
+ * Timers publish percentile histograms so p99 can be aggregated across instances.
+ */
+@Component
+public class PaymentMetrics {
+
+    private final MeterRegistry registry;
+
+    public PaymentMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * outcome: success, failed (provider said no) or not_found; when the operation threw, rejected (breaker or
+     * limiter), deadline_exceeded, conflict (order state), exceeds_balance, outcome_unknown (sent, no answer) or error.
+     */
+    public void operation(Timer.Sample sample, String operation, String outcome) {
+        sample.stop(Timer.builder("payment.operation")
+                .description("PaymentService operation time")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    /** Times {@code call} as a gateway request; the outcome comes from its result. */
+    public GatewayResult gateway(String method, Supplier<GatewayResult> call) {
+        Timer.Sample sample = Timer.start(registry);
+        GatewayResult result = null;
+        try {
+            result = call.get();
+            return result;
+        } finally {
+            sample.stop(Timer.builder("payment.gateway.requests")
+                    .description("Authorize.Net round trip time")
+                    .tag("method", method)
+                    .tag("outcome", gatewayOutcome(result))
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+    }
+
+    public void transaction(TransactionType type, TransactionStatus status) {
+        Counter.builder("payment.transactions")
+                .description("Recorded payment transactions")
+                .tag("type", type.value())
+                .tag("status", status.value())
+                .register(registry)
+                .increment();
+    }
+
+    static String gatewayOutcome(GatewayResult result) {
+        if (result == null) return "error";
+        if (result.isSuccess()) return "approved";
+        // 2 = declined, 4 = held for review; anything else is an API, transport or processing error
+        if ("2".equals(result.getResponseCode()) || "4".equals(result.getResponseCode())) return "declined";
+        return "error";
+    }
+}
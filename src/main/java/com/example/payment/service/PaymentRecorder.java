@@ -0,0 +1,382 @@
+package com.example.payment.service;
+
+import com.example.payment.gateway.GatewayResult;
+import com.example.payment.model.Order;
+import com.example.payment.model.OrderStatus;
+import com.example.payment.model.Transaction;
+import com.example.payment.model.TransactionStatus;
+import com.example.payment.model.TransactionType;
+import com.example.payment.repository.OrderRepository;
+import com.example.payment.repository.OrderState;
+import com.example.payment.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Short database transactions around a payment. {@link PaymentService} calls the gateway between
+ * {@link #recordPending} and one of the apply methods, so no JDBC connection is held while the
+ * provider is working. The apply methods go through {@link GroupCommitWriter}: concurrent payments'
+ * outcomes share a transaction and a commit, and each method returns once its write has committed.
+ *
+ * <p>Order status only moves along {@link OrderStatus} transitions. A new order is written back
+ * as an entity, so its {@code @Version} guards it against the sweeper; follow-up operations on an
+ * existing order change its status only by conditional update ({@link #claim}, then the outcome),
+ * so concurrent captures, voids and refunds of one order cannot both go through. The order's
+ * running totals change in the same statements as its status.
+ */
+@Component
+public class PaymentRecorder {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentRecorder.class);
+    private static final int LATE_SETTLE_ATTEMPTS = 3;
+
+    private final OrderRepository orderRepository;
+    private final TransactionRepository transactionRepository;
+    private final RawResponseStore rawResponseStore;
+    private final TransactionLookupCache lookupCache;
+    private final GroupCommitWriter writer;
+
+    public PaymentRecorder(OrderRepository orderRepository, TransactionRepository transactionRepository, RawResponseStore rawResponseStore,
+                           TransactionLookupCache lookupCache, GroupCommitWriter writer) {
+        this.orderRepository = orderRepository;
+        this.transactionRepository = transactionRepository;
+        this.rawResponseStore = rawResponseStore;
+        this.lookupCache = lookupCache;
+        this.writer = writer;
+    }
+
+    public Transaction recordPending(TransactionType type, BigDecimal amount, String currency, String externalOrderId) {
+        return writer.write(() -> insertPending(type, amount, currency, externalOrderId));
+    }
+
+    /**
+     * {@link #recordPending} for several payments as one write, so the inserts go out as JDBC
+     * batches. The returned transactions are in item order.
+     */
+    public List<Transaction> recordPendingBatch(List<PaymentService.BatchItem> items) {
+        return writer.write(() -> insertPendingBatch(items));
+    }
+
+    // entities are created inside the write: a write from a failed group is run again from scratch
+    private Transaction insertPending(TransactionType type, BigDecimal amount, String currency, String externalOrderId) {
+        Order order = new Order();
+        order.setAmount(amount);
+        order.setCurrency(currency);
+        order.setExternalId(externalOrderId);
+        order.setStatus(OrderStatus.PROCESSING);
+        order = orderRepository.save(order);
+
+        Transaction tx = new Transaction();
+        tx.setOrder(order);
+        tx.setType(type);
+        tx.setAmount(amount);
+        tx.setStatus(TransactionStatus.PENDING);
+        return transactionRepository.save(tx);
+    }
+
+    private List<Transaction> insertPendingBatch(List<PaymentService.BatchItem> items) {
+        List<Order> orders = new ArrayList<>(items.size());
+        for (PaymentService.BatchItem item : items) {
+            Order order = new Order();
+            order.setAmount(item.amount());
+            order.setCurrency(item.currency());
+            order.setExternalId(item.externalOrderId());
+            order.setStatus(OrderStatus.PROCESSING);
+            orders.add(order);
+        }
+        orders = orderRepository.saveAll(orders);
+
+        List<Transaction> txs = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            Transaction tx = new Transaction();
+            tx.setOrder(orders.get(i));
+            tx.setType(items.get(i).isPurchase() ? TransactionType.PURCHASE : TransactionType.AUTHORIZE);
+            tx.setAmount(items.get(i).amount());
+            tx.setStatus(TransactionStatus.PENDING);
+            txs.add(tx);
+        }
+        return transactionRepository.saveAll(txs);
+    }
+
+    /**
+     * Applies the provider response to a transaction created by {@link #recordPending}; the order
+     * moves to {@code successOrderStatus} or {@code failed}.
+     */
+    public Transaction applyResult(Transaction tx, GatewayResult result, OrderStatus successOrderStatus) {
+        OrderStatus next = outcome(tx, result, successOrderStatus);
+        Transaction applied = writer.write(() -> updateWithResult(tx, result, next));
+        copyResult(applied, tx);
+        return applied;
+    }
+
+    /**
+     * {@link #applyResult} for a batch, as one write; lists are index-aligned. A null result (the
+     * provider's answer never came) leaves its transaction pending and its order in {@code processing}.
+     */
+    public List<Transaction> applyResults(List<Transaction> txs, List<GatewayResult> results, List<OrderStatus> successOrderStatuses) {
+        List<OrderStatus> next = new ArrayList<>(txs.size());
+        for (int i = 0; i < txs.size(); i++) {
+            next.add(results.get(i) == null ? null : outcome(txs.get(i), results.get(i), successOrderStatuses.get(i)));
+        }
+        List<Transaction> applied = writer.write(() -> {
+            List<Transaction> saved = new ArrayList<>(txs.size());
+            for (int i = 0; i < txs.size(); i++) {
+                saved.add(results.get(i) == null ? txs.get(i) : updateWithResult(txs.get(i), results.get(i), next.get(i)));
+            }
+            return saved;
+        });
+        for (int i = 0; i < txs.size(); i++) {
+            if (applied.get(i) != txs.get(i)) copyResult(applied.get(i), txs.get(i));
+        }
+        return applied;
+    }
+
+    private static OrderStatus outcome(Transaction tx, GatewayResult result, OrderStatus successOrderStatus) {
+        OrderStatus next = result.isSuccess() ? successOrderStatus : OrderStatus.FAILED;
+        Order order = tx.getOrder();
+        if (!order.getStatus().canMoveTo(next)) {
+            throw new IllegalStateException("order " + order.getId() + " cannot move from " + order.getStatus().value() + " to " + next.value());
+        }
+        return next;
+    }
+
+    // a write from a failed group is run again, so it changes copies and leaves the caller's entities as they were read
+    private Transaction updateWithResult(Transaction pending, GatewayResult result, OrderStatus next) {
+        Order order = copyOf(pending.getOrder());
+        order.setStatus(next);
+        if (result.isSuccess()) {
+            order.setAuthorizedAmount(pending.getAmount());
+            if (next == OrderStatus.CAPTURED) order.setCapturedAmount(pending.getAmount());
+        }
+        order.setUpdatedAt(Instant.now());
+        Transaction tx = copyOf(pending, order);
+        tx.setProviderTxId(result.getProviderTxId());
+        tx.setStatus(result.isSuccess() ? TransactionStatus.SUCCESS : TransactionStatus.FAILED);
+
+        tx = transactionRepository.save(tx);
+        orderRepository.save(order);
+        rawResponseStore.store(tx.getId(), tx.getType().value(), result.getRawResponse());
+        // captures, voids and refunds of this payment will look it up by provider id
+        lookupCache.put(tx.getProviderTxId(), tx.getId(), order.getId());
+        return tx;
+    }
+
+    private static Transaction copyOf(Transaction tx, Order order) {
+        Transaction copy = new Transaction();
+        copy.setId(tx.getId());
+        copy.setOrder(order);
+        copy.setType(tx.getType());
+        copy.setProviderTxId(tx.getProviderTxId());
+        copy.setAmount(tx.getAmount());
+        copy.setStatus(tx.getStatus());
+        copy.setVersion(tx.getVersion());
+        copy.setCreatedAt(tx.getCreatedAt());
+        return copy;
+    }
+
+    private static Order copyOf(Order order) {
+        Order copy = new Order();
+        copy.setId(order.getId());
+        copy.setExternalId(order.getExternalId());
+        copy.setCurrency(order.getCurrency());
+        copy.setAmount(order.getAmount());
+        copyState(order, copy);
+        copy.setCreatedAt(order.getCreatedAt());
+        return copy;
+    }
+
+    private static void copyState(Order from, Order to) {
+        to.setStatus(from.getStatus());
+        to.setAuthorizedAmount(from.getAuthorizedAmount());
+        to.setCapturedAmount(from.getCapturedAmount());
+        to.setRefundedAmount(from.getRefundedAmount());
+        to.setVoidedAmount(from.getVoidedAmount());
+        to.setVersion(from.getVersion());
+        to.setUpdatedAt(from.getUpdatedAt());
+    }
+
+    private static void copyResult(Transaction applied, Transaction tx) {
+        tx.setProviderTxId(applied.getProviderTxId());
+        tx.setStatus(applied.getStatus());
+        tx.setVersion(applied.getVersion());
+        if (applied.getOrder() != tx.getOrder()) copyState(applied.getOrder(), tx.getOrder());
+    }
+
+    /**
+     * Claims the order for a follow-up operation before its gateway call, moving it from its
+     * current status to {@code claim} ({@code CAPTURING}, {@code VOIDING} or {@code REFUNDING}) by
+     * conditional update, provided it is still the version that was read. A capture or refund of
+     * {@code amount} is checked against the order's running totals first. Refused with
+     * {@link OrderStateConflictException} when the operation is not allowed from the order's status
+     * or another request changed the order first, and with {@link AmountExceedsBalanceException}
+     * when the amount is not available. Returns the status the claim came from, for
+     * {@link #recordFollowUp} and {@link #release}.
+     */
+    @Transactional
+    public OrderStatus claim(Order order, OrderStatus claim, BigDecimal amount) {
+        OrderStatus from = order.getStatus();
+        if (!from.canMoveTo(claim)) {
+            throw new OrderStateConflictException("order " + order.getId() + " is " + from.value() + ", cannot start "
+                    + claim.value(), from.isClaimed());
+        }
+        BigDecimal available = claim == OrderStatus.CAPTURING ? order.capturableAmount()
+                : claim == OrderStatus.REFUNDING ? order.refundableAmount() : null;
+        if (available != null && amount.compareTo(available) > 0) {
+            throw new AmountExceedsBalanceException("order " + order.getId() + " has " + available.toPlainString() + " left to "
+                    + (claim == OrderStatus.CAPTURING ? "capture" : "refund") + ", " + amount.toPlainString() + " requested", available);
+        }
+        if (orderRepository.claim(order.getId(), from, order.getVersion(), claim, Instant.now()) == 0) {
+            throw new OrderStateConflictException("order " + order.getId() + " was changed by a concurrent request", true);
+        }
+        order.setStatus(claim);
+        order.setVersion(order.getVersion() + 1);
+        return from;
+    }
+
+    /**
+     * Records a follow-up transaction (capture, void, refund) against an order {@link #claim claimed}
+     * for it, and releases the claim: when the provider call succeeded, to the operation's outcome
+     * with {@code amount} added to the matching running total, else back to {@code claimedFrom}.
+     * A success that finds the claim gone (the sweeper released it while the call was out) is
+     * settled against the order as it is by then, so the totals still count what the provider did.
+     */
+    public Transaction recordFollowUp(Transaction original, TransactionType type, BigDecimal amount, GatewayResult result,
+                                      OrderStatus claimedFrom) {
+        Order order = original.getOrder();
+        OrderStatus claim = order.getStatus();
+        long version = order.getVersion();
+        Settlement settlement = result.isSuccess() ? Settlement.of(order.getCapturedAmount(), order.getRefundedAmount(),
+                order.getVoidedAmount(), type, amount) : null;
+        FollowUp done = writer.write(() -> insertFollowUp(order, type, amount, result, claim, version, settlement, claimedFrom));
+        if (done.version() < 0) {
+            log.warn("Order {} was no longer {} when its outcome ({}) was recorded", order.getId(), claim.value(), claimedFrom.value());
+            return done.tx();
+        }
+        order.setVersion(done.version());
+        if (done.settlement() == null) {
+            order.setStatus(claimedFrom);
+            return done.tx();
+        }
+        if (done.settlement() != settlement) {
+            log.warn("Order {} was no longer {} when its {} succeeded; settled as {} against its totals by then", order.getId(),
+                    claim.value(), type.value(), done.settlement().to().value());
+        }
+        order.setStatus(done.settlement().to());
+        order.setCapturedAmount(done.settlement().captured());
+        order.setRefundedAmount(done.settlement().refunded());
+        order.setVoidedAmount(done.settlement().voided());
+        return done.tx();
+    }
+
+    // the claim, version and totals it writes were read before the write, or are read again inside it, so a rerun after a
+    // failed group writes the same
+    private FollowUp insertFollowUp(Order order, TransactionType type, BigDecimal amount, GatewayResult result, OrderStatus claim,
+                                    long version, Settlement settlement, OrderStatus claimedFrom) {
+        Transaction tx = new Transaction();
+        tx.setOrder(order);
+        tx.setType(type);
+        tx.setAmount(amount);
+        tx.setStatus(result.isSuccess() ? TransactionStatus.SUCCESS : TransactionStatus.FAILED);
+        tx.setProviderTxId(result.getProviderTxId());
+        tx = transactionRepository.save(tx);
+        rawResponseStore.store(tx.getId(), type.value(), result.getRawResponse());
+        if (settlement == null) {
+            // a failed call changed nothing at the provider: a claim already released stays as the sweeper left it
+            boolean moved = orderRepository.transition(order.getId(), claim, claimedFrom, Instant.now()) > 0;
+            return new FollowUp(tx, null, moved ? version + 1 : -1);
+        }
+        // only the sweeper takes a claim away from its holder, and only once it is long overdue
+        if (orderRepository.settle(order.getId(), claim, version, settlement.to(), settlement.captured(), settlement.refunded(),
+                settlement.voided(), Instant.now()) > 0) {
+            return new FollowUp(tx, settlement, version + 1);
+        }
+        // the provider applied it all the same: add it to the totals as they are now, whatever moved the order meanwhile
+        for (int attempt = 1; ; attempt++) {
+            OrderState now = orderRepository.findStateById(order.getId())
+                    .orElseThrow(() -> new IllegalStateException("order " + order.getId() + " is gone"));
+            Settlement late = Settlement.of(now.capturedAmount(), now.refundedAmount(), now.voidedAmount(), type, amount);
+            if (orderRepository.settle(order.getId(), now.status(), now.version(), late.to(), late.captured(), late.refunded(),
+                    late.voided(), Instant.now()) > 0) {
+                return new FollowUp(tx, late, now.version() + 1);
+            }
+            if (attempt == LATE_SETTLE_ATTEMPTS) {
+                throw new IllegalStateException("order " + order.getId() + " kept changing while its " + type.value() + " was settled");
+            }
+        }
+    }
+
+    /** Gives up a {@link #claim} without a result, e.g. when the gateway call was refused or threw. */
+    public void release(Order order, OrderStatus claimedFrom) {
+        OrderStatus claim = order.getStatus();
+        int moved = writer.write(() -> orderRepository.transition(order.getId(), claim, claimedFrom, Instant.now()));
+        if (moved == 0) {
+            log.warn("Order {} was no longer {} when its outcome ({}) was recorded", order.getId(), claim.value(), claimedFrom.value());
+            return;
+        }
+        order.setStatus(claimedFrom);
+        order.setVersion(order.getVersion() + 1);
+    }
+
+    /** A claimed order's status and running totals once its follow-up succeeded. */
+    private record Settlement(OrderStatus to, BigDecimal captured, BigDecimal refunded, BigDecimal voided) {
+
+        static Settlement of(BigDecimal captured, BigDecimal refunded, BigDecimal voided, TransactionType type, BigDecimal amount) {
+            return switch (type) {
+                case CAPTURE -> new Settlement(OrderStatus.CAPTURED, captured.add(amount), refunded, voided);
+                case REFUND -> {
+                    BigDecimal total = refunded.add(amount);
+                    yield new Settlement(total.compareTo(captured) >= 0 ? OrderStatus.REFUNDED : OrderStatus.PARTIALLY_REFUNDED,
+                            captured, total, voided);
+                }
+                case VOID -> new Settlement(OrderStatus.CANCELLED, captured, refunded, voided.add(amount));
+                default -> throw new IllegalArgumentException("not a follow-up: " + type);
+            };
+        }
+    }
+
+    /** What a follow-up's write did to the order: its settlement (null if it failed) and new version, or -1 if it left the order alone. */
+    private record FollowUp(Transaction tx, Settlement settlement, long version) {
+    }
+
+    /**
+     * Fails an order that never left {@code processing}, e.g. because the node died during the
+     * gateway call. Returns false when the order moved on in the meantime.
+     */
+    @Transactional
+    public boolean abandon(Long orderId) {
+        if (orderRepository.transition(orderId, OrderStatus.PROCESSING, OrderStatus.FAILED, Instant.now()) == 0) return false;
+        for (Transaction tx : transactionRepository.findByOrderIdAndStatus(orderId, TransactionStatus.PENDING)) {
+            tx.setStatus(TransactionStatus.FAILED);
+            transactionRepository.save(tx);
+        }
+        return true;
+    }
+
+    /**
+     * Releases a follow-up's claim whose holder never recorded an outcome (the node died during the
+     * gateway call), to the status the order's running totals imply. Returns that status, or empty
+     * when the order moved on in the meantime.
+     */
+    @Transactional
+    public Optional<OrderStatus> releaseStaleClaim(Order order) {
+        boolean captured = order.getCapturedAmount().signum() > 0;
+        boolean refunded = order.getRefundedAmount().signum() > 0;
+        OrderStatus to = switch (order.getStatus()) {
+            case CAPTURING -> OrderStatus.AUTHORIZED;
+            case VOIDING -> captured ? OrderStatus.CAPTURED : OrderStatus.AUTHORIZED;
+            case REFUNDING -> !refunded ? OrderStatus.CAPTURED
+                    : order.refundableAmount().signum() == 0 ? OrderStatus.REFUNDED : OrderStatus.PARTIALLY_REFUNDED;
+            default -> throw new IllegalArgumentException("order " + order.getId() + " is not claimed: " + order.getStatus());
+        };
+        if (orderRepository.transition(order.getId(), order.getStatus(), to, Instant.now()) == 0) return Optional.empty();
+        return Optional.of(to);
+    }
+}
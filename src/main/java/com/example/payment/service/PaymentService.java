@@ -1,158 +1,361 @@
 package com.example.payment.service;
 
+import com.example.payment.deadline.Deadline;
+import com.example.payment.deadline.DeadlineExceededException;
+import com.example.payment.gateway.GatewayOutcomeUnknownException;
+import com.example.payment.gateway.GatewayResult;
+import com.example.payment.gateway.GatewayUnavailableException;
+import com.example.payment.gateway.PaymentGateway;
+import com.example.payment.journal.JournalEvent;
+import com.example.payment.journal.PaymentJournal;
 import com.example.payment.model.Order;
+import com.example.payment.model.OrderStatus;
 import com.example.payment.model.Transaction;
-import com.example.payment.repository.OrderRepository;
+import com.example.payment.model.TransactionStatus;
+import com.example.payment.model.TransactionType;
 import com.example.payment.repository.TransactionRepository;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionTimedOutException;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
+/**
+ * Payment flows. None of these methods run inside a database transaction: each one writes through
+ * {@link PaymentRecorder} in short transactions before and after the (blocking) gateway call, so a
+ * pooled connection is never held for the provider round trip.
+ *
+ * <p>Under a request {@link Deadline} each flow stops before its next step (lookup, pending insert,
+ * gateway call) once the budget is gone, and lookups run with a query timeout of what is left.
+ * Nothing is cut short after the gateway call: its outcome is always recorded. A call that went out
+ * without an answer ({@link GatewayOutcomeUnknownException}) records nothing: the order stays in
+ * {@code processing}, or claimed, for {@link ProcessingOrderSweeper} and reconciliation.
+ *
+ * <p>Capture, void and refund claim the order ({@link PaymentRecorder#claim}) before calling the
+ * provider, so the second of two racing operations on one order is refused with
+ * {@link OrderStateConflictException} and never reaches it. Capture and refund amounts are checked
+ * against the order's running totals at the same point ({@link AmountExceedsBalanceException}).
+ *
+ * <p>Each step is also appended to the {@link PaymentJournal}: the order's creation, the gateway
+ * request (on disk before the call starts), the response, and each status that committed.
+ */
 @Service
 public class PaymentService {
 
-    private final AuthorizeNetClient authorizeNetClient;
-    private final OrderRepository orderRepository;
+    private final PaymentGateway paymentGateway;
+    private final PaymentRecorder paymentRecorder;
     private final TransactionRepository transactionRepository;
+    private final PurchasePipeline purchasePipeline;
+    private final BatchGatewayExecutor batchGatewayExecutor;
+    private final TransactionLookupCache lookupCache;
+    private final PaymentMetrics metrics;
+    private final PlatformTransactionManager transactionManager;
+    private final PaymentJournal journal;
 
-    public PaymentService(AuthorizeNetClient authorizeNetClient, OrderRepository orderRepository, TransactionRepository transactionRepository) {
-        this.authorizeNetClient = authorizeNetClient;
-        this.orderRepository = orderRepository;
+    public PaymentService(PaymentGateway paymentGateway, PaymentRecorder paymentRecorder, TransactionRepository transactionRepository,
+                          PurchasePipeline purchasePipeline, BatchGatewayExecutor batchGatewayExecutor, TransactionLookupCache lookupCache,
+                          PaymentMetrics metrics, PlatformTransactionManager transactionManager, PaymentJournal journal) {
+        this.paymentGateway = paymentGateway;
+        this.paymentRecorder = paymentRecorder;
         this.transactionRepository = transactionRepository;
+        this.purchasePipeline = purchasePipeline;
+        this.batchGatewayExecutor = batchGatewayExecutor;
+        this.lookupCache = lookupCache;
+        this.metrics = metrics;
+        this.transactionManager = transactionManager;
+        this.journal = journal;
     }
 
-    @Transactional
     public Transaction purchase(BigDecimal amount, String currency, Map<String, String> card, String externalOrderId) {
-        Order order = new Order();
-        order.setAmount(amount);
-        order.setCurrency(currency);
-        order.setExternalId(externalOrderId);
-        order.setStatus("processing");
-        order = orderRepository.save(order);
-
-        Transaction tx = new Transaction();
-        tx.setOrder(order);
-        tx.setType("purchase");
-        tx.setAmount(amount);
-        tx.setStatus("pending");
-        tx = transactionRepository.save(tx);
-
-        Map<String, Object> resp = authorizeNetClient.createTransaction(amount, currency, card, true);
-        String status = (String) resp.getOrDefault("status", "failed");
-        tx.setProviderTxId((String) resp.get("provider_tx_id"));
-        tx.setRawResponse(resp.get("raw").toString());
-        if ("success".equals(status)) {
-            tx.setStatus("success");
-            order.setStatus("captured");
-        } else {
-            tx.setStatus("failed");
-            order.setStatus("failed");
+        return timed("purchase", () -> {
+            paymentGateway.checkAvailable();
+            Deadline.check("recording the payment");
+            Transaction tx = paymentRecorder.recordPending(TransactionType.PURCHASE, amount, currency, externalOrderId);
+            journalCreated(tx);
+            GatewayResult result = createTransaction(tx, amount, currency, card, true);
+            return journalApplied(paymentRecorder.applyResult(tx, result, OrderStatus.CAPTURED));
+        });
+    }
+
+    /**
+     * Records the order as {@code processing} and hands the gateway call to {@link PurchasePipeline}.
+     * Returns empty when the pipeline is full; nothing is persisted in that case, nor when the
+     * gateway is refusing calls ({@link GatewayUnavailableException}).
+     */
+    public Optional<Transaction> purchaseAsync(BigDecimal amount, String currency, Map<String, String> card, String externalOrderId) {
+        paymentGateway.checkAvailable();
+        Deadline.check("recording the payment");
+        if (!purchasePipeline.tryReserve()) return Optional.empty();
+        Transaction tx;
+        try {
+            tx = paymentRecorder.recordPending(TransactionType.PURCHASE, amount, currency, externalOrderId);
+        } catch (RuntimeException ex) {
+            purchasePipeline.cancel();
+            throw ex;
         }
+        journalCreated(tx);
+        purchasePipeline.execute(() -> timed("purchase_async", () -> {
+            GatewayResult result = createTransaction(tx, amount, currency, card, true);
+            return journalApplied(paymentRecorder.applyResult(tx, result, OrderStatus.CAPTURED));
+        }));
+        return Optional.of(tx);
+    }
 
-        transactionRepository.save(tx);
-        orderRepository.save(order);
-        return tx;
+    /**
+     * Purchases and authorizations in bulk: the pending orders are inserted together, the gateway
+     * calls run in parallel on {@link BatchGatewayExecutor}, and the results are written back
+     * together. Items succeed or fail individually; the transactions come back in item order, and
+     * one whose call went out without an answer comes back still pending.
+     */
+    public List<Transaction> batch(List<BatchItem> items) {
+        Timer.Sample sample = metrics.start();
+        List<Transaction> txs;
+        try {
+            paymentGateway.checkAvailable();
+            Deadline.check("recording the payments");
+            List<Transaction> pending = paymentRecorder.recordPendingBatch(items);
+            long requested = 0;
+            for (Transaction tx : pending) {
+                journalCreated(tx);
+                requested = journal.append(JournalEvent.Kind.REQUESTED, tx.getOrder().getId(), tx.getType().value(), tx.getAmount(),
+                        null, null);
+            }
+            journal.awaitDurable(requested);
+            List<Supplier<GatewayResult>> calls = new ArrayList<>(items.size());
+            List<OrderStatus> successStatuses = new ArrayList<>(items.size());
+            for (BatchItem item : items) {
+                boolean capture = item.isPurchase();
+                calls.add(() -> paymentGateway.createTransaction(item.amount(), item.currency(), item.card(), capture));
+                successStatuses.add(capture ? OrderStatus.CAPTURED : OrderStatus.AUTHORIZED);
+            }
+            List<GatewayResult> results = batchGatewayExecutor.invokeAll(calls);
+            for (int i = 0; i < results.size(); i++) {
+                Transaction tx = pending.get(i);
+                GatewayResult result = results.get(i);
+                journal.append(JournalEvent.Kind.RESPONDED, tx.getOrder().getId(), tx.getType().value(), null,
+                        result == null ? "unknown" : result.getStatus(), result == null ? null : result.getProviderTxId());
+            }
+            txs = paymentRecorder.applyResults(pending, results, successStatuses);
+            txs.forEach(this::journalApplied);
+        } catch (RuntimeException ex) {
+            metrics.operation(sample, "batch", outcome(ex));
+            throw ex;
+        }
+        boolean allSucceeded = true;
+        for (Transaction tx : txs) {
+            allSucceeded &= tx.getStatus() == TransactionStatus.SUCCESS;
+            metrics.transaction(tx.getType(), tx.getStatus());
+        }
+        metrics.operation(sample, "batch", allSucceeded ? "success" : "failed");
+        return txs;
+    }
+
+    /** Latest transaction of the order (with the order loaded), for status polling. */
+    public Optional<Transaction> latestTransaction(Long orderId) {
+        return withinDeadline("the status lookup", () -> transactionRepository.findFirstByOrderIdOrderByIdDesc(orderId));
     }
 
-    @Transactional
     public Transaction authorizeOnly(BigDecimal amount, String currency, Map<String, String> card, String externalOrderId) {
-        Order order = new Order();
-        order.setAmount(amount);
-        order.setCurrency(currency);
-        order.setExternalId(externalOrderId);
-        order.setStatus("processing");
-        order = orderRepository.save(order);
-
-        Transaction tx = new Transaction();
-        tx.setOrder(order);
-        tx.setType("authorize");
-        tx.setAmount(amount);
-        tx.setStatus("pending");
-        tx = transactionRepository.save(tx);
-
-        Map<String, Object> resp = authorizeNetClient.createTransaction(amount, currency, null, false);
-        String status = (String) resp.getOrDefault("status", "failed");
-        tx.setProviderTxId((String) resp.get("provider_tx_id"));
-        tx.setRawResponse(resp.get("raw").toString());
-        if ("success".equals(status)) {
-            tx.setStatus("success");
-            order.setStatus("authorized");
-        } else {
-            tx.setStatus("failed");
-            order.setStatus("failed");
-        }
+        return timed("authorize", () -> {
+            paymentGateway.checkAvailable();
+            Deadline.check("recording the payment");
+            Transaction tx = paymentRecorder.recordPending(TransactionType.AUTHORIZE, amount, currency, externalOrderId);
+            journalCreated(tx);
+            GatewayResult result = createTransaction(tx, amount, currency, card, false);
+            return journalApplied(paymentRecorder.applyResult(tx, result, OrderStatus.AUTHORIZED));
+        });
+    }
 
-        transactionRepository.save(tx);
-        orderRepository.save(order);
+    public Optional<Transaction> capture(String providerAuthTxId, BigDecimal amount) {
+        return timedLookup("capture", () -> {
+            Optional<Transaction> authTxOpt = findByProviderTxId(providerAuthTxId);
+            if (authTxOpt.isEmpty()) return Optional.empty();
+            Transaction authTx = authTxOpt.get();
+            BigDecimal captureAmount = amount == null ? authTx.getOrder().capturableAmount() : amount;
+            paymentGateway.checkAvailable();
+            OrderStatus from = paymentRecorder.claim(authTx.getOrder(), OrderStatus.CAPTURING, captureAmount);
+            GatewayResult result = callClaimed(authTx.getOrder(), from, TransactionType.CAPTURE, captureAmount, providerAuthTxId,
+                    () -> paymentGateway.captureTransaction(providerAuthTxId, captureAmount));
+            Transaction capture = paymentRecorder.recordFollowUp(authTx, TransactionType.CAPTURE, captureAmount, result, from);
+            return Optional.of(journalApplied(capture));
+        });
+    }
+
+    public Optional<Transaction> voidTransaction(String providerTxId) {
+        return timedLookup("void", () -> {
+            Optional<Transaction> txOpt = findByProviderTxId(providerTxId);
+            if (txOpt.isEmpty()) return Optional.empty();
+            Transaction orig = txOpt.get();
+            Order order = orig.getOrder();
+            // voids the capture if there is one, else what is left of the authorization
+            BigDecimal voidAmount = order.getCapturedAmount().signum() > 0 ? order.getCapturedAmount() : order.capturableAmount();
+            paymentGateway.checkAvailable();
+            OrderStatus from = paymentRecorder.claim(order, OrderStatus.VOIDING, voidAmount);
+            GatewayResult result = callClaimed(order, from, TransactionType.VOID, voidAmount, providerTxId,
+                    () -> paymentGateway.voidTransaction(providerTxId));
+            return Optional.of(journalApplied(paymentRecorder.recordFollowUp(orig, TransactionType.VOID, voidAmount, result, from)));
+        });
+    }
+
+    public Optional<Transaction> refund(String providerCapturedTxId, BigDecimal amount, String last4) {
+        return timedLookup("refund", () -> {
+            Optional<Transaction> capturedOpt = findByProviderTxId(providerCapturedTxId);
+            if (capturedOpt.isEmpty()) return Optional.empty();
+            Transaction orig = capturedOpt.get();
+            BigDecimal refundAmount = amount == null ? orig.getOrder().refundableAmount() : amount;
+            paymentGateway.checkAvailable();
+            OrderStatus from = paymentRecorder.claim(orig.getOrder(), OrderStatus.REFUNDING, refundAmount);
+            GatewayResult result = callClaimed(orig.getOrder(), from, TransactionType.REFUND, refundAmount, providerCapturedTxId,
+                    () -> paymentGateway.refundTransaction(providerCapturedTxId, refundAmount, last4));
+            return Optional.of(journalApplied(paymentRecorder.recordFollowUp(orig, TransactionType.REFUND, refundAmount, result, from)));
+        });
+    }
+
+    /** The original transaction recorded under a provider id, by primary key when the cache knows it. */
+    private Optional<Transaction> findByProviderTxId(String providerTxId) {
+        return withinDeadline("the transaction lookup", () -> lookUp(providerTxId));
+    }
+
+    private Optional<Transaction> lookUp(String providerTxId) {
+        TransactionLookupCache.Ref ref = lookupCache.get(providerTxId);
+        if (ref != null) {
+            Optional<Transaction> tx = transactionRepository.findWithOrderById(ref.transactionId());
+            if (tx.isPresent()) return tx;
+            // the row went away, e.g. its insert was rolled back after the cache saw it
+            lookupCache.invalidate(providerTxId);
+        }
+        Optional<Transaction> tx = transactionRepository.findFirstByProviderTxIdOrderByIdAsc(providerTxId);
+        tx.ifPresent(t -> lookupCache.put(providerTxId, t.getId(), t.getOrder().getId()));
         return tx;
     }
 
-    @Transactional
-    public Optional<Transaction> capture(String providerAuthTxId, BigDecimal amount) {
-        Optional<Transaction> authTxOpt = transactionRepository.findByProviderTxId(providerAuthTxId);
-        if (authTxOpt.isEmpty()) return Optional.empty();
-        Transaction authTx = authTxOpt.get();
-        Map<String, Object> resp = authorizeNetClient.captureTransaction(providerAuthTxId, amount == null ? authTx.getAmount() : amount);
-        Transaction captureTx = new Transaction();
-        captureTx.setOrder(authTx.getOrder());
-        captureTx.setType("capture");
-        captureTx.setAmount(amount == null ? authTx.getAmount() : amount);
-        captureTx.setStatus((String) resp.getOrDefault("status", "failed"));
-        captureTx.setProviderTxId((String) resp.get("provider_tx_id"));
-        captureTx.setRawResponse(resp.get("raw").toString());
-        transactionRepository.save(captureTx);
-
-        if ("success".equals(captureTx.getStatus())) {
-            Order order = authTx.getOrder();
-            order.setStatus("captured");
-            orderRepository.save(order);
+    /**
+     * The gateway call for a transaction already recorded as pending. If the guard refuses the call
+     * after all (the pre-check raced with other requests), or a deadline ran out during the insert,
+     * the result is a failure like a decline, as for a batch item: the order exists and takes its
+     * external id, so the caller gets it back failed rather than a refusal to retry.
+     */
+    private GatewayResult createTransaction(Transaction pending, BigDecimal amount, String currency, Map<String, String> card, boolean capture) {
+        try {
+            return callGateway(pending.getOrder(), pending.getType(), amount, null,
+                    () -> paymentGateway.createTransaction(amount, currency, card, capture));
+        } catch (GatewayUnavailableException | DeadlineExceededException ex) {
+            String code = ex instanceof DeadlineExceededException ? "deadline_exceeded" : "unavailable";
+            return GatewayResult.failed(code, ex.getMessage(), "{}");
         }
+    }
 
-        return Optional.of(captureTx);
+    /**
+     * A follow-up's gateway call on an order claimed from {@code claimedFrom}; if it throws, the
+     * order's claim is given back before the exception is passed on, unless the provider may have
+     * applied the call: then the claim stays, so nothing else runs on the order until the sweeper
+     * releases it.
+     */
+    private GatewayResult callClaimed(Order order, OrderStatus claimedFrom, TransactionType type, BigDecimal amount, String providerTxId,
+                                      Supplier<GatewayResult> call) {
+        journal.append(JournalEvent.Kind.APPLIED, order.getId(), type.value(), amount, order.getStatus().value(), null);
+        try {
+            return callGateway(order, type, amount, providerTxId, call);
+        } catch (GatewayOutcomeUnknownException ex) {
+            throw ex;
+        } catch (RuntimeException ex) {
+            paymentRecorder.release(order, claimedFrom);
+            journal.append(JournalEvent.Kind.APPLIED, order.getId(), type.value(), amount, order.getStatus().value(), null);
+            throw ex;
+        }
     }
 
-    @Transactional
-    public Optional<Transaction> voidTransaction(String providerTxId) {
-        Optional<Transaction> txOpt = transactionRepository.findByProviderTxId(providerTxId);
-        if (txOpt.isEmpty()) return Optional.empty();
-        Transaction tx = txOpt.get();
-        Map<String, Object> resp = authorizeNetClient.voidTransaction(providerTxId);
-        tx.setStatus((String) resp.getOrDefault("status", "failed"));
-        tx.setRawResponse(resp.get("raw").toString());
-        transactionRepository.save(tx);
-        if ("success".equals(tx.getStatus())) {
-            Order order = tx.getOrder();
-            order.setStatus("cancelled");
-            orderRepository.save(order);
+    // the request is on disk before the call starts: after a crash the journal knows every call the provider may have seen
+    private GatewayResult callGateway(Order order, TransactionType type, BigDecimal amount, String providerTxId,
+                                      Supplier<GatewayResult> call) {
+        journal.awaitDurable(journal.append(JournalEvent.Kind.REQUESTED, order.getId(), type.value(), amount, null, providerTxId));
+        GatewayResult result;
+        try {
+            result = call.get();
+        } catch (RuntimeException ex) {
+            journal.append(JournalEvent.Kind.RESPONDED, order.getId(), type.value(), null,
+                    ex instanceof GatewayOutcomeUnknownException ? "unknown" : "error", null);
+            throw ex;
         }
-        return Optional.of(tx);
+        journal.append(JournalEvent.Kind.RESPONDED, order.getId(), type.value(), null, result.getStatus(), result.getProviderTxId());
+        return result;
     }
 
-    @Transactional
-    public Optional<Transaction> refund(String providerCapturedTxId, BigDecimal amount, String last4) {
-        Optional<Transaction> capturedOpt = transactionRepository.findByProviderTxId(providerCapturedTxId);
-        if (capturedOpt.isEmpty()) return Optional.empty();
-        Transaction orig = capturedOpt.get();
-        Map<String, Object> resp = authorizeNetClient.refundTransaction(providerCapturedTxId, amount == null ? orig.getAmount() : amount, last4);
-        Transaction refundTx = new Transaction();
-        refundTx.setOrder(orig.getOrder());
-        refundTx.setType("refund");
-        refundTx.setAmount(amount == null ? orig.getAmount() : amount);
-        refundTx.setStatus((String) resp.getOrDefault("status", "failed"));
-        refundTx.setProviderTxId((String) resp.get("provider_tx_id"));
-        refundTx.setRawResponse(resp.get("raw").toString());
-        transactionRepository.save(refundTx);
-
-        if ("success".equals(refundTx.getStatus())) {
-            Order order = orig.getOrder();
-            order.setStatus("refunded");
-            orderRepository.save(order);
+    private void journalCreated(Transaction tx) {
+        append(JournalEvent.Kind.CREATED, tx);
+    }
+
+    private Transaction journalApplied(Transaction tx) {
+        append(JournalEvent.Kind.APPLIED, tx);
+        return tx;
+    }
+
+    private void append(JournalEvent.Kind kind, Transaction tx) {
+        journal.append(kind, tx.getOrder().getId(), tx.getType().value(), tx.getAmount(), tx.getOrder().getStatus().value(),
+                tx.getProviderTxId());
+    }
+
+    /**
+     * Runs a read in a transaction that times out with the request's deadline, so a slow query
+     * does not outlive the client. Without a deadline the read runs as is.
+     */
+    private <T> T withinDeadline(String stage, Supplier<T> read) {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) return read.get();
+        Deadline.check(stage);
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        template.setTimeout(deadline.remainingSeconds());
+        try {
+            return template.execute(status -> read.get());
+        } catch (TransactionTimedOutException | QueryTimeoutException ex) {
+            throw new DeadlineExceededException(stage);
         }
+    }
 
-        return Optional.of(refundTx);
+    private Transaction timed(String operation, Supplier<Transaction> flow) {
+        return timedLookup(operation, () -> Optional.of(flow.get())).get();
     }
-}
 
+    private Optional<Transaction> timedLookup(String operation, Supplier<Optional<Transaction>> flow) {
+        Timer.Sample sample = metrics.start();
+        Optional<Transaction> tx;
+        try {
+            tx = flow.get();
+        } catch (RuntimeException ex) {
+            metrics.operation(sample, operation, outcome(ex));
+            throw ex;
+        }
+        if (tx.isEmpty()) {
+            metrics.operation(sample, operation, "not_found");
+        } else {
+            metrics.operation(sample, operation, tx.get().getStatus() == TransactionStatus.SUCCESS ? "success" : "failed");
+            metrics.transaction(tx.get().getType(), tx.get().getStatus());
+        }
+        return tx;
+    }
+
+    private static String outcome(RuntimeException ex) {
+        if (ex instanceof GatewayUnavailableException) return "rejected";
+        if (ex instanceof DeadlineExceededException) return "deadline_exceeded";
+        if (ex instanceof OrderStateConflictException) return "conflict";
+        if (ex instanceof AmountExceedsBalanceException) return "exceeds_balance";
+        if (ex instanceof GatewayOutcomeUnknownException) return "outcome_unknown";
+        return "error";
+    }
+
+    /** One payment of {@link #batch}; {@code type} is {@code purchase} (auth + capture) or {@code authorize}. */
+    public record BatchItem(String type, BigDecimal amount, String currency, Map<String, String> card, String externalOrderId) {
+        public boolean isPurchase() {
+            return "purchase".equals(type);
+        }
+    }
+}
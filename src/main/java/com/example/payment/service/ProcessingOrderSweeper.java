@@ -0,0 +1,76 @@
+package com.example.payment.service;
+
+import com.example.payment.journal.JournalEvent;
+import com.example.payment.journal.PaymentJournal;
+import com.example.payment.model.Order;
+import com.example.payment.model.OrderStatus;
+import com.example.payment.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Recovers orders left in {@code processing}. Since the gateway call now happens outside any
+ * database transaction, a crash between "record pending" and "apply result" leaves the order
+ * behind instead of rolling it back. The same goes for a capture, void or refund claim whose
+ * holder died during the gateway call; the claim is released so the order can be operated on again.
+ * Both are appended to the {@link PaymentJournal}, so a replay does not report them as in flight.
+ */
+@Component
+public class ProcessingOrderSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(ProcessingOrderSweeper.class);
+    private static final Set<OrderStatus> SWEPT = EnumSet.of(OrderStatus.PROCESSING, OrderStatus.CAPTURING, OrderStatus.VOIDING,
+            OrderStatus.REFUNDING);
+
+    private final OrderRepository orderRepository;
+    private final PaymentRecorder paymentRecorder;
+    private final PaymentJournal journal;
+    private final Duration staleAfter;
+
+    public ProcessingOrderSweeper(OrderRepository orderRepository, PaymentRecorder paymentRecorder, PaymentJournal journal,
+                                  @Value("${payment.recovery.stale-after-seconds:600}") long staleAfterSeconds) {
+        this.orderRepository = orderRepository;
+        this.paymentRecorder = paymentRecorder;
+        this.journal = journal;
+        this.staleAfter = Duration.ofSeconds(staleAfterSeconds);
+    }
+
+    @Scheduled(fixedDelayString = "${payment.recovery.sweep-interval-ms:60000}", initialDelayString = "${payment.recovery.sweep-interval-ms:60000}")
+    public int sweep() {
+        Instant cutoff = Instant.now().minus(staleAfter);
+        int recovered = 0;
+        List<Order> stale;
+        do {
+            stale = orderRepository.findTop100ByStatusInAndUpdatedAtBeforeOrderByUpdatedAtAsc(SWEPT, cutoff);
+            for (Order order : stale) {
+                if (order.getStatus().isClaimed()) {
+                    Optional<OrderStatus> released = paymentRecorder.releaseStaleClaim(order);
+                    if (released.isPresent()) {
+                        // Whether the provider applied the operation is unknown: the claim's holder died
+                        // before recording the result. Needs reconciliation against the gateway.
+                        log.warn("Released order {} (external id {}) after {} {}", order.getId(), order.getExternalId(), staleAfter,
+                                order.getStatus().value());
+                        journal.append(JournalEvent.Kind.APPLIED, order.getId(), null, null, released.get().value(), null);
+                        recovered++;
+                    }
+                } else if (paymentRecorder.abandon(order.getId())) {
+                    // As with a released claim above: the provider may still have approved it.
+                    log.warn("Marked order {} (external id {}) failed after {} in processing", order.getId(), order.getExternalId(), staleAfter);
+                    journal.append(JournalEvent.Kind.APPLIED, order.getId(), null, null, OrderStatus.FAILED.value(), null);
+                    recovered++;
+                }
+            }
+        } while (stale.size() == 100);
+        return recovered;
+    }
+}
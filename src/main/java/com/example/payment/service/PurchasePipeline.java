@@ -0,0 +1,77 @@
+package com.example.payment.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded worker pool for asynchronous purchases. Callers reserve a slot before persisting the
+ * order, so a full pipeline is reported back to the client (503) instead of leaving an order
+ * behind that nobody will process.
+ */
+@Component
+public class PurchasePipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(PurchasePipeline.class);
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore capacity;
+
+    public PurchasePipeline(@Value("${payment.async.workers:16}") int workers,
+                            @Value("${payment.async.queue-capacity:1000}") int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread t = new Thread(r, "purchase-worker-" + threadNumber.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        this.capacity = new Semaphore(workers + queueCapacity);
+    }
+
+    /** Reserves a slot for one task; must be followed by {@link #execute} or {@link #cancel}. */
+    public boolean tryReserve() {
+        return capacity.tryAcquire();
+    }
+
+    public void cancel() {
+        capacity.release();
+    }
+
+    public void execute(Runnable task) {
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                // The order stays in "processing" and is picked up by ProcessingOrderSweeper.
+                log.error("Async purchase task failed", ex);
+            } finally {
+                capacity.release();
+            }
+        });
+    }
+
+    public int queued() {
+        return executor.getQueue().size();
+    }
+
+    public int active() {
+        return executor.getActiveCount();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Shutting down with {} async purchases still queued", executor.shutdownNow().size());
+        }
+    }
+}
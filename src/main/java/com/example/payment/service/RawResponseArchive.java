@@ -0,0 +1,253 @@
+package com.example.payment.service;
+
+import com.example.payment.model.TransactionRawResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Cold tier of the provider responses: rows rolled out of {@code transaction_raw_responses} into
+ * immutable segment files. A segment ({@code raw-<first row id>-<last row id>.seg}) holds the rows'
+ * deflated payloads back to back with their metadata; its index ({@code .idx}) lists
+ * {@code (transaction id, row id, offset, length)} sorted by transaction id, memory-mapped and
+ * binary-searched on lookup. A segment counts once its index exists: both are written to temporary
+ * files, forced to disk and renamed, segment first, before the rows are deleted from the database.
+ */
+@Component
+public class RawResponseArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(RawResponseArchive.class);
+
+    private static final int SEGMENT_MAGIC = 0x50525347; // "PRSG"
+    private static final int INDEX_MAGIC = 0x50524958; // "PRIX"
+    private static final byte VERSION = 1;
+    private static final int INDEX_HEADER = 9;
+    private static final int INDEX_ENTRY = 28;
+
+    private final Path dir;
+    // sorted by first row id; replaced as a whole (once per roll), read on every lookup
+    private volatile List<Segment> segments = List.of();
+
+    public RawResponseArchive(@Value("${payment.raw-archive.dir:data/raw-responses}") String dir) {
+        this.dir = Path.of(dir);
+        open();
+    }
+
+    /** Archived responses of a transaction, oldest first. */
+    public List<RawResponseStore.Entry> lookup(long transactionId) {
+        List<RawResponseStore.Entry> out = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (transactionId < segment.minTransactionId || transactionId > segment.maxTransactionId) continue;
+            try {
+                segment.read(transactionId, out);
+            } catch (IOException ex) {
+                throw new UncheckedIOException("could not read " + segment.data, ex);
+            }
+        }
+        out.sort(Comparator.comparingLong(RawResponseStore.Entry::id));
+        return out;
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Writes {@code rows} (ordered by id) as a new segment. When this returns the segment is durable
+     * and visible to {@link #lookup}; the caller deletes the rows afterwards. Rolling the same rows
+     * again after a crash in between rewrites the same segment.
+     */
+    public void append(List<TransactionRawResponse> rows) throws IOException {
+        if (rows.isEmpty()) return;
+        Files.createDirectories(dir);
+        String name = "raw-" + rows.get(0).getId() + "-" + rows.get(rows.size() - 1).getId();
+        Path data = dir.resolve(name + ".seg");
+        Path index = dir.resolve(name + ".idx");
+        Path dataTmp = dir.resolve(name + ".seg.tmp");
+        Path indexTmp = dir.resolve(name + ".idx.tmp");
+
+        long[][] entries = new long[rows.size()][];
+        try (FileChannel channel = FileChannel.open(dataTmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            CountingOutput counter = new CountingOutput(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+            DataOutputStream out = new DataOutputStream(counter);
+            out.writeInt(SEGMENT_MAGIC);
+            out.writeByte(VERSION);
+            for (int i = 0; i < rows.size(); i++) {
+                TransactionRawResponse row = rows.get(i);
+                long offset = counter.count;
+                byte[] operation = row.getOperation().getBytes(StandardCharsets.US_ASCII);
+                out.writeLong(row.getId());
+                out.writeLong(row.getTransactionId());
+                out.writeLong(ChronoUnit.MICROS.between(Instant.EPOCH, row.getCreatedAt()));
+                out.writeByte(operation.length);
+                out.write(operation);
+                out.writeInt(row.getPayload().length);
+                out.write(row.getPayload());
+                entries[i] = new long[]{row.getTransactionId(), row.getId(), offset, counter.count - offset};
+            }
+            out.flush();
+            channel.force(true);
+        }
+
+        Arrays.sort(entries, Comparator.<long[]>comparingLong(e -> e[0]).thenComparingLong(e -> e[1]));
+        ByteBuffer buf = ByteBuffer.allocate(INDEX_HEADER + entries.length * INDEX_ENTRY);
+        buf.putInt(INDEX_MAGIC).put(VERSION).putInt(entries.length);
+        for (long[] e : entries) buf.putLong(e[0]).putLong(e[1]).putLong(e[2]).putInt((int) e[3]);
+        buf.flip();
+        try (FileChannel channel = FileChannel.open(indexTmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) channel.write(buf);
+            channel.force(true);
+        }
+
+        Files.move(dataTmp, data, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(indexTmp, index, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        forceDirectory();
+        add(Segment.open(data, index));
+    }
+
+    private void open() {
+        if (!Files.isDirectory(dir)) return;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            List<Segment> found = new ArrayList<>();
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.delete(file); // a roll that did not finish; its rows are still in the database
+                } else if (name.endsWith(".seg")) {
+                    Path index = file.resolveSibling(name.substring(0, name.length() - 4) + ".idx");
+                    if (Files.exists(index)) found.add(Segment.open(file, index));
+                    else Files.delete(file);
+                }
+            }
+            found.sort(Comparator.comparingLong(s -> s.firstRowId));
+            segments = List.copyOf(found);
+            log.info("Raw response archive {}: {} segments", dir.toAbsolutePath(), segments.size());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("could not open the raw response archive in " + dir, ex);
+        }
+    }
+
+    private synchronized void add(Segment segment) {
+        List<Segment> sorted = new ArrayList<>(segments);
+        sorted.removeIf(s -> s.data.equals(segment.data));
+        sorted.add(segment);
+        sorted.sort(Comparator.comparingLong(s -> s.firstRowId));
+        segments = List.copyOf(sorted);
+    }
+
+    // makes the renames durable; not every platform can open a directory
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException ignored) {
+        }
+    }
+
+    private static final class Segment {
+        final Path data;
+        final long firstRowId;
+        final long minTransactionId;
+        final long maxTransactionId;
+        private final MappedByteBuffer index;
+        private final int count;
+
+        private Segment(Path data, long firstRowId, MappedByteBuffer index, int count) {
+            this.data = data;
+            this.firstRowId = firstRowId;
+            this.index = index;
+            this.count = count;
+            this.minTransactionId = count == 0 ? Long.MAX_VALUE : index.getLong(INDEX_HEADER);
+            this.maxTransactionId = count == 0 ? Long.MIN_VALUE : index.getLong(INDEX_HEADER + (count - 1) * INDEX_ENTRY);
+        }
+
+        static Segment open(Path data, Path indexFile) throws IOException {
+            try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+                MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (index.capacity() < INDEX_HEADER || index.getInt(0) != INDEX_MAGIC || index.get(4) != VERSION) {
+                    throw new IOException("not a raw response index: " + indexFile);
+                }
+                int count = index.getInt(5);
+                String name = data.getFileName().toString();
+                long firstRowId = Long.parseLong(name.substring(4, name.indexOf('-', 4)));
+                return new Segment(data, firstRowId, index, count);
+            }
+        }
+
+        void read(long transactionId, List<RawResponseStore.Entry> out) throws IOException {
+            int lo = 0;
+            int hi = count;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (index.getLong(INDEX_HEADER + mid * INDEX_ENTRY) < transactionId) lo = mid + 1;
+                else hi = mid;
+            }
+            if (lo == count || index.getLong(INDEX_HEADER + lo * INDEX_ENTRY) != transactionId) return;
+            try (FileChannel channel = FileChannel.open(data, StandardOpenOption.READ)) {
+                for (int i = lo; i < count && index.getLong(INDEX_HEADER + i * INDEX_ENTRY) == transactionId; i++) {
+                    int at = INDEX_HEADER + i * INDEX_ENTRY;
+                    ByteBuffer record = ByteBuffer.allocate(index.getInt(at + 24));
+                    long offset = index.getLong(at + 16);
+                    while (record.hasRemaining()) {
+                        if (channel.read(record, offset + record.position()) < 0) throw new IOException("truncated segment " + data);
+                    }
+                    record.flip();
+                    long id = record.getLong();
+                    record.getLong(); // transaction id, as in the index
+                    Instant createdAt = Instant.EPOCH.plus(record.getLong(), ChronoUnit.MICROS);
+                    byte[] operation = new byte[record.get()];
+                    record.get(operation);
+                    byte[] payload = new byte[record.getInt()];
+                    record.get(payload);
+                    out.add(new RawResponseStore.Entry(id, new String(operation, StandardCharsets.US_ASCII), createdAt, true,
+                            RawResponseStore.decompress(payload)));
+                }
+            }
+        }
+    }
+
+    private static final class CountingOutput extends FilterOutputStream {
+        long count;
+
+        CountingOutput(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
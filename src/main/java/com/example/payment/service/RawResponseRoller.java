@@ -0,0 +1,59 @@
+package com.example.payment.service;
+
+import com.example.payment.model.TransactionRawResponse;
+import com.example.payment.repository.TransactionRawResponseRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Moves provider responses older than {@code payment.raw-archive.after-hours} from the database
+ * into {@link RawResponseArchive} segments, {@code batch-size} rows per segment. Run it on one node,
+ * with the archive directory on storage every node can read.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.raw-archive.enabled", havingValue = "true")
+public class RawResponseRoller {
+
+    private static final Logger log = LoggerFactory.getLogger(RawResponseRoller.class);
+
+    private final TransactionRawResponseRepository repository;
+    private final RawResponseArchive archive;
+    private final Duration after;
+    private final int batchSize;
+
+    public RawResponseRoller(TransactionRawResponseRepository repository, RawResponseArchive archive,
+                             @Value("${payment.raw-archive.after-hours:24}") long afterHours,
+                             @Value("${payment.raw-archive.batch-size:10000}") int batchSize) {
+        this.repository = repository;
+        this.archive = archive;
+        this.after = Duration.ofHours(afterHours);
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${payment.raw-archive.roll-interval-ms:3600000}",
+            initialDelayString = "${payment.raw-archive.roll-interval-ms:3600000}")
+    public int roll() throws IOException {
+        Instant cutoff = Instant.now().minus(after);
+        int rolled = 0;
+        List<TransactionRawResponse> rows;
+        do {
+            rows = repository.findByCreatedAtBeforeOrderByIdAsc(cutoff, PageRequest.of(0, batchSize));
+            if (rows.isEmpty()) break;
+            archive.append(rows);
+            repository.deleteAllByIdInBatch(rows.stream().map(TransactionRawResponse::getId).toList());
+            rolled += rows.size();
+        } while (rows.size() == batchSize);
+        if (rolled > 0) log.info("Rolled {} raw responses older than {} into the archive", rolled, cutoff);
+        return rolled;
+    }
+}
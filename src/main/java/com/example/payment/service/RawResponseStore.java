@@ -0,0 +1,104 @@
+package com.example.payment.service;
+
+import com.example.payment.model.TransactionRawResponse;
+import com.example.payment.repository.TransactionRawResponseRepository;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores provider responses deflate-compressed in {@code transaction_raw_responses}. Writes join
+ * the caller's transaction. Rows past a day or so are rolled into {@link RawResponseArchive}
+ * (when enabled); {@link #load} reads both tiers.
+ */
+@Component
+public class RawResponseStore {
+
+    static final String ENCODING = "deflate";
+
+    private final TransactionRawResponseRepository repository;
+    private final RawResponseArchive archive;
+
+    public RawResponseStore(TransactionRawResponseRepository repository, RawResponseArchive archive) {
+        this.repository = repository;
+        this.archive = archive;
+    }
+
+    /** A stored response, decompressed; {@code archived} when it came from the segment files. */
+    public record Entry(long id, String operation, Instant createdAt, boolean archived, String json) {
+    }
+
+    public void store(Long transactionId, String operation, String json) {
+        if (json == null) return;
+        TransactionRawResponse row = new TransactionRawResponse();
+        row.setTransactionId(transactionId);
+        row.setOperation(operation);
+        row.setEncoding(ENCODING);
+        row.setPayload(compress(json));
+        repository.save(row);
+    }
+
+    /** Responses of a transaction from both tiers, oldest first. */
+    public List<Entry> load(Long transactionId) {
+        List<Entry> out = new ArrayList<>();
+        Set<Long> hot = new HashSet<>();
+        for (TransactionRawResponse row : repository.findByTransactionIdOrderByIdAsc(transactionId)) {
+            out.add(new Entry(row.getId(), row.getOperation(), row.getCreatedAt(), false, decompress(row.getPayload())));
+            hot.add(row.getId());
+        }
+        // a roll that stopped between writing its segment and deleting the rows leaves them in both
+        for (Entry entry : archive.lookup(transactionId)) {
+            if (!hot.contains(entry.id())) out.add(entry);
+        }
+        out.sort(Comparator.comparingLong(Entry::id));
+        return out;
+    }
+
+    static byte[] compress(String json) {
+        byte[] input = json.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, input.length / 2));
+            byte[] buf = new byte[1024];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static String decompress(byte[] payload) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(payload);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length * 3);
+            byte[] buf = new byte[1024];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated raw response payload");
+                }
+                out.write(buf, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException("Corrupt raw response payload", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+}
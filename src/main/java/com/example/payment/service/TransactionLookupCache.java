@@ -0,0 +1,69 @@
+package com.example.payment.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Provider transaction id to our transaction and order ids, so capture, void and refund can load
+ * the original transaction by primary key instead of searching {@code provider_tx_id}. The first
+ * transaction recorded under a provider id wins, matching the repository lookup: Authorize.Net
+ * reuses the authorization's id for its prior-auth capture.
+ *
+ * <p>Follow-ups add transactions rather than changing the original, so an entry stays valid. When
+ * the cache is full, arbitrary entries make room; a miss only costs the indexed query.
+ */
+@Component
+public class TransactionLookupCache {
+
+    public record Ref(long transactionId, long orderId) {
+    }
+
+    private final ConcurrentHashMap<String, Ref> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public TransactionLookupCache(@Value("${payment.lookup-cache.max-entries:100000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Ref get(String providerTxId) {
+        Ref ref = maxEntries > 0 && providerTxId != null ? entries.get(providerTxId) : null;
+        if (ref != null) hits.increment();
+        else misses.increment();
+        return ref;
+    }
+
+    /** Remembers the transaction unless one is already cached under {@code providerTxId}. */
+    public void put(String providerTxId, Long transactionId, Long orderId) {
+        if (maxEntries <= 0 || providerTxId == null || transactionId == null || orderId == null) return;
+        if (entries.size() >= maxEntries) {
+            Iterator<String> it = entries.keySet().iterator();
+            while (entries.size() >= maxEntries && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+        }
+        entries.putIfAbsent(providerTxId, new Ref(transactionId, orderId));
+    }
+
+    public void invalidate(String providerTxId) {
+        if (providerTxId != null) entries.remove(providerTxId);
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.payment.validation;
+
+import java.util.Arrays;
+
+/**
+ * Decimal prefix trie over IIN/BIN ranges. Nodes live in flat arrays ({@code children[node * 10 + digit]})
+ * so a lookup is a few array reads per digit and allocates nothing. The most specific matching
+ * prefix wins.
+ */
+final class BinTable {
+
+    static final int ROOT = 0;
+    static final int MAX_DEPTH = 6;
+
+    static final BinTable DEFAULT = new BinTable()
+            .add("4", "4", CardBrand.VISA)
+            .add("51", "55", CardBrand.MASTERCARD)
+            .add("2221", "2720", CardBrand.MASTERCARD)
+            .add("34", "34", CardBrand.AMEX)
+            .add("37", "37", CardBrand.AMEX)
+            .add("6011", "6011", CardBrand.DISCOVER)
+            .add("644", "649", CardBrand.DISCOVER)
+            .add("65", "65", CardBrand.DISCOVER)
+            .add("622126", "622925", CardBrand.DISCOVER)
+            .add("3528", "3589", CardBrand.JCB);
+
+    private int[] children = new int[10 * 64];
+    private byte[] brands = new byte[64];
+    private int size = 1;
+
+    BinTable() {
+        Arrays.fill(children, -1);
+    }
+
+    /** Child of {@code node} for {@code digit}, or -1. */
+    int child(int node, int digit) {
+        return children[node * 10 + digit];
+    }
+
+    /** Ordinal of the brand ending at {@code node}, 0 ({@link CardBrand#UNKNOWN}) if none. */
+    int brand(int node) {
+        return brands[node];
+    }
+
+    /**
+     * Adds the inclusive range {@code low..high} (same number of digits). The range is split into
+     * the fewest aligned prefixes, so 2221-2720 becomes 2221-2229, 223-229, 23-26, 270 and 2710-2720.
+     */
+    BinTable add(String low, String high, CardBrand brand) {
+        if (low.length() != high.length() || low.length() > MAX_DEPTH) {
+            throw new IllegalArgumentException("Bad BIN range " + low + "-" + high);
+        }
+        int digits = low.length();
+        long lo = Long.parseLong(low);
+        long hi = Long.parseLong(high);
+        while (lo <= hi) {
+            int wildcard = 0;
+            long block = 1;
+            while (wildcard < digits - 1 && lo % (block * 10) == 0 && lo + block * 10 - 1 <= hi) {
+                block *= 10;
+                wildcard++;
+            }
+            insert(lo / block, digits - wildcard, brand);
+            lo += block;
+        }
+        return this;
+    }
+
+    private void insert(long prefix, int digits, CardBrand brand) {
+        int node = ROOT;
+        for (int i = digits - 1; i >= 0; i--) {
+            int digit = (int) (prefix / pow10(i) % 10);
+            int slot = node * 10 + digit;
+            if (children[slot] < 0) {
+                int next = newNode(); // may grow the arrays, so allocate before storing
+                children[slot] = next;
+            }
+            node = children[slot];
+        }
+        brands[node] = (byte) brand.ordinal();
+    }
+
+    private int newNode() {
+        if (size == brands.length) {
+            brands = Arrays.copyOf(brands, size * 2);
+            children = Arrays.copyOf(children, size * 20);
+            Arrays.fill(children, size * 10, children.length, -1);
+        }
+        return size++;
+    }
+
+    private static long pow10(int n) {
+        long p = 1;
+        for (int i = 0; i < n; i++) p *= 10;
+        return p;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.payment.validation;
+
+/** Card networks we recognise by IIN/BIN prefix, with their PAN and CVV lengths. */
+public enum CardBrand {
+    UNKNOWN(12, 19, 3),
+    VISA(13, 19, 3),
+    MASTERCARD(16, 16, 3),
+    AMEX(15, 15, 4),
+    DISCOVER(16, 19, 3),
+    JCB(16, 19, 3);
+
+    private final int minLength;
+    private final int maxLength;
+    private final int cvvLength;
+
+    CardBrand(int minLength, int maxLength, int cvvLength) {
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.cvvLength = cvvLength;
+    }
+
+    public boolean acceptsLength(int length) {
+        if (length < minLength || length > maxLength) return false;
+        // Visa issues 13, 16 and 19 digit PANs only
+        return this != VISA || length == 13 || length == 16 || length == 19;
+    }
+
+    public int cvvLength() {
+        return cvvLength;
+    }
+}
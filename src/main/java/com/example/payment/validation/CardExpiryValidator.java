@@ -27,17 +27,11 @@ public class CardExpiryValidator implements ConstraintValidator<ValidCardExpiry,
 
         // CVV validation: digits only and length depends on card brand
         String cvv = card.getCvv();
-        if (cvv == null || !cvv.matches("\\d{3,4}")) return false;
-
-        String number = card.getNumber();
-        if (number == null) return false;
-        String clean = number.replaceAll("\\s+", "");
-        // Amex cards start with 34 or 37
-        boolean isAmex = clean.startsWith("34") || clean.startsWith("37");
-        if (isAmex) {
-            return cvv.length() == 4;
-        } else {
-            return cvv.length() == 3;
+        if (cvv == null || card.getNumber() == null) return false;
+        for (int i = 0; i < cvv.length(); i++) {
+            char c = cvv.charAt(i);
+            if (c < '0' || c > '9') return false;
         }
+        return cvv.length() == PanParser.brand(PanParser.parse(card.getNumber())).cvvLength();
     }
 }
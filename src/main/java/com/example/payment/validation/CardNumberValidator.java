@@ -11,25 +11,7 @@ public class CardNumberValidator implements ConstraintValidator<ValidCardNumber,
 
     @Override
     public boolean isValid(String value, ConstraintValidatorContext context) {
-        if (value == null) return false;
-        String digits = value.replaceAll("\\s+", "");
-        if (!digits.matches("\\d+")) return false;
-        return luhnCheck(digits);
-    }
-
-    private boolean luhnCheck(String digits) {
-        int sum = 0;
-        boolean alternate = false;
-        for (int i = digits.length() - 1; i >= 0; i--) {
-            int n = Integer.parseInt(digits.substring(i, i + 1));
-            if (alternate) {
-                n *= 2;
-                if (n > 9) n = (n % 10) + 1;
-            }
-            sum += n;
-            alternate = !alternate;
-        }
-        return (sum % 10 == 0);
+        // digits and whitespace only, Luhn checksum, and a length the card's brand issues
+        return PanParser.isValid(PanParser.parse(value));
     }
 }
-
@@ -0,0 +1,101 @@
+package com.example.payment.validation;
+
+/**
+ * Single-pass PAN parser: skips whitespace, checks every character is a digit, classifies the brand
+ * from the leading digits and computes the Luhn checksum, without allocating. The outcome is packed
+ * into an {@code int}; read it with {@link #isValid}, {@link #status}, {@link #brand} and {@link #length}.
+ */
+public final class PanParser {
+
+    public static final int OK = 0;
+    public static final int MALFORMED = 1;
+    public static final int BAD_LENGTH = 2;
+    public static final int BAD_CHECKSUM = 3;
+
+    private static final int MAX_DIGITS = 19;
+    private static final CardBrand[] BRANDS = CardBrand.values();
+    // Luhn value of a doubled digit
+    private static final int[] DOUBLED = {0, 2, 4, 6, 8, 1, 3, 5, 7, 9};
+
+    private PanParser() {
+    }
+
+    public static int parse(CharSequence pan) {
+        if (pan == null) return MALFORMED << 16;
+        BinTable bins = BinTable.DEFAULT;
+        int node = BinTable.ROOT;
+        int brand = 0;
+        int count = 0;
+        // Luhn doubles every second digit from the right; we don't know the length yet, so keep the
+        // sum for both parities and pick one at the end.
+        int sumEvenDoubled = 0;
+        int sumOddDoubled = 0;
+        for (int i = 0, n = pan.length(); i < n; i++) {
+            char c = pan.charAt(i);
+            if (isWhitespace(c)) continue;
+            int d = c - '0';
+            if (d < 0 || d > 9) return pack(MALFORMED, brand, count);
+            if (count == MAX_DIGITS) return pack(BAD_LENGTH, brand, count + 1);
+            if ((count & 1) == 0) {
+                sumEvenDoubled += DOUBLED[d];
+                sumOddDoubled += d;
+            } else {
+                sumEvenDoubled += d;
+                sumOddDoubled += DOUBLED[d];
+            }
+            if (node >= 0 && count < BinTable.MAX_DEPTH) {
+                node = bins.child(node, d);
+                if (node >= 0 && bins.brand(node) != 0) brand = bins.brand(node);
+            }
+            count++;
+        }
+        if (count == 0) return pack(MALFORMED, 0, 0);
+        if (!BRANDS[brand].acceptsLength(count)) return pack(BAD_LENGTH, brand, count);
+        int sum = (count & 1) == 0 ? sumEvenDoubled : sumOddDoubled;
+        return pack(sum % 10 == 0 ? OK : BAD_CHECKSUM, brand, count);
+    }
+
+    public static boolean isValid(int result) {
+        return status(result) == OK;
+    }
+
+    public static int status(int result) {
+        return result >>> 16;
+    }
+
+    public static CardBrand brand(int result) {
+        return BRANDS[(result >>> 8) & 0xFF];
+    }
+
+    /** Number of digits read (capped at 20 for over-long input). */
+    public static int length(int result) {
+        return result & 0xFF;
+    }
+
+    /**
+     * The PAN without whitespace, for sending to the gateway. Returns {@code pan} itself when it
+     * has no whitespace.
+     */
+    public static String digits(String pan) {
+        if (pan == null) return null;
+        int i = 0;
+        while (i < pan.length() && !isWhitespace(pan.charAt(i))) i++;
+        if (i == pan.length()) return pan;
+        StringBuilder out = new StringBuilder(pan.length());
+        out.append(pan, 0, i);
+        for (; i < pan.length(); i++) {
+            char c = pan.charAt(i);
+            if (!isWhitespace(c)) out.append(c);
+        }
+        return out.toString();
+    }
+
+    // same set as the regex \s
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static int pack(int status, int brand, int length) {
+        return status << 16 | brand << 8 | length;
+    }
+}
@@ -21,5 +21,15 @@ public class JwtTokenProviderTest {
         JwtTokenProvider provider = new JwtTokenProvider(secret, 3600);
         assertThrows(Exception.class, () -> provider.validateToken("invalid.token.here"));
     }
-}
 
+    @Test
+    public void verifyReturnsSubjectAndExpiry() {
+        JwtTokenProvider provider = new JwtTokenProvider("01234567890123456789012345678901", 3600);
+        long before = System.currentTimeMillis();
+        VerifiedToken verified = provider.verify(provider.createToken("dev-1"));
+        long expiresAt = verified.expiresAtMillis();
+        assertEquals("dev-1", verified.subject());
+        // JWT expiry has second precision
+        assertTrue(expiresAt >= before + 3_599_000 && expiresAt <= before + 3_601_000, String.valueOf(expiresAt - before));
+    }
+}
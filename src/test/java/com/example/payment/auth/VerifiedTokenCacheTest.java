@@ -0,0 +1,70 @@
+package com.example.payment.auth;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VerifiedTokenCacheTest {
+
+    @Test
+    public void hitAfterPutUntilExpiry() throws Exception {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        assertFalse(cache.isVerified("a.b.c"));
+
+        cache.put("a.b.c", new VerifiedToken("dev-1", System.currentTimeMillis() + 60_000));
+        cache.put("d.e.f", new VerifiedToken("dev-1", System.currentTimeMillis() + 50));
+        assertTrue(cache.isVerified("a.b.c"));
+        assertTrue(cache.isVerified("d.e.f"));
+
+        Thread.sleep(80);
+        assertFalse(cache.isVerified("d.e.f"));
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.hits());
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void fullCacheEvictsExpiredAndOtherwiseSkipsNewTokens() throws Exception {
+        VerifiedTokenCache cache = new VerifiedTokenCache(2);
+        cache.put("t1", new VerifiedToken("dev-1", System.currentTimeMillis() + 60_000));
+        cache.put("t2", new VerifiedToken("dev-1", System.currentTimeMillis() + 30));
+        cache.put("t3", new VerifiedToken("dev-1", System.currentTimeMillis() + 60_000));
+        assertFalse(cache.isVerified("t3"));
+
+        Thread.sleep(50);
+        cache.put("t3", new VerifiedToken("dev-1", System.currentTimeMillis() + 60_000));
+        assertTrue(cache.isVerified("t3"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void verifyCallsTheVerifierOnlyOnAMiss() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        AtomicInteger calls = new AtomicInteger();
+        Function<String, VerifiedToken> verifier = t -> {
+            calls.incrementAndGet();
+            return new VerifiedToken("dev-1", System.currentTimeMillis() + 60_000);
+        };
+        assertEquals("dev-1", cache.verify("a.b.c", verifier).subject());
+        assertEquals("dev-1", cache.verify("a.b.c", verifier).subject());
+        assertEquals(1, calls.get());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+
+        assertThrows(IllegalArgumentException.class, () -> cache.verify("bad", t -> {
+            throw new IllegalArgumentException("bad signature");
+        }));
+        assertFalse(cache.isVerified("bad"));
+    }
+
+    @Test
+    public void disabledWhenMaxEntriesIsZero() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(0);
+        cache.put("a.b.c", new VerifiedToken("dev-1", System.currentTimeMillis() + 60_000));
+        assertFalse(cache.isVerified("a.b.c"));
+        assertEquals(0, cache.size());
+    }
+}
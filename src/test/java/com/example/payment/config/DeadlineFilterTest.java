@@ -0,0 +1,39 @@
+package com.example.payment.config;
+
+import com.example.payment.deadline.Deadline;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeadlineFilterTest {
+
+    @Test
+    public void clientBudgetIsCappedAtTheConfiguredOne() {
+        assertEquals(500, DeadlineFilter.budget("500", 20000));
+        assertEquals(20000, DeadlineFilter.budget("60000", 20000));
+        assertEquals(0, DeadlineFilter.budget("0", 20000));
+        assertEquals(20000, DeadlineFilter.budget("soon", 20000));
+        assertEquals(20000, DeadlineFilter.budget(null, 20000));
+        assertEquals(500, DeadlineFilter.budget("500", 0));
+        assertEquals(-1, DeadlineFilter.budget(null, 0));
+    }
+
+    @Test
+    public void deadlineIsAttachedForTheRequestOnly() throws Exception {
+        DeadlineProperties properties = new DeadlineProperties();
+        properties.getEndpoints().put("/payments/batch", 120000L);
+        DeadlineFilter filter = new DeadlineFilter(properties);
+        AtomicReference<Deadline> seen = new AtomicReference<>();
+
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/payments/batch");
+        filter.doFilter(request, new MockHttpServletResponse(), (req, res) -> seen.set(Deadline.current()));
+
+        assertNotNull(seen.get());
+        assertTrue(seen.get().remainingMillis() > 60000);
+        assertNull(Deadline.current());
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.payment.config;
+
+import com.example.payment.auth.JwtTokenProvider;
+import com.example.payment.auth.VerifiedTokenCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class JwtFilterTest {
+
+    private static final String SECRET = "01234567890123456789012345678901";
+
+    @AfterEach
+    public void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void repeatRequestsSkipSignatureVerification() throws Exception {
+        JwtTokenProvider provider = spy(new JwtTokenProvider(SECRET, 3600));
+        VerifiedTokenCache cache = new VerifiedTokenCache(100);
+        JwtFilter filter = new JwtFilter(provider, cache);
+        String token = provider.createToken("dev-1");
+
+        for (int i = 0; i < 3; i++) {
+            SecurityContextHolder.clearContext();
+            MockHttpServletResponse response = send(filter, "Bearer " + token);
+            assertEquals(200, response.getStatus());
+            assertEquals("dev-1", SecurityContextHolder.getContext().getAuthentication().getName());
+        }
+        verify(provider, times(1)).verify(token);
+        assertEquals(2, cache.hits());
+    }
+
+    @Test
+    public void expiredTokenIsRejectedEvenAfterCaching() throws Exception {
+        JwtTokenProvider provider = new JwtTokenProvider(SECRET, 1);
+        JwtFilter filter = new JwtFilter(provider, new VerifiedTokenCache(100));
+        String token = provider.createToken("dev-1");
+        assertEquals(200, send(filter, "Bearer " + token).getStatus());
+
+        Thread.sleep(1100);
+        assertEquals(401, send(filter, "Bearer " + token).getStatus());
+    }
+
+    @Test
+    public void eachTokenAuthenticatesAsItsOwnSubject() throws Exception {
+        JwtTokenProvider provider = new JwtTokenProvider(SECRET, 3600);
+        JwtFilter filter = new JwtFilter(provider, new VerifiedTokenCache(100));
+
+        send(filter, "Bearer " + provider.createToken("client-a"));
+        assertEquals("client-a", SecurityContextHolder.getContext().getAuthentication().getName());
+        SecurityContextHolder.clearContext();
+        send(filter, "Bearer " + provider.createToken("client-b"));
+        assertEquals("client-b", SecurityContextHolder.getContext().getAuthentication().getName());
+    }
+
+    @Test
+    public void invalidTokenIsRejected() throws Exception {
+        JwtFilter filter = new JwtFilter(new JwtTokenProvider(SECRET, 3600), new VerifiedTokenCache(100));
+        assertEquals(401, send(filter, "Bearer invalid.token.here").getStatus());
+    }
+
+    private static MockHttpServletResponse send(JwtFilter filter, String authorization) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/payments/orders/1/status");
+        request.addHeader("Authorization", authorization);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
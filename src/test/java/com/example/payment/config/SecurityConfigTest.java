@@ -0,0 +1,112 @@
+package com.example.payment.config;
+
+import com.example.payment.auth.JwtTokenProvider;
+import com.example.payment.auth.VerifiedTokenCache;
+import jakarta.servlet.Filter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.h2.H2ConsoleProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringJUnitWebConfig(SecurityConfigTest.Config.class)
+public class SecurityConfigTest {
+
+    private static final String SECRET = "01234567890123456789012345678901";
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setup() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context)
+                .addFilters(context.getBean("springSecurityFilterChain", Filter.class))
+                .build();
+    }
+
+    @Test
+    public void bearerPostNeedsNoCsrfTokenAndCreatesNoSession() throws Exception {
+        MvcResult result = mockMvc.perform(post("/payments/capture")
+                        .header("Authorization", "Bearer " + jwtTokenProvider.createToken("dev-1")))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertNull(result.getRequest().getSession(false));
+        assertNull(result.getResponse().getCookie("JSESSIONID"));
+    }
+
+    @Test
+    public void tokenIssuanceNeedsNoCsrfToken() throws Exception {
+        mockMvc.perform(post("/auth/token")).andExpect(status().isOk());
+    }
+
+    @Test
+    public void postWithoutBearerTokenIsStillCheckedForCsrf() throws Exception {
+        // /payments/purchase is open to anonymous callers, so only the CSRF check stands in the way
+        mockMvc.perform(post("/payments/purchase")).andExpect(status().isForbidden());
+    }
+
+    @Test
+    public void metricsNeedAToken() throws Exception {
+        mockMvc.perform(get("/actuator/prometheus")).andExpect(status().isForbidden());
+        mockMvc.perform(get("/actuator/prometheus").header("Authorization", "Bearer " + jwtTokenProvider.createToken("dev-1")))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/health")).andExpect(status().isOk());
+    }
+
+    @Configuration
+    @EnableWebMvc
+    @Import({SecurityConfig.class, JwtFilter.class, Endpoints.class})
+    static class Config {
+
+        @Bean
+        JwtTokenProvider jwtTokenProvider() {
+            return new JwtTokenProvider(SECRET, 3600);
+        }
+
+        @Bean
+        VerifiedTokenCache verifiedTokenCache() {
+            return new VerifiedTokenCache(100);
+        }
+
+        @Bean
+        H2ConsoleProperties h2ConsoleProperties() {
+            return new H2ConsoleProperties();
+        }
+    }
+
+    @RestController
+    static class Endpoints {
+
+        @PostMapping({"/payments/capture", "/payments/purchase", "/auth/token"})
+        String ok() {
+            return "ok";
+        }
+
+        @GetMapping({"/actuator/prometheus", "/actuator/health"})
+        String actuator() {
+            return "ok";
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.payment.config;
+
+import org.apache.coyote.http11.Http11NioProtocol;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VirtualThreadConfigTest {
+
+    private final VirtualThreadConfig config = new VirtualThreadConfig();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void tomcatRunsRequestsOnVirtualThreads() throws Exception {
+        Http11NioProtocol protocol = new Http11NioProtocol();
+        ((TomcatProtocolHandlerCustomizer<Http11NioProtocol>) config.virtualThreadProtocolHandlerCustomizer()).customize(protocol);
+
+        ExecutorService executor = (ExecutorService) protocol.getExecutor();
+        assertTrue(executor.submit(() -> Thread.currentThread().isVirtual()).get(5, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+
+    @Test
+    public void applicationTaskExecutorUsesVirtualThreads() throws Exception {
+        AsyncTaskExecutor executor = config.applicationTaskExecutor();
+        assertTrue(executor.submit(() -> Thread.currentThread().isVirtual()).get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.payment.controller;
+
+import com.example.payment.dto.KeysetPage;
+import com.example.payment.dto.OrderSummary;
+import com.example.payment.dto.PageCursor;
+import com.example.payment.dto.RawResponseView;
+import com.example.payment.dto.TransactionSummary;
+import com.example.payment.model.OrderStatus;
+import com.example.payment.model.TransactionStatus;
+import com.example.payment.model.TransactionType;
+import com.example.payment.service.OrderQueryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class OrderQueryControllerTest {
+
+    private MockMvc mockMvc;
+    private OrderQueryService orderQueryService;
+
+    @BeforeEach
+    public void setup() {
+        orderQueryService = mock(OrderQueryService.class);
+        mockMvc = MockMvcBuilders.standaloneSetup(new OrderQueryController(orderQueryService)).build();
+    }
+
+    @Test
+    public void testOrdersPageCarriesTheNextCursor() throws Exception {
+        Instant created = Instant.parse("2026-01-02T03:04:05.123456Z");
+        OrderSummary order = new OrderSummary(42L, "ext-42", OrderStatus.PARTIALLY_REFUNDED, "USD", new BigDecimal("30.00"),
+                new BigDecimal("30.00"), new BigDecimal("30.00"), new BigDecimal("10.00"), created, created);
+        String next = new PageCursor(created, 42L).encode();
+        PageCursor after = new PageCursor(Instant.parse("2026-01-03T00:00:00Z"), 99L);
+        when(orderQueryService.orders(eq(OrderStatus.PARTIALLY_REFUNDED), eq("USD"), eq(after), eq(1)))
+                .thenReturn(new KeysetPage<>(List.of(order), next));
+
+        mockMvc.perform(get("/payments/orders").param("status", "partially_refunded").param("currency", "USD")
+                        .param("cursor", after.encode()).param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].order_id").value(42))
+                .andExpect(jsonPath("$.items[0].status").value("partially_refunded"))
+                .andExpect(jsonPath("$.items[0].refunded_amount").value(10.00))
+                .andExpect(jsonPath("$.next_cursor").value(next));
+    }
+
+    @Test
+    public void testUnknownStatusAndBadCursorAreRejected() throws Exception {
+        mockMvc.perform(get("/payments/orders").param("status", "settled"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/payments/orders").param("cursor", "not a cursor"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(orderQueryService);
+    }
+
+    @Test
+    public void testTransactionsHideTheInternalId() throws Exception {
+        TransactionSummary tx = new TransactionSummary(700L, "prov-7", TransactionType.REFUND, TransactionStatus.SUCCESS,
+                new BigDecimal("5.00"), Instant.parse("2026-01-02T03:04:05Z"));
+        when(orderQueryService.transactions(eq(7L), isNull(), eq(TransactionType.REFUND), isNull(), anyInt()))
+                .thenReturn(Optional.of(new KeysetPage<>(List.of(tx), null)));
+
+        mockMvc.perform(get("/payments/orders/7/transactions").param("type", "refund"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].transaction_id").value("prov-7"))
+                .andExpect(jsonPath("$.items[0].type").value("refund"))
+                .andExpect(jsonPath("$.items[0].id").doesNotExist())
+                .andExpect(jsonPath("$.next_cursor").doesNotExist());
+    }
+
+    @Test
+    public void testTransactionsOfMissingOrder() throws Exception {
+        when(orderQueryService.transactions(eq(8L), any(), any(), any(), anyInt())).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/payments/orders/8/transactions"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testRawResponsesNameTheirTier() throws Exception {
+        when(orderQueryService.rawResponses(7L)).thenReturn(Optional.of(List.of(
+                new RawResponseView("prov-7", TransactionType.PURCHASE, "purchase", Instant.parse("2026-01-02T03:04:05Z"),
+                        "archive", "{\"resultCode\":\"Ok\"}"))));
+        when(orderQueryService.rawResponses(8L)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/payments/orders/7/raw-responses"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].transaction_id").value("prov-7"))
+                .andExpect(jsonPath("$.items[0].tier").value("archive"))
+                .andExpect(jsonPath("$.items[0].response").value("{\"resultCode\":\"Ok\"}"));
+        mockMvc.perform(get("/payments/orders/8/raw-responses"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.payment.controller;
+
+import com.example.payment.model.Order;
+import com.example.payment.model.OrderStatus;
+import com.example.payment.model.Transaction;
+import com.example.payment.model.TransactionStatus;
+import com.example.payment.repository.IdempotencyRecordRepository;
+import com.example.payment.service.IdempotencyService;
+import com.example.payment.service.PaymentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class PaymentControllerAsyncTest {
+
+    private static final String PAYLOAD = "{\"amount\":12.34,\"currency\":\"USD\",\"card\":{\"number\":\"4111111111111111\",\"expMonth\":12,\"expYear\":2030,\"cvv\":\"123\"},\"orderId\":\"ext-200\"}";
+
+    private MockMvc mockMvc;
+    private PaymentService paymentService;
+
+    @BeforeEach
+    public void setup() {
+        paymentService = mock(PaymentService.class);
+        PaymentController controller = new PaymentController(paymentService,
+                new IdempotencyService(mock(IdempotencyRecordRepository.class), new ObjectMapper(), 1000, 100, 24));
+        this.mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    public void testPurchaseAsyncAccepted() throws Exception {
+        Order order = new Order();
+        order.setId(200L);
+        order.setStatus(OrderStatus.PROCESSING);
+        Transaction tx = new Transaction();
+        tx.setOrder(order);
+        tx.setStatus(TransactionStatus.PENDING);
+        when(paymentService.purchaseAsync(any(BigDecimal.class), anyString(), anyMap(), anyString())).thenReturn(Optional.of(tx));
+
+        mockMvc.perform(post("/payments/purchase/async").contentType(MediaType.APPLICATION_JSON).content(PAYLOAD))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/payments/orders/200/status"))
+                .andExpect(jsonPath("$.order_id").value(200))
+                .andExpect(jsonPath("$.status").value("processing"));
+    }
+
+    @Test
+    public void testPurchaseAsyncQueueFull() throws Exception {
+        when(paymentService.purchaseAsync(any(BigDecimal.class), anyString(), anyMap(), anyString())).thenReturn(Optional.empty());
+
+        mockMvc.perform(post("/payments/purchase/async").contentType(MediaType.APPLICATION_JSON).content(PAYLOAD))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().exists("Retry-After"));
+    }
+
+    @Test
+    public void testOrderStatus() throws Exception {
+        Order order = new Order();
+        order.setId(201L);
+        order.setStatus(OrderStatus.CAPTURED);
+        Transaction tx = new Transaction();
+        tx.setOrder(order);
+        tx.setProviderTxId("prov-201");
+        tx.setStatus(TransactionStatus.SUCCESS);
+        when(paymentService.latestTransaction(201L)).thenReturn(Optional.of(tx));
+
+        mockMvc.perform(get("/payments/orders/201/status"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("captured"))
+                .andExpect(jsonPath("$.transaction_id").value("prov-201"));
+    }
+
+    @Test
+    public void testOrderStatusNotFound() throws Exception {
+        when(paymentService.latestTransaction(999L)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/payments/orders/999/status"))
+                .andExpect(status().isNotFound());
+    }
+}
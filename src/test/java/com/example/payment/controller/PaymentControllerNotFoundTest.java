@@ -1,6 +1,9 @@
 package com.example.payment.controller;
 
+import com.example.payment.repository.IdempotencyRecordRepository;
+import com.example.payment.service.IdempotencyService;
 import com.example.payment.service.PaymentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.MediaType;
@@ -23,7 +26,8 @@ public class PaymentControllerNotFoundTest {
         when(paymentService.capture("missing", null)).thenReturn(java.util.Optional.empty());
         when(paymentService.voidTransaction("missing")).thenReturn(java.util.Optional.empty());
         when(paymentService.refund("missing", null, null)).thenReturn(java.util.Optional.empty());
-        PaymentController controller = new PaymentController(paymentService);
+        PaymentController controller = new PaymentController(paymentService,
+                new IdempotencyService(mock(IdempotencyRecordRepository.class), new ObjectMapper(), 1000, 100, 24));
         this.mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
     }
 
@@ -1,8 +1,15 @@
 package com.example.payment.controller;
 
+import com.example.payment.gateway.GatewayUnavailableException;
 import com.example.payment.model.Order;
+import com.example.payment.model.OrderStatus;
 import com.example.payment.model.Transaction;
+import com.example.payment.model.TransactionStatus;
+import com.example.payment.model.TransactionType;
+import com.example.payment.repository.IdempotencyRecordRepository;
+import com.example.payment.service.IdempotencyService;
 import com.example.payment.service.PaymentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.MediaType;
@@ -10,14 +17,21 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -29,8 +43,11 @@ public class PaymentControllerTest {
     @BeforeEach
     public void setup() {
         paymentService = mock(PaymentService.class);
-        PaymentController controller = new PaymentController(paymentService);
-        this.mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+        IdempotencyRecordRepository idempotencyRepository = mock(IdempotencyRecordRepository.class);
+        when(idempotencyRepository.saveAndFlush(any())).thenAnswer(i -> i.getArgument(0));
+        PaymentController controller = new PaymentController(paymentService,
+                new IdempotencyService(idempotencyRepository, new ObjectMapper(), 1000, 100, 24));
+        this.mockMvc = MockMvcBuilders.standaloneSetup(controller).setControllerAdvice(new GlobalExceptionHandler()).build();
     }
 
     @Test
@@ -46,14 +63,14 @@ public class PaymentControllerTest {
         order.setId(100L);
         order.setAmount(new BigDecimal("12.34"));
         order.setCurrency("USD");
-        order.setStatus("captured");
+        order.setStatus(OrderStatus.CAPTURED);
 
         Transaction tx = new Transaction();
         tx.setId(200L);
         tx.setOrder(order);
         tx.setProviderTxId("prov-123");
         tx.setAmount(new BigDecimal("12.34"));
-        tx.setStatus("success");
+        tx.setStatus(TransactionStatus.SUCCESS);
 
         when(paymentService.purchase(any(BigDecimal.class), anyString(), any(Map.class), anyString())).thenReturn(tx);
 
@@ -64,4 +81,97 @@ public class PaymentControllerTest {
                 .andExpect(jsonPath("$.transaction_id").value("prov-123"))
                 .andExpect(jsonPath("$.status").value("success"));
     }
+
+    @Test
+    public void testPurchaseRetryWithIdempotencyKeyIsReplayed() throws Exception {
+        Order order = new Order();
+        order.setId(101L);
+        Transaction tx = new Transaction();
+        tx.setOrder(order);
+        tx.setProviderTxId("prov-124");
+        tx.setStatus(TransactionStatus.SUCCESS);
+        when(paymentService.purchase(any(BigDecimal.class), anyString(), any(Map.class), anyString())).thenReturn(tx);
+
+        String payload = "{\"amount\":12.34,\"currency\":\"USD\",\"card\":{\"number\":\"4111111111111111\",\"expMonth\":12,\"expYear\":2030,\"cvv\":\"123\"},\"orderId\":\"ext-101\"}";
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/payments/purchase").header("Idempotency-Key", "retry-1").contentType(MediaType.APPLICATION_JSON).content(payload))
+                    .andExpect(status().isCreated())
+                    .andExpect(jsonPath("$.transaction_id").value("prov-124"));
+        }
+        verify(paymentService, times(1)).purchase(any(BigDecimal.class), anyString(), any(Map.class), anyString());
+    }
+
+    private static final String CARD = "\"card\":{\"number\":\"4111111111111111\",\"expMonth\":12,\"expYear\":2030,\"cvv\":\"123\"}";
+
+    @Test
+    public void testBatchReturnsStatusPerItem() throws Exception {
+        Order order1 = new Order();
+        order1.setId(301L);
+        Transaction tx1 = new Transaction();
+        tx1.setOrder(order1);
+        tx1.setType(TransactionType.PURCHASE);
+        tx1.setProviderTxId("prov-301");
+        tx1.setStatus(TransactionStatus.SUCCESS);
+        Order order2 = new Order();
+        order2.setId(302L);
+        Transaction tx2 = new Transaction();
+        tx2.setOrder(order2);
+        tx2.setType(TransactionType.AUTHORIZE);
+        tx2.setStatus(TransactionStatus.FAILED);
+        when(paymentService.batch(anyList())).thenReturn(List.of(tx1, tx2));
+
+        String payload = "{\"items\":[{\"amount\":10.00," + CARD + ",\"orderId\":\"ext-301\"},"
+                + "{\"type\":\"authorize\",\"amount\":20.00," + CARD + ",\"orderId\":\"ext-302\"}]}";
+        mockMvc.perform(post("/payments/batch").contentType(MediaType.APPLICATION_JSON).content(payload))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.succeeded").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.items[0].order_id").value(301))
+                .andExpect(jsonPath("$.items[0].transaction_id").value("prov-301"))
+                .andExpect(jsonPath("$.items[1].type").value("authorize"))
+                .andExpect(jsonPath("$.items[1].status").value("failed"));
+    }
+
+    @Test
+    public void testBatchWithOneInvalidItemChargesNothing() throws Exception {
+        String payload = "{\"items\":[{\"amount\":10.00," + CARD + "},"
+                + "{\"amount\":10.00,\"card\":{\"number\":\"4111111111111112\",\"expMonth\":12,\"expYear\":2030,\"cvv\":\"123\"}}]}";
+        mockMvc.perform(post("/payments/batch").contentType(MediaType.APPLICATION_JSON).content(payload))
+                .andExpect(status().isBadRequest());
+        verify(paymentService, never()).batch(anyList());
+    }
+
+    @Test
+    public void testBatchRejectsRepeatedOrderId() throws Exception {
+        String item = "{\"amount\":10.00," + CARD + ",\"orderId\":\"ext-dup\"}";
+        mockMvc.perform(post("/payments/batch").contentType(MediaType.APPLICATION_JSON).content("{\"items\":[" + item + "," + item + "]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.errors['items[1].orderId']").exists());
+        verify(paymentService, never()).batch(anyList());
+    }
+
+    @Test
+    public void testPurchaseRefusedByGatewayGuardIsRetryable() throws Exception {
+        when(paymentService.purchase(any(BigDecimal.class), anyString(), any(Map.class), any()))
+                .thenThrow(new GatewayUnavailableException("payment provider unavailable (circuit open)", 12_300));
+
+        mockMvc.perform(post("/payments/purchase").contentType(MediaType.APPLICATION_JSON).content("{\"amount\":10.00," + CARD + "}"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "13"))
+                .andExpect(jsonPath("$.retryable").value(true));
+    }
+
+    @Test
+    public void testFailedRefundWithoutProviderIdIsReported() throws Exception {
+        Transaction tx = new Transaction();
+        tx.setType(TransactionType.REFUND);
+        tx.setStatus(TransactionStatus.FAILED);
+        when(paymentService.refund(eq("prov-500"), any(BigDecimal.class), eq("1111"))).thenReturn(Optional.of(tx));
+
+        mockMvc.perform(post("/payments/refund").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"transactionId\":\"prov-500\",\"amount\":5.00,\"last4\":\"1111\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.refund_transaction_id").doesNotExist())
+                .andExpect(jsonPath("$.status").value("failed"));
+    }
 }
@@ -1,6 +1,9 @@
 package com.example.payment.controller;
 
+import com.example.payment.repository.IdempotencyRecordRepository;
+import com.example.payment.service.IdempotencyService;
 import com.example.payment.service.PaymentService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.http.MediaType;
@@ -18,7 +21,8 @@ public class PaymentControllerValidationTest {
     @BeforeEach
     public void setup() {
         PaymentService paymentService = mock(PaymentService.class);
-        PaymentController controller = new PaymentController(paymentService);
+        PaymentController controller = new PaymentController(paymentService,
+                new IdempotencyService(mock(IdempotencyRecordRepository.class), new ObjectMapper(), 1000, 100, 24));
         this.mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
     }
 
@@ -0,0 +1,76 @@
+package com.example.payment.export;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionExporterTest {
+
+    private TransactionExporter exporter;
+
+    @BeforeEach
+    public void setup() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:export-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table orders (id bigint primary key, external_id varchar(255), currency varchar(3))");
+        jdbc.execute("create table transactions (id bigint primary key, order_id bigint, provider_tx_id varchar(255), "
+                + "type smallint, status smallint, amount numeric(38,2), created_at timestamp(6) with time zone)");
+        jdbc.execute("insert into orders values (1, 'inv-7, \"rush\"', 'USD'), (2, null, 'EUR')");
+        // purchase success, refund success, authorize failed; the last one is a day later
+        jdbc.execute("insert into transactions values "
+                + "(10, 1, 'p-10', 2, 1, 30.00, timestamp with time zone '2026-10-01 08:00:00+00'), "
+                + "(11, 1, 'p-11', 3, 1, 5.50, timestamp with time zone '2026-10-01 23:59:59.5+00'), "
+                + "(12, 2, null, 0, 2, 12.00, timestamp with time zone '2026-10-02 00:00:00+00')");
+        exporter = new TransactionExporter(dataSource, new DataSourceTransactionManager(dataSource), new ObjectMapper(), 2);
+    }
+
+    @Test
+    public void csvCoversWholeDaysAndQuotesFields() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(2, exporter.export(ExportRange.parse("2026-10-01", null), ExportFormat.CSV, false, out));
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(3, lines.length);
+        assertEquals("id,transaction_id,order_id,external_order_id,type,status,amount,currency,created_at", lines[0]);
+        assertEquals("10,p-10,1,\"inv-7, \"\"rush\"\"\",purchase,success,30.00,USD,2026-10-01T08:00:00Z", lines[1]);
+        assertEquals("11,p-11,1,\"inv-7, \"\"rush\"\"\",refund,success,5.50,USD,2026-10-01T23:59:59.500Z", lines[2]);
+    }
+
+    @Test
+    public void gzippedNdjsonHasOneObjectPerLine() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(3, exporter.export(ExportRange.parse("2026-10-01", "2026-10-02"), ExportFormat.NDJSON, true, out));
+
+        String[] lines = new String(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())).readAllBytes(),
+                StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        JsonNode last = new ObjectMapper().readTree(lines[2]);
+        assertEquals(12, last.get("id").asLong());
+        assertTrue(last.get("transaction_id").isNull());
+        assertEquals("authorize", last.get("type").asText());
+        assertEquals("failed", last.get("status").asText());
+        assertEquals("EUR", last.get("currency").asText());
+    }
+
+    @Test
+    public void rangeIsValidated() {
+        assertThrows(IllegalArgumentException.class, () -> ExportRange.parse("2026-10-02", "2026-10-01"));
+        assertThrows(IllegalArgumentException.class, () -> ExportRange.parse("yesterday", null));
+        assertThrows(IllegalArgumentException.class, () -> ExportFormat.of("xlsx"));
+    }
+}
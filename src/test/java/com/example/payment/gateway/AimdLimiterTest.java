@@ -0,0 +1,61 @@
+package com.example.payment.gateway;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AimdLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(5000);
+
+    @Test
+    public void refusesBeyondTheLimit() {
+        AimdLimiter limiter = new AimdLimiter(2, 1, 10, 1000, 0.5);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        limiter.onNotCalled();
+        assertTrue(limiter.tryAcquire());
+        assertEquals(2, limiter.inFlight());
+    }
+
+    @Test
+    public void slowOrDroppedCallsShrinkTheLimitDownToMin() {
+        AimdLimiter limiter = new AimdLimiter(8, 2, 10, 1000, 0.5);
+        limiter.tryAcquire();
+        limiter.onSample(SLOW, false);
+        assertEquals(4, limiter.limit());
+        limiter.tryAcquire();
+        limiter.onSample(FAST, true);
+        assertEquals(2, limiter.limit());
+        limiter.tryAcquire();
+        limiter.onSample(SLOW, false);
+        assertEquals(2, limiter.limit());
+    }
+
+    @Test
+    public void fastCallsUnderLoadGrowTheLimitUpToMax() {
+        AimdLimiter limiter = new AimdLimiter(2, 1, 3, 1000, 0.5);
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire();
+            limiter.tryAcquire();
+            limiter.onSample(FAST, false);
+            limiter.onSample(FAST, false);
+        }
+        assertEquals(3, limiter.limit());
+        assertEquals(0, limiter.inFlight());
+    }
+
+    @Test
+    public void fastCallsWhileMostlyIdleLeaveTheLimitAlone() {
+        AimdLimiter limiter = new AimdLimiter(10, 1, 20, 1000, 0.5);
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire();
+            limiter.onSample(FAST, false);
+        }
+        assertEquals(10, limiter.limit());
+    }
+}
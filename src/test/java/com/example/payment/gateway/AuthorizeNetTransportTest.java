@@ -0,0 +1,142 @@
+package com.example.payment.gateway;
+
+import com.example.payment.config.AuthorizeNetHttpProperties;
+import com.example.payment.deadline.Deadline;
+import com.sun.net.httpserver.HttpServer;
+import net.authorize.api.contract.v1.CreateTransactionResponse;
+import net.authorize.api.contract.v1.MessageTypeEnum;
+import net.authorize.api.contract.v1.TransactionRequestType;
+import net.authorize.api.contract.v1.TransactionTypeEnum;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AuthorizeNetTransportTest {
+
+    private static final String NS = "AnetApi/xml/v1/schema/AnetApiSchema.xsd";
+
+    private HttpServer server;
+    private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private volatile String responseBody;
+    private volatile long responseDelayMs;
+    private AuthorizeNetTransport transport;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/xml/v1/request.api", exchange -> {
+            requestBodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            try {
+                Thread.sleep(responseDelayMs);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            // Authorize.Net prefixes its responses with a byte order mark
+            byte[] body = ("\uFEFF" + responseBody).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/xml; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        AuthorizeNetHttpProperties http = new AuthorizeNetHttpProperties();
+        http.setMaxConnections(4);
+        transport = new AuthorizeNetTransport("login-1", "key-1", "sandbox",
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/xml/v1/request.api", http);
+    }
+
+    @AfterEach
+    public void teardown() throws IOException {
+        transport.destroy();
+        server.stop(0);
+    }
+
+    @Test
+    public void sendsMerchantContextAndParsesResponse() throws Exception {
+        responseBody = "<?xml version=\"1.0\" encoding=\"utf-8\"?><createTransactionResponse xmlns=\"" + NS + "\">"
+                + "<messages><resultCode>Ok</resultCode><message><code>I00001</code><text>Successful.</text></message></messages>"
+                + "<transactionResponse><responseCode>1</responseCode><authCode>ABC123</authCode><transId>60012345</transId></transactionResponse>"
+                + "</createTransactionResponse>";
+
+        CreateTransactionResponse response = transport.createTransaction(authCapture());
+
+        assertEquals(MessageTypeEnum.OK, response.getMessages().getResultCode());
+        assertEquals("60012345", response.getTransactionResponse().getTransId());
+        String sent = requestBodies.get(0);
+        assertTrue(sent.contains("<name>login-1</name>"), sent);
+        assertTrue(sent.contains("<transactionKey>key-1</transactionKey>"), sent);
+        assertTrue(sent.contains("authCaptureTransaction"), sent);
+    }
+
+    @Test
+    public void deadlineRunningOutMidReadStillReadsTheProvidersAnswer() throws Exception {
+        responseBody = "<createTransactionResponse xmlns=\"" + NS + "\"><messages><resultCode>Ok</resultCode></messages>"
+                + "<transactionResponse><responseCode>1</responseCode><transId>60012346</transId></transactionResponse>"
+                + "</createTransactionResponse>";
+        responseDelayMs = 400;
+
+        // the provider has the request and is charging the card when the client's budget runs out
+        CreateTransactionResponse response;
+        Deadline deadline = Deadline.after(100);
+        try (Deadline.Scope ignored = deadline.attach()) {
+            response = transport.createTransaction(authCapture());
+        }
+
+        assertTrue(deadline.isExpired());
+        assertEquals("60012346", response.getTransactionResponse().getTransId());
+        assertEquals(0L, transport.poolStats().get("failures"));
+    }
+
+    @Test
+    public void errorResponseIsMappedToFailedCreateTransactionResponse() throws Exception {
+        responseBody = "<?xml version=\"1.0\" encoding=\"utf-8\"?><ErrorResponse xmlns=\"" + NS + "\">"
+                + "<messages><resultCode>Error</resultCode><message><code>E00007</code><text>User authentication failed.</text></message></messages>"
+                + "</ErrorResponse>";
+
+        CreateTransactionResponse response = transport.createTransaction(authCapture());
+
+        assertEquals(MessageTypeEnum.ERROR, response.getMessages().getResultCode());
+        assertEquals("E00007", response.getMessages().getMessage().get(0).getCode());
+        assertNull(response.getTransactionResponse());
+    }
+
+    @Test
+    public void reusesPooledConnections() throws Exception {
+        responseBody = "<createTransactionResponse xmlns=\"" + NS + "\"><messages><resultCode>Ok</resultCode></messages></createTransactionResponse>";
+
+        for (int i = 0; i < 5; i++) transport.createTransaction(authCapture());
+
+        assertEquals(1, clientPorts.size(), "sequential calls should share one keep-alive connection");
+        assertEquals(5L, transport.poolStats().get("requests"));
+        assertEquals(0, transport.poolStats().get("leased"));
+        assertEquals(4, transport.poolStats().get("max"));
+    }
+
+    @Test
+    public void unconfiguredTransportRefusesToSend() {
+        AuthorizeNetTransport unconfigured = new AuthorizeNetTransport("", "", "sandbox", "", new AuthorizeNetHttpProperties());
+        assertFalse(unconfigured.isConfigured());
+        assertThrows(IllegalStateException.class, () -> unconfigured.createTransaction(authCapture()));
+        assertTrue(requestBodies.isEmpty());
+    }
+
+    private static TransactionRequestType authCapture() {
+        TransactionRequestType req = new TransactionRequestType();
+        req.setTransactionType(TransactionTypeEnum.AUTH_CAPTURE_TRANSACTION.value());
+        req.setAmount(new BigDecimal("1.00"));
+        return req;
+    }
+}
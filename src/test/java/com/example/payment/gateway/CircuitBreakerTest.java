@@ -0,0 +1,78 @@
+package com.example.payment.gateway;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker(50, 10, 4, 1000, 2, clock::get);
+
+    @Test
+    public void opensOnceFailureRateReachedAfterMinimumCalls() {
+        call(false);
+        call(false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        call(true);
+        call(true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        assertFalse(breaker.tryAcquire());
+        assertTrue(breaker.isOpen());
+        assertEquals(1000, breaker.retryAfterMillis());
+    }
+
+    @Test
+    public void fewFailuresBelowMinimumCallsKeepItClosed() {
+        call(true);
+        call(true);
+        call(true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void halfOpenTrialsCloseOrReopen() {
+        for (int i = 0; i < 4; i++) call(true);
+        advance(1000);
+
+        // only the configured number of trial calls get through
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        advance(1000);
+        call(false);
+        call(false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        // the window starts over after closing
+        call(true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void unusedTrialSlotIsHandedBack() {
+        for (int i = 0; i < 4; i++) call(true);
+        advance(1000);
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        breaker.onNotCalled();
+        assertTrue(breaker.tryAcquire());
+    }
+
+    private void call(boolean failed) {
+        assertTrue(breaker.tryAcquire());
+        if (failed) breaker.onFailure();
+        else breaker.onSuccess();
+    }
+
+    private void advance(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.payment.gateway;
+
+import com.example.payment.config.AuthorizeNetHttpProperties;
+import com.example.payment.config.AuthorizeNetSimulatorProperties;
+import com.example.payment.config.GatewayGuardProperties;
+import com.example.payment.service.AuthorizeNetClient;
+import com.example.payment.service.PaymentMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.authorize.api.contract.v1.CreditCardType;
+import net.authorize.api.contract.v1.PaymentType;
+import net.authorize.api.contract.v1.TransactionRequestType;
+import net.authorize.api.contract.v1.TransactionTypeEnum;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimulatedAuthorizeNetTest {
+
+    private static final Map<String, String> CARD = Map.of("number", "4111111111111111", "expMonth", "12", "expYear", "2030", "cvv", "123");
+
+    private final AuthorizeNetSimulatorProperties props = new AuthorizeNetSimulatorProperties();
+    private final AuthorizeNetHttpProperties http = new AuthorizeNetHttpProperties();
+
+    {
+        props.setLatencyMedianMs(0);
+        props.setLatencyP99Ms(0);
+        props.setDeclinePercent(0);
+        props.setErrorPercent(0);
+        props.setTimeoutPercent(0);
+    }
+
+    private AuthorizeNetClient client() {
+        return new AuthorizeNetClient(new SimulatedAuthorizeNet(props, http), new PaymentMetrics(new SimpleMeterRegistry()),
+                new GatewayGuard(new GatewayGuardProperties()));
+    }
+
+    @Test
+    public void authorizationCanBeCapturedOnceUpToItsAmount() {
+        AuthorizeNetClient client = client();
+        String authId = client.createTransaction(new BigDecimal("50.00"), "USD", CARD, false).getProviderTxId();
+
+        assertEquals("47", client.captureTransaction(authId, new BigDecimal("60.00")).getMessageCode());
+        GatewayResult capture = client.captureTransaction(authId, new BigDecimal("40.00"));
+        assertTrue(capture.isSuccess());
+        assertEquals(authId, capture.getProviderTxId());
+        assertEquals("311", client.captureTransaction(authId, null).getMessageCode());
+        assertEquals("16", client.captureTransaction("123", null).getMessageCode());
+    }
+
+    @Test
+    public void refundsMayNotExceedTheCapture() {
+        AuthorizeNetClient client = client();
+        String saleId = client.createTransaction(new BigDecimal("30.00"), "USD", CARD, true).getProviderTxId();
+
+        assertEquals("6", client.refundTransaction(saleId, new BigDecimal("10.00"), "0000").getMessageCode());
+        GatewayResult refund = client.refundTransaction(saleId, new BigDecimal("20.00"), "1111");
+        assertTrue(refund.isSuccess());
+        assertNotEquals(saleId, refund.getProviderTxId());
+        assertEquals("55", client.refundTransaction(saleId, new BigDecimal("10.01"), "1111").getMessageCode());
+        assertTrue(client.refundTransaction(saleId, new BigDecimal("10.00"), "1111").isSuccess());
+    }
+
+    @Test
+    public void voidedTransactionCannotBeVoidedOrRefunded() {
+        AuthorizeNetClient client = client();
+        String saleId = client.createTransaction(new BigDecimal("30.00"), "USD", CARD, true).getProviderTxId();
+
+        assertTrue(client.voidTransaction(saleId).isSuccess());
+        assertEquals("310", client.voidTransaction(saleId).getMessageCode());
+        assertEquals("54", client.refundTransaction(saleId, new BigDecimal("5.00"), "1111").getMessageCode());
+    }
+
+    @Test
+    public void declinesComeBackAsFailedResults() {
+        props.setDeclinePercent(100);
+        GatewayResult result = client().createTransaction(new BigDecimal("10.00"), "USD", CARD, true);
+        assertFalse(result.isSuccess());
+        assertEquals("2", result.getResponseCode());
+        assertEquals("2", result.getMessageCode());
+    }
+
+    @Test
+    public void timedOutRequestIsStillAppliedByDefault() throws Exception {
+        props.setTimeoutPercent(100);
+        http.setReadTimeoutMs(20);
+        SimulatedAuthorizeNet simulator = new SimulatedAuthorizeNet(props, http);
+        TransactionRequestType request = new TransactionRequestType();
+        request.setTransactionType(TransactionTypeEnum.AUTH_ONLY_TRANSACTION.value());
+        request.setAmount(new BigDecimal("10.00"));
+        CreditCardType card = new CreditCardType();
+        card.setCardNumber("4111111111111111");
+        PaymentType payment = new PaymentType();
+        payment.setCreditCard(card);
+        request.setPayment(payment);
+
+        assertThrows(SocketTimeoutException.class, () -> simulator.createTransaction(request));
+        assertEquals(SimulatedAuthorizeNet.State.AUTHORIZED, simulator.transaction("80000000001").state);
+    }
+}
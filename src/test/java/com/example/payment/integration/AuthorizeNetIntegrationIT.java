@@ -1,5 +1,6 @@
 package com.example.payment.integration;
 
+import com.example.payment.gateway.GatewayResult;
 import com.example.payment.service.AuthorizeNetClient;
 import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
@@ -32,17 +33,17 @@ public class AuthorizeNetIntegrationIT {
         );
 
         // Perform a small purchase (auth+capture)
-        Map<String, Object> resp = authorizeNetClient.createTransaction(new BigDecimal("1.00"), "USD", card, true);
+        GatewayResult resp = authorizeNetClient.createTransaction(new BigDecimal("1.00"), "USD", card, true);
         assertNotNull(resp, "Response should not be null");
-        assertEquals("success", resp.getOrDefault("status", "failed"));
+        assertEquals("success", resp.getStatus(), resp.toString());
 
-        String providerTxId = (String) resp.get("provider_tx_id");
+        String providerTxId = resp.getProviderTxId();
         assertNotNull(providerTxId, "Provider transaction id should be returned on success");
 
         // Attempt a refund for the full amount
-        Map<String, Object> refund = authorizeNetClient.refundTransaction(providerTxId, new BigDecimal("1.00"), "1111");
+        GatewayResult refund = authorizeNetClient.refundTransaction(providerTxId, new BigDecimal("1.00"), "1111");
         assertNotNull(refund);
         // Refund may fail depending on transaction settlement; assert structure exists
-        assertTrue(refund.containsKey("status"));
+        assertNotNull(refund.getStatus());
     }
 }
@@ -0,0 +1,118 @@
+package com.example.payment.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PaymentJournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void replayFindsOrdersLeftInFlightAcrossRestarts() throws Exception {
+        PaymentJournal first = new PaymentJournal(true, dir.toString(), 1);
+        first.append(JournalEvent.Kind.CREATED, 1L, "purchase", new BigDecimal("30.00"), "processing", null);
+        first.awaitDurable(first.append(JournalEvent.Kind.REQUESTED, 1L, "purchase", new BigDecimal("30.00"), null, null));
+        first.append(JournalEvent.Kind.RESPONDED, 1L, "purchase", null, "success", "6001");
+        first.append(JournalEvent.Kind.APPLIED, 1L, "purchase", new BigDecimal("30.00"), "captured", "6001");
+        first.append(JournalEvent.Kind.CREATED, 2L, "authorize", new BigDecimal("12.50"), "processing", null);
+        first.awaitDurable(first.append(JournalEvent.Kind.REQUESTED, 2L, "authorize", new BigDecimal("12.50"), null, null));
+        first.close();
+
+        // the next process starts its order ids over, and finds order 1 of its own stuck after the provider answered
+        PaymentJournal second = new PaymentJournal(true, dir.toString(), 1);
+        second.append(JournalEvent.Kind.CREATED, 1L, "purchase", new BigDecimal("5.00"), "processing", null);
+        second.append(JournalEvent.Kind.REQUESTED, 1L, "purchase", new BigDecimal("5.00"), null, null);
+        second.awaitDurable(second.append(JournalEvent.Kind.RESPONDED, 1L, "purchase", null, "success", "6002"));
+        second.close();
+
+        JournalReplay replay = JournalReplay.read(dir);
+
+        assertEquals(2, replay.files());
+        assertEquals(2, replay.starts());
+        assertEquals(11, replay.events());
+        assertEquals(3, replay.orders());
+        List<JournalReplay.InFlight> inFlight = replay.inFlight();
+        assertEquals(2, inFlight.size());
+        assertEquals(new JournalReplay.InFlight(2, "requested", "authorize", "12.50", "processing", null, null,
+                inFlight.get(0).lastEventAt(), true), inFlight.get(0));
+        assertEquals(new JournalReplay.InFlight(1, "responded", "purchase", "5.00", "processing", "success", "6002",
+                inFlight.get(1).lastEventAt(), false), inFlight.get(1));
+    }
+
+    @Test
+    public void concurrentWritersRollFilesWithoutGaps() throws Exception {
+        PaymentJournal journal = new PaymentJournal(true, dir.toString(), 1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            long order = t;
+            done.add(pool.submit(() -> {
+                for (int i = 0; i < 2500; i++) {
+                    long sequence = journal.append(JournalEvent.Kind.REQUESTED, order, "capture", new BigDecimal("1.00"), null,
+                            "60000" + i);
+                    if (i % 100 == 0) journal.awaitDurable(sequence);
+                }
+            }));
+        }
+        for (Future<?> f : done) f.get();
+        pool.shutdown();
+        journal.close();
+
+        JournalReplay replay = JournalReplay.read(dir);
+
+        assertTrue(replay.files() > 1, "files: " + replay.files());
+        assertEquals(20_001, replay.events());
+        assertEquals(20_001, journal.appends());
+        assertTrue(journal.forces() >= 1);
+    }
+
+    @Test
+    public void tornTailEndsTheFileAndTheNextStartCarriesOn() throws Exception {
+        PaymentJournal journal = new PaymentJournal(true, dir.toString(), 1);
+        journal.append(JournalEvent.Kind.CREATED, 1L, "purchase", new BigDecimal("30.00"), "processing", null);
+        long last = journal.append(JournalEvent.Kind.APPLIED, 1L, "purchase", new BigDecimal("30.00"), "captured", "6001");
+        journal.close();
+        assertEquals(3, last);
+
+        // a crash that left the last record half written
+        Path file = JournalSegment.list(dir).get(0);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int end = JournalSegment.read(file, e -> { });
+            buffer.put(end - 3, (byte) (buffer.get(end - 3) ^ 0x55));
+            buffer.force();
+        }
+
+        JournalReplay replay = JournalReplay.read(dir);
+        assertEquals(2, replay.events());
+        assertEquals("created", replay.inFlight().get(0).stage());
+
+        PaymentJournal next = new PaymentJournal(true, dir.toString(), 1);
+        assertEquals(4, next.append(JournalEvent.Kind.CREATED, 2L, "authorize", BigDecimal.ONE, "processing", null));
+        next.close();
+        assertEquals(4, JournalReplay.read(dir).events());
+    }
+
+    @Test
+    public void disabledJournalWritesNothing() throws Exception {
+        PaymentJournal journal = new PaymentJournal(false, dir.resolve("journal").toString(), 1);
+        assertEquals(0, journal.append(JournalEvent.Kind.CREATED, 1L, "purchase", BigDecimal.ONE, "processing", null));
+        journal.awaitDurable(0);
+        journal.close();
+        assertFalse(Files.exists(dir.resolve("journal")));
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.payment.reconcile;
+
+import com.example.payment.export.ExportRange;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReconcilerTest {
+
+    @TempDir
+    Path dir;
+
+    private JdbcTemplate jdbc;
+    private Reconciler reconciler;
+
+    @BeforeEach
+    public void setup() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:reconcile-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table transactions (id bigint primary key, provider_tx_id varchar(255), type smallint, "
+                + "status smallint, amount numeric(38,2), created_at timestamp(6) with time zone)");
+        // types: 0 authorize, 1 capture, 2 purchase, 3 refund, 4 void; statuses: 1 success, 2 failed
+        jdbc.execute("insert into transactions values "
+                + "(1, 'A', 2, 1, 30.00, timestamp with time zone '2026-10-01 10:00:00+00'), "  // matched
+                + "(2, 'B', 0, 1, 20.00, timestamp with time zone '2026-10-01 10:00:00+00'), "  // authorization, captured below
+                + "(3, 'B', 1, 1, 20.00, timestamp with time zone '2026-10-01 11:00:00+00'), "  // matched (the capture)
+                + "(4, 'C', 3, 1, 5.00, timestamp with time zone '2026-10-01 12:00:00+00'), "   // refund, settled as -5.00
+                + "(5, 'D', 2, 1, 12.00, timestamp with time zone '2026-10-01 13:00:00+00'), "  // settled as 1,021.00
+                + "(6, 'E', 2, 1, 9.99, timestamp with time zone '2026-10-01 14:00:00+00'), "   // not in the report
+                + "(7, 'F', 0, 1, 8.00, timestamp with time zone '2026-10-01 15:00:00+00'), "   // voided: expected nowhere
+                + "(8, 'F', 4, 1, 8.00, timestamp with time zone '2026-10-01 15:30:00+00'), "
+                + "(9, 'G', 2, 2, 7.00, timestamp with time zone '2026-10-01 16:00:00+00'), "   // declined
+                + "(10, 'H', 2, 1, 4.00, timestamp with time zone '2026-10-02 09:00:00+00')"); // outside the range
+        reconciler = new Reconciler(dataSource, new DataSourceTransactionManager(dataSource), 2, "Transaction ID",
+                "Settlement Amount", 4);
+    }
+
+    @Test
+    public void reportsEachKindOfDifference() throws Exception {
+        Path report = dir.resolve("settlement.csv");
+        Files.writeString(report, "\uFEFFTransaction ID,Transaction Status,Settlement Amount,Customer\r\n"
+                + "A,settledSuccessfully,30.00,\"Doe, Jane\"\r\n"
+                + "B,settledSuccessfully,\"20.00\",x\r\n"
+                + "C,refundSettledSuccessfully,-5.00,x\r\n"
+                + "D,settledSuccessfully,\"1,021.00\",x\r\n"
+                + "Z,settledSuccessfully,$3.50,x\r\n"
+                + "F,settledSuccessfully,8,x\r\n"
+                + "\r\n"
+                + "totals,,n/a,\r\n");
+
+        ReconciliationSummary summary = reconciler.reconcile(report, ExportRange.parse("2026-10-01", null), dir.resolve("out"));
+
+        assertEquals(6, summary.settlementRows());
+        assertEquals(1, summary.malformedSettlementRows());
+        assertEquals(5, summary.localRows());
+        assertEquals(3, summary.matched());
+        assertEquals(1, summary.amountMismatch());
+        assertEquals(1, summary.missingAtProvider());
+        assertEquals(2, summary.missingLocally());
+        assertFalse(summary.clean());
+        assertEquals(List.of("transaction_id,type,local_amount,settled_amount", "D,purchase,12.00,1021.00"),
+                Files.readAllLines(dir.resolve("out/amount_mismatch.csv")));
+        assertEquals(List.of("transaction_id,type,amount", "E,purchase,9.99"),
+                Files.readAllLines(dir.resolve("out/missing_at_provider.csv")));
+        List<String> missingLocally = Files.readAllLines(dir.resolve("out/missing_locally.csv"));
+        assertTrue(missingLocally.containsAll(List.of("Z,3.50", "F,8.00")), missingLocally.toString());
+    }
+
+    @Test
+    public void amountWithFractionsOfACentIsAMismatchNotAnError() throws Exception {
+        jdbc.execute("alter table transactions alter column amount numeric(38,4)");
+        jdbc.execute("insert into transactions values "
+                + "(11, 'I', 2, 1, 12.3450, timestamp with time zone '2026-10-01 17:00:00+00'), "
+                + "(12, 'J', 2, 1, 6.5000, timestamp with time zone '2026-10-01 18:00:00+00')");
+        Path report = dir.resolve("settlement.csv");
+        Files.writeString(report, "Transaction ID,Settlement Amount\n"
+                + "A,30.00\nB,20.00\nC,-5.00\nD,12.00\nE,9.99\nI,12.35\nJ,6.50\n");
+
+        ReconciliationSummary summary = reconciler.reconcile(report, ExportRange.parse("2026-10-01", null), dir.resolve("out"));
+
+        assertEquals(7, summary.localRows());
+        assertEquals(6, summary.matched());
+        assertEquals(1, summary.amountMismatch());
+        assertEquals(List.of("transaction_id,type,local_amount,settled_amount", "I,purchase,12.3450,12.35"),
+                Files.readAllLines(dir.resolve("out/amount_mismatch.csv")));
+    }
+
+    @Test
+    public void everySegmentOfALargeTabDelimitedReportIsRead() throws Exception {
+        StringBuilder sb = new StringBuilder("Settlement Amount\tTransaction ID\n");
+        for (int i = 0; i < 10_000; i++) sb.append(i % 100).append(".25\tT").append(i).append('\n');
+        sb.append("1.00\tT7\n"); // a duplicate
+        Path report = dir.resolve("settlement.txt");
+        Files.writeString(report, sb);
+
+        SettlementFile file = SettlementFile.load(report, "transaction id", "settlement amount", new ForkJoinPool(3));
+
+        assertEquals(10_001, file.rows);
+        assertEquals(1, file.duplicateRows);
+        assertEquals(0, file.malformedRows);
+        assertEquals(10_000, file.settledCents.size());
+        assertEquals(9925L, file.settledCents.get("T9999"));
+        assertEquals(825L, file.settledCents.get("T7"));
+    }
+}
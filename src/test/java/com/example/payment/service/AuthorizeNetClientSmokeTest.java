@@ -1,48 +1,62 @@
 package com.example.payment.service;
 
+import com.example.payment.config.AuthorizeNetHttpProperties;
+import com.example.payment.config.GatewayGuardProperties;
+import com.example.payment.gateway.GatewayGuard;
+import com.example.payment.gateway.AuthorizeNetTransport;
+import com.example.payment.gateway.GatewayResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
-import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 public class AuthorizeNetClientSmokeTest {
 
+    private static AuthorizeNetClient unconfiguredClient() {
+        return new AuthorizeNetClient(new AuthorizeNetTransport("", "", "sandbox", "", new AuthorizeNetHttpProperties()),
+                new PaymentMetrics(new SimpleMeterRegistry()), new GatewayGuard(new GatewayGuardProperties()));
+    }
+
     @Test
     public void createTransactionFailsGracefullyWhenNoCredentials() {
-        AuthorizeNetClient client = new AuthorizeNetClient();
-        Map<String, Object> resp = client.createTransaction(new BigDecimal("1.00"), "USD", null, true);
+        AuthorizeNetClient client = unconfiguredClient();
+        GatewayResult resp = client.createTransaction(new BigDecimal("1.00"), "USD", null, true);
         assertNotNull(resp);
-        assertTrue(resp.containsKey("status"));
-        assertEquals("failed", resp.get("status"));
+        assertFalse(resp.isSuccess());
+        assertEquals("failed", resp.getStatus());
+        assertNotNull(resp.getRawResponse());
     }
 
     @Test
     public void captureTransactionFailsGracefullyWhenNoCredentials() {
-        AuthorizeNetClient client = new AuthorizeNetClient();
-        Map<String, Object> resp = client.captureTransaction("nonexistent", null);
+        AuthorizeNetClient client = unconfiguredClient();
+        GatewayResult resp = client.captureTransaction("nonexistent", null);
         assertNotNull(resp);
-        assertTrue(resp.containsKey("status"));
-        assertEquals("failed", resp.get("status"));
+        assertFalse(resp.isSuccess());
+        assertEquals("failed", resp.getStatus());
+        assertNotNull(resp.getRawResponse());
     }
 
     @Test
     public void voidTransactionFailsGracefullyWhenNoCredentials() {
-        AuthorizeNetClient client = new AuthorizeNetClient();
-        Map<String, Object> resp = client.voidTransaction("nonexistent");
+        AuthorizeNetClient client = unconfiguredClient();
+        GatewayResult resp = client.voidTransaction("nonexistent");
         assertNotNull(resp);
-        assertTrue(resp.containsKey("status"));
-        assertEquals("failed", resp.get("status"));
+        assertFalse(resp.isSuccess());
+        assertEquals("failed", resp.getStatus());
+        assertNotNull(resp.getRawResponse());
     }
 
     @Test
     public void refundTransactionFailsGracefullyWhenNoCredentials() {
-        AuthorizeNetClient client = new AuthorizeNetClient();
-        Map<String, Object> resp = client.refundTransaction("nonexistent", new BigDecimal("1.00"), "1111");
+        AuthorizeNetClient client = unconfiguredClient();
+        GatewayResult resp = client.refundTransaction("nonexistent", new BigDecimal("1.00"), "1111");
         assertNotNull(resp);
-        assertTrue(resp.containsKey("status"));
-        assertEquals("failed", resp.get("status"));
+        assertFalse(resp.isSuccess());
+        assertEquals("failed", resp.getStatus());
+        assertNotNull(resp.getRawResponse());
     }
 }
 
@@ -0,0 +1,163 @@
+package com.example.payment.service;
+
+import com.example.payment.config.GatewayGuardProperties;
+import com.example.payment.gateway.AuthorizeNetTransport;
+import com.example.payment.gateway.CircuitBreaker;
+import com.example.payment.gateway.GatewayGuard;
+import com.example.payment.gateway.GatewayOutcomeUnknownException;
+import com.example.payment.gateway.GatewayResult;
+import com.example.payment.gateway.GatewayUnavailableException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.authorize.api.contract.v1.CreateTransactionResponse;
+import net.authorize.api.contract.v1.MessageTypeEnum;
+import net.authorize.api.contract.v1.MessagesType;
+import net.authorize.api.contract.v1.TransactionResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AuthorizeNetClientTest {
+
+    private AuthorizeNetTransport transport;
+    private SimpleMeterRegistry meterRegistry;
+    private GatewayGuard guard;
+    private AuthorizeNetClient client;
+
+    @BeforeEach
+    public void setup() {
+        transport = Mockito.mock(AuthorizeNetTransport.class);
+        meterRegistry = new SimpleMeterRegistry();
+        GatewayGuardProperties guardProperties = new GatewayGuardProperties();
+        guardProperties.setWindowSize(4);
+        guardProperties.setMinimumCalls(4);
+        guard = new GatewayGuard(guardProperties);
+        client = new AuthorizeNetClient(transport, new PaymentMetrics(meterRegistry), guard);
+    }
+
+    @Test
+    public void approvedResponseBecomesSuccessWithCompactJson() throws Exception {
+        when(transport.createTransaction(any())).thenReturn(response(MessageTypeEnum.OK, "I00001", "1", "60012345"));
+
+        GatewayResult result = client.createTransaction(new BigDecimal("10.00"), "USD", null, true);
+
+        assertTrue(result.isSuccess());
+        assertEquals("60012345", result.getProviderTxId());
+        assertEquals("1", result.getResponseCode());
+        assertEquals("ABC123", result.getAuthCode());
+        JsonNode raw = new ObjectMapper().readTree(result.getRawResponse());
+        assertEquals("Ok", raw.get("resultCode").asText());
+        assertEquals("60012345", raw.get("transactionResponse").get("transId").asText());
+        assertFalse(raw.get("transactionResponse").has("avsResultCode"));
+    }
+
+    @Test
+    public void declineIsFailedEvenWithOkResultCode() throws Exception {
+        CreateTransactionResponse declined = response(MessageTypeEnum.OK, "I00001", "2", "0");
+        TransactionResponse.Errors errors = new TransactionResponse.Errors();
+        TransactionResponse.Errors.Error error = new TransactionResponse.Errors.Error();
+        error.setErrorCode("2");
+        error.setErrorText("This transaction has been declined.");
+        errors.getError().add(error);
+        declined.getTransactionResponse().setErrors(errors);
+        when(transport.createTransaction(any())).thenReturn(declined);
+
+        GatewayResult result = client.createTransaction(new BigDecimal("10.00"), "USD", null, true);
+
+        assertFalse(result.isSuccess());
+        assertNull(result.getProviderTxId());
+        assertEquals("2", result.getMessageCode());
+        assertEquals("This transaction has been declined.", result.getMessageText());
+        assertEquals(1, meterRegistry.get("payment.gateway.requests").tags("method", "createTransaction", "outcome", "declined").timer().count());
+    }
+
+    @Test
+    public void voidKeepsReferencedIdWhenProviderOmitsIt() throws Exception {
+        when(transport.createTransaction(any())).thenReturn(response(MessageTypeEnum.OK, "I00001", "1", null));
+
+        GatewayResult result = client.voidTransaction("60012345");
+
+        assertTrue(result.isSuccess());
+        assertEquals("60012345", result.getProviderTxId());
+    }
+
+    @Test
+    public void failureBeforeTheRequestIsSentIsReportedAsFailedResult() throws Exception {
+        when(transport.createTransaction(any())).thenThrow(new ConnectException("Connection refused"));
+
+        GatewayResult result = client.captureTransaction("60012345", null);
+
+        assertFalse(result.isSuccess());
+        assertEquals("Connection refused", result.getMessageText());
+        assertEquals("{\"error\":\"Connection refused\"}", result.getRawResponse());
+        assertEquals(1, meterRegistry.get("payment.gateway.requests").tags("method", "captureTransaction", "outcome", "error").timer().count());
+    }
+
+    @Test
+    public void readTimeoutIsAnUnknownOutcomeNotAFailedResult() throws Exception {
+        when(transport.createTransaction(any())).thenThrow(new SocketTimeoutException("Read timed out"));
+
+        GatewayOutcomeUnknownException ex = assertThrows(GatewayOutcomeUnknownException.class,
+                () -> client.createTransaction(new BigDecimal("10.00"), "USD", null, true));
+
+        assertTrue(ex.getMessage().contains("Read timed out"), ex.getMessage());
+        assertEquals(1, meterRegistry.get("payment.gateway.requests").tags("method", "createTransaction", "outcome", "error").timer().count());
+        assertEquals(0, guard.inFlight());
+    }
+
+    @Test
+    public void connectionResetMidResponseIsAnUnknownOutcome() throws Exception {
+        when(transport.createTransaction(any())).thenThrow(new SocketException("Connection reset"));
+
+        assertThrows(GatewayOutcomeUnknownException.class, () -> client.captureTransaction("60012345", null));
+    }
+
+    @Test
+    public void repeatedTransportFailuresOpenTheCircuit() throws Exception {
+        when(transport.createTransaction(any())).thenThrow(new SocketTimeoutException("Read timed out"));
+        for (int i = 0; i < 4; i++) assertThrows(GatewayOutcomeUnknownException.class, () -> client.voidTransaction("60012345"));
+
+        assertEquals(CircuitBreaker.State.OPEN, guard.circuitState());
+        assertThrows(GatewayUnavailableException.class, () -> client.voidTransaction("60012345"));
+        assertThrows(GatewayUnavailableException.class, client::checkAvailable);
+        verify(transport, times(4)).createTransaction(any());
+        assertEquals(0, guard.inFlight());
+    }
+
+    @Test
+    public void declinesDoNotCountAgainstTheCircuit() throws Exception {
+        when(transport.createTransaction(any())).thenReturn(response(MessageTypeEnum.ERROR, "E00027", "2", "0"));
+        for (int i = 0; i < 10; i++) assertFalse(client.createTransaction(new BigDecimal("10.00"), "USD", null, true).isSuccess());
+
+        assertEquals(CircuitBreaker.State.CLOSED, guard.circuitState());
+    }
+
+    private static CreateTransactionResponse response(MessageTypeEnum resultCode, String code, String responseCode, String transId) {
+        MessagesType messages = new MessagesType();
+        messages.setResultCode(resultCode);
+        MessagesType.Message message = new MessagesType.Message();
+        message.setCode(code);
+        message.setText("Successful.");
+        messages.getMessage().add(message);
+        TransactionResponse tx = new TransactionResponse();
+        tx.setResponseCode(responseCode);
+        tx.setAuthCode("ABC123");
+        tx.setTransId(transId);
+        CreateTransactionResponse response = new CreateTransactionResponse();
+        response.setMessages(messages);
+        response.setTransactionResponse(tx);
+        return response;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.payment.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class GroupCommitWriterTest {
+
+    @Test
+    public void concurrentWritesShareCommits() throws Exception {
+        PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+        when(txManager.getTransaction(any(TransactionDefinition.class))).thenAnswer(i -> new SimpleTransactionStatus());
+        // hold the first commit so the other writes queue up behind it
+        CountDownLatch firstCommit = new CountDownLatch(1);
+        AtomicInteger commitCalls = new AtomicInteger();
+        doAnswer(i -> {
+            if (commitCalls.incrementAndGet() == 1) firstCommit.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(txManager).commit(any());
+        GroupCommitWriter writer = new GroupCommitWriter(txManager, 64, 5);
+        ExecutorService callers = Executors.newFixedThreadPool(20);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                int n = i;
+                results.add(callers.submit(() -> writer.write(() -> n)));
+                if (i == 0) Thread.sleep(50);
+            }
+            Thread.sleep(100);
+            firstCommit.countDown();
+            for (int i = 0; i < 20; i++) assertEquals(i, results.get(i).get(5, TimeUnit.SECONDS));
+
+            assertEquals(20, writer.writes());
+            assertTrue(writer.commits() <= 3, "commits: " + writer.commits());
+        } finally {
+            callers.shutdownNow();
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    public void failedGroupIsRetriedOneWriteAtATime() throws Exception {
+        PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+        when(txManager.getTransaction(any(TransactionDefinition.class))).thenAnswer(i -> new SimpleTransactionStatus());
+        GroupCommitWriter writer = new GroupCommitWriter(txManager, 64, 50);
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        try {
+            // warm the writer up so the next group waits out the window
+            Future<?> a = callers.submit(() -> writer.write(() -> 1));
+            Future<?> b = callers.submit(() -> writer.write(() -> 2));
+            a.get(5, TimeUnit.SECONDS);
+            b.get(5, TimeUnit.SECONDS);
+
+            Future<Integer> good = callers.submit(() -> writer.write(() -> 3));
+            Future<Integer> bad = callers.submit(() -> writer.write(() -> {
+                throw new IllegalStateException("duplicate key");
+            }));
+            assertEquals(3, good.get(5, TimeUnit.SECONDS));
+            Exception ex = assertThrows(Exception.class, () -> bad.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, ex.getCause());
+        } finally {
+            callers.shutdownNow();
+            writer.shutdown();
+        }
+    }
+
+    @Test
+    public void singleWriteModeCommitsOnTheCallersThread() {
+        PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+        GroupCommitWriter writer = new GroupCommitWriter(txManager, 1, 0);
+        String thread = writer.write(() -> Thread.currentThread().getName());
+        assertEquals(Thread.currentThread().getName(), thread);
+        verify(txManager, times(1)).commit(any());
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.payment.service;
+
+import com.example.payment.gateway.GatewayUnavailableException;
+import com.example.payment.model.IdempotencyRecord;
+import com.example.payment.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class IdempotencyServiceTest {
+
+    private IdempotencyRecordRepository repository;
+    private IdempotencyService service;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    public void setup() {
+        repository = Mockito.mock(IdempotencyRecordRepository.class);
+        when(repository.saveAndFlush(any(IdempotencyRecord.class))).thenAnswer(i -> i.getArgument(0));
+        service = new IdempotencyService(repository, new ObjectMapper(), 2000, 100, 24);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void runsWithoutKey() {
+        service.execute("purchase", null, Map.of("amount", 1), this::charge);
+        service.execute("purchase", null, Map.of("amount", 1), this::charge);
+        assertEquals(2, calls.get());
+        verify(repository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    public void replaysCompletedResponse() {
+        ResponseEntity<?> first = service.execute("purchase", "k-1", Map.of("amount", 1), this::charge);
+        ResponseEntity<?> second = service.execute("purchase", "k-1", Map.of("amount", 1), this::charge);
+
+        assertEquals(1, calls.get());
+        assertEquals(201, second.getStatusCode().value());
+        assertEquals("true", second.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals("{\"transaction_id\":\"prov-1\"}", second.getBody());
+        assertNull(first.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        verify(repository).save(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    public void rejectsKeyReusedForDifferentRequest() {
+        service.execute("refund", "k-2", Map.of("amount", 1), this::charge);
+        ResponseEntity<?> reused = service.execute("refund", "k-2", Map.of("amount", 2), this::charge);
+        assertEquals(422, reused.getStatusCode().value());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void inFlightDuplicateWaitsForFirstResult() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<ResponseEntity<?>> first = pool.submit(() -> service.execute("capture", "k-3", Map.of("amount", 1), () -> {
+                started.countDown();
+                await(release);
+                return charge();
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<ResponseEntity<?>> duplicate = pool.submit(() -> service.execute("capture", "k-3", Map.of("amount", 1), this::charge));
+            Thread.sleep(100);
+            assertFalse(duplicate.isDone());
+
+            release.countDown();
+            assertEquals(201, first.get(5, TimeUnit.SECONDS).getStatusCode().value());
+            ResponseEntity<?> replayed = duplicate.get(5, TimeUnit.SECONDS);
+            assertEquals(201, replayed.getStatusCode().value());
+            assertEquals("true", replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+            assertEquals(1, calls.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void replaysResponseStoredByAnotherNode() {
+        when(repository.saveAndFlush(any(IdempotencyRecord.class))).thenThrow(new DataIntegrityViolationException("duplicate"));
+        IdempotencyRecord stored = new IdempotencyRecord();
+        stored.setStatus("completed");
+        stored.setResponseStatus(201);
+        stored.setResponseBody("{\"transaction_id\":\"prov-9\"}");
+        stored.setRequestHash(service.fingerprint("purchase", Map.of("amount", 1)));
+        when(repository.findByPrincipalAndOperationAndIdempotencyKey("", "purchase", "k-4")).thenReturn(Optional.of(stored));
+
+        ResponseEntity<?> response = service.execute("purchase", "k-4", Map.of("amount", 1), this::charge);
+
+        assertEquals(0, calls.get());
+        assertEquals(201, response.getStatusCode().value());
+        assertEquals("{\"transaction_id\":\"prov-9\"}", response.getBody());
+    }
+
+    @Test
+    public void requestRefusedBeforeTheGatewayReleasesKey() {
+        assertThrows(GatewayUnavailableException.class, () -> service.execute("purchase", "k-5", Map.of("amount", 1), () -> {
+            throw new GatewayUnavailableException("circuit open", 1000);
+        }));
+        ResponseEntity<?> retry = service.execute("purchase", "k-5", Map.of("amount", 1), this::charge);
+        assertEquals(201, retry.getStatusCode().value());
+        assertEquals(1, calls.get());
+        verify(repository).delete(any(IdempotencyRecord.class));
+    }
+
+    @Test
+    public void failureThatMayFollowTheChargeKeepsKeyWithUnknownOutcome() {
+        // e.g. recording the provider's approval failed
+        assertThrows(IllegalStateException.class, () -> service.execute("purchase", "k-7", Map.of("amount", 1), () -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("db down");
+        }));
+        ResponseEntity<?> retry = service.execute("purchase", "k-7", Map.of("amount", 1), this::charge);
+
+        assertEquals(1, calls.get());
+        assertEquals(500, retry.getStatusCode().value());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertTrue(String.valueOf(retry.getBody()).contains("check the order"), String.valueOf(retry.getBody()));
+        verify(repository, never()).delete(any(IdempotencyRecord.class));
+        verify(repository).save(Mockito.argThat(r -> IdempotencyService.UNKNOWN.equals(r.getStatus()) && r.getResponseStatus() == 500));
+    }
+
+    @Test
+    public void keysAreScopedToTheAuthenticatedClient() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("client-a", null, List.of()));
+        ResponseEntity<?> first = service.execute("purchase", "k-8", Map.of("amount", 1), this::charge);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("client-b", null, List.of()));
+        ResponseEntity<?> other = service.execute("purchase", "k-8", Map.of("amount", 2), this::charge);
+
+        assertEquals(201, first.getStatusCode().value());
+        assertEquals(201, other.getStatusCode().value());
+        assertNull(other.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+        assertEquals(2, calls.get());
+        verify(repository).saveAndFlush(Mockito.argThat(r -> "client-a".equals(r.getPrincipal())));
+        verify(repository).saveAndFlush(Mockito.argThat(r -> "client-b".equals(r.getPrincipal())));
+    }
+
+    @Test
+    public void serviceUnavailableIsNotStored() {
+        service.execute("purchase_async", "k-6", Map.of("amount", 1), () -> ResponseEntity.status(503).body(Map.of("detail", "full")));
+        service.execute("purchase_async", "k-6", Map.of("amount", 1), this::charge);
+        assertEquals(1, calls.get());
+        verify(repository, times(2)).saveAndFlush(any());
+    }
+
+    private ResponseEntity<?> charge() {
+        calls.incrementAndGet();
+        return ResponseEntity.status(201).body(Map.of("transaction_id", "prov-1"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
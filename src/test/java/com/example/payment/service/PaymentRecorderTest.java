@@ -0,0 +1,155 @@
+package com.example.payment.service;
+
+import com.example.payment.gateway.GatewayResult;
+import com.example.payment.model.Order;
+import com.example.payment.model.OrderStatus;
+import com.example.payment.model.Transaction;
+import com.example.payment.model.TransactionStatus;
+import com.example.payment.model.TransactionType;
+import com.example.payment.repository.OrderRepository;
+import com.example.payment.repository.OrderState;
+import com.example.payment.repository.TransactionRawResponseRepository;
+import com.example.payment.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PaymentRecorderTest {
+
+    private OrderRepository orderRepository;
+    private TransactionRepository transactionRepository;
+    private PlatformTransactionManager txManager;
+    private GroupCommitWriter writer;
+    private PaymentRecorder recorder;
+    private ExecutorService callers;
+
+    @BeforeEach
+    public void setup() {
+        orderRepository = Mockito.mock(OrderRepository.class);
+        transactionRepository = Mockito.mock(TransactionRepository.class);
+        txManager = Mockito.mock(PlatformTransactionManager.class);
+        when(txManager.getTransaction(any(TransactionDefinition.class))).thenAnswer(i -> new SimpleTransactionStatus());
+        when(orderRepository.save(any(Order.class))).thenAnswer(i -> i.getArgument(0));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
+        when(orderRepository.transition(any(), any(), any(), any())).thenReturn(1);
+        when(orderRepository.settle(any(), any(), anyLong(), any(), any(), any(), any(), any())).thenReturn(1);
+        writer = new GroupCommitWriter(txManager, 64, 5);
+        recorder = new PaymentRecorder(orderRepository, transactionRepository,
+                new RawResponseStore(Mockito.mock(TransactionRawResponseRepository.class), Mockito.mock(RawResponseArchive.class)),
+                new TransactionLookupCache(100), writer);
+        callers = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        callers.shutdownNow();
+        writer.shutdown();
+    }
+
+    @Test
+    public void writesOfAFailedGroupSucceedWhenRetriedAlone() throws Exception {
+        // the first commit is held until the writes below are queued, so they go out as one group; its commit fails
+        CountDownLatch queued = new CountDownLatch(1);
+        AtomicInteger commits = new AtomicInteger();
+        doAnswer(i -> {
+            int n = commits.incrementAndGet();
+            if (n == 1) queued.await(5, TimeUnit.SECONDS);
+            if (n == 2) throw new TransactionSystemException("connection reset");
+            return null;
+        }).when(txManager).commit(any());
+        Future<Integer> holder = callers.submit(() -> writer.write(() -> 0));
+        while (commits.get() == 0) Thread.sleep(5);
+
+        Transaction purchase = pending(1L, TransactionType.PURCHASE, OrderStatus.PROCESSING, 0);
+        Transaction authorization = pending(2L, TransactionType.AUTHORIZE, OrderStatus.CAPTURING, 3);
+        authorization.getOrder().setAuthorizedAmount(new BigDecimal("25.00"));
+        Transaction refunded = pending(3L, TransactionType.PURCHASE, OrderStatus.VOIDING, 5);
+        refunded.getOrder().setAuthorizedAmount(new BigDecimal("25.00"));
+        refunded.getOrder().setCapturedAmount(new BigDecimal("25.00"));
+
+        Future<Transaction> applied = callers.submit(() -> recorder.applyResult(purchase, GatewayResult.success("7001", "{}"),
+                OrderStatus.CAPTURED));
+        Future<Transaction> captured = callers.submit(() -> recorder.recordFollowUp(authorization, TransactionType.CAPTURE,
+                new BigDecimal("25.00"), GatewayResult.success("7002", "{}"), OrderStatus.AUTHORIZED));
+        Future<?> released = callers.submit(() -> recorder.release(refunded.getOrder(), OrderStatus.CAPTURED));
+        while (writer.queued() < 3) Thread.sleep(5);
+        queued.countDown();
+
+        assertEquals(0, holder.get(5, TimeUnit.SECONDS));
+        assertEquals(TransactionStatus.SUCCESS, applied.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(OrderStatus.CAPTURED, purchase.getOrder().getStatus());
+        assertEquals(new BigDecimal("25.00"), purchase.getOrder().getCapturedAmount());
+        assertEquals(TransactionStatus.SUCCESS, captured.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(OrderStatus.CAPTURED, authorization.getOrder().getStatus());
+        assertEquals(4, authorization.getOrder().getVersion());
+        assertEquals(new BigDecimal("25.00"), authorization.getOrder().getCapturedAmount());
+        released.get(5, TimeUnit.SECONDS);
+        assertEquals(OrderStatus.CAPTURED, refunded.getOrder().getStatus());
+        // the group's try and each write's own retry ask for the same change
+        verify(orderRepository, times(2)).settle(eq(2L), eq(OrderStatus.CAPTURING), eq(3L), eq(OrderStatus.CAPTURED),
+                eq(new BigDecimal("25.00")), eq(BigDecimal.ZERO), eq(BigDecimal.ZERO), any());
+        verify(orderRepository, times(2)).transition(eq(3L), eq(OrderStatus.VOIDING), eq(OrderStatus.CAPTURED), any());
+        assertEquals(5, commits.get());
+    }
+
+    @Test
+    public void successAfterTheSweeperReleasedTheClaimStillReachesTheTotals() {
+        // the capture's claim (version 3) was released back to authorized by the sweeper while the provider was working
+        Transaction authorization = pending(4L, TransactionType.AUTHORIZE, OrderStatus.CAPTURING, 3);
+        authorization.getOrder().setAuthorizedAmount(new BigDecimal("25.00"));
+        when(orderRepository.settle(eq(4L), eq(OrderStatus.CAPTURING), eq(3L), any(), any(), any(), any(), any())).thenReturn(0);
+        when(orderRepository.findStateById(4L)).thenReturn(Optional.of(
+                new OrderState(OrderStatus.AUTHORIZED, 4, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO)));
+
+        Transaction capture = recorder.recordFollowUp(authorization, TransactionType.CAPTURE, new BigDecimal("25.00"),
+                GatewayResult.success("7004", "{}"), OrderStatus.AUTHORIZED);
+
+        assertEquals(TransactionStatus.SUCCESS, capture.getStatus());
+        verify(orderRepository).settle(eq(4L), eq(OrderStatus.AUTHORIZED), eq(4L), eq(OrderStatus.CAPTURED),
+                eq(new BigDecimal("25.00")), eq(BigDecimal.ZERO), eq(BigDecimal.ZERO), any());
+        Order order = authorization.getOrder();
+        assertEquals(OrderStatus.CAPTURED, order.getStatus());
+        assertEquals(5, order.getVersion());
+        assertEquals(new BigDecimal("25.00"), order.getCapturedAmount());
+        // nothing is left to capture a second time
+        assertEquals(0, order.capturableAmount().signum());
+    }
+
+    private static Transaction pending(long orderId, TransactionType type, OrderStatus status, long version) {
+        Order order = new Order();
+        order.setId(orderId);
+        order.setAmount(new BigDecimal("25.00"));
+        order.setStatus(status);
+        order.setVersion(version);
+        Transaction tx = new Transaction();
+        tx.setId(orderId * 10);
+        tx.setOrder(order);
+        tx.setType(type);
+        tx.setAmount(new BigDecimal("25.00"));
+        tx.setStatus(TransactionStatus.PENDING);
+        return tx;
+    }
+}
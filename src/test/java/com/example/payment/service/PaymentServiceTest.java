@@ -1,39 +1,83 @@
 package com.example.payment.service;
 
+import com.example.payment.deadline.Deadline;
+import com.example.payment.deadline.DeadlineExceededException;
+import com.example.payment.gateway.GatewayOutcomeUnknownException;
+import com.example.payment.gateway.GatewayResult;
+import com.example.payment.gateway.GatewayUnavailableException;
+import com.example.payment.gateway.PaymentGateway;
+import com.example.payment.journal.PaymentJournal;
 import com.example.payment.model.Order;
+import com.example.payment.model.OrderStatus;
 import com.example.payment.model.Transaction;
+import com.example.payment.model.TransactionStatus;
+import com.example.payment.model.TransactionType;
 import com.example.payment.repository.OrderRepository;
+import com.example.payment.repository.TransactionRawResponseRepository;
 import com.example.payment.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class PaymentServiceTest {
 
-    private AuthorizeNetClient authorizeNetClient;
+    private PaymentGateway paymentGateway;
     private OrderRepository orderRepository;
     private TransactionRepository transactionRepository;
+    private TransactionRawResponseRepository rawResponseRepository;
+    private PurchasePipeline purchasePipeline;
+    private BatchGatewayExecutor batchGatewayExecutor;
+    private TransactionLookupCache lookupCache;
+    private SimpleMeterRegistry meterRegistry;
     private PaymentService paymentService;
 
     @BeforeEach
     public void setup() {
-        authorizeNetClient = Mockito.mock(AuthorizeNetClient.class);
+        paymentGateway = Mockito.mock(PaymentGateway.class);
         orderRepository = Mockito.mock(OrderRepository.class);
         transactionRepository = Mockito.mock(TransactionRepository.class);
-        paymentService = new PaymentService(authorizeNetClient, orderRepository, transactionRepository);
+        rawResponseRepository = Mockito.mock(TransactionRawResponseRepository.class);
+        purchasePipeline = Mockito.mock(PurchasePipeline.class);
+        batchGatewayExecutor = new BatchGatewayExecutor(2);
+        lookupCache = new TransactionLookupCache(100);
+        meterRegistry = new SimpleMeterRegistry();
+        // conditional status updates find the order in the expected state unless a test says otherwise
+        when(orderRepository.transition(any(), any(), any(), any())).thenReturn(1);
+        when(orderRepository.claim(any(), any(), anyLong(), any(), any())).thenReturn(1);
+        when(orderRepository.settle(any(), any(), anyLong(), any(), any(), any(), any(), any())).thenReturn(1);
+        paymentService = new PaymentService(paymentGateway,
+                new PaymentRecorder(orderRepository, transactionRepository, new RawResponseStore(rawResponseRepository, Mockito.mock(RawResponseArchive.class)), lookupCache,
+                        new GroupCommitWriter(Mockito.mock(PlatformTransactionManager.class), 1, 0)),
+                transactionRepository, purchasePipeline, batchGatewayExecutor, lookupCache, new PaymentMetrics(meterRegistry),
+                Mockito.mock(PlatformTransactionManager.class), Mockito.mock(PaymentJournal.class));
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        batchGatewayExecutor.shutdown();
     }
 
     @Test
     public void testPurchaseSuccessCreatesOrderAndTransaction() {
-        when(authorizeNetClient.createTransaction(any(), anyString(), anyMap(), eq(true))).thenReturn(Map.of("status", "success", "provider_tx_id", "12345", "raw", Map.of()));
+        when(paymentGateway.createTransaction(any(), anyString(), anyMap(), eq(true))).thenReturn(GatewayResult.success("12345", "{}"));
         when(orderRepository.save(any(Order.class))).thenAnswer(i -> i.getArgument(0));
         when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> {
             Transaction t = i.getArgument(0);
@@ -43,15 +87,107 @@ public class PaymentServiceTest {
 
         Transaction tx = paymentService.purchase(new BigDecimal("10.00"), "USD", Map.of("number", "4111111111111111"), "ext-1");
         assertNotNull(tx);
-        assertEquals("success", tx.getStatus());
+        assertEquals(TransactionStatus.SUCCESS, tx.getStatus());
         assertEquals("12345", tx.getProviderTxId());
+        assertEquals(1, meterRegistry.get("payment.operation").tags("operation", "purchase", "outcome", "success").timer().count());
+        assertEquals(1.0, meterRegistry.get("payment.transactions").tags("type", "purchase", "status", "success").counter().count());
+    }
+
+    @Test
+    public void testPurchasePastItsDeadlineRecordsNothing() {
+        try (Deadline.Scope ignored = Deadline.after(0).attach()) {
+            assertThrows(DeadlineExceededException.class,
+                    () -> paymentService.purchase(new BigDecimal("12.34"), "USD", Map.of("number", "4111111111111111"), "ext-1"));
+        }
+        verify(orderRepository, never()).save(any());
+        verify(paymentGateway, never()).createTransaction(any(), anyString(), anyMap(), anyBoolean());
+        assertEquals(1, meterRegistry.get("payment.operation").tags("operation", "purchase", "outcome", "deadline_exceeded").timer().count());
+    }
+
+    @Test
+    public void testBatchRecordsEveryItemWithItsOwnOutcome() {
+        when(paymentGateway.createTransaction(eq(new BigDecimal("10.00")), anyString(), anyMap(), eq(true))).thenReturn(GatewayResult.success("b-1", "{}"));
+        when(paymentGateway.createTransaction(eq(new BigDecimal("20.00")), anyString(), anyMap(), eq(false))).thenReturn(GatewayResult.success("b-2", "{}"));
+        when(paymentGateway.createTransaction(eq(new BigDecimal("30.00")), anyString(), anyMap(), eq(true)))
+                .thenReturn(GatewayResult.failed("E00027", "declined", "{}"));
+        when(orderRepository.saveAll(anyList())).thenAnswer(i -> i.getArgument(0));
+        when(transactionRepository.saveAll(anyList())).thenAnswer(i -> i.getArgument(0));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
+
+        List<Transaction> txs = paymentService.batch(List.of(
+                new PaymentService.BatchItem("purchase", new BigDecimal("10.00"), "USD", Map.of(), "ext-b1"),
+                new PaymentService.BatchItem("authorize", new BigDecimal("20.00"), "USD", Map.of(), "ext-b2"),
+                new PaymentService.BatchItem("purchase", new BigDecimal("30.00"), "USD", Map.of(), "ext-b3")));
+
+        assertEquals(3, txs.size());
+        assertEquals("b-1", txs.get(0).getProviderTxId());
+        assertEquals(OrderStatus.CAPTURED, txs.get(0).getOrder().getStatus());
+        assertEquals(TransactionType.AUTHORIZE, txs.get(1).getType());
+        assertEquals(OrderStatus.AUTHORIZED, txs.get(1).getOrder().getStatus());
+        assertEquals(TransactionStatus.FAILED, txs.get(2).getStatus());
+        assertEquals(OrderStatus.FAILED, txs.get(2).getOrder().getStatus());
+        // pending rows go in with one saveAll per table rather than a save per item
+        verify(orderRepository, times(1)).saveAll(anyList());
+        verify(transactionRepository, times(1)).saveAll(anyList());
+        assertEquals(1, meterRegistry.get("payment.operation").tags("operation", "batch", "outcome", "failed").timer().count());
+        assertEquals(1.0, meterRegistry.get("payment.transactions").tags("type", "purchase", "status", "failed").counter().count());
+    }
+
+    @Test
+    public void testBatchGatewayCallsRunInParallelUpToTheLimit() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(paymentGateway.createTransaction(any(), anyString(), anyMap(), anyBoolean())).thenAnswer(i -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            inFlight.decrementAndGet();
+            return GatewayResult.success("p", "{}");
+        });
+        when(orderRepository.saveAll(anyList())).thenAnswer(i -> i.getArgument(0));
+        when(transactionRepository.saveAll(anyList())).thenAnswer(i -> i.getArgument(0));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
+
+        List<PaymentService.BatchItem> items = new ArrayList<>();
+        for (int i = 0; i < 6; i++) items.add(new PaymentService.BatchItem("purchase", BigDecimal.ONE, "USD", Map.of(), "ext-p" + i));
+        List<Transaction> txs = paymentService.batch(items);
+
+        assertEquals(6, txs.size());
+        assertTrue(txs.stream().allMatch(t -> t.getStatus() == TransactionStatus.SUCCESS));
+        assertEquals(2, maxInFlight.get());
+    }
+
+    @Test
+    public void testPurchaseAsyncRecordsPendingAndCompletesOnWorker() {
+        when(purchasePipeline.tryReserve()).thenReturn(true);
+        doAnswer(i -> {
+            ((Runnable) i.getArgument(0)).run();
+            return null;
+        }).when(purchasePipeline).execute(any(Runnable.class));
+        when(paymentGateway.createTransaction(any(), anyString(), anyMap(), eq(true))).thenReturn(GatewayResult.success("async-1", "{}"));
+        when(orderRepository.save(any(Order.class))).thenAnswer(i -> i.getArgument(0));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
+
+        Optional<Transaction> opt = paymentService.purchaseAsync(new BigDecimal("10.00"), "USD", Map.of("number", "4111111111111111"), "ext-async");
+        assertTrue(opt.isPresent());
+        assertEquals(TransactionStatus.SUCCESS, opt.get().getStatus());
+        assertEquals(OrderStatus.CAPTURED, opt.get().getOrder().getStatus());
+    }
+
+    @Test
+    public void testPurchaseAsyncRejectedWhenPipelineFull() {
+        when(purchasePipeline.tryReserve()).thenReturn(false);
+
+        Optional<Transaction> opt = paymentService.purchaseAsync(new BigDecimal("10.00"), "USD", Map.of("number", "4111111111111111"), "ext-full");
+        assertTrue(opt.isEmpty());
+        verify(orderRepository, never()).save(any(Order.class));
     }
 
     @Test
     public void testRefundFailsWhenOriginalMissing() {
-        when(transactionRepository.findByProviderTxId("nonexistent")).thenReturn(Optional.empty());
+        when(transactionRepository.findFirstByProviderTxIdOrderByIdAsc("nonexistent")).thenReturn(Optional.empty());
         Optional<Transaction> opt = paymentService.refund("nonexistent", new BigDecimal("5.00"), "1111");
         assertTrue(opt.isEmpty());
+        assertEquals(1, meterRegistry.get("payment.operation").tags("operation", "refund", "outcome", "not_found").timer().count());
     }
 
     @Test
@@ -59,26 +195,28 @@ public class PaymentServiceTest {
         Order order = new Order();
         order.setId(10L);
         order.setAmount(new BigDecimal("20.00"));
-        order.setStatus("authorized");
+        order.setAuthorizedAmount(new BigDecimal("20.00"));
+        order.setStatus(OrderStatus.AUTHORIZED);
 
         Transaction authTx = new Transaction();
         authTx.setId(2L);
         authTx.setOrder(order);
         authTx.setAmount(new BigDecimal("20.00"));
         authTx.setProviderTxId("auth-1");
-        authTx.setStatus("success");
+        authTx.setStatus(TransactionStatus.SUCCESS);
 
-        when(transactionRepository.findByProviderTxId("auth-1")).thenReturn(Optional.of(authTx));
-        when(authorizeNetClient.captureTransaction(eq("auth-1"), any())).thenReturn(Map.of("status", "success", "provider_tx_id", "cap-1", "raw", Map.of()));
+        when(transactionRepository.findFirstByProviderTxIdOrderByIdAsc("auth-1")).thenReturn(Optional.of(authTx));
+        when(paymentGateway.captureTransaction(eq("auth-1"), any())).thenReturn(GatewayResult.success("cap-1", "{}"));
         when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
         when(orderRepository.save(any(Order.class))).thenAnswer(i -> i.getArgument(0));
 
         Optional<Transaction> capOpt = paymentService.capture("auth-1", null);
         assertTrue(capOpt.isPresent());
         Transaction capTx = capOpt.get();
-        assertEquals("success", capTx.getStatus());
+        assertEquals(TransactionStatus.SUCCESS, capTx.getStatus());
         assertEquals("cap-1", capTx.getProviderTxId());
-        assertEquals("captured", capTx.getOrder().getStatus());
+        assertEquals(OrderStatus.CAPTURED, capTx.getOrder().getStatus());
+        assertEquals(new BigDecimal("20.00"), capTx.getOrder().getCapturedAmount());
     }
 
     @Test
@@ -86,24 +224,24 @@ public class PaymentServiceTest {
         Order order = new Order();
         order.setId(11L);
         order.setAmount(new BigDecimal("15.00"));
-        order.setStatus("authorized");
+        order.setStatus(OrderStatus.AUTHORIZED);
 
         Transaction tx = new Transaction();
         tx.setId(3L);
         tx.setOrder(order);
         tx.setProviderTxId("auth-2");
         tx.setAmount(new BigDecimal("15.00"));
-        tx.setStatus("success");
+        tx.setStatus(TransactionStatus.SUCCESS);
 
-        when(transactionRepository.findByProviderTxId("auth-2")).thenReturn(Optional.of(tx));
-        when(authorizeNetClient.voidTransaction("auth-2")).thenReturn(Map.of("status", "success", "provider_tx_id", "auth-2", "raw", Map.of()));
+        when(transactionRepository.findFirstByProviderTxIdOrderByIdAsc("auth-2")).thenReturn(Optional.of(tx));
+        when(paymentGateway.voidTransaction("auth-2")).thenReturn(GatewayResult.success("auth-2", "{}"));
         when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
         when(orderRepository.save(any(Order.class))).thenAnswer(i -> i.getArgument(0));
 
         Optional<Transaction> out = paymentService.voidTransaction("auth-2");
         assertTrue(out.isPresent());
-        assertEquals("success", out.get().getStatus());
-        assertEquals("cancelled", out.get().getOrder().getStatus());
+        assertEquals(TransactionStatus.SUCCESS, out.get().getStatus());
+        assertEquals(OrderStatus.CANCELLED, out.get().getOrder().getStatus());
     }
 
     @Test
@@ -111,25 +249,219 @@ public class PaymentServiceTest {
         Order order = new Order();
         order.setId(12L);
         order.setAmount(new BigDecimal("30.00"));
-        order.setStatus("captured");
+        order.setAuthorizedAmount(new BigDecimal("30.00"));
+        order.setCapturedAmount(new BigDecimal("30.00"));
+        order.setStatus(OrderStatus.CAPTURED);
 
         Transaction captured = new Transaction();
         captured.setId(4L);
         captured.setOrder(order);
         captured.setProviderTxId("cap-2");
         captured.setAmount(new BigDecimal("30.00"));
-        captured.setStatus("success");
+        captured.setStatus(TransactionStatus.SUCCESS);
 
-        when(transactionRepository.findByProviderTxId("cap-2")).thenReturn(Optional.of(captured));
-        when(authorizeNetClient.refundTransaction(eq("cap-2"), any(), anyString())).thenReturn(Map.of("status", "success", "provider_tx_id", "ref-1", "raw", Map.of()));
+        when(transactionRepository.findFirstByProviderTxIdOrderByIdAsc("cap-2")).thenReturn(Optional.of(captured));
+        when(paymentGateway.refundTransaction(eq("cap-2"), any(), anyString())).thenReturn(GatewayResult.success("ref-1", "{}"));
         when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
         when(orderRepository.save(any(Order.class))).thenAnswer(i -> i.getArgument(0));
 
         Optional<Transaction> refundOpt = paymentService.refund("cap-2", new BigDecimal("10.00"), "1111");
         assertTrue(refundOpt.isPresent());
         Transaction r = refundOpt.get();
-        assertEquals("success", r.getStatus());
+        assertEquals(TransactionStatus.SUCCESS, r.getStatus());
         assertEquals("ref-1", r.getProviderTxId());
-        assertEquals("refunded", r.getOrder().getStatus());
+        // 10 of 30: the order is only partly refunded
+        assertEquals(OrderStatus.PARTIALLY_REFUNDED, r.getOrder().getStatus());
+        assertEquals(new BigDecimal("10.00"), r.getOrder().getRefundedAmount());
+        verify(orderRepository).settle(eq(12L), eq(OrderStatus.REFUNDING), anyLong(), eq(OrderStatus.PARTIALLY_REFUNDED),
+                eq(new BigDecimal("30.00")), eq(new BigDecimal("10.00")), eq(BigDecimal.ZERO), any());
+    }
+
+    @Test
+    public void testFollowUpOfRecordedPaymentLoadsByPrimaryKey() {
+        when(orderRepository.save(any(Order.class))).thenAnswer(i -> {
+            Order o = i.getArgument(0);
+            if (o.getId() == null) o.setId(13L);
+            return o;
+        });
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> {
+            Transaction t = i.getArgument(0);
+            if (t.getId() == null) t.setId(5L);
+            return t;
+        });
+        when(paymentGateway.createTransaction(any(), anyString(), anyMap(), eq(false))).thenReturn(GatewayResult.success("auth-5", "{}"));
+        Transaction authTx = paymentService.authorizeOnly(new BigDecimal("40.00"), "USD", Map.of(), "ext-5");
+
+        when(transactionRepository.findWithOrderById(5L)).thenReturn(Optional.of(authTx));
+        when(paymentGateway.voidTransaction("auth-5")).thenReturn(GatewayResult.success("auth-5", "{}"));
+        assertTrue(paymentService.voidTransaction("auth-5").isPresent());
+
+        verify(transactionRepository, never()).findFirstByProviderTxIdOrderByIdAsc(anyString());
+        assertEquals(1, lookupCache.hits());
+        // the void is recorded as a transaction of its own; the authorization's entry stays valid
+        assertEquals(new TransactionLookupCache.Ref(5L, 13L), lookupCache.get("auth-5"));
+    }
+
+    @Test
+    public void testLookupMissFallsBackToIndexAndCaches() {
+        Order order = new Order();
+        order.setId(14L);
+        order.setStatus(OrderStatus.AUTHORIZED);
+        Transaction tx = new Transaction();
+        tx.setId(6L);
+        tx.setOrder(order);
+        tx.setProviderTxId("auth-6");
+        tx.setAmount(new BigDecimal("5.00"));
+        tx.setStatus(TransactionStatus.SUCCESS);
+        when(transactionRepository.findFirstByProviderTxIdOrderByIdAsc("auth-6")).thenReturn(Optional.of(tx));
+        when(paymentGateway.captureTransaction(eq("auth-6"), any())).thenReturn(GatewayResult.failed("E00027", "declined", "{}"));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
+
+        paymentService.capture("auth-6", null);
+
+        assertEquals(new TransactionLookupCache.Ref(6L, 14L), lookupCache.get("auth-6"));
+    }
+
+    private Transaction recorded(long orderId, OrderStatus orderStatus, String providerTxId) {
+        Order order = new Order();
+        order.setId(orderId);
+        order.setAmount(new BigDecimal("25.00"));
+        order.setAuthorizedAmount(new BigDecimal("25.00"));
+        if (orderStatus == OrderStatus.CAPTURED) order.setCapturedAmount(new BigDecimal("25.00"));
+        order.setStatus(orderStatus);
+        Transaction tx = new Transaction();
+        tx.setId(orderId * 10);
+        tx.setOrder(order);
+        tx.setProviderTxId(providerTxId);
+        tx.setAmount(new BigDecimal("25.00"));
+        tx.setStatus(TransactionStatus.SUCCESS);
+        when(transactionRepository.findFirstByProviderTxIdOrderByIdAsc(providerTxId)).thenReturn(Optional.of(tx));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
+        return tx;
+    }
+
+    @Test
+    public void testCaptureLosingTheClaimNeverReachesTheGateway() {
+        recorded(20L, OrderStatus.AUTHORIZED, "auth-20");
+        // a void of the same order claimed it between our lookup and our claim
+        when(orderRepository.claim(eq(20L), eq(OrderStatus.AUTHORIZED), anyLong(), eq(OrderStatus.CAPTURING), any())).thenReturn(0);
+
+        OrderStateConflictException ex = assertThrows(OrderStateConflictException.class, () -> paymentService.capture("auth-20", null));
+        assertTrue(ex.isRetryable());
+        verify(paymentGateway, never()).captureTransaction(anyString(), any());
+        assertEquals(1, meterRegistry.get("payment.operation").tags("operation", "capture", "outcome", "conflict").timer().count());
+    }
+
+    @Test
+    public void testRefundOfUncapturedOrderIsRefused() {
+        recorded(21L, OrderStatus.AUTHORIZED, "auth-21");
+
+        OrderStateConflictException ex = assertThrows(OrderStateConflictException.class,
+                () -> paymentService.refund("auth-21", new BigDecimal("5.00"), "1111"));
+        assertFalse(ex.isRetryable());
+        verify(orderRepository, never()).claim(any(), any(), anyLong(), any(), any());
+        verify(paymentGateway, never()).refundTransaction(anyString(), any(), anyString());
+    }
+
+    @Test
+    public void testDeclinedRefundReleasesClaimToPriorStatus() {
+        Transaction captured = recorded(22L, OrderStatus.CAPTURED, "cap-22");
+        when(paymentGateway.refundTransaction(eq("cap-22"), any(), anyString())).thenReturn(GatewayResult.failed("E00027", "declined", "{}"));
+
+        Transaction refund = paymentService.refund("cap-22", new BigDecimal("5.00"), "1111").orElseThrow();
+
+        assertEquals(TransactionType.REFUND, refund.getType());
+        assertEquals(TransactionStatus.FAILED, refund.getStatus());
+        verify(orderRepository).claim(eq(22L), eq(OrderStatus.CAPTURED), eq(0L), eq(OrderStatus.REFUNDING), any());
+        verify(orderRepository).transition(eq(22L), eq(OrderStatus.REFUNDING), eq(OrderStatus.CAPTURED), any());
+        assertEquals(OrderStatus.CAPTURED, captured.getOrder().getStatus());
+    }
+
+    @Test
+    public void testVoidThatThrowsReleasesClaim() {
+        Transaction auth = recorded(23L, OrderStatus.AUTHORIZED, "auth-23");
+        when(paymentGateway.voidTransaction("auth-23")).thenThrow(new DeadlineExceededException("the gateway call"));
+
+        assertThrows(DeadlineExceededException.class, () -> paymentService.voidTransaction("auth-23"));
+        verify(orderRepository).transition(eq(23L), eq(OrderStatus.VOIDING), eq(OrderStatus.AUTHORIZED), any());
+        assertEquals(OrderStatus.AUTHORIZED, auth.getOrder().getStatus());
+    }
+
+    @Test
+    public void testRefusalAfterTheOrderIsRecordedAnswersWithTheOrderFailed() {
+        // the breaker opened between the pre-check and the call
+        when(paymentGateway.createTransaction(any(), anyString(), anyMap(), eq(true)))
+                .thenThrow(new GatewayUnavailableException("payment provider unavailable (circuit open)", 1000));
+        when(orderRepository.save(any(Order.class))).thenAnswer(i -> i.getArgument(0));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
+
+        Transaction tx = paymentService.purchase(new BigDecimal("10.00"), "USD", Map.of("number", "4111111111111111"), "ext-1");
+
+        assertEquals(TransactionStatus.FAILED, tx.getStatus());
+        assertEquals(OrderStatus.FAILED, tx.getOrder().getStatus());
+        assertEquals(1, meterRegistry.get("payment.operation").tags("operation", "purchase", "outcome", "failed").timer().count());
+    }
+
+    @Test
+    public void testPurchaseWithoutAnAnswerStaysProcessing() {
+        when(paymentGateway.createTransaction(any(), anyString(), anyMap(), eq(true)))
+                .thenThrow(new GatewayOutcomeUnknownException("read timed out", null));
+        when(orderRepository.save(any(Order.class))).thenAnswer(i -> i.getArgument(0));
+        when(transactionRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
+
+        assertThrows(GatewayOutcomeUnknownException.class,
+                () -> paymentService.purchase(new BigDecimal("10.00"), "USD", Map.of("number", "4111111111111111"), "ext-1"));
+
+        // only the pending insert: the provider may have charged, so the order is not failed
+        verify(orderRepository, times(1)).save(argThat(o -> o.getStatus() == OrderStatus.PROCESSING));
+        verify(orderRepository, never()).save(argThat(o -> o.getStatus() == OrderStatus.FAILED));
+        verify(transactionRepository, never()).save(argThat(t -> t.getStatus() != TransactionStatus.PENDING));
+        assertEquals(1, meterRegistry.get("payment.operation").tags("operation", "purchase", "outcome", "outcome_unknown").timer().count());
+    }
+
+    @Test
+    public void testCaptureWithoutAnAnswerKeepsTheClaim() {
+        Transaction auth = recorded(25L, OrderStatus.AUTHORIZED, "auth-25");
+        when(paymentGateway.captureTransaction(eq("auth-25"), any())).thenThrow(new GatewayOutcomeUnknownException("read timed out", null));
+
+        assertThrows(GatewayOutcomeUnknownException.class, () -> paymentService.capture("auth-25", null));
+        verify(orderRepository, never()).transition(eq(25L), eq(OrderStatus.CAPTURING), eq(OrderStatus.AUTHORIZED), any());
+        assertEquals(OrderStatus.CAPTURING, auth.getOrder().getStatus());
+    }
+
+    @Test
+    public void testOverRefundIsRefusedFromRunningTotals() {
+        Transaction captured = recorded(24L, OrderStatus.PARTIALLY_REFUNDED, "cap-24");
+        captured.getOrder().setCapturedAmount(new BigDecimal("25.00"));
+        captured.getOrder().setRefundedAmount(new BigDecimal("20.00"));
+
+        AmountExceedsBalanceException ex = assertThrows(AmountExceedsBalanceException.class,
+                () -> paymentService.refund("cap-24", new BigDecimal("5.01"), "1111"));
+        assertEquals(new BigDecimal("5.00"), ex.getAvailable());
+        verify(orderRepository, never()).claim(any(), any(), anyLong(), any(), any());
+        verify(paymentGateway, never()).refundTransaction(anyString(), any(), anyString());
+    }
+
+    @Test
+    public void testRefundOfTheRemainderCompletesTheRefund() {
+        Transaction captured = recorded(25L, OrderStatus.PARTIALLY_REFUNDED, "cap-25");
+        captured.getOrder().setCapturedAmount(new BigDecimal("25.00"));
+        captured.getOrder().setRefundedAmount(new BigDecimal("20.00"));
+        when(paymentGateway.refundTransaction(eq("cap-25"), eq(new BigDecimal("5.00")), anyString())).thenReturn(GatewayResult.success("ref-25", "{}"));
+
+        // no amount: refund what is left
+        Transaction refund = paymentService.refund("cap-25", null, "1111").orElseThrow();
+
+        assertEquals(new BigDecimal("5.00"), refund.getAmount());
+        assertEquals(OrderStatus.REFUNDED, captured.getOrder().getStatus());
+        assertEquals(BigDecimal.ZERO.setScale(2), captured.getOrder().refundableAmount());
+    }
+
+    @Test
+    public void testCaptureAboveTheAuthorizationIsRefused() {
+        recorded(26L, OrderStatus.AUTHORIZED, "auth-26");
+
+        assertThrows(AmountExceedsBalanceException.class, () -> paymentService.capture("auth-26", new BigDecimal("25.01")));
+        verify(paymentGateway, never()).captureTransaction(anyString(), any());
     }
 }
@@ -0,0 +1,94 @@
+package com.example.payment.service;
+
+import com.example.payment.journal.PaymentJournal;
+import com.example.payment.model.Order;
+import com.example.payment.model.OrderStatus;
+import com.example.payment.model.Transaction;
+import com.example.payment.model.TransactionStatus;
+import com.example.payment.repository.OrderRepository;
+import com.example.payment.repository.TransactionRawResponseRepository;
+import com.example.payment.repository.TransactionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ProcessingOrderSweeperTest {
+
+    private OrderRepository orderRepository;
+    private TransactionRepository transactionRepository;
+    private ProcessingOrderSweeper sweeper;
+
+    @BeforeEach
+    public void setup() {
+        orderRepository = Mockito.mock(OrderRepository.class);
+        transactionRepository = Mockito.mock(TransactionRepository.class);
+        sweeper = new ProcessingOrderSweeper(orderRepository, new PaymentRecorder(orderRepository, transactionRepository,
+                new RawResponseStore(Mockito.mock(TransactionRawResponseRepository.class), Mockito.mock(RawResponseArchive.class)), new TransactionLookupCache(100),
+                new GroupCommitWriter(Mockito.mock(PlatformTransactionManager.class), 1, 0)),
+                Mockito.mock(PaymentJournal.class), 600);
+    }
+
+    @Test
+    public void staleProcessingOrderIsFailed() {
+        Order order = new Order();
+        order.setId(7L);
+        order.setAmount(new BigDecimal("10.00"));
+        order.setStatus(OrderStatus.PROCESSING);
+        order.setUpdatedAt(Instant.now().minusSeconds(3600));
+
+        Transaction pending = new Transaction();
+        pending.setId(70L);
+        pending.setOrder(order);
+        pending.setStatus(TransactionStatus.PENDING);
+
+        when(orderRepository.findTop100ByStatusInAndUpdatedAtBeforeOrderByUpdatedAtAsc(any(), any())).thenReturn(List.of(order));
+        when(orderRepository.transition(eq(7L), eq(OrderStatus.PROCESSING), eq(OrderStatus.FAILED), any())).thenReturn(1);
+        when(transactionRepository.findByOrderIdAndStatus(7L, TransactionStatus.PENDING)).thenReturn(List.of(pending));
+
+        assertEquals(1, sweeper.sweep());
+        assertEquals(TransactionStatus.FAILED, pending.getStatus());
+    }
+
+    @Test
+    public void orderThatMovedOnIsLeftAlone() {
+        Order listed = new Order();
+        listed.setId(8L);
+        listed.setStatus(OrderStatus.PROCESSING);
+
+        when(orderRepository.findTop100ByStatusInAndUpdatedAtBeforeOrderByUpdatedAtAsc(any(), any())).thenReturn(List.of(listed));
+        // the conditional update finds the order no longer processing
+        when(orderRepository.transition(eq(8L), eq(OrderStatus.PROCESSING), eq(OrderStatus.FAILED), any())).thenReturn(0);
+
+        assertEquals(0, sweeper.sweep());
+        verify(transactionRepository, never()).findByOrderIdAndStatus(any(), any());
+        verify(transactionRepository, never()).save(any(Transaction.class));
+    }
+
+    @Test
+    public void staleRefundClaimGoesBackToWhatTheTotalsShow() {
+        Order order = new Order();
+        order.setId(9L);
+        order.setStatus(OrderStatus.REFUNDING);
+        order.setAuthorizedAmount(new BigDecimal("30.00"));
+        order.setCapturedAmount(new BigDecimal("30.00"));
+        order.setRefundedAmount(new BigDecimal("10.00"));
+
+        when(orderRepository.findTop100ByStatusInAndUpdatedAtBeforeOrderByUpdatedAtAsc(any(), any())).thenReturn(List.of(order));
+        when(orderRepository.transition(eq(9L), eq(OrderStatus.REFUNDING), eq(OrderStatus.PARTIALLY_REFUNDED), any())).thenReturn(1);
+
+        assertEquals(1, sweeper.sweep());
+        verify(orderRepository).transition(eq(9L), eq(OrderStatus.REFUNDING), eq(OrderStatus.PARTIALLY_REFUNDED), any());
+    }
+}
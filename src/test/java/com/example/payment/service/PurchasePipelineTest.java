@@ -0,0 +1,64 @@
+package com.example.payment.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PurchasePipelineTest {
+
+    @Test
+    public void rejectsOnceWorkersAndQueueAreFull() throws Exception {
+        PurchasePipeline pipeline = new PurchasePipeline(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        try {
+            for (int i = 0; i < 2; i++) {
+                assertTrue(pipeline.tryReserve());
+                pipeline.execute(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    done.countDown();
+                });
+            }
+            assertFalse(pipeline.tryReserve());
+
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            // slots are handed back as tasks finish
+            boolean reserved = false;
+            for (int i = 0; i < 50 && !reserved; i++) {
+                reserved = pipeline.tryReserve();
+                if (!reserved) Thread.sleep(10);
+            }
+            assertTrue(reserved);
+            pipeline.cancel();
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+
+    @Test
+    public void failingTaskReleasesItsSlot() throws Exception {
+        PurchasePipeline pipeline = new PurchasePipeline(1, 0);
+        try {
+            assertTrue(pipeline.tryReserve());
+            pipeline.execute(() -> {
+                throw new IllegalStateException("boom");
+            });
+            boolean reserved = false;
+            for (int i = 0; i < 50 && !reserved; i++) {
+                reserved = pipeline.tryReserve();
+                if (!reserved) Thread.sleep(10);
+            }
+            assertTrue(reserved);
+        } finally {
+            pipeline.shutdown();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.payment.service;
+
+import com.example.payment.model.TransactionRawResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RawResponseArchiveTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void looksUpEveryResponseOfATransactionAcrossSegments() throws Exception {
+        RawResponseArchive archive = new RawResponseArchive(dir.toString());
+        List<TransactionRawResponse> first = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) first.add(row(id, id % 10, "purchase"));
+        archive.append(first);
+        archive.append(List.of(row(101, 3, "void"), row(102, 11, "refund")));
+
+        List<RawResponseStore.Entry> entries = archive.lookup(3);
+
+        assertEquals(11, entries.size());
+        assertEquals(3L, entries.get(0).id());
+        assertEquals("{\"row\":3}", entries.get(0).json());
+        assertEquals(Instant.parse("2026-10-01T00:00:03.000001Z"), entries.get(0).createdAt());
+        assertTrue(entries.get(0).archived());
+        assertEquals("void", entries.get(10).operation());
+        assertEquals(1, archive.lookup(11).size());
+        assertTrue(archive.lookup(12).isEmpty());
+    }
+
+    @Test
+    public void reopensFinishedSegmentsAndDropsUnfinishedOnes() throws Exception {
+        RawResponseArchive archive = new RawResponseArchive(dir.toString());
+        archive.append(List.of(row(1, 5, "authorize"), row(2, 5, "capture")));
+        // the same rows rolled again after a crash before their delete
+        archive.append(List.of(row(1, 5, "authorize"), row(2, 5, "capture")));
+        Files.writeString(dir.resolve("raw-3-4.seg"), "no index yet");
+        Files.writeString(dir.resolve("raw-5-6.seg.tmp"), "interrupted");
+
+        RawResponseArchive reopened = new RawResponseArchive(dir.toString());
+
+        assertEquals(1, reopened.segmentCount());
+        assertEquals(List.of("authorize", "capture"),
+                reopened.lookup(5).stream().map(RawResponseStore.Entry::operation).toList());
+        assertFalse(Files.exists(dir.resolve("raw-3-4.seg")));
+        assertFalse(Files.exists(dir.resolve("raw-5-6.seg.tmp")));
+    }
+
+    private static TransactionRawResponse row(long id, long transactionId, String operation) {
+        TransactionRawResponse row = new TransactionRawResponse();
+        row.setId(id);
+        row.setTransactionId(transactionId);
+        row.setOperation(operation);
+        row.setEncoding(RawResponseStore.ENCODING);
+        row.setPayload(RawResponseStore.compress("{\"row\":" + id + "}"));
+        row.setCreatedAt(Instant.parse("2026-10-01T00:00:00Z").plusSeconds(id).plusNanos(1000));
+        return row;
+    }
+}
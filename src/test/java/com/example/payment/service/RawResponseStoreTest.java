@@ -0,0 +1,76 @@
+package com.example.payment.service;
+
+import com.example.payment.model.TransactionRawResponse;
+import com.example.payment.repository.TransactionRawResponseRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class RawResponseStoreTest {
+
+    private static final String JSON = "{\"resultCode\":\"Ok\",\"messages\":[{\"code\":\"I00001\",\"text\":\"Successful.\"}],"
+            + "\"transactionResponse\":{\"responseCode\":\"1\",\"authCode\":\"ABC123\",\"transId\":\"60012345\"}}";
+
+    @Test
+    public void storesCompressedAndLoadsBack() {
+        TransactionRawResponseRepository repository = Mockito.mock(TransactionRawResponseRepository.class);
+        RawResponseArchive archive = Mockito.mock(RawResponseArchive.class);
+        RawResponseStore store = new RawResponseStore(repository, archive);
+
+        store.store(7L, "purchase", JSON);
+
+        ArgumentCaptor<TransactionRawResponse> saved = ArgumentCaptor.forClass(TransactionRawResponse.class);
+        verify(repository).save(saved.capture());
+        TransactionRawResponse row = saved.getValue();
+        assertEquals(7L, row.getTransactionId());
+        assertEquals("purchase", row.getOperation());
+        assertEquals("deflate", row.getEncoding());
+
+        row.setId(70L);
+        when(repository.findByTransactionIdOrderByIdAsc(7L)).thenReturn(List.of(row));
+        assertEquals(List.of(JSON), store.load(7L).stream().map(RawResponseStore.Entry::json).toList());
+    }
+
+    @Test
+    public void mergesArchivedResponsesWithoutDuplicates() {
+        TransactionRawResponseRepository repository = Mockito.mock(TransactionRawResponseRepository.class);
+        RawResponseArchive archive = Mockito.mock(RawResponseArchive.class);
+        TransactionRawResponse hot = new TransactionRawResponse();
+        hot.setId(90L);
+        hot.setTransactionId(7L);
+        hot.setOperation("void");
+        hot.setPayload(RawResponseStore.compress("{\"v\":1}"));
+        when(repository.findByTransactionIdOrderByIdAsc(7L)).thenReturn(List.of(hot));
+        Instant at = Instant.parse("2026-10-01T00:00:00Z");
+        // 90 was archived by a roll that did not get to delete it
+        when(archive.lookup(7L)).thenReturn(List.of(new RawResponseStore.Entry(70L, "purchase", at, true, JSON),
+                new RawResponseStore.Entry(90L, "void", at, true, "{\"v\":1}")));
+
+        List<RawResponseStore.Entry> entries = new RawResponseStore(repository, archive).load(7L);
+
+        assertEquals(List.of(70L, 90L), entries.stream().map(RawResponseStore.Entry::id).toList());
+        assertTrue(entries.get(0).archived());
+        assertFalse(entries.get(1).archived());
+    }
+
+    @Test
+    public void skipsMissingResponse() {
+        TransactionRawResponseRepository repository = Mockito.mock(TransactionRawResponseRepository.class);
+        new RawResponseStore(repository, Mockito.mock(RawResponseArchive.class)).store(7L, "void", null);
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    public void rejectsCorruptPayload() {
+        assertThrows(IllegalStateException.class, () -> RawResponseStore.decompress(new byte[]{1, 2, 3}));
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.payment.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionLookupCacheTest {
+
+    @Test
+    public void firstTransactionUnderAProviderIdWins() {
+        TransactionLookupCache cache = new TransactionLookupCache(10);
+        cache.put("auth-1", 1L, 100L);
+        // the prior-auth capture comes back with the authorization's id
+        cache.put("auth-1", 2L, 100L);
+
+        assertEquals(new TransactionLookupCache.Ref(1L, 100L), cache.get("auth-1"));
+        assertNull(cache.get("other"));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void invalidateDropsTheEntry() {
+        TransactionLookupCache cache = new TransactionLookupCache(10);
+        cache.put("auth-1", 1L, 100L);
+        cache.invalidate("auth-1");
+        assertNull(cache.get("auth-1"));
+    }
+
+    @Test
+    public void staysWithinMaxEntries() {
+        TransactionLookupCache cache = new TransactionLookupCache(3);
+        for (long i = 0; i < 10; i++) cache.put("p-" + i, i, i);
+        assertTrue(cache.size() <= 3);
+        assertNotNull(cache.get("p-9"));
+    }
+
+    @Test
+    public void zeroMaxEntriesDisablesTheCache() {
+        TransactionLookupCache cache = new TransactionLookupCache(0);
+        cache.put("auth-1", 1L, 100L);
+        assertNull(cache.get("auth-1"));
+        assertEquals(0, cache.size());
+    }
+}
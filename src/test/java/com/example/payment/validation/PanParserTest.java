@@ -0,0 +1,57 @@
+package com.example.payment.validation;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PanParserTest {
+
+    @Test
+    public void classifiesBrandsByBin() {
+        assertEquals(CardBrand.VISA, brandOf("4111111111111111"));
+        assertEquals(CardBrand.MASTERCARD, brandOf("5555555555554444"));
+        assertEquals(CardBrand.MASTERCARD, brandOf("2223003122003222")); // 2-series
+        assertEquals(CardBrand.MASTERCARD, brandOf("2720992720992727"));
+        assertEquals(CardBrand.AMEX, brandOf("378282246310005"));
+        assertEquals(CardBrand.AMEX, brandOf("340000000000009"));
+        assertEquals(CardBrand.DISCOVER, brandOf("6011111111111117"));
+        assertEquals(CardBrand.DISCOVER, brandOf("6445644564456445"));
+        assertEquals(CardBrand.DISCOVER, brandOf("6221260000000000"));
+        assertEquals(CardBrand.JCB, brandOf("3530111333300000"));
+        assertEquals(CardBrand.UNKNOWN, brandOf("2220990000000000")); // just below the 2-series range
+        assertEquals(CardBrand.UNKNOWN, brandOf("6221250000000000")); // just below China UnionPay co-branded Discover
+    }
+
+    @Test
+    public void acceptsValidNumbersWithWhitespace() {
+        int result = PanParser.parse("4111 1111\t1111 1111");
+        assertTrue(PanParser.isValid(result));
+        assertEquals(16, PanParser.length(result));
+        assertTrue(PanParser.isValid(PanParser.parse("4222222222222"))); // 13-digit Visa
+        assertTrue(PanParser.isValid(PanParser.parse("6011000990139424"))); // odd-position Luhn path via 16 digits
+        assertTrue(PanParser.isValid(PanParser.parse("378734493671000"))); // 15 digits
+    }
+
+    @Test
+    public void rejectsBadInput() {
+        assertEquals(PanParser.MALFORMED, PanParser.status(PanParser.parse(null)));
+        assertEquals(PanParser.MALFORMED, PanParser.status(PanParser.parse("  ")));
+        assertEquals(PanParser.MALFORMED, PanParser.status(PanParser.parse("4111-1111-1111-1111")));
+        assertEquals(PanParser.BAD_CHECKSUM, PanParser.status(PanParser.parse("4111111111111112")));
+        assertEquals(PanParser.BAD_LENGTH, PanParser.status(PanParser.parse("37828224631000"))); // Amex is 15 digits
+        assertEquals(PanParser.BAD_LENGTH, PanParser.status(PanParser.parse("41111111111111111111")));
+        assertEquals(PanParser.BAD_LENGTH, PanParser.status(PanParser.parse("79927398713"))); // Luhn-valid but too short
+    }
+
+    @Test
+    public void digitsStripsWhitespaceOnlyWhenPresent() {
+        String clean = "4111111111111111";
+        assertSame(clean, PanParser.digits(clean));
+        assertEquals(clean, PanParser.digits(" 4111 1111 1111 1111 "));
+        assertNull(PanParser.digits(null));
+    }
+
+    private static CardBrand brandOf(String pan) {
+        return PanParser.brand(PanParser.parse(pan));
+    }
+}